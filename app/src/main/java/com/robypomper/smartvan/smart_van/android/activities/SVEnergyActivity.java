@@ -18,9 +18,12 @@ import com.robypomper.josp.jsl.objs.JSLRemoteObject;
 import com.robypomper.josp.jsl.objs.remote.ObjComm;
 import com.robypomper.josp.jsl.objs.structure.pillars.JSLRangeState;
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.app.SVComponentDataHub;
 import com.robypomper.smartvan.smart_van.android.commons.SVDefinitions;
 import com.robypomper.smartvan.smart_van.android.commons.SVSpec;
 import com.robypomper.smartvan.smart_van.android.commons.SVSpecs;
+import com.robypomper.smartvan.smart_van.android.commons.SVUnitConverter;
+import com.robypomper.smartvan.smart_van.android.components.SVChartLineView;
 import com.robypomper.smartvan.smart_van.android.components.SVChartView;
 import com.robypomper.smartvan.smart_van.android.components.SVChartViewExportable;
 import com.robypomper.smartvan.smart_van.android.components.SVChartViewJSLAbs;
@@ -63,12 +66,19 @@ public class SVEnergyActivity extends BaseRemoteObjectActivity {
     public final static String COMP_STORAGE_LABEL = "Battery";
     public final static String COMP_STORAGE_UNIT = "V";
     public final static int COMP_STORAGE_COLOR = Color.rgb(0, 200, 0);
+    public final static SVUnitConverter COMP_STORAGE_CONVERTER = SVUnitConverter.MILLIVOLT_TO_VOLT;
     public final static String COMP_GENERATION_LABEL = "Generation";
     public final static String COMP_GENERATION_UNIT = "W";
     public final static int COMP_GENERATION_COLOR = Color.rgb(200, 200, 0);
+    public final static SVUnitConverter COMP_GENERATION_CONVERTER = SVUnitConverter.MILLIWATT_TO_WATT;
     public final static String COMP_CONSUMPTION_LABEL = "Cons.";
     public final static String COMP_CONSUMPTION_UNIT = "W";
     public final static int COMP_CONSUMPTION_COLOR = Color.rgb(0, 200, 200);
+    public final static SVUnitConverter COMP_CONSUMPTION_CONVERTER = SVUnitConverter.MILLIWATT_TO_WATT;
+    /**
+     * All chart's components are expressed in thousandths (mV and mW).
+     */
+    public final static SVUnitConverter CHART_CONVERTER = SVUnitConverter.MILLI;
 
 
     // Internal variables
@@ -114,6 +124,10 @@ public class SVEnergyActivity extends BaseRemoteObjectActivity {
         chart = binding.viewChart;
         if (chart instanceof SVChartViewJSLAbs)
             ((SVChartViewJSLAbs) chart).setJSLApplication(getJSLApplication());
+        if (chart instanceof SVChartLineView) {
+            SVChartLineView chartLine = (SVChartLineView) chart;
+            chartLine.setPipeline(chartLine.getPipeline().withValueStages(CHART_CONVERTER));
+        }
 
         // Setup BottomSheetExports
         btnSheetExport = findViewById(R.id.btnExports);
@@ -233,16 +247,18 @@ public class SVEnergyActivity extends BaseRemoteObjectActivity {
 
     private void registerRemoteObjectListeners() {
         getRemoteObject().getComm().addListener(listenerComm);
-        storageComp.addListener(listenerComps);
-        generationComp.addListener(listenerComps);
-        consumptionComp.addListener(listenerComps);
+        SVComponentDataHub hub = SVComponentDataHub.get(getRemoteObject());
+        hub.subscribe(storageComp, listenerComps);
+        hub.subscribe(generationComp, listenerComps);
+        hub.subscribe(consumptionComp, listenerComps);
     }
 
     private void deregisterRemoteObjectListeners() {
         getRemoteObject().getComm().removeListener(listenerComm);
-        storageComp.removeListener(listenerComps);
-        generationComp.removeListener(listenerComps);
-        consumptionComp.removeListener(listenerComps);
+        SVComponentDataHub hub = SVComponentDataHub.get(getRemoteObject());
+        hub.unsubscribe(storageComp, listenerComps);
+        hub.unsubscribe(generationComp, listenerComps);
+        hub.unsubscribe(consumptionComp, listenerComps);
     }
 
 
@@ -314,13 +330,13 @@ public class SVEnergyActivity extends BaseRemoteObjectActivity {
         if (storageComp == null)
             Log.i(LOG_TAG, "updateStorageComp() for unregistered storage component");
         else
-            Log.d(LOG_TAG, String.format("updateStorageComp(%s) => %f", storageComp.getState(), storageComp.getState() / 1000));
+            Log.d(LOG_TAG, String.format("updateStorageComp(%s) => %f", storageComp.getState(), COMP_STORAGE_CONVERTER.convert(storageComp.getState())));
 
         runOnUiThread(new Runnable() {
             @SuppressLint("DefaultLocale")
             @Override
             public void run() {
-                binding.donutStorageValue.setValue(storageComp == null ? 0 : storageComp.getState() / 1000); // mV to V
+                binding.donutStorageValue.setValue(storageComp == null ? 0 : COMP_STORAGE_CONVERTER.convert(storageComp.getState()));
             }
         });
     }
@@ -331,13 +347,13 @@ public class SVEnergyActivity extends BaseRemoteObjectActivity {
         if (generationComp == null)
             Log.i(LOG_TAG, "updateGenerationComp() for unregistered storage component");
         else
-            Log.d(LOG_TAG, String.format("updateGenerationComp(%s) => %f", generationComp.getState(), generationComp.getState() / 1000));
+            Log.d(LOG_TAG, String.format("updateGenerationComp(%s) => %f", generationComp.getState(), COMP_GENERATION_CONVERTER.convert(generationComp.getState())));
 
         runOnUiThread(new Runnable() {
             @SuppressLint("DefaultLocale")
             @Override
             public void run() {
-                binding.donutGenerationValue.setValue(generationComp == null ? 0 : generationComp.getState() / 1000); // mW to W
+                binding.donutGenerationValue.setValue(generationComp == null ? 0 : COMP_GENERATION_CONVERTER.convert(generationComp.getState()));
             }
         });
     }
@@ -348,13 +364,13 @@ public class SVEnergyActivity extends BaseRemoteObjectActivity {
         if (consumptionComp == null)
             Log.i(LOG_TAG, "updateGenerationComp() for unregistered storage component");
         else
-            Log.d(LOG_TAG, String.format("updateConsumptionComp(%s) => %f", consumptionComp.getState(), consumptionComp.getState() / 1000));
+            Log.d(LOG_TAG, String.format("updateConsumptionComp(%s) => %f", consumptionComp.getState(), COMP_CONSUMPTION_CONVERTER.convert(consumptionComp.getState())));
 
         runOnUiThread(new Runnable() {
             @SuppressLint("DefaultLocale")
             @Override
             public void run() {
-                binding.donutConsumptionValue.setValue(consumptionComp == null ? 0 : consumptionComp.getState() / 1000); // mW to W
+                binding.donutConsumptionValue.setValue(consumptionComp == null ? 0 : COMP_CONSUMPTION_CONVERTER.convert(consumptionComp.getState()));
             }
         });
     }
@@ -23,16 +23,20 @@ import com.robypomper.josp.jsl.objs.structure.JSLComponent;
 import com.robypomper.josp.jsl.objs.structure.pillars.JSLBooleanState;
 import com.robypomper.josp.jsl.objs.structure.pillars.JSLRangeState;
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.app.SVComponentDataHub;
 import com.robypomper.smartvan.smart_van.android.commons.SVDefinitions;
 import com.robypomper.smartvan.smart_van.android.commons.SVSpec;
 import com.robypomper.smartvan.smart_van.android.commons.SVSpecs;
 import com.robypomper.smartvan.smart_van.android.components.SVBoxIconView;
 import com.robypomper.smartvan.smart_van.android.databinding.ActivitySvmainBinding;
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferences;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import io.reactivex.rxjava3.disposables.Disposable;
+
 
 /**
  * Main activity for the Smart Van application.
@@ -98,6 +102,7 @@ public class SVMainActivity extends BaseRemoteObjectActivity {
     private JSLRangeState panelsComp;
     private JSLRangeState serviceComp;
     private final List<JSLComponent> serviceComps = new ArrayList<>();
+    private Disposable svBoxColorLoading;
 
 
     // UI widgets
@@ -150,6 +155,13 @@ public class SVMainActivity extends BaseRemoteObjectActivity {
         binding.baseLayout.close();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (svBoxColorLoading != null)
+            svBoxColorLoading.dispose();
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -217,30 +229,32 @@ public class SVMainActivity extends BaseRemoteObjectActivity {
     private void registerRemoteObjectListeners() {
         getRemoteObject().getComm().addListener(listenerComm);
 
-        powerComp.addListener(listenerComps);
-        panelsComp.addListener(listenerComps);
-        serviceComp.addListener(listenerComps);
+        SVComponentDataHub hub = SVComponentDataHub.get(getRemoteObject());
+        hub.subscribe(powerComp, listenerComps);
+        hub.subscribe(panelsComp, listenerComps);
+        hub.subscribe(serviceComp, listenerComps);
 
         for (JSLComponent c : serviceComps)
             if (c instanceof JSLBooleanState)
-                ((JSLBooleanState) c).addListener(listenerServiceBooleanComps);
+                hub.subscribe((JSLBooleanState) c, listenerServiceBooleanComps);
             else if (c instanceof JSLRangeState)
-                ((JSLRangeState) c).addListener(listenerServiceRangeComps);
+                hub.subscribe((JSLRangeState) c, listenerServiceRangeComps);
 
     }
 
     private void deregisterRemoteObjectListeners() {
         getRemoteObject().getComm().removeListener(listenerComm);
 
-        powerComp.removeListener(listenerComps);
-        panelsComp.removeListener(listenerComps);
-        serviceComp.removeListener(listenerComps);
+        SVComponentDataHub hub = SVComponentDataHub.get(getRemoteObject());
+        hub.unsubscribe(powerComp, listenerComps);
+        hub.unsubscribe(panelsComp, listenerComps);
+        hub.unsubscribe(serviceComp, listenerComps);
 
         for (JSLComponent c : serviceComps)
             if (c instanceof JSLBooleanState)
-                ((JSLBooleanState) c).removeListener(listenerServiceBooleanComps);
+                hub.unsubscribe((JSLBooleanState) c, listenerServiceBooleanComps);
             else if (c instanceof JSLRangeState)
-                ((JSLRangeState) c).removeListener(listenerServiceRangeComps);
+                hub.unsubscribe((JSLRangeState) c, listenerServiceRangeComps);
     }
 
 
@@ -334,20 +348,34 @@ public class SVMainActivity extends BaseRemoteObjectActivity {
         if (getRemoteObject() == null)
             Log.i(LOG_TAG, "updateRemoteObject() for unregistered remote object");
 
+        // Read the object's color from the storage thread, then update the UI
+        if (svBoxColorLoading != null)
+            svBoxColorLoading.dispose();
+        svBoxColorLoading = SVStorageSingleton.getAsyncInstance().getCurrentPreferencesApp()
+                .map(SVPreferences::getSVBoxColor)
+                .subscribe(this::updateRemoteObject, error -> {
+                    if (!(error instanceof IllegalStateException)) {
+                        Log.w(LOG_TAG, String.format("Error reading object's color: %s", error.getMessage()), error);
+                        return;
+                    }
+                    // java.lang.IllegalStateException: No current object is set
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Intent selectObjectIntent = new Intent(SVMainActivity.this, SVSelectObjectActivity.class);
+                            startActivity(selectObjectIntent);
+                        }
+                    });
+                });
+    }
+
+    private void updateRemoteObject(int objColor) {
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 binding.imgSVIcon.setSVBox(getRemoteObject());
 
                 String strObjId = getObjId();   // fallback to objId
-                int objColor;
-                try {
-                    objColor = SVStorageSingleton.getInstance().getCurrentPreferencesApp().getSVBoxColor();
-                } catch (IllegalStateException e) { // java.lang.IllegalStateException: No current object is set
-                    Intent selectObjectIntent = new Intent(SVMainActivity.this, SVSelectObjectActivity.class);
-                    startActivity(selectObjectIntent);
-                    return;
-                }
 
                 JSLRemoteObject obj = getRemoteObject();
                 if (obj != null) strObjId = obj.getName();
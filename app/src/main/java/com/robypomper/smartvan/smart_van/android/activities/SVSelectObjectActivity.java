@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
 import android.widget.LinearLayout;
@@ -13,10 +14,14 @@ import com.robypomper.josp.jsl.objs.JSLRemoteObject;
 import com.robypomper.smartvan.smart_van.android.R;
 import com.robypomper.smartvan.smart_van.android.commons.SVDefinitions;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorageAsync;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
 
 import java.util.List;
 
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.disposables.CompositeDisposable;
+
 
 /**
  * This activity is used to select the SmartVan object to use.
@@ -26,6 +31,9 @@ import java.util.List;
  * <p>
  * If the {@link #PARAM_AVOID_FAVOURITE} is set to true, the favourite object is ignored
  * and no dialog is shown to the user.
+ * <p>
+ * All storage's reads and writes are executed via the {@link SVStorageAsync},
+ * so the UI thread never waits for the disk.
  */
 public class SVSelectObjectActivity extends JSLSelectObjectActivity {
 
@@ -34,12 +42,19 @@ public class SVSelectObjectActivity extends JSLSelectObjectActivity {
     public final static String PARAM_AVOID_FAVOURITE = SVDefinitions.PARAM_ACTIVITY_SVSELECTOBJECT_AVOID_FAVOURITE;
     public static final String MODEL_NAME = SVDefinitions.MODEL_NAME;
     public static final Class<? extends Activity> NEXT_ACTIVITY = SVDefinitions.NEXT_ACTIVITY_SELECTOBJECT;
+    private static final String LOG_TAG = "SVSelectObjectActivity";
 
 
     // Internal vars
 
-    private SVStorage svStorage;
-    private String favouriteObjId;
+    private SVStorageAsync svStorage;
+    private final CompositeDisposable disposables = new CompositeDisposable();
+    /**
+     * Completes when the favourite object's preferences are loaded from the storage.
+     */
+    private Completable favouriteLoading;
+    private volatile String favouriteObjId;
+    private volatile boolean askForUseFavouriteObjId = SVStorage.DEF_ASK_USE_FAV_OBJ_ID;
     private boolean ignoreFavourite = false;
 
 
@@ -61,30 +76,53 @@ public class SVSelectObjectActivity extends JSLSelectObjectActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        svStorage = SVStorageSingleton.getInstance();
+        svStorage = SVStorageSingleton.getAsyncInstance();
 
         // Parse intent params
         if (getIntent().getExtras() != null)
             ignoreFavourite = getIntent().getExtras().getBoolean(PARAM_AVOID_FAVOURITE, false);
 
+        // Load favourite object's preferences
+        favouriteLoading = svStorage.getFavouriteObjectId()
+                .doOnSuccess(objId -> favouriteObjId = objId)
+                .ignoreElement()
+                .andThen(svStorage.askForUseFavouriteObjectId())
+                .doOnSuccess(ask -> askForUseFavouriteObjId = ask)
+                .ignoreElement()
+                .cache();
+
         // Check if there is already a favourite object
-        favouriteObjId = svStorage.getFavouriteObjectId();
-        if (!ignoreFavourite && favouriteObjId != null) {
-            JSLRemoteObject remObj = getJSL().getObjsMngr().getById(favouriteObjId);
-            if (remObj != null)
-                onRemoteObjectAdded(remObj);    // inject into onRemoteObjectAdded chain
-        }
+        disposables.add(favouriteLoading.subscribe(() -> {
+            if (!ignoreFavourite && favouriteObjId != null) {
+                JSLRemoteObject remObj = getJSL().getObjsMngr().getById(favouriteObjId);
+                if (remObj != null)
+                    onRemoteObjectAdded(remObj);    // inject into onRemoteObjectAdded chain
+            }
+        }, error -> Log.w(LOG_TAG, String.format("Error loading favourite object: %s", error.getMessage()), error)));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        disposables.dispose();
     }
 
     @Override
     protected void proposeFoundedSmartVan(List<JSLRemoteObject> objs) {
+        // Wait for favourite object's preferences, then propose the object from the UI thread
+        disposables.add(favouriteLoading
+                .onErrorComplete()
+                .subscribe(() -> runOnUiThread(() -> doProposeFoundedSmartVan(objs))));
+    }
+
+    private void doProposeFoundedSmartVan(List<JSLRemoteObject> objs) {
         assert objs.size() == 1;
         String remObjId = objs.get(0).getId();
         String remObjName = objs.get(0).getName();
 
-        if ((svStorage.getFavouriteObjectId() != null
-                && svStorage.getFavouriteObjectId().compareTo(remObjId) == 0)
-                || !svStorage.askForUseFavouriteObjectId()) {
+        if ((favouriteObjId != null
+                && favouriteObjId.compareTo(remObjId) == 0)
+                || !askForUseFavouriteObjId) {
             doGoToNextActivity(remObjId);
             return;
         }
@@ -96,14 +134,14 @@ public class SVSelectObjectActivity extends JSLSelectObjectActivity {
                 switch (which) {
                     case DialogInterface.BUTTON_POSITIVE:
                         //Yes button clicked
-                        svStorage.setFavouriteObjectId(remObjId);
+                        doGoToNextActivity(remObjId, true);
                         break;
 
                     case DialogInterface.BUTTON_NEGATIVE:
                         //No button clicked
+                        doGoToNextActivity(remObjId, false);
                         break;
                 }
-                doGoToNextActivity(remObjId);
             }
         };
 
@@ -123,7 +161,7 @@ public class SVSelectObjectActivity extends JSLSelectObjectActivity {
 
         if (!remObj.getId().equals(favouriteObjId)) return;
 
-        if (!svStorage.askForUseFavouriteObjectId()) {
+        if (!askForUseFavouriteObjId) {
             doGoToNextActivity(remObj.getId());
             return;
         }
@@ -159,7 +197,9 @@ public class SVSelectObjectActivity extends JSLSelectObjectActivity {
                 checkBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
                     @Override
                     public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                        svStorage.setAskForUseFavouriteObjectId(!isChecked);
+                        askForUseFavouriteObjId = !isChecked;
+                        //noinspection ResultOfMethodCallIgnored
+                        svStorage.setAskForUseFavouriteObjectId(!isChecked).subscribe();
                     }
                 });
 
@@ -175,14 +215,23 @@ public class SVSelectObjectActivity extends JSLSelectObjectActivity {
     }
 
     private void doGoToNextActivity(String objId) {
-        // Store selected object as current object id
-        svStorage.setCurrentObjectId(objId);
-        svStorage.addKnownObjectId(objId);
-
-        // Go to next activity
-        Bundle b = new Bundle();
-        b.putString(SVMainActivity.PARAM_OBJ_ID, objId);
-        goToNextActivity(b);
+        doGoToNextActivity(objId, false);
+    }
+
+    private void doGoToNextActivity(String objId, boolean setAsFavourite) {
+        // Store selected object as current (and favourite) object id
+        SVStorage.Editor editor = svStorage.edit()
+                .setCurrentObjectId(objId)
+                .addKnownObjectId(objId);
+        if (setAsFavourite)
+            editor.setFavouriteObjectId(objId);
+
+        // Go to next activity, once the selected object is readable from the storage
+        disposables.add(svStorage.apply(editor).subscribe(() -> runOnUiThread(() -> {
+            Bundle b = new Bundle();
+            b.putString(SVMainActivity.PARAM_OBJ_ID, objId);
+            goToNextActivity(b);
+        }), error -> Log.w(LOG_TAG, String.format("Error storing selected object '%s': %s", objId, error.getMessage()), error)));
     }
 
 }
\ No newline at end of file
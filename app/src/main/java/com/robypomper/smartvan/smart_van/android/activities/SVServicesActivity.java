@@ -42,6 +42,8 @@ import com.robypomper.smartvan.smart_van.android.handlers.SVServiceViewsListHand
 import com.robypomper.smartvan.smart_van.android.storage.SVPreferencesServices;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
 
+import java.util.Map;
+
 
 /** @noinspection unused*/
 public class SVServicesActivity
@@ -192,12 +194,15 @@ public class SVServicesActivity
         switchViewsHandlers.removeAllComponents();
         dimmerViewsHandlers.removeAllComponents();
 
+        // Load all service's preferences at once
+        Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs = SVStorageSingleton.getInstance().getCurrentPreferencesServices().getAll();
+
         // Generate and add SVBinaryControllerView
         JSLContainer controllersBinaryCont = findContainerComponent(CONT_CONT_BIN.getPath());
         if (controllersBinaryCont != null)
             for (JSLComponent c : controllersBinaryCont.getComponents()) {
                 if (!(c instanceof JSLBooleanState)) continue;
-                SVBinaryControllerView v = createBinaryControlView((JSLBooleanState) c);
+                SVBinaryControllerView v = createBinaryControlView((JSLBooleanState) c, servicesPrefs);
                 ViewGroup card = wrapComponentView(v);
                 binaryViewsHandlers.addComponent((JSLBooleanState) c, v, card);
             }
@@ -207,7 +212,7 @@ public class SVServicesActivity
         if (controllersPercentCont != null)
             for (JSLComponent c : controllersPercentCont.getComponents()) {
                 if (!(c instanceof JSLRangeState)) continue;
-                SVPercentControllerView v = createPercentControlView((JSLRangeState) c);
+                SVPercentControllerView v = createPercentControlView((JSLRangeState) c, servicesPrefs);
                 ViewGroup card = wrapComponentView(v);
                 percentViewsHandlers.addComponent((JSLRangeState) c, v, card);
             }
@@ -217,7 +222,7 @@ public class SVServicesActivity
         if (actuatorsBinaryLowCont != null)
             for (JSLComponent c : actuatorsBinaryLowCont.getComponents()) {
                 if (!(c instanceof JSLBooleanAction)) continue;
-                SVSwitchActuatorView v = createSwitchActuatorView((JSLBooleanAction) c, false);
+                SVSwitchActuatorView v = createSwitchActuatorView((JSLBooleanAction) c, false, servicesPrefs);
                 ViewGroup card = wrapComponentView(v);
                 switchViewsHandlers.addComponent((JSLBooleanAction) c, v, card);
             }
@@ -225,7 +230,7 @@ public class SVServicesActivity
         if (actuatorsBinaryHighCont != null)
             for (JSLComponent c : actuatorsBinaryHighCont.getComponents()) {
                 if (!(c instanceof JSLBooleanAction)) continue;
-                SVSwitchActuatorView v = createSwitchActuatorView((JSLBooleanAction) c, true);
+                SVSwitchActuatorView v = createSwitchActuatorView((JSLBooleanAction) c, true, servicesPrefs);
                 ViewGroup card = wrapComponentView(v);
                 switchViewsHandlers.addComponent((JSLBooleanAction) c, v, card);
             }
@@ -235,7 +240,7 @@ public class SVServicesActivity
         if (actuatorsPercentLowCont != null)
             for (JSLComponent c : actuatorsPercentLowCont.getComponents()) {
                 if (!(c instanceof JSLRangeAction)) continue;
-                SVDimmerActuatorView v = createDimmerActuatorView((JSLRangeAction) c, false);
+                SVDimmerActuatorView v = createDimmerActuatorView((JSLRangeAction) c, false, servicesPrefs);
                 ViewGroup card = wrapComponentView(v);
                 dimmerViewsHandlers.addComponent((JSLRangeAction) c, v, card);
             }
@@ -243,7 +248,7 @@ public class SVServicesActivity
         if (actuatorsPercentHighCont != null)
             for (JSLComponent c : actuatorsPercentHighCont.getComponents()) {
                 if (!(c instanceof JSLRangeAction)) continue;
-                SVDimmerActuatorView v = createDimmerActuatorView((JSLRangeAction) c, true);
+                SVDimmerActuatorView v = createDimmerActuatorView((JSLRangeAction) c, true, servicesPrefs);
                 ViewGroup card = wrapComponentView(v);
                 dimmerViewsHandlers.addComponent((JSLRangeAction) c, v, card);
             }
@@ -643,11 +648,9 @@ public class SVServicesActivity
         SVBaseControllerServiceView fragmentCompView = frmComponentBottomSheet.getCompView();
         JSLComponent originComp = fragmentCompView.getStateHandler().getComponent();
 
-        // copy card header + icon, from bottom sheet to activity
-        activityCompView.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(originComp));
+        // card header + icon are updated by the service's preferences changes
         //activityCompView.getCardHeaderHandler().setSVType(getServiceTypeFromPrefs(originComp));
         //activityCompView.getCardHeaderHandler().setHighVoltage(fragmentCompView.getCardHeaderHandler().isHighVoltage());
-        activityCompView.getIconHandler().setIcon(getServiceIconFromPrefs(originComp));
 
         // copy state, from bottom sheet to activity
         JSLBaseStateViewHandler activityStateHandler = activityCompView.getStateHandler();
@@ -677,37 +680,37 @@ public class SVServicesActivity
 
     // UI Service cards creation
 
-    private SVBinaryControllerView createBinaryControlView(JSLBooleanState c) {
+    private SVBinaryControllerView createBinaryControlView(JSLBooleanState c, Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs) {
         SVBinaryControllerView view = new SVBinaryControllerView(this, c, LAY_BIN_CTRL_CARD);
-        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(c));
+        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(servicesPrefs, c));
         view.getCardHeaderHandler().setSVType(component2ServiceType(c));
-        view.getIconHandler().setIcon(getServiceIconFromPrefs(c));
+        view.getIconHandler().setIcon(getServiceIconFromPrefs(servicesPrefs, c));
         return view;
     }
 
-    private SVPercentControllerView createPercentControlView(JSLRangeState c) {
+    private SVPercentControllerView createPercentControlView(JSLRangeState c, Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs) {
         SVPercentControllerView view = new SVPercentControllerView(this, c, LAY_PERC_CTRL_CARD);
-        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(c));
+        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(servicesPrefs, c));
         view.getCardHeaderHandler().setSVType(component2ServiceType(c));
-        view.getIconHandler().setIcon(getServiceIconFromPrefs(c));
+        view.getIconHandler().setIcon(getServiceIconFromPrefs(servicesPrefs, c));
         return view;
     }
 
-    private SVSwitchActuatorView createSwitchActuatorView(JSLBooleanAction c, boolean isHighVoltage) {
+    private SVSwitchActuatorView createSwitchActuatorView(JSLBooleanAction c, boolean isHighVoltage, Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs) {
         SVSwitchActuatorView view = new SVSwitchActuatorView(this, c, LAY_SWITCH_ACT_CARD);
         view.getCardHeaderHandler().setHighVoltage(isHighVoltage);
-        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(c));
+        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(servicesPrefs, c));
         view.getCardHeaderHandler().setSVType(component2ServiceType(c));
-        view.getIconHandler().setIcon(getServiceIconFromPrefs(c));
+        view.getIconHandler().setIcon(getServiceIconFromPrefs(servicesPrefs, c));
         return view;
     }
 
-    private SVDimmerActuatorView createDimmerActuatorView(JSLRangeAction c, boolean isHighVoltage) {
+    private SVDimmerActuatorView createDimmerActuatorView(JSLRangeAction c, boolean isHighVoltage, Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs) {
         SVDimmerActuatorView view = new SVDimmerActuatorView(this, c, LAY_DIMMER_ACT_CARD);
         view.getCardHeaderHandler().setHighVoltage(isHighVoltage);
-        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(c));
+        view.getCardHeaderHandler().setSVName(getServiceNameFromPrefs(servicesPrefs, c));
         view.getCardHeaderHandler().setSVType(component2ServiceType(c));
-        view.getIconHandler().setIcon(getServiceIconFromPrefs(c));
+        view.getIconHandler().setIcon(getServiceIconFromPrefs(servicesPrefs, c));
         return view;
     }
 
@@ -777,6 +780,18 @@ public class SVServicesActivity
         return SVServiceIcons.iconString2Res(iconName);
     }
 
+    public static String getServiceNameFromPrefs(Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs, JSLComponent comp) {
+        SVPreferencesServices.ServicePrefs prefs = servicesPrefs.get(comp.getPath().getString());
+        String savedName = prefs != null ? prefs.getName() : null;
+        return savedName != null ? savedName : comp.getName();
+    }
+
+    public static @DrawableRes int getServiceIconFromPrefs(Map<String, SVPreferencesServices.ServicePrefs> servicesPrefs, JSLComponent comp) {
+        SVPreferencesServices.ServicePrefs prefs = servicesPrefs.get(comp.getPath().getString());
+        String iconName = prefs != null ? prefs.getIconName() : null;
+        return SVServiceIcons.iconString2Res(iconName);
+    }
+
 
     // Utils
 
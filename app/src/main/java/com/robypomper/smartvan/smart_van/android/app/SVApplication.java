@@ -12,13 +12,16 @@ public class SVApplication extends JSLApplication<SVService> {
     // Constructors
 
     /**
-     * Initialize the application's storage object.
+     * Initialize the application's storage object and start the warm-up of
+     * the favourite and most recently used objects' storage.
      */
     @Override
     public void onCreate() {
         super.onCreate();
-        new SVLocalStorage(getApplicationContext());
-        SVStorageSingleton.getInstance().setCurrentObjectId(null);
+        SVLocalStorage storage = new SVLocalStorage(getApplicationContext());
+        storage.prefetchObjects();
+        //noinspection ResultOfMethodCallIgnored
+        SVStorageSingleton.getAsyncInstance().setCurrentObjectId(null).subscribe();
     }
 
 
@@ -0,0 +1,505 @@
+package com.robypomper.smartvan.smart_van.android.app;
+
+import com.robypomper.josp.jsl.objs.JSLRemoteObject;
+import com.robypomper.josp.jsl.objs.history.HistoryCompStatus;
+import com.robypomper.josp.jsl.objs.structure.JSLComponent;
+import com.robypomper.josp.jsl.objs.structure.pillars.JSLBooleanState;
+import com.robypomper.josp.jsl.objs.structure.pillars.JSLRangeState;
+import com.robypomper.josp.protocol.HistoryLimits;
+import com.robypomper.josp.protocol.JOSPHistory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Shares the components' data of a remote object between all views that
+ * display them.
+ * <p>
+ * State updates: views subscribe to a component through the hub, instead of
+ * adding their listener to the component. The hub registers a single
+ * listener for each component, while it has at least one subscriber
+ * (subscriptions are ref-counted per component's path), and it forwards the
+ * component's updates to all subscribers.
+ * <p>
+ * History: views request a component's history through the hub. When a
+ * request of the same component covering the same time range (and page) is
+ * already waiting for the remote object's response, the new listener is
+ * attached to it, so the response is received once and delivered to all
+ * listeners. Requests without a response are expired after
+ * {@link #HISTORY_REQUEST_TIMEOUT_MS}, notifying their listeners. Received
+ * histories are cached by the charts into their shared history cache (see
+ * {@link com.robypomper.smartvan.smart_van.android.components.SVChartViewJSLAbs}),
+ * so subsequent requests are served without contacting the remote object.
+ * <p>
+ * Hubs are created on demand, one for each remote object, and kept for the
+ * whole application's lifetime. They reference the components only while
+ * subscribed, and the history listeners only while their requests are
+ * pending.
+ *
+ * @noinspection unused
+ */
+public class SVComponentDataHub {
+
+    // Constants
+
+    /**
+     * Requests waiting for their response longer than this time are
+     * considered lost: they are removed, their listeners are notified of the
+     * failure and the next same request is sent again.
+     */
+    public static final long HISTORY_REQUEST_TIMEOUT_MS = 15 * 1000;
+    /**
+     * Executor shared by all hubs, it expires the lost history requests.
+     */
+    private static final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SV_HUB_TIMEOUTS");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+
+    // Per object instances
+
+    private static final Map<String, SVComponentDataHub> hubs = new HashMap<>();
+
+    /**
+     * @param remoteObject the remote object.
+     * @return the hub of given remote object, a new one if not exists yet.
+     */
+    public static SVComponentDataHub get(JSLRemoteObject remoteObject) {
+        synchronized (hubs) {
+            SVComponentDataHub hub = hubs.get(remoteObject.getId());
+            if (hub == null) {
+                hub = new SVComponentDataHub(remoteObject.getId());
+                hubs.put(remoteObject.getId(), hub);
+            }
+            return hub;
+        }
+    }
+
+    /**
+     * @param component the component.
+     * @return the hub of the component's remote object.
+     */
+    public static SVComponentDataHub get(JSLComponent component) {
+        return get(component.getRemoteObject());
+    }
+
+
+    // Internal vars
+
+    private final String objectId;
+    private final Map<String, RangeSubscription> rangeSubscriptions = new HashMap<>();
+    private final Map<String, BooleanSubscription> booleanSubscriptions = new HashMap<>();
+    private final Map<String, HistoryRequest> historyRequests = new HashMap<>();
+
+
+    // Constructors
+
+    private SVComponentDataHub(String objectId) {
+        this.objectId = objectId;
+    }
+
+
+    // Getters
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    /**
+     * @return the number of components with at least one subscriber.
+     */
+    public synchronized int getSubscribedComponentsCount() {
+        return rangeSubscriptions.size() + booleanSubscriptions.size();
+    }
+
+    /**
+     * @param component the component.
+     * @return the number of subscribers of given component.
+     */
+    public synchronized int getSubscribersCount(JSLComponent component) {
+        String compPath = component.getPath().getString();
+        if (rangeSubscriptions.containsKey(compPath))
+            return rangeSubscriptions.get(compPath).subscribers.size();
+        if (booleanSubscriptions.containsKey(compPath))
+            return booleanSubscriptions.get(compPath).subscribers.size();
+        return 0;
+    }
+
+
+    // State subscriptions
+
+    /**
+     * Forward the component's updates to given listener, until it's
+     * unsubscribed.
+     * <p>
+     * If the component's instance differs from the subscribed one (e.g. the
+     * remote object's structure was reloaded after a reconnection), the hub's
+     * listener is moved to the given instance.
+     *
+     * @param component the component to subscribe.
+     * @param listener  the listener for the component's updates.
+     */
+    public synchronized void subscribe(JSLRangeState component, JSLRangeState.RangeStateListener listener) {
+        String compPath = component.getPath().getString();
+        RangeSubscription subscription = rangeSubscriptions.get(compPath);
+        if (subscription == null) {
+            subscription = new RangeSubscription(component);
+            rangeSubscriptions.put(compPath, subscription);
+            component.addListener(subscription);
+        } else if (subscription.component != component) {
+            // Component's instance replaced, e.g. the object's structure was reloaded on reconnection
+            subscription.component.removeListener(subscription);
+            subscription.component = component;
+            component.addListener(subscription);
+        }
+        subscription.subscribers.add(listener);
+    }
+
+    /**
+     * Stop forwarding the component's updates to given listener. When the
+     * component has no more subscribers, the hub's listener is removed from
+     * the component.
+     *
+     * @param component the subscribed component.
+     * @param listener  the listener to remove.
+     */
+    public synchronized void unsubscribe(JSLRangeState component, JSLRangeState.RangeStateListener listener) {
+        String compPath = component.getPath().getString();
+        RangeSubscription subscription = rangeSubscriptions.get(compPath);
+        if (subscription == null || !subscription.subscribers.remove(listener))
+            return;
+
+        if (subscription.subscribers.isEmpty()) {
+            rangeSubscriptions.remove(compPath);
+            subscription.component.removeListener(subscription);
+        }
+    }
+
+    /**
+     * Same as {@link #subscribe(JSLRangeState, JSLRangeState.RangeStateListener)},
+     * for boolean components.
+     */
+    public synchronized void subscribe(JSLBooleanState component, JSLBooleanState.BooleanStateListener listener) {
+        String compPath = component.getPath().getString();
+        BooleanSubscription subscription = booleanSubscriptions.get(compPath);
+        if (subscription == null) {
+            subscription = new BooleanSubscription(component);
+            booleanSubscriptions.put(compPath, subscription);
+            component.addListener(subscription);
+        } else if (subscription.component != component) {
+            // Component's instance replaced, e.g. the object's structure was reloaded on reconnection
+            subscription.component.removeListener(subscription);
+            subscription.component = component;
+            component.addListener(subscription);
+        }
+        subscription.subscribers.add(listener);
+    }
+
+    /**
+     * Same as {@link #unsubscribe(JSLRangeState, JSLRangeState.RangeStateListener)},
+     * for boolean components.
+     */
+    public synchronized void unsubscribe(JSLBooleanState component, JSLBooleanState.BooleanStateListener listener) {
+        String compPath = component.getPath().getString();
+        BooleanSubscription subscription = booleanSubscriptions.get(compPath);
+        if (subscription == null || !subscription.subscribers.remove(listener))
+            return;
+
+        if (subscription.subscribers.isEmpty()) {
+            booleanSubscriptions.remove(compPath);
+            subscription.component.removeListener(subscription);
+        }
+    }
+
+    /**
+     * Single listener registered to a range component, it forwards the
+     * component's updates to all subscribers.
+     */
+    private static class RangeSubscription implements JSLRangeState.RangeStateListener {
+
+        private JSLRangeState component;
+        private final List<JSLRangeState.RangeStateListener> subscribers = new CopyOnWriteArrayList<>();
+
+        private RangeSubscription(JSLRangeState component) {
+            this.component = component;
+        }
+
+        @Override
+        public void onStateChanged(JSLRangeState component, double newState, double oldState) {
+            for (JSLRangeState.RangeStateListener subscriber : subscribers)
+                subscriber.onStateChanged(component, newState, oldState);
+        }
+
+        @Override
+        public void onMinReached(JSLRangeState component, double state, double min) {
+            for (JSLRangeState.RangeStateListener subscriber : subscribers)
+                subscriber.onMinReached(component, state, min);
+        }
+
+        @Override
+        public void onMaxReached(JSLRangeState component, double state, double max) {
+            for (JSLRangeState.RangeStateListener subscriber : subscribers)
+                subscriber.onMaxReached(component, state, max);
+        }
+
+    }
+
+    /**
+     * Single listener registered to a boolean component, it forwards the
+     * component's updates to all subscribers.
+     */
+    private static class BooleanSubscription implements JSLBooleanState.BooleanStateListener {
+
+        private JSLBooleanState component;
+        private final List<JSLBooleanState.BooleanStateListener> subscribers = new CopyOnWriteArrayList<>();
+
+        private BooleanSubscription(JSLBooleanState component) {
+            this.component = component;
+        }
+
+        @Override
+        public void onStateChanged(JSLBooleanState component, boolean newState, boolean oldState) {
+            for (JSLBooleanState.BooleanStateListener subscriber : subscribers)
+                subscriber.onStateChanged(component, newState, oldState);
+        }
+
+    }
+
+
+    // History requests
+
+    /**
+     * Request the component's history within given time range.
+     * <p>
+     * If a pending request of the same component covers the given range, the
+     * listener is attached to it and receives only the history within given
+     * range.
+     *
+     * @param component the component.
+     * @param fromDate  the beginning of the requested range.
+     * @param toDate    the end of the requested range.
+     * @param listener  the listener for the received history, or for the
+     *                  request's failure.
+     * @throws JSLRemoteObject.ObjectNotConnected if the request can't be
+     *                                            sent because the remote object is not connected.
+     * @throws JSLRemoteObject.MissingPermission  if the current user can't
+     *                                            access the component's history.
+     */
+    public void requestHistory(JSLComponent component, Date fromDate, Date toDate, HistoryListener listener) throws JSLRemoteObject.ObjectNotConnected, JSLRemoteObject.MissingPermission {
+        String compPath = component.getPath().getString();
+        requestHistory(component, new HistoryLimits(null, null, null, null, fromDate, toDate, null, null),
+                new HistoryRequest(String.format("%s:%d-%d", compPath, fromDate.getTime(), toDate.getTime()), compPath, fromDate.getTime(), toDate.getTime(), false), listener);
+    }
+
+    /**
+     * Same as {@link #requestHistory(JSLComponent, Date, Date, HistoryListener)},
+     * but it requests a single page of the component's history. Pages are
+     * shared only with the requests of the same range and page.
+     *
+     * @param pageSize the number of samples for each page.
+     * @param pageNum  the page to request, starting from 0.
+     */
+    public void requestHistory(JSLComponent component, Date fromDate, Date toDate, int pageSize, int pageNum, HistoryListener listener) throws JSLRemoteObject.ObjectNotConnected, JSLRemoteObject.MissingPermission {
+        String compPath = component.getPath().getString();
+        requestHistory(component, new HistoryLimits(null, null, null, null, fromDate, toDate, pageSize, pageNum),
+                new HistoryRequest(String.format("%s:%d-%d#%d/%d", compPath, fromDate.getTime(), toDate.getTime(), pageNum, pageSize), compPath, fromDate.getTime(), toDate.getTime(), true), listener);
+    }
+
+    private void requestHistory(JSLComponent component, HistoryLimits limits, HistoryRequest newRequest, HistoryListener listener) throws JSLRemoteObject.ObjectNotConnected, JSLRemoteObject.MissingPermission {
+        HistoryRequest request;
+        synchronized (this) {
+            request = findPendingRequest(newRequest);
+            if (request != null) {
+                request.attach(listener, newRequest.fromMs, newRequest.toMs);
+                return;
+            }
+            request = newRequest;
+            request.attach(listener, request.fromMs, request.toMs);
+            historyRequests.put(request.requestKey, request);
+        }
+        request.scheduleTimeout();
+
+        try {
+            component.getRemoteObject().getStruct().getComponentHistory(component, limits, request);
+        } catch (JSLRemoteObject.ObjectNotConnected | JSLRemoteObject.MissingPermission e) {
+            List<AttachedListener> attachedListeners = request.complete();
+            if (attachedListeners == null)      // Already expired
+                throw e;
+            for (AttachedListener attached : attachedListeners)
+                if (attached.listener != listener)      // The caller receives the exception
+                    attached.listener.onHistoryFailed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Must be called holding the hub's lock.
+     *
+     * @return the pending request with the same key of given request or, for
+     * not paged requests, the first pending request of the same component
+     * covering given request's range; null if not found.
+     */
+    private HistoryRequest findPendingRequest(HistoryRequest newRequest) {
+        HistoryRequest request = historyRequests.get(newRequest.requestKey);
+        if (request != null || newRequest.paged)
+            return request;
+
+        for (HistoryRequest pending : historyRequests.values())
+            if (!pending.paged && pending.compPath.equals(newRequest.compPath)
+                    && pending.fromMs <= newRequest.fromMs && pending.toMs >= newRequest.toMs)
+                return pending;
+        return null;
+    }
+
+    /**
+     * @return the number of history requests waiting for their response.
+     */
+    public synchronized int getPendingHistoryRequestsCount() {
+        return historyRequests.size();
+    }
+
+    /**
+     * Listener for the history requested through the hub.
+     */
+    public interface HistoryListener extends HistoryCompStatus.StatusHistoryListener {
+
+        /**
+         * Called when the request can't be sent to the remote object, or when
+         * no response was received within {@link #HISTORY_REQUEST_TIMEOUT_MS}.
+         * <p>
+         * It's not called for the listener of the request's caller, if the
+         * request can't be sent: the caller receives the exception.
+         *
+         * @param error the request's failure.
+         */
+        void onHistoryFailed(Exception error);
+
+    }
+
+    /**
+     * Listener attached to a pending request, with the range it requested.
+     */
+    private static class AttachedListener {
+
+        private final HistoryListener listener;
+        private final long fromMs;
+        private final long toMs;
+
+        private AttachedListener(HistoryListener listener, long fromMs, long toMs) {
+            this.listener = listener;
+            this.fromMs = fromMs;
+            this.toMs = toMs;
+        }
+
+    }
+
+    /**
+     * History request sent to the remote object, it delivers the response to
+     * all listeners attached while it was pending.
+     * <p>
+     * Once completed (received, failed or expired), it's removed from the
+     * hub and it doesn't hold his listeners anymore, so late responses are
+     * discarded.
+     */
+    private class HistoryRequest implements HistoryCompStatus.StatusHistoryListener {
+
+        private final String requestKey;
+        private final String compPath;
+        private final long fromMs;
+        private final long toMs;
+        private final boolean paged;
+        private final List<AttachedListener> listeners = new ArrayList<>();
+        private ScheduledFuture<?> timeout;
+
+        private HistoryRequest(String requestKey, String compPath, long fromMs, long toMs, boolean paged) {
+            this.requestKey = requestKey;
+            this.compPath = compPath;
+            this.fromMs = fromMs;
+            this.toMs = toMs;
+            this.paged = paged;
+        }
+
+        /**
+         * Must be called holding the hub's lock.
+         */
+        private void attach(HistoryListener listener, long fromMs, long toMs) {
+            listeners.add(new AttachedListener(listener, fromMs, toMs));
+        }
+
+        /**
+         * Fail the request, if it's still pending after
+         * {@link #HISTORY_REQUEST_TIMEOUT_MS}.
+         */
+        private void scheduleTimeout() {
+            ScheduledFuture<?> future = timeoutExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    List<AttachedListener> expired = complete();
+                    if (expired == null) return;
+
+                    TimeoutException error = new TimeoutException(String.format("No history received within %d ms", HISTORY_REQUEST_TIMEOUT_MS));
+                    for (AttachedListener attached : expired)
+                        attached.listener.onHistoryFailed(error);
+                }
+            }, HISTORY_REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            synchronized (SVComponentDataHub.this) {
+                timeout = future;
+            }
+        }
+
+        /**
+         * Remove the request from the hub and cancel his timeout.
+         *
+         * @return the request's listeners, or null if the request was already
+         * completed.
+         */
+        private List<AttachedListener> complete() {
+            synchronized (SVComponentDataHub.this) {
+                if (historyRequests.get(requestKey) != this)
+                    return null;
+                historyRequests.remove(requestKey);
+                if (timeout != null)
+                    timeout.cancel(false);
+                List<AttachedListener> completed = new ArrayList<>(listeners);
+                listeners.clear();
+                return completed;
+            }
+        }
+
+        @Override
+        public void receivedStatusHistory(List<JOSPHistory> history) {
+            List<AttachedListener> attachedListeners = complete();
+            if (attachedListeners == null) return;
+
+            for (AttachedListener attached : attachedListeners) {
+                if (attached.fromMs <= fromMs && attached.toMs >= toMs) {
+                    attached.listener.receivedStatusHistory(history);
+                    continue;
+                }
+
+                // Attached to a wider request, deliver only the requested range
+                List<JOSPHistory> filtered = new ArrayList<>();
+                for (JOSPHistory status : history) {
+                    long updatedAtMs = status.getUpdatedAt().getTime();
+                    if (updatedAtMs >= attached.fromMs && updatedAtMs <= attached.toMs)
+                        filtered.add(status);
+                }
+                attached.listener.receivedStatusHistory(filtered);
+            }
+        }
+
+    }
+
+}
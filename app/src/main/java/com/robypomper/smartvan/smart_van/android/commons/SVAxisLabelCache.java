@@ -0,0 +1,200 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import android.annotation.SuppressLint;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+
+/**
+ * Cache for the date labels of a chart's axis, where the axis' values are
+ * expressed as percentage of the current time window (from 0 to 100).
+ * <p>
+ * Axis labels are requested on every frame, especially while panning or
+ * zooming the chart. So, labels are cached by the value's timestamp, rounded
+ * to the pattern's resolution (all timestamps within the same resolution
+ * unit produce the same label), and reused until the window or the pattern
+ * change. Cache hits don't allocate anything.
+ * <p>
+ * This class is not thread-safe: each instance has its own date format and
+ * must be confined to the thread that draws the chart.
+ *
+ * @noinspection unused
+ */
+public class SVAxisLabelCache {
+
+    // Constants
+
+    /**
+     * Number of cached labels, must be a power of 2.
+     */
+    public static final int DEF_CAPACITY = 256;
+    /**
+     * Max rounding applied to the labels' timestamps. Coarser patterns (e.g.
+     * hours or days) are not rounded further, because their units are not
+     * aligned to the epoch in all time zones.
+     */
+    private static final long MAX_RESOLUTION_MS = 60 * 1000;
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+
+    // Internal vars
+
+    private final long[] keys;
+    private final String[] labels;
+    private final Date date = new Date();
+    private SimpleDateFormat format = null;
+    private String pattern = null;
+    private long resolutionMs = 1;
+    private long fromMs = 0;
+    private long rangeMs = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+
+    // Constructors
+
+    public SVAxisLabelCache() {
+        this(DEF_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of cached labels, rounded up to a power of 2.
+     */
+    public SVAxisLabelCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        keys = new long[size];
+        labels = new String[size];
+        Arrays.fill(keys, EMPTY_KEY);
+    }
+
+
+    // Window
+
+    /**
+     * Set the window and the pattern used to format the labels. If one of
+     * them changed, the cached labels are discarded.
+     *
+     * @param pattern the labels' {@link SimpleDateFormat} pattern.
+     * @param fromMs  the window's beginning, corresponding to the value 0.
+     * @param rangeMs the window's duration, corresponding to the value 100.
+     * @return true if the window or the pattern changed, so the labels
+     * must be formatted again (and could be precomputed with
+     * {@link #precompute(float[], int)}).
+     */
+    public boolean setWindow(String pattern, long fromMs, long rangeMs) {
+        boolean patternChanged = !pattern.equals(this.pattern);
+        if (!patternChanged && fromMs == this.fromMs && rangeMs == this.rangeMs)
+            return false;
+
+        if (patternChanged) {
+            this.pattern = pattern;
+            format = newSimpleDateFormat(pattern);
+            resolutionMs = patternResolutionMs(pattern);
+        }
+        this.fromMs = fromMs;
+        this.rangeMs = rangeMs;
+        clear();
+        return true;
+    }
+
+    /**
+     * Discard all cached labels.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        Arrays.fill(labels, null);
+    }
+
+
+    // Labels
+
+    /**
+     * @param value the axis' value, as percentage of the current window.
+     * @return the label of given value.
+     * @throws IllegalStateException if the window was not set.
+     */
+    public String getLabel(float value) {
+        if (format == null)
+            throw new IllegalStateException("Can't format axis' labels before setting the window");
+
+        long timestamp = valueToTimestamp(value);
+        long key = timestamp >= 0 ? timestamp / resolutionMs : (timestamp + 1) / resolutionMs - 1;
+        int index = (int) (key ^ (key >>> 32)) * 0x9E3779B9 >>> 16 & (keys.length - 1);
+        if (keys[index] == key && labels[index] != null) {
+            hits++;
+            return labels[index];
+        }
+
+        misses++;
+        date.setTime(timestamp);
+        String label = format.format(date);
+        keys[index] = key;
+        labels[index] = label;
+        return label;
+    }
+
+    /**
+     * Format and cache the labels of given values, usually the ticks of the
+     * axis for the current window.
+     *
+     * @param values the axis' values.
+     * @param count  the number of values to precompute.
+     */
+    public void precompute(float[] values, int count) {
+        for (int i = 0; i < Math.min(count, values.length); i++)
+            getLabel(values[i]);
+    }
+
+    /**
+     * Same conversion of the charts' values to dates, without allocating the
+     * {@link Date}.
+     */
+    private long valueToTimestamp(float value) {
+        return fromMs + (long) ((value / 100) * rangeMs);
+    }
+
+
+    // Getters
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+
+    // Static utils
+
+    /**
+     * @return the smallest time unit printed by given pattern, up to
+     * {@link #MAX_RESOLUTION_MS}.
+     */
+    private static long patternResolutionMs(String pattern) {
+        boolean quoted = false;
+        boolean seconds = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'')
+                quoted = !quoted;
+            else if (!quoted && c == 'S')
+                return 1;
+            else if (!quoted && c == 's')
+                seconds = true;
+        }
+        return seconds ? 1000 : MAX_RESOLUTION_MS;
+    }
+
+    @SuppressLint("SimpleDateFormat")
+    private static SimpleDateFormat newSimpleDateFormat(String pattern) {
+        return new SimpleDateFormat(pattern);
+    }
+
+}
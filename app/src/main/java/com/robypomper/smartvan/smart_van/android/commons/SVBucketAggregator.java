@@ -0,0 +1,134 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+
+/**
+ * Aggregates a stream of samples into fixed time buckets, keeping for each
+ * bucket the running min, max and average.
+ * <p>
+ * Samples can be added in any order, and they are not stored. So, the memory
+ * used depends only on the buckets count. Samples out of the buckets' range
+ * and NaN values are ignored.
+ *
+ * @noinspection unused
+ */
+public class SVBucketAggregator {
+
+    // Internal vars
+
+    private final long fromMs;
+    private final long bucketMs;
+    private final long[] minTimestamps;
+    private final double[] minValues;
+    private final long[] maxTimestamps;
+    private final double[] maxValues;
+    private final double[] sums;
+    private final int[] counts;
+    private long samplesCount = 0;
+
+
+    // Constructors
+
+    /**
+     * @param fromMs       the beginning of the first bucket.
+     * @param bucketMs     the time range of each bucket.
+     * @param bucketsCount the number of buckets.
+     */
+    public SVBucketAggregator(long fromMs, long bucketMs, int bucketsCount) {
+        if (bucketMs <= 0)
+            throw new IllegalArgumentException(String.format("Invalid bucket's time range %d ms", bucketMs));
+        this.fromMs = fromMs;
+        this.bucketMs = bucketMs;
+        this.minTimestamps = new long[bucketsCount];
+        this.minValues = new double[bucketsCount];
+        this.maxTimestamps = new long[bucketsCount];
+        this.maxValues = new double[bucketsCount];
+        this.sums = new double[bucketsCount];
+        this.counts = new int[bucketsCount];
+    }
+
+
+    // Getters
+
+    public int getBucketsCount() {
+        return counts.length;
+    }
+
+    public long getBucketMs() {
+        return bucketMs;
+    }
+
+    /**
+     * @return the number of samples aggregated so far.
+     */
+    public long getSamplesCount() {
+        return samplesCount;
+    }
+
+
+    // Aggregation
+
+    /**
+     * Aggregate a sample into his bucket.
+     *
+     * @param timestamp the sample's timestamp.
+     * @param value     the sample's value.
+     */
+    public void add(long timestamp, double value) {
+        if (timestamp < fromMs || Double.isNaN(value))
+            return;
+        long bucket = (timestamp - fromMs) / bucketMs;
+        if (bucket >= counts.length)
+            return;
+
+        int b = (int) bucket;
+        if (counts[b] == 0 || value < minValues[b]) {
+            minTimestamps[b] = timestamp;
+            minValues[b] = value;
+        }
+        if (counts[b] == 0 || value > maxValues[b]) {
+            maxTimestamps[b] = timestamp;
+            maxValues[b] = value;
+        }
+        sums[b] += value;
+        counts[b]++;
+        samplesCount++;
+    }
+
+    /**
+     * Aggregate all samples of given series.
+     *
+     * @param series the samples to aggregate.
+     */
+    public void addAll(SVTimeSeries series) {
+        for (int i = 0; i < series.size(); i++)
+            add(series.getTimestamp(i), series.getValue(i));
+    }
+
+    /**
+     * Get the aggregated buckets as a series, empty buckets are skipped.
+     *
+     * @param aggregation {@link SVTimeSeriesPyramid#AGGREGATION_MIN_MAX} to
+     *                    get the min and max samples of each bucket, in
+     *                    chronological order, or {@link SVTimeSeriesPyramid#AGGREGATION_AVERAGE}
+     *                    to get the average of each bucket at the bucket's
+     *                    middle.
+     * @return a new series containing the aggregated buckets.
+     */
+    public SVTimeSeries toSeries(int aggregation) {
+        boolean minMax = aggregation == SVTimeSeriesPyramid.AGGREGATION_MIN_MAX;
+        SVTimeSeries series = new SVTimeSeries(counts.length * (minMax ? 2 : 1));
+        for (int b = 0; b < counts.length; b++) {
+            if (counts[b] == 0)
+                continue;
+
+            if (minMax) {
+                boolean minFirst = minTimestamps[b] <= maxTimestamps[b];
+                series.append(minFirst ? minTimestamps[b] : maxTimestamps[b], minFirst ? minValues[b] : maxValues[b]);
+                series.append(minFirst ? maxTimestamps[b] : minTimestamps[b], minFirst ? maxValues[b] : minValues[b]);
+            } else
+                series.append(fromMs + b * bucketMs + bucketMs / 2, sums[b] / counts[b]);
+        }
+        return series;
+    }
+
+}
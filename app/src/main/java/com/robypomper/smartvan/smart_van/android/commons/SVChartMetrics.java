@@ -0,0 +1,234 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Timings and sizes of a chart's fetching run, from the fetching start to
+ * the data displayed.
+ * <p>
+ * For each run, it records the duration of each pipeline's stage, the
+ * fetching duration of each component and, for each processing step, the
+ * number of points in and out and the bytes allocated. All durations are
+ * expressed in nanoseconds.
+ * <p>
+ * Runs' metrics are updated by the threads involved in the pipeline, so all
+ * methods are thread-safe.
+ *
+ * @noinspection unused
+ */
+public class SVChartMetrics {
+
+    // Constants
+
+    public static final int STAGE_FETCH = 0;
+    public static final int STAGE_PROCESSING = 1;
+    public static final int STAGE_DISPLAYING = 2;
+    /**
+     * The whole run, from the fetching start to the data displayed.
+     */
+    public static final int STAGE_TOTAL = 3;
+    public static final int STAGES_COUNT = 4;
+    /**
+     * Allocated bytes of the steps that don't produce an {@link SVTimeSeries}.
+     */
+    public static final long UNKNOWN_BYTES = -1;
+
+
+    // Internal vars
+
+    private final int generation;
+    /**
+     * Beginning of each stage, 0 if not started yet.
+     */
+    private final long[] stageStartNs = new long[STAGES_COUNT];
+    private final long[] stageDurationNs = new long[STAGES_COUNT];
+    private final List<Component> components = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+
+
+    // Constructors
+
+    /**
+     * Create the metrics of a new run, and start his fetch stage.
+     *
+     * @param generation the run's generation.
+     */
+    public SVChartMetrics(int generation) {
+        this.generation = generation;
+        long nowNs = System.nanoTime();
+        stageStartNs[STAGE_TOTAL] = nowNs;
+        stageStartNs[STAGE_FETCH] = nowNs;
+    }
+
+
+    // Stages
+
+    /**
+     * Start given stage, and terminate the previous one.
+     *
+     * @param stage {@link #STAGE_PROCESSING} or {@link #STAGE_DISPLAYING}.
+     */
+    public synchronized void startStage(int stage) {
+        long nowNs = System.nanoTime();
+        terminateStage(stage - 1, nowNs);
+        stageStartNs[stage] = nowNs;
+    }
+
+    /**
+     * Terminate the current stage and the whole run.
+     */
+    public synchronized void terminate() {
+        long nowNs = System.nanoTime();
+        for (int stage = STAGE_FETCH; stage <= STAGE_DISPLAYING; stage++)
+            terminateStage(stage, nowNs);
+        terminateStage(STAGE_TOTAL, nowNs);
+    }
+
+    private void terminateStage(int stage, long nowNs) {
+        if (stage < 0 || stageStartNs[stage] == 0 || stageDurationNs[stage] != 0)
+            return;
+        stageDurationNs[stage] = nowNs - stageStartNs[stage];
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param stage the stage, {@link #STAGE_TOTAL} for the whole run.
+     * @return the stage's duration, 0 if not terminated yet.
+     */
+    public synchronized long getStageNs(int stage) {
+        return stageDurationNs[stage];
+    }
+
+
+    // Components and steps
+
+    /**
+     * Record the completion of a component's fetching.
+     *
+     * @param component the component's label.
+     * @param points    the number of fetched points, 0 if failed.
+     */
+    public synchronized void addComponentFetched(String component, int points) {
+        components.add(new Component(component, System.nanoTime() - stageStartNs[STAGE_FETCH], points));
+    }
+
+    /**
+     * Record a processing step of a component's data set.
+     *
+     * @param component the component's label.
+     * @param step      the step's name.
+     * @param pointsIn  the number of points before the step.
+     * @param pointsOut the number of points after the step.
+     * @param startNs   the step's beginning, from {@link System#nanoTime()}.
+     * @param bytes     the bytes allocated by the step, or {@link #UNKNOWN_BYTES}.
+     */
+    public synchronized void addStep(String component, String step, int pointsIn, int pointsOut, long startNs, long bytes) {
+        steps.add(new Step(component, step, pointsIn, pointsOut, System.nanoTime() - startNs, bytes));
+    }
+
+    /**
+     * Same as {@link #addStep(String, String, int, int, long, long)}, the
+     * allocated bytes are calculated from the resulting series. Steps that
+     * return the given series allocate nothing.
+     */
+    public void addStep(String component, String step, SVTimeSeries in, SVTimeSeries out, long startNs) {
+        long bytes = out == in ? 0 : (long) out.size() * SVHistoryCache.BYTES_PER_POINT;
+        addStep(component, step, in.size(), out.size(), startNs, bytes);
+    }
+
+    /**
+     * @return a copy of the fetched components' metrics, in completion order.
+     */
+    public synchronized List<Component> getComponents() {
+        return new ArrayList<>(components);
+    }
+
+    /**
+     * @return a copy of the processing steps' metrics, in execution order.
+     */
+    public synchronized List<Step> getSteps() {
+        return new ArrayList<>(steps);
+    }
+
+    /**
+     * @return the sum of the bytes allocated by the steps, when measurable.
+     */
+    public synchronized long getAllocatedBytes() {
+        long bytes = 0;
+        for (Step step : steps)
+            if (step.bytes != UNKNOWN_BYTES)
+                bytes += step.bytes;
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("run #%d: total %d us (fetch %d us, processing %d us, displaying %d us), %d components, %d steps, %d KB allocated",
+                generation, stageDurationNs[STAGE_TOTAL] / 1000,
+                stageDurationNs[STAGE_FETCH] / 1000, stageDurationNs[STAGE_PROCESSING] / 1000, stageDurationNs[STAGE_DISPLAYING] / 1000,
+                components.size(), steps.size(), getAllocatedBytes() / 1024);
+    }
+
+
+    // Component and step
+
+    /**
+     * Fetching metrics of a component.
+     */
+    public static class Component {
+
+        public final String component;
+        /**
+         * Time from the fetching start to the component's completion.
+         */
+        public final long ns;
+        public final int points;
+
+        public Component(String component, long ns, int points) {
+            this.component = component;
+            this.ns = ns;
+            this.points = points;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d points in %d us", component, points, ns / 1000);
+        }
+
+    }
+
+    /**
+     * Metrics of a processing step, applied to a component's data set.
+     */
+    public static class Step {
+
+        public final String component;
+        public final String step;
+        public final int pointsIn;
+        public final int pointsOut;
+        public final long ns;
+        public final long bytes;
+
+        public Step(String component, String step, int pointsIn, int pointsOut, long ns, long bytes) {
+            this.component = component;
+            this.step = step;
+            this.pointsIn = pointsIn;
+            this.pointsOut = pointsOut;
+            this.ns = ns;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s/%s: %d -> %d points in %d us (%s)", component, step, pointsIn, pointsOut, ns / 1000,
+                    bytes == UNKNOWN_BYTES ? "? bytes" : bytes + " bytes");
+        }
+
+    }
+
+}
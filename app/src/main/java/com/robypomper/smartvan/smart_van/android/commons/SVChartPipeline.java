@@ -0,0 +1,246 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import java.util.Arrays;
+
+
+/**
+ * Processing stages applied to each component's data set, between the
+ * fetching and the displaying stages.
+ * <p>
+ * Stages are applied in the following order:
+ * <ol>
+ *     <li>gap filling, with the component's {@link SVGapPolicy};</li>
+ *     <li>value stages (e.g. scaling and unit conversions, see {@link SVUnitConverter});</li>
+ *     <li>downsampling, with the pipeline's {@link SVDownsampler}.</li>
+ * </ol>
+ * All value stages are fused into a single pass: each sample flows through
+ * all of them and is written once into the preallocated resulting series.
+ * Gap filling and downsampling need the samples' neighbours, so each of
+ * them runs in his own pass and allocates only his resulting series.
+ * <p>
+ * Pipelines are immutable and declared per chart, use the `with*` methods
+ * to create a modified copy.
+ *
+ * @noinspection unused
+ */
+public class SVChartPipeline {
+
+    // Constants
+
+    public static final int DEF_MAX_DATA_POINTS = 100;
+    public static final String STEP_FILL_GAPS = "fill_gaps";
+    public static final String STEP_VALUES = "values";
+    public static final String STEP_DOWNSAMPLE = "max_dp";
+    /**
+     * Pipeline without value stages, it downsamples the data sets with
+     * {@link SVDownsampler#LTTB}.
+     */
+    public static final SVChartPipeline DEFAULT = new SVChartPipeline(SVDownsampler.LTTB, DEF_MAX_DATA_POINTS);
+
+
+    // Internal vars
+
+    private final SVDownsampler downsampler;
+    private final int maxDataPoints;
+    private final ValueStage[] valueStages;
+
+
+    // Constructors
+
+    /**
+     * @param downsampler   the strategy used to reduce the data sets.
+     * @param maxDataPoints the max number of displayed data points.
+     * @param valueStages   the stages applied to each value, in given order.
+     */
+    public SVChartPipeline(SVDownsampler downsampler, int maxDataPoints, ValueStage... valueStages) {
+        this.downsampler = downsampler;
+        this.maxDataPoints = maxDataPoints;
+        this.valueStages = valueStages.clone();
+    }
+
+
+    // Getters
+
+    public SVDownsampler getDownsampler() {
+        return downsampler;
+    }
+
+    public int getMaxDataPoints() {
+        return maxDataPoints;
+    }
+
+    public ValueStage[] getValueStages() {
+        return valueStages.clone();
+    }
+
+    /**
+     * @return a copy of current pipeline, with given downsampler.
+     */
+    public SVChartPipeline withDownsampler(SVDownsampler downsampler) {
+        return new SVChartPipeline(downsampler, maxDataPoints, valueStages);
+    }
+
+    /**
+     * @return a copy of current pipeline, with given max displayed data points.
+     */
+    public SVChartPipeline withMaxDataPoints(int maxDataPoints) {
+        return new SVChartPipeline(downsampler, maxDataPoints, valueStages);
+    }
+
+    /**
+     * @return a copy of current pipeline, with given value stages appended
+     * to the current ones.
+     */
+    public SVChartPipeline withValueStages(ValueStage... valueStages) {
+        ValueStage[] stages = Arrays.copyOf(this.valueStages, this.valueStages.length + valueStages.length);
+        System.arraycopy(valueStages, 0, stages, this.valueStages.length, valueStages.length);
+        return new SVChartPipeline(downsampler, maxDataPoints, stages);
+    }
+
+
+    // Processing
+
+    /**
+     * Process given series through all pipeline's stages.
+     *
+     * @param series           the fetched series, it's not modified.
+     * @param fromMs           the beginning of the displayed range.
+     * @param toMs             the end of the displayed range.
+     * @param samplingPeriodMs the component's sampling period, used to
+     *                         detect the gaps.
+     * @param gapPolicy        the component's gap policy.
+     * @param listener         the listener notified after each stage, can be null.
+     * @return the processed series, at full and displayed resolution.
+     */
+    public Result process(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs, SVGapPolicy gapPolicy, StepListener listener) {
+        return process(series, fromMs, toMs, samplingPeriodMs, SVGapPolicy.Engine.gapThresholdMs(samplingPeriodMs), gapPolicy, listener);
+    }
+
+    /**
+     * Same as {@link #process(SVTimeSeries, long, long, long, SVGapPolicy, StepListener)},
+     * but with an explicit gap threshold, e.g. for series aggregated into
+     * buckets.
+     *
+     * @param samplingPeriodMs the component's sampling period, or the
+     *                         buckets' duration for aggregated series.
+     * @param maxGapMs         the max time range between two consecutive samples.
+     */
+    public Result process(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs, long maxGapMs, SVGapPolicy gapPolicy, StepListener listener) {
+        long stepNs = System.nanoTime();
+        SVTimeSeries filled = SVChartProcessing.fillGaps(series, fromMs, toMs, samplingPeriodMs, maxGapMs, gapPolicy);
+        if (listener != null) listener.onStep(STEP_FILL_GAPS, series, filled, stepNs);
+
+        stepNs = System.nanoTime();
+        SVTimeSeries full = applyValueStages(filled);
+        if (listener != null) listener.onStep(STEP_VALUES, filled, full, stepNs);
+
+        stepNs = System.nanoTime();
+        SVTimeSeries displayed = SVChartProcessing.alterMaxDP(full, maxDataPoints, downsampler);
+        if (listener != null) listener.onStep(STEP_DOWNSAMPLE, full, displayed, stepNs);
+
+        return new Result(full, displayed);
+    }
+
+    /**
+     * Apply all value stages to given series, in a single pass.
+     *
+     * @param series the series to process, it's not modified.
+     * @return a new series with processed values, or the given series if the
+     * pipeline has no value stages.
+     */
+    public SVTimeSeries applyValueStages(SVTimeSeries series) {
+        if (valueStages.length == 0)
+            return series;
+
+        SVTimeSeries processed = new SVTimeSeries(series.size());
+        for (int i = 0; i < series.size(); i++)
+            processed.append(series.getTimestamp(i), applyValueStages(series.getValue(i)));
+        return processed;
+    }
+
+    /**
+     * Apply all value stages to given value, e.g. a component's current state.
+     *
+     * @param value the value to process.
+     * @return the processed value.
+     */
+    public double applyValueStages(double value) {
+        for (ValueStage stage : valueStages)
+            value = stage.apply(value);
+        return value;
+    }
+
+
+    // Stages and results
+
+    /**
+     * Stage applied to each value, independently of the other samples.
+     */
+    public interface ValueStage {
+
+        /**
+         * @param value the value to process, NaN values (e.g. line breaks)
+         *              should be returned unchanged.
+         * @return the processed value.
+         */
+        double apply(double value);
+
+    }
+
+    /**
+     * Multiply all values by given factor.
+     */
+    public static class Scale implements ValueStage {
+
+        private final double factor;
+
+        public Scale(double factor) {
+            this.factor = factor;
+        }
+
+        @Override
+        public double apply(double value) {
+            return value * factor;
+        }
+
+    }
+
+    /**
+     * Listener notified after each pipeline's stage, e.g. to record the
+     * processing metrics.
+     */
+    public interface StepListener {
+
+        /**
+         * @param step    the stage name, one of the `STEP_*` constants.
+         * @param in      the series before the stage.
+         * @param out     the series after the stage, the same instance as
+         *                `in` if the stage didn't change it.
+         * @param startNs the stage's beginning, from {@link System#nanoTime()}.
+         */
+        void onStep(String step, SVTimeSeries in, SVTimeSeries out, long startNs);
+
+    }
+
+    /**
+     * Processed series of a component's data set.
+     */
+    public static class Result {
+
+        /**
+         * Series after gap filling and value stages, at full resolution.
+         */
+        public final SVTimeSeries full;
+        /**
+         * Series reduced to the pipeline's max data points.
+         */
+        public final SVTimeSeries displayed;
+
+        public Result(SVTimeSeries full, SVTimeSeries displayed) {
+            this.full = full;
+            this.displayed = displayed;
+        }
+
+    }
+
+}
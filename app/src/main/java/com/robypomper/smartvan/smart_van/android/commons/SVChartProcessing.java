@@ -0,0 +1,182 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+
+/**
+ * Processing steps applied to the charts' data sets, between the fetching
+ * and the displaying stages.
+ * <p>
+ * All methods work on {@link SVTimeSeries} and return a new series, given
+ * series are never modified.
+ *
+ * @noinspection unused
+ */
+public class SVChartProcessing {
+
+    // Max data points
+
+    /**
+     * Reduce the series to given data points count, if it contains more,
+     * using the {@link SVDownsampler#LINEAR} sampling.
+     *
+     * @param series            the series to reduce.
+     * @param maxDataPointCount the max number of data points.
+     * @return the reduced series, or the given one if it is small enough.
+     */
+    public static SVTimeSeries alterMaxDP(SVTimeSeries series, int maxDataPointCount) {
+        return alterMaxDP(series, maxDataPointCount, SVDownsampler.LINEAR);
+    }
+
+    /**
+     * Reduce the series to given data points count, if it contains more.
+     *
+     * @param series            the series to reduce.
+     * @param maxDataPointCount the max number of data points.
+     * @param downsampler       the strategy used to reduce the series.
+     * @return the reduced series, or the given one if it is small enough.
+     */
+    public static SVTimeSeries alterMaxDP(SVTimeSeries series, int maxDataPointCount, SVDownsampler downsampler) {
+        if (series.isEmpty() || series.size() <= maxDataPointCount)
+            return series;
+
+        return downsampler.downsample(series, maxDataPointCount);
+    }
+
+    /**
+     * Resize the series to given data points count, sampling or interpolating
+     * his values.
+     *
+     * @param series              the series to resize.
+     * @param fixedDataPointCount the number of data points of the resulting series.
+     * @return the resized series, or the given one if it has already the right size.
+     */
+    public static SVTimeSeries alterFixedDPCount(SVTimeSeries series, int fixedDataPointCount) {
+        if (series.isEmpty() || series.size() == fixedDataPointCount)
+            return series;
+
+        else if (series.size() < fixedDataPointCount)
+            return interpolate(series, fixedDataPointCount);
+
+        else
+            return sampling(series, fixedDataPointCount);
+    }
+
+    /**
+     * Linear sampling: pick given data points count at regular index steps.
+     *
+     * @param series            the series to sample.
+     * @param maxDataPointCount the number of data points to pick.
+     * @return the sampled series.
+     */
+    public static SVTimeSeries sampling(SVTimeSeries series, int maxDataPointCount) {
+        return SVDownsampler.LINEAR.downsample(series, maxDataPointCount);
+    }
+
+    /**
+     * Linear interpolation: generate given data points count at regular time
+     * steps, between the first and the last series' data points.
+     *
+     * @param series            the series to interpolate.
+     * @param minDataPointCount the number of data points to generate.
+     * @return the interpolated series, or the given one if it contains less than 2 data points.
+     */
+    public static SVTimeSeries interpolate(SVTimeSeries series, int minDataPointCount) {
+        if (series.size() < 2)
+            return series;
+
+        SVTimeSeries interpolated = new SVTimeSeries(minDataPointCount);
+        long firstTime = series.getFirstTimestamp();
+        long totalInterval = series.getLastTimestamp() - firstTime;
+
+        int index = 0;
+        for (int i = 0; i < minDataPointCount; i++) {
+            long interpolatedTime = firstTime + i * totalInterval / (minDataPointCount - 1);
+
+            while (index < series.size() - 1 && series.getTimestamp(index + 1) < interpolatedTime)
+                index++;
+
+            long indexTime = series.getTimestamp(index);
+            double ratio = (double) (interpolatedTime - indexTime) / (series.getTimestamp(index + 1) - indexTime);
+            double interpolatedValue = series.getValue(index) * (1 - ratio) + series.getValue(index + 1) * ratio;
+
+            interpolated.put(interpolatedTime, interpolatedValue);
+        }
+
+        return interpolated;
+    }
+
+
+    // Scale
+
+    /**
+     * Multiply all values by given factor.
+     *
+     * @param series      the series to scale.
+     * @param scaleFactor the factor to apply.
+     * @return the scaled series.
+     */
+    public static SVTimeSeries scale(SVTimeSeries series, float scaleFactor) {
+        SVTimeSeries scaled = new SVTimeSeries(series.size());
+        for (int i = 0; i < series.size(); i++)
+            scaled.append(series.getTimestamp(i), series.getValue(i) * scaleFactor);
+        return scaled;
+    }
+
+
+    // Missing values (gaps)
+
+    /**
+     * Add zero values to the series where the time range between two
+     * consecutive data points is too big.
+     * <p>
+     * The time range between two consecutive data points is considered too big
+     * if it is greater than the maximum empty range.
+     * <p>
+     * For each data point, if the time range between the previous/next data
+     * points is too big, a zero value is added at `deltaRangeMS` before/after
+     * the current data point. If the previous/next data point is the first/last
+     * data point, a zero value is added also at the beginning/end of the data
+     * set.
+     *
+     * @param series          the series.
+     * @param fromMs          the beginning of the displayed range.
+     * @param toMs            the end of the displayed range.
+     * @param maxEmptyRangeMS the maximum time range between two consecutive
+     *                        data points, the best value is 1.5 times the
+     *                        sampling period
+     * @param deltaRangeMS    the time range to add a zero value, if 0 or less,
+     *                        `maxEmptyRangeMS` is used
+     * @return the series with zero values added
+     */
+    public static SVTimeSeries addZeroAsMissingValues(SVTimeSeries series, long fromMs, long toMs, long maxEmptyRangeMS, long deltaRangeMS) {
+        if (deltaRangeMS <= 0)
+            deltaRangeMS = maxEmptyRangeMS;
+
+        return new SVGapPolicy.Zero(deltaRangeMS).fill(series, fromMs, toMs, 0, maxEmptyRangeMS);
+    }
+
+    /**
+     * Fill the series' gaps with given policy.
+     *
+     * @param series           the series.
+     * @param fromMs           the beginning of the displayed range.
+     * @param toMs             the end of the displayed range.
+     * @param samplingPeriodMs the component's sampling period, used to
+     *                         detect the gaps.
+     * @param gapPolicy        the policy used to fill the gaps.
+     * @return the series with the gaps filled.
+     */
+    public static SVTimeSeries fillGaps(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs, SVGapPolicy gapPolicy) {
+        return gapPolicy.fill(series, fromMs, toMs, samplingPeriodMs);
+    }
+
+    /**
+     * Same as {@link #fillGaps(SVTimeSeries, long, long, long, SVGapPolicy)},
+     * but with an explicit gap threshold.
+     *
+     * @param maxGapMs the max time range between two consecutive samples.
+     */
+    public static SVTimeSeries fillGaps(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs, long maxGapMs, SVGapPolicy gapPolicy) {
+        return gapPolicy.fill(series, fromMs, toMs, samplingPeriodMs, maxGapMs);
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+
+/**
+ * Strategy to reduce the number of data points of an {@link SVTimeSeries},
+ * before displaying it on a chart.
+ * <p>
+ * All provided implementations run in linear time over the series' samples
+ * and, for series without line breaks, allocate only the resulting series. The series' samples are split into
+ * buckets containing the same number of samples, then each implementation
+ * picks or aggregates the samples of each bucket:
+ * <ul>
+ *     <li>{@link #LINEAR}: the sample at the beginning of each bucket (it can drop peaks);</li>
+ *     <li>{@link #LTTB}: the Largest-Triangle-Three-Buckets algorithm, it keeps the samples that most affect the series' shape;</li>
+ *     <li>{@link #MIN_MAX}: the min and the max samples of each bucket, so peaks are never dropped;</li>
+ *     <li>{@link #AVERAGE}: the average of each bucket, it smooths the series.</li>
+ * </ul>
+ * NaN values are line breaks (see {@link SVGapPolicy#LINE_BREAK}), so they
+ * are never aggregated with the other samples: series containing them are
+ * split into segments, each segment is downsampled separately and a NaN
+ * sample is kept between them (see {@link Segmented}).
+ */
+public interface SVDownsampler {
+
+    // Constants
+
+    /**
+     * Pick the sample at regular index steps.
+     */
+    SVDownsampler LINEAR = new Linear();
+    /**
+     * Largest-Triangle-Three-Buckets.
+     */
+    SVDownsampler LTTB = new LargestTriangleThreeBuckets();
+    /**
+     * Min and max samples for each bucket.
+     */
+    SVDownsampler MIN_MAX = new MinMax();
+    /**
+     * Average timestamp and value for each bucket.
+     */
+    SVDownsampler AVERAGE = new Average();
+
+
+    // Downsampling
+
+    /**
+     * Reduce given series to, at most, given data points.
+     *
+     * @param series            the series to reduce, it's not modified.
+     * @param maxDataPointCount the max number of data points of the resulting series.
+     * @return the reduced series, or the given series if it contains not more
+     * than `maxDataPointCount` samples.
+     */
+    SVTimeSeries downsample(SVTimeSeries series, int maxDataPointCount);
+
+
+    // Implementations
+
+    /**
+     * Base class for the downsamplers, it keeps the line breaks.
+     * <p>
+     * When the series contains NaN values, each segment between them is
+     * copied and reduced separately, to a share of the max data points
+     * proportional to his samples. Then a single NaN sample is kept for each
+     * run of NaN values. If the series contains more segments and line
+     * breaks than the max data points, they can't all be kept, so the whole
+     * series is reduced by {@link #downsampleSegment(SVTimeSeries, int)}.
+     */
+    abstract class Segmented implements SVDownsampler {
+
+        @Override
+        public SVTimeSeries downsample(SVTimeSeries series, int maxDataPointCount) {
+            int size = series.size();
+            if (size <= maxDataPointCount || maxDataPointCount <= 0)
+                return series;
+
+            int breaks = 0, segments = 0, samples = 0;
+            for (int i = 0; i < size; i++) {
+                boolean isBreak = Double.isNaN(series.getValue(i));
+                boolean wasBreak = i > 0 && Double.isNaN(series.getValue(i - 1));
+                if (isBreak && (i == 0 || !wasBreak)) breaks++;
+                if (!isBreak && (i == 0 || wasBreak)) segments++;
+                if (!isBreak) samples++;
+            }
+            if (breaks == 0 || breaks + segments > maxDataPointCount)
+                return downsampleSegment(series, maxDataPointCount);
+
+            SVTimeSeries sampled = new SVTimeSeries(maxDataPointCount);
+            int budget = maxDataPointCount - breaks;
+            int i = 0;
+            while (i < size) {
+                if (Double.isNaN(series.getValue(i))) {
+                    sampled.append(series.getTimestamp(i), Double.NaN);
+                    while (i < size && Double.isNaN(series.getValue(i))) i++;
+                    continue;
+                }
+
+                int start = i;
+                while (i < size && !Double.isNaN(series.getValue(i))) i++;
+                int count = i - start;
+                // Proportional share, keeping at least one data point for each next segment
+                int share = (int) ((long) budget * count / samples);
+                share = Math.max(1, Math.min(share, budget - (segments - 1)));
+
+                SVTimeSeries segment = series.sliceByIndex(start, i);
+                SVTimeSeries reduced = downsampleSegment(segment, share);
+                if (reduced.size() > share)     // Too few data points for the current strategy
+                    reduced = LINEAR.downsample(segment, share);
+                sampled.appendAll(reduced);
+
+                budget -= reduced.size();
+                samples -= count;
+                segments--;
+            }
+            return sampled;
+        }
+
+        /**
+         * Reduce given segment, it doesn't contain line breaks unless they
+         * can't be kept.
+         *
+         * @param segment           the segment to reduce, it's not modified.
+         * @param maxDataPointCount the max number of data points of the resulting series.
+         * @return the reduced segment, or the given one if it contains not
+         * more than `maxDataPointCount` samples.
+         */
+        protected abstract SVTimeSeries downsampleSegment(SVTimeSeries segment, int maxDataPointCount);
+
+    }
+
+    /**
+     * Pick the sample at regular index steps (the chart's original sampling).
+     */
+    class Linear extends Segmented {
+
+        @Override
+        protected SVTimeSeries downsampleSegment(SVTimeSeries series, int maxDataPointCount) {
+            if (series.size() <= maxDataPointCount || maxDataPointCount <= 0)
+                return series;
+
+            SVTimeSeries sampled = new SVTimeSeries(maxDataPointCount);
+            float step = (float) series.size() / maxDataPointCount;
+            for (int i = 0; i < maxDataPointCount; i++) {
+                int index = Math.round(i * step);
+                sampled.put(series.getTimestamp(index), series.getValue(index));
+            }
+            return sampled;
+        }
+
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets downsampling.
+     * <p>
+     * First and last samples are always kept. Then, for each bucket, it picks
+     * the sample that forms the largest triangle with the previously picked
+     * sample and the average of the next bucket.
+     */
+    class LargestTriangleThreeBuckets extends Segmented {
+
+        @Override
+        protected SVTimeSeries downsampleSegment(SVTimeSeries series, int maxDataPointCount) {
+            int size = series.size();
+            if (size <= maxDataPointCount || maxDataPointCount < 3)
+                return series;
+
+            SVTimeSeries sampled = new SVTimeSeries(maxDataPointCount);
+            // Timestamps are relative to the first sample, to keep double's precision
+            long originMs = series.getFirstTimestamp();
+            double every = (double) (size - 2) / (maxDataPointCount - 2);
+
+            int a = 0;
+            sampled.append(series.getTimestamp(0), series.getValue(0));
+            for (int i = 0; i < maxDataPointCount - 2; i++) {
+                // Average of the next bucket
+                int avgStart = (int) Math.floor((i + 1) * every) + 1;
+                int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+                double avgX = 0, avgY = 0;
+                for (int j = avgStart; j < avgEnd; j++) {
+                    avgX += series.getTimestamp(j) - originMs;
+                    avgY += series.getValue(j);
+                }
+                int avgCount = avgEnd - avgStart;
+                avgX /= avgCount;
+                avgY /= avgCount;
+
+                // Current bucket's sample with the largest triangle
+                int rangeStart = (int) Math.floor(i * every) + 1;
+                int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+                double aX = series.getTimestamp(a) - originMs;
+                double aY = series.getValue(a);
+                double maxArea = -1;
+                int next = rangeStart;
+                for (int j = rangeStart; j < rangeEnd; j++) {
+                    double area = Math.abs((aX - avgX) * (series.getValue(j) - aY)
+                            - (aX - (series.getTimestamp(j) - originMs)) * (avgY - aY));
+                    if (area > maxArea) {
+                        maxArea = area;
+                        next = j;
+                    }
+                }
+
+                sampled.append(series.getTimestamp(next), series.getValue(next));
+                a = next;
+            }
+            sampled.append(series.getTimestamp(size - 1), series.getValue(size - 1));
+            return sampled;
+        }
+
+    }
+
+    /**
+     * Min and max samples for each bucket, in chronological order.
+     * <p>
+     * Series are split into `maxDataPointCount / 2` buckets, so the resulting
+     * series contains at most `maxDataPointCount` samples.
+     */
+    class MinMax extends Segmented {
+
+        @Override
+        protected SVTimeSeries downsampleSegment(SVTimeSeries series, int maxDataPointCount) {
+            int size = series.size();
+            if (size <= maxDataPointCount || maxDataPointCount < 2)
+                return series;
+
+            int buckets = maxDataPointCount / 2;
+            SVTimeSeries sampled = new SVTimeSeries(buckets * 2);
+            for (int b = 0; b < buckets; b++) {
+                int start = (int) ((long) b * size / buckets);
+                int end = (int) ((long) (b + 1) * size / buckets);
+                int minIndex = start, maxIndex = start;
+                for (int j = start + 1; j < end; j++) {
+                    double value = series.getValue(j);
+                    if (value < series.getValue(minIndex)) minIndex = j;
+                    if (value > series.getValue(maxIndex)) maxIndex = j;
+                }
+
+                int first = Math.min(minIndex, maxIndex);
+                int second = Math.max(minIndex, maxIndex);
+                sampled.append(series.getTimestamp(first), series.getValue(first));
+                if (second != first)
+                    sampled.append(series.getTimestamp(second), series.getValue(second));
+            }
+            return sampled;
+        }
+
+    }
+
+    /**
+     * Average timestamp and value for each bucket.
+     * <p>
+     * NaN values that can't be kept as line breaks are ignored, a bucket
+     * containing only NaN values results in a NaN sample.
+     */
+    class Average extends Segmented {
+
+        @Override
+        protected SVTimeSeries downsampleSegment(SVTimeSeries series, int maxDataPointCount) {
+            int size = series.size();
+            if (size <= maxDataPointCount || maxDataPointCount <= 0)
+                return series;
+
+            SVTimeSeries sampled = new SVTimeSeries(maxDataPointCount);
+            for (int b = 0; b < maxDataPointCount; b++) {
+                int start = (int) ((long) b * size / maxDataPointCount);
+                int end = (int) ((long) (b + 1) * size / maxDataPointCount);
+                long originMs = series.getTimestamp(start);
+                long sumOffsetMs = 0;
+                double sum = 0;
+                int count = 0;
+                for (int j = start; j < end; j++) {
+                    sumOffsetMs += series.getTimestamp(j) - originMs;
+                    double value = series.getValue(j);
+                    if (Double.isNaN(value)) continue;
+                    sum += value;
+                    count++;
+                }
+                long timestamp = originMs + sumOffsetMs / (end - start);
+                sampled.append(timestamp, count > 0 ? sum / count : Double.NaN);
+            }
+            return sampled;
+        }
+
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+
+/**
+ * Strategy to fill the gaps of an {@link SVTimeSeries}, before displaying it
+ * on a chart.
+ * <p>
+ * A gap is a time range between two consecutive samples (or between the
+ * displayed range's edges and the first/last samples) greater than the gap
+ * threshold. The threshold is calculated from the component's sampling
+ * period, see {@link Engine#gapThresholdMs(long)}.
+ * <p>
+ * All provided implementations run in a single pass over the series' samples
+ * and allocate only the resulting series:
+ * <ul>
+ *     <li>{@link #ZERO}: the line drops to zero within the gap (the chart's original behaviour);</li>
+ *     <li>{@link #LINE_BREAK}: a NaN sample breaks the line within the gap;</li>
+ *     <li>{@link #HOLD_LAST}: the last value is held until the next sample;</li>
+ *     <li>{@link #LINEAR}: the gap is filled with samples interpolated at the sampling period.</li>
+ * </ul>
+ */
+public interface SVGapPolicy {
+
+    // Constants
+
+    /**
+     * Default time range between a sample and the zero values added by the
+     * {@link #ZERO} policy.
+     */
+    long DEF_ZERO_DELTA_MS = 1000;
+    /**
+     * Zero values within the gaps and, if needed, at the displayed range's edges.
+     */
+    SVGapPolicy ZERO = new Zero(DEF_ZERO_DELTA_MS);
+    /**
+     * A NaN value in the middle of each gap.
+     */
+    SVGapPolicy LINE_BREAK = new LineBreak();
+    /**
+     * The previous sample's value, until the next sample.
+     */
+    SVGapPolicy HOLD_LAST = new HoldLast();
+    /**
+     * Linear interpolation between the gap's samples.
+     */
+    SVGapPolicy LINEAR = new Linear();
+
+
+    // Gap filling
+
+    /**
+     * Fill the gaps of given series.
+     *
+     * @param series           the series to fill, it's not modified.
+     * @param fromMs           the beginning of the displayed range.
+     * @param toMs             the end of the displayed range.
+     * @param samplingPeriodMs the component's sampling period.
+     * @return a new series with the gaps filled.
+     */
+    SVTimeSeries fill(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs);
+
+    /**
+     * Same as {@link #fill(SVTimeSeries, long, long, long)}, but with an
+     * explicit gap threshold, e.g. for series aggregated into buckets.
+     *
+     * @param series           the series to fill, it's not modified.
+     * @param fromMs           the beginning of the displayed range.
+     * @param toMs             the end of the displayed range.
+     * @param samplingPeriodMs the component's sampling period, or the buckets'
+     *                         duration for aggregated series.
+     * @param maxGapMs         the max time range between two consecutive samples.
+     * @return a new series with the gaps filled.
+     */
+    SVTimeSeries fill(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs, long maxGapMs);
+
+
+    // Implementations
+
+    /**
+     * Single pass gap filling, implementations must only define how to fill
+     * each gap.
+     * <p>
+     * The samples added by the implementations are put at their chronological
+     * position, so they can't break the resulting series' order.
+     */
+    abstract class Engine implements SVGapPolicy {
+
+        /**
+         * A gap is a time range greater than the sampling period multiplied
+         * by this factor.
+         */
+        public static final float GAP_THRESHOLD_FACTOR = 1.5f;
+
+        /**
+         * @param samplingPeriodMs the component's sampling period.
+         * @return the max time range between two consecutive samples.
+         */
+        public static long gapThresholdMs(long samplingPeriodMs) {
+            return (long) (GAP_THRESHOLD_FACTOR * samplingPeriodMs);
+        }
+
+        @Override
+        public SVTimeSeries fill(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs) {
+            return fill(series, fromMs, toMs, samplingPeriodMs, gapThresholdMs(samplingPeriodMs));
+        }
+
+        @Override
+        public SVTimeSeries fill(SVTimeSeries series, long fromMs, long toMs, long samplingPeriodMs, long maxGapMs) {
+            int count = series.size();
+            SVTimeSeries filled = new SVTimeSeries(count + 4);
+            if (count == 0) {
+                fillEmpty(filled, fromMs, toMs);
+                return filled;
+            }
+
+            long firstMs = series.getFirstTimestamp();
+            if (firstMs - fromMs > maxGapMs)
+                fillLeading(filled, fromMs, firstMs);
+            filled.put(firstMs, series.getValue(0));
+
+            for (int i = 1; i < count; i++) {
+                long prevMs = series.getTimestamp(i - 1);
+                long currMs = series.getTimestamp(i);
+                double currValue = series.getValue(i);
+                if (currMs - prevMs > maxGapMs)
+                    fillGap(filled, prevMs, series.getValue(i - 1), currMs, currValue, samplingPeriodMs);
+                filled.put(currMs, currValue);
+            }
+
+            long lastMs = series.getLastTimestamp();
+            if (toMs - lastMs > maxGapMs)
+                fillTrailing(filled, lastMs, toMs);
+
+            return filled;
+        }
+
+        /**
+         * Fill the displayed range of an empty series, by default it adds nothing.
+         */
+        protected void fillEmpty(SVTimeSeries filled, long fromMs, long toMs) {
+        }
+
+        /**
+         * Fill the gap between the displayed range's beginning and the first
+         * sample, by default it adds nothing.
+         */
+        protected void fillLeading(SVTimeSeries filled, long fromMs, long firstMs) {
+        }
+
+        /**
+         * Fill the gap between two consecutive samples.
+         */
+        protected abstract void fillGap(SVTimeSeries filled, long prevMs, double prevValue, long nextMs, double nextValue, long samplingPeriodMs);
+
+        /**
+         * Fill the gap between the last sample and the displayed range's end,
+         * by default it adds nothing.
+         */
+        protected void fillTrailing(SVTimeSeries filled, long lastMs, long toMs) {
+        }
+
+    }
+
+    /**
+     * Zero values at `deltaMs` after and before the gap's samples. When the
+     * gap is at the displayed range's edges, a zero value is added also at
+     * the range's beginning/end, so an empty series is displayed as a zero
+     * line.
+     */
+    class Zero extends Engine {
+
+        private final long deltaMs;
+
+        /**
+         * @param deltaMs the time range between a sample and the added zero values.
+         */
+        public Zero(long deltaMs) {
+            this.deltaMs = deltaMs;
+        }
+
+        @Override
+        protected void fillEmpty(SVTimeSeries filled, long fromMs, long toMs) {
+            filled.put(fromMs, 0);
+            filled.put(toMs, 0);
+        }
+
+        @Override
+        protected void fillLeading(SVTimeSeries filled, long fromMs, long firstMs) {
+            filled.put(fromMs, 0);
+            filled.put(firstMs - deltaMs, 0);
+        }
+
+        @Override
+        protected void fillGap(SVTimeSeries filled, long prevMs, double prevValue, long nextMs, double nextValue, long samplingPeriodMs) {
+            filled.put(prevMs + deltaMs, 0);
+            filled.put(nextMs - deltaMs, 0);
+        }
+
+        @Override
+        protected void fillTrailing(SVTimeSeries filled, long lastMs, long toMs) {
+            filled.put(lastMs + deltaMs, 0);
+            filled.put(toMs, 0);
+        }
+
+    }
+
+    /**
+     * A NaN value in the middle of each gap, so the chart doesn't draw the
+     * line between the gap's samples. Range's edges are not filled.
+     */
+    class LineBreak extends Engine {
+
+        @Override
+        protected void fillGap(SVTimeSeries filled, long prevMs, double prevValue, long nextMs, double nextValue, long samplingPeriodMs) {
+            filled.put(prevMs + (nextMs - prevMs) / 2, Double.NaN);
+        }
+
+    }
+
+    /**
+     * The previous sample's value, until 1ms before the next sample, so the
+     * line is drawn as a step. Range's edges are not filled, because the
+     * value after the last sample is unknown.
+     */
+    class HoldLast extends Engine {
+
+        @Override
+        protected void fillGap(SVTimeSeries filled, long prevMs, double prevValue, long nextMs, double nextValue, long samplingPeriodMs) {
+            filled.put(nextMs - 1, prevValue);
+        }
+
+    }
+
+    /**
+     * Samples interpolated between the gap's samples, one each sampling
+     * period. So the gap counts as regular data when the series is
+     * downsampled or aggregated. Range's edges are not filled.
+     */
+    class Linear extends Engine {
+
+        @Override
+        protected void fillGap(SVTimeSeries filled, long prevMs, double prevValue, long nextMs, double nextValue, long samplingPeriodMs) {
+            if (samplingPeriodMs <= 0)
+                return;
+
+            double slope = (nextValue - prevValue) / (nextMs - prevMs);
+            for (long ts = prevMs + samplingPeriodMs; ts < nextMs; ts += samplingPeriodMs)
+                filled.put(ts, prevValue + slope * (ts - prevMs));
+        }
+
+    }
+
+}
@@ -0,0 +1,375 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * In-memory cache of the components' history, used by the charts to avoid
+ * fetching again the same data while navigating back and forth in time.
+ * <p>
+ * The cache is keyed by object id and component path. For each component it
+ * keeps the samples fetched so far and the time ranges synchronized with the
+ * remote object (the "covered" ranges). So, for a new time window, only the
+ * sub-ranges not covered yet must be fetched, then they are merged into the
+ * cache.
+ * <p>
+ * When the total number of cached samples exceeds the max points, the least
+ * recently used components are evicted.
+ * <p>
+ * All ranges are inclusive and expressed in milliseconds.
+ *
+ * @noinspection unused
+ */
+public class SVHistoryCache {
+
+    // Constants
+
+    /**
+     * Default max number of cached samples (4MB).
+     */
+    public static final int DEF_MAX_POINTS = 256 * 1024;
+    /**
+     * Memory used by each cached sample: timestamp (long) + value (double).
+     */
+    public static final int BYTES_PER_POINT = 16;
+
+
+    // Internal vars
+
+    private final int maxPoints;
+    /**
+     * Cached components, by key, sorted from the least recently used.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int pointsCount = 0;
+    private long hitCount = 0;
+    private long partialHitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+
+    // Constructors
+
+    /**
+     * Initialize the cache with the default max points.
+     */
+    public SVHistoryCache() {
+        this(DEF_MAX_POINTS);
+    }
+
+    /**
+     * Initialize the cache.
+     *
+     * @param maxPoints the max number of cached samples, for all components.
+     */
+    public SVHistoryCache(int maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+
+    // Cache
+
+    /**
+     * Look for the given range into the cache, and update the hit/miss
+     * counters.
+     *
+     * @param objectId the id of the component's object.
+     * @param compPath the path of the component.
+     * @param from     the beginning of the range.
+     * @param to       the end of the range.
+     * @return the sub-ranges not covered by the cache, sorted. It's empty if
+     * the whole range is cached.
+     */
+    public synchronized List<Range> lookup(String objectId, String compPath, long from, long to) {
+        List<Range> missing = getMissingRanges(objectId, compPath, from, to);
+        if (missing.isEmpty())
+            hitCount++;
+        else if (missing.size() == 1 && missing.get(0).from == from && missing.get(0).to == to)
+            missCount++;
+        else
+            partialHitCount++;
+        return missing;
+    }
+
+    /**
+     * Same as {@link #lookup(String, String, long, long)}, but without
+     * updating the hit/miss counters.
+     *
+     * @param objectId the id of the component's object.
+     * @param compPath the path of the component.
+     * @param from     the beginning of the range.
+     * @param to       the end of the range.
+     * @return the sub-ranges not covered by the cache, sorted.
+     */
+    public synchronized List<Range> getMissingRanges(String objectId, String compPath, long from, long to) {
+        List<Range> missing = new ArrayList<>();
+        Entry entry = entries.get(toKey(objectId, compPath));
+
+        long cursor = from;
+        if (entry != null)
+            for (Range covered : entry.covered) {
+                if (covered.to < cursor)
+                    continue;
+                if (covered.from > to)
+                    break;
+                if (covered.from > cursor)
+                    missing.add(new Range(cursor, covered.from - 1));
+                cursor = covered.to + 1;
+                if (cursor > to)
+                    break;
+            }
+        if (cursor <= to)
+            missing.add(new Range(cursor, to));
+
+        return missing;
+    }
+
+    /**
+     * @param objectId the id of the component's object.
+     * @param compPath the path of the component.
+     * @param from     the beginning of the range.
+     * @param to       the end of the range.
+     * @return the cached samples within given range, it can be incomplete if
+     * the range is not fully covered.
+     */
+    public synchronized SVTimeSeries query(String objectId, String compPath, long from, long to) {
+        Entry entry = entries.get(toKey(objectId, compPath));
+        if (entry == null)
+            return new SVTimeSeries();
+        return entry.series.slice(from, to);
+    }
+
+    /**
+     * Merge the samples fetched from the remote object into the cache, then,
+     * if needed, evict the least recently used components.
+     * <p>
+     * Given samples override the cached ones with the same timestamp.
+     *
+     * @param objectId    the id of the component's object.
+     * @param compPath    the path of the component.
+     * @param values      the fetched samples.
+     * @param fetchedFrom the beginning of the range synchronized with the remote object.
+     * @param fetchedTo   the end of the range synchronized with the remote object.
+     */
+    public synchronized void put(String objectId, String compPath, SVTimeSeries values, long fetchedFrom, long fetchedTo) {
+        String key = toKey(objectId, compPath);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(key, entry);
+        }
+
+        int oldSize = entry.series.size();
+        if (!values.isEmpty())
+            entry.series = SVTimeSeries.merge(entry.series, values);
+        pointsCount += entry.series.size() - oldSize;
+        if (fetchedFrom <= fetchedTo)
+            entry.addCovered(fetchedFrom, fetchedTo);
+
+        evict(key);
+    }
+
+    /**
+     * Remove all cached components of the given object.
+     *
+     * @param objectId the id of the object.
+     */
+    public synchronized void invalidate(String objectId) {
+        String prefix = toKey(objectId, "");
+        for (Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Entry> e = i.next();
+            if (e.getKey().startsWith(prefix)) {
+                pointsCount -= e.getValue().series.size();
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached components.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        pointsCount = 0;
+    }
+
+    private void evict(String keepKey) {
+        for (Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator(); i.hasNext() && pointsCount > maxPoints; ) {
+            Map.Entry<String, Entry> e = i.next();
+            if (e.getKey().equals(keepKey))
+                continue;
+            pointsCount -= e.getValue().series.size();
+            evictionCount++;
+            i.remove();
+        }
+    }
+
+    private static String toKey(String objectId, String compPath) {
+        return objectId + "#" + compPath;
+    }
+
+
+    // Metrics
+
+    /**
+     * @return the max number of cached samples.
+     */
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * @return the number of cached samples, for all components.
+     */
+    public synchronized int getPointsCount() {
+        return pointsCount;
+    }
+
+    /**
+     * @return the memory used by the cached samples, in bytes.
+     */
+    public synchronized long getBytes() {
+        return (long) pointsCount * BYTES_PER_POINT;
+    }
+
+    /**
+     * @return the number of lookups fully served by the cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups partially served by the cache.
+     */
+    public synchronized long getPartialHitCount() {
+        return partialHitCount;
+    }
+
+    /**
+     * @return the number of lookups not served by the cache.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of evicted components.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return a snapshot of the current cache's metrics.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hitCount, partialHitCount, missCount, evictionCount, pointsCount, getBytes());
+    }
+
+
+    // Range
+
+    /**
+     * Inclusive time range, in milliseconds.
+     */
+    public static class Range {
+
+        private final long from;
+        private final long to;
+
+        public Range(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public long getFrom() {
+            return from;
+        }
+
+        public long getTo() {
+            return to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Range)) return false;
+            Range range = (Range) o;
+            return from == range.from && to == range.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.valueOf(from).hashCode() + Long.valueOf(to).hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + from + ", " + to + "]";
+        }
+
+    }
+
+
+    // Stats
+
+    /**
+     * Snapshot of the cache's metrics.
+     */
+    public static class Stats {
+
+        public final long hitCount;
+        public final long partialHitCount;
+        public final long missCount;
+        public final long evictionCount;
+        public final int pointsCount;
+        public final long bytes;
+
+        public Stats(long hitCount, long partialHitCount, long missCount, long evictionCount, int pointsCount, long bytes) {
+            this.hitCount = hitCount;
+            this.partialHitCount = partialHitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.pointsCount = pointsCount;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits %d, partial hits %d, misses %d, evictions %d, %d points (%d KB)",
+                    hitCount, partialHitCount, missCount, evictionCount, pointsCount, bytes / 1024);
+        }
+
+    }
+
+
+    // Cache entry
+
+    private static class Entry {
+
+        private SVTimeSeries series = new SVTimeSeries();
+        /**
+         * Covered ranges, sorted and not contiguous each other.
+         */
+        private final List<Range> covered = new ArrayList<>();
+
+        private void addCovered(long from, long to) {
+            int i = 0;
+            while (i < covered.size() && covered.get(i).to < from - 1)
+                i++;
+            while (i < covered.size() && covered.get(i).from <= to + 1) {
+                Range merged = covered.remove(i);
+                from = Math.min(from, merged.from);
+                to = Math.max(to, merged.to);
+            }
+            covered.add(i, new Range(from, to));
+        }
+
+    }
+
+}
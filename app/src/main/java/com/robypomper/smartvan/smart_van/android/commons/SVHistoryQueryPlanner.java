@@ -0,0 +1,161 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+
+/**
+ * Plans the requests sent to the remote object to fetch a component's
+ * history, depending on the chart's time window and displayed resolution.
+ * <p>
+ * When the window contains few samples, compared to the chart's resolution,
+ * the raw samples are requested at once ({@link Plan#isBucketed()} false).
+ * Otherwise, the history is requested by pages, and each page is aggregated
+ * into the plan's buckets as soon as it's received (see {@link SVBucketAggregator}).
+ * So, the memory used to fetch long windows depends on the buckets count,
+ * not on the raw history size.
+ * <p>
+ * The buckets count is the chart's display width (in pixels), rounded up to
+ * a multiple of the window's partitions, so each partition contains the same
+ * number of buckets.
+ *
+ * @noinspection unused
+ */
+public class SVHistoryQueryPlanner {
+
+    // Constants
+
+    /**
+     * Number of history samples requested for each page.
+     */
+    public static final int DEF_PAGE_SIZE = 1000;
+    /**
+     * Raw samples are requested when they are at most the buckets count
+     * multiplied by this factor.
+     */
+    public static final int RAW_MAX_SAMPLES_FACTOR = 4;
+    /**
+     * Buckets count used when the display width is unknown (e.g. the chart
+     * was not measured yet).
+     */
+    public static final int DEF_BUCKETS_COUNT = 1000;
+    /**
+     * Max buckets count, whatever the display width.
+     */
+    public static final int MAX_BUCKETS_COUNT = 4000;
+
+
+    // Planning
+
+    /**
+     * Plan the history requests for given time window.
+     *
+     * @param fromMs           the beginning of the window.
+     * @param toMs             the end of the window.
+     * @param partitions       the number of window's partitions, 0 or less if not partitioned.
+     * @param displayWidth     the chart's width in pixels, 0 or less if unknown.
+     * @param samplingPeriodMs the components' sampling period, used to
+     *                         estimate the raw samples count.
+     * @return the plan for given window.
+     */
+    public static Plan plan(long fromMs, long toMs, int partitions, int displayWidth, long samplingPeriodMs) {
+        int bucketsCount = displayWidth > 0 ? Math.min(displayWidth, MAX_BUCKETS_COUNT) : DEF_BUCKETS_COUNT;
+        if (partitions > 0)
+            bucketsCount = ((bucketsCount + partitions - 1) / partitions) * partitions;
+
+        long durationMs = Math.max(1, toMs - fromMs + 1);
+        long expectedSamples = samplingPeriodMs > 0 ? (durationMs - 1) / samplingPeriodMs + 1 : Long.MAX_VALUE;
+        if (expectedSamples <= (long) bucketsCount * RAW_MAX_SAMPLES_FACTOR)
+            return new Plan(fromMs, toMs, expectedSamples, 0, 0, 0);
+
+        long bucketMs = (durationMs + bucketsCount - 1) / bucketsCount;
+        return new Plan(fromMs, toMs, expectedSamples, bucketsCount, bucketMs, DEF_PAGE_SIZE);
+    }
+
+
+    // Plan
+
+    /**
+     * History requests for a time window: a single raw request, or paged
+     * requests aggregated into buckets.
+     */
+    public static class Plan {
+
+        private final long fromMs;
+        private final long toMs;
+        private final long expectedSamples;
+        private final int bucketsCount;
+        private final long bucketMs;
+        private final int pageSize;
+
+        private Plan(long fromMs, long toMs, long expectedSamples, int bucketsCount, long bucketMs, int pageSize) {
+            this.fromMs = fromMs;
+            this.toMs = toMs;
+            this.expectedSamples = expectedSamples;
+            this.bucketsCount = bucketsCount;
+            this.bucketMs = bucketMs;
+            this.pageSize = pageSize;
+        }
+
+        public long getFromMs() {
+            return fromMs;
+        }
+
+        public long getToMs() {
+            return toMs;
+        }
+
+        /**
+         * @return the estimated number of raw samples within the window.
+         */
+        public long getExpectedSamples() {
+            return expectedSamples;
+        }
+
+        /**
+         * @return true if the history must be requested by pages and
+         * aggregated into buckets, false if raw samples can be requested at once.
+         */
+        public boolean isBucketed() {
+            return bucketsCount > 0;
+        }
+
+        /**
+         * @return the number of buckets, 0 if not bucketed.
+         */
+        public int getBucketsCount() {
+            return bucketsCount;
+        }
+
+        /**
+         * @return the time range aggregated by each bucket, 0 if not bucketed.
+         */
+        public long getBucketMs() {
+            return bucketMs;
+        }
+
+        /**
+         * @return the number of samples requested for each page, 0 if not bucketed.
+         */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        /**
+         * @return a new aggregator for the plan's buckets.
+         * @throws IllegalStateException if the plan is not bucketed.
+         */
+        public SVBucketAggregator newAggregator() {
+            if (!isBucketed())
+                throw new IllegalStateException("Can't aggregate a raw history plan");
+            return new SVBucketAggregator(fromMs, bucketMs, bucketsCount);
+        }
+
+        @Override
+        public String toString() {
+            if (!isBucketed())
+                return String.format("raw (~%d samples)", expectedSamples);
+            return String.format("bucketed (~%d samples into %d buckets of %d ms, pages of %d)",
+                    expectedSamples, bucketsCount, bucketMs, pageSize);
+        }
+
+    }
+
+}
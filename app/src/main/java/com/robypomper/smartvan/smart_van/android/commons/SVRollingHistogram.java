@@ -0,0 +1,105 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import java.util.Arrays;
+
+
+/**
+ * Distribution of the latest recorded values, e.g. the durations of the
+ * charts' pipeline stages.
+ * <p>
+ * Only the latest values are kept, into a fixed size ring buffer, so the
+ * percentiles reflect the recent behaviour and the memory used doesn't grow.
+ *
+ * @noinspection unused
+ */
+public class SVRollingHistogram {
+
+    // Constants
+
+    public static final int DEF_CAPACITY = 64;
+
+
+    // Internal vars
+
+    private final long[] values;
+    private int next = 0;
+    private int count = 0;
+    private long totalCount = 0;
+
+
+    // Constructors
+
+    public SVRollingHistogram() {
+        this(DEF_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of latest values kept.
+     */
+    public SVRollingHistogram(int capacity) {
+        values = new long[capacity];
+    }
+
+
+    // Recording
+
+    /**
+     * Record a value, if the histogram is full the oldest value is dropped.
+     *
+     * @param value the value to record.
+     */
+    public synchronized void record(long value) {
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (count < values.length)
+            count++;
+        totalCount++;
+    }
+
+
+    // Getters
+
+    /**
+     * @return the number of values kept.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of values recorded since the histogram's creation.
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percentile the percentile, from 0 to 100.
+     * @return the given percentile of the values kept, 0 if empty.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * @return the max of the values kept, 0 if empty.
+     */
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < count; i++)
+            max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("p50 %d, p90 %d, p99 %d, max %d (%d values)",
+                getPercentile(50), getPercentile(90), getPercentile(99), getMax(), count);
+    }
+
+}
@@ -0,0 +1,402 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import java.util.Arrays;
+
+
+/**
+ * Time series of double values, stored as primitive columns.
+ * <p>
+ * Samples are kept in two parallel arrays, sorted by timestamp and without
+ * duplicated timestamps: so a series costs 16 bytes per sample and it can be
+ * searched, sliced and iterated without boxing any value.
+ * <p>
+ * Samples must be appended in chronological order, appending a sample with
+ * the same timestamp of the last one replaces his value (like a map would
+ * do). Unsorted samples can be converted with the {@link #sortedOf(long[], double[], int)}
+ * method.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @noinspection unused
+ */
+public class SVTimeSeries {
+
+    // Constants
+
+    private static final int DEF_CAPACITY = 16;
+
+
+    // Internal vars
+
+    private long[] timestamps;
+    private double[] values;
+    private int size = 0;
+
+
+    // Constructors
+
+    /**
+     * Create an empty series.
+     */
+    public SVTimeSeries() {
+        this(DEF_CAPACITY);
+    }
+
+    /**
+     * Create an empty series, able to hold given samples without resizing.
+     *
+     * @param capacity the initial capacity of the series.
+     */
+    public SVTimeSeries(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    private SVTimeSeries(long[] timestamps, double[] values, int size) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Create a series from unsorted samples.
+     * <p>
+     * When more samples have the same timestamp, the latest one in given
+     * arrays is kept. Given arrays are not modified.
+     *
+     * @param timestamps the samples' timestamps, in any order.
+     * @param values     the samples' values.
+     * @param count      the number of samples to read from given arrays.
+     * @return a new sorted series.
+     */
+    public static SVTimeSeries sortedOf(long[] timestamps, double[] values, int count) {
+        if (isSorted(timestamps, count)) {
+            SVTimeSeries series = new SVTimeSeries(count);
+            for (int i = 0; i < count; i++)
+                series.append(timestamps[i], values[i]);
+            return series;
+        }
+
+        // Sort indexes, the stable sort keeps duplicated timestamps in arrival order
+        Integer[] indexes = new Integer[count];
+        for (int i = 0; i < count; i++)
+            indexes[i] = i;
+        Arrays.sort(indexes, (i1, i2) -> Long.compare(timestamps[i1], timestamps[i2]));
+
+        SVTimeSeries series = new SVTimeSeries(count);
+        for (int i = 0; i < count; i++)
+            series.append(timestamps[indexes[i]], values[indexes[i]]);
+        return series;
+    }
+
+    /**
+     * Merge two series.
+     * <p>
+     * When both series contain the same timestamp, the value of the
+     * `override` series is kept.
+     *
+     * @param base     the first series to merge.
+     * @param override the second series to merge, his values win on same timestamps.
+     * @return a new series containing the samples of both series.
+     */
+    public static SVTimeSeries merge(SVTimeSeries base, SVTimeSeries override) {
+        SVTimeSeries merged = new SVTimeSeries(base.size + override.size);
+        int b = 0, o = 0;
+        while (b < base.size || o < override.size) {
+            if (o == override.size || (b < base.size && base.timestamps[b] < override.timestamps[o])) {
+                merged.append(base.timestamps[b], base.values[b]);
+                b++;
+            } else {
+                if (b < base.size && base.timestamps[b] == override.timestamps[o])
+                    b++;
+                merged.append(override.timestamps[o], override.values[o]);
+                o++;
+            }
+        }
+        return merged;
+    }
+
+
+    // Getters
+
+    /**
+     * @return the number of samples.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the series doesn't contain any sample.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index the sample's index.
+     * @return the timestamp of the given sample.
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    /**
+     * @param index the sample's index.
+     * @return the value of the given sample.
+     */
+    public double getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @return the timestamp of the first sample.
+     * @throws IndexOutOfBoundsException if the series is empty.
+     */
+    public long getFirstTimestamp() {
+        return getTimestamp(0);
+    }
+
+    /**
+     * @return the timestamp of the last sample.
+     * @throws IndexOutOfBoundsException if the series is empty.
+     */
+    public long getLastTimestamp() {
+        return getTimestamp(size - 1);
+    }
+
+    /**
+     * @return a copy of the samples' timestamps, sorted.
+     */
+    public long[] toTimestampsArray() {
+        return Arrays.copyOf(timestamps, size);
+    }
+
+    /**
+     * @return a copy of the samples' values, in the same order of {@link #toTimestampsArray()}.
+     */
+    public double[] toValuesArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+
+    // Append and remove
+
+    /**
+     * Append a sample at the end of the series.
+     * <p>
+     * If given timestamp is equal to the last sample's timestamp, then the
+     * last sample's value is replaced.
+     *
+     * @param timestamp the sample's timestamp, must not be older than the last sample.
+     * @param value     the sample's value.
+     * @throws IllegalArgumentException if the timestamp is older than the last sample.
+     */
+    public void append(long timestamp, double value) {
+        if (size > 0) {
+            long last = timestamps[size - 1];
+            if (timestamp < last)
+                throw new IllegalArgumentException(String.format("Can't append sample at %d before last sample at %d", timestamp, last));
+            if (timestamp == last) {
+                values[size - 1] = value;
+                return;
+            }
+        }
+
+        ensureCapacity(size + 1);
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Add a sample at his chronological position.
+     * <p>
+     * If the series already contains a sample with given timestamp, then his
+     * value is replaced. Adding samples at the end of the series is as fast
+     * as {@link #append(long, double)}, otherwise following samples are shifted.
+     *
+     * @param timestamp the sample's timestamp.
+     * @param value     the sample's value.
+     */
+    public void put(long timestamp, double value) {
+        if (size == 0 || timestamp >= timestamps[size - 1]) {
+            append(timestamp, value);
+            return;
+        }
+
+        int index = indexOf(timestamp);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+
+        int insertAt = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        timestamps[insertAt] = timestamp;
+        values[insertAt] = value;
+        size++;
+    }
+
+    /**
+     * Append all samples of given series.
+     *
+     * @param series the series to append, his first sample must not be older
+     *               than this series' last sample.
+     */
+    public void appendAll(SVTimeSeries series) {
+        ensureCapacity(size + series.size);
+        for (int i = 0; i < series.size; i++)
+            append(series.timestamps[i], series.values[i]);
+    }
+
+
+    /**
+     * Remove the samples older than given timestamp, following samples are
+     * shifted to the beginning of the series.
+     *
+     * @param timestamp the timestamp of the oldest sample to keep.
+     * @return the number of removed samples.
+     */
+    public int removeBefore(long timestamp) {
+        int count = lowerBound(timestamp);
+        if (count == 0)
+            return 0;
+
+        System.arraycopy(timestamps, count, timestamps, 0, size - count);
+        System.arraycopy(values, count, values, 0, size - count);
+        size -= count;
+        return count;
+    }
+
+
+    // Search and slice
+
+    /**
+     * Search the sample with given timestamp.
+     *
+     * @param timestamp the timestamp to search.
+     * @return the index of the sample, if found; otherwise
+     * <code>(-(insertion point) - 1)</code>, like {@link Arrays#binarySearch(long[], long)}.
+     */
+    public int indexOf(long timestamp) {
+        return Arrays.binarySearch(timestamps, 0, size, timestamp);
+    }
+
+    /**
+     * @param timestamp the timestamp to search.
+     * @return the index of the first sample not older than given timestamp,
+     * or {@link #size()} if all samples are older.
+     */
+    public int lowerBound(long timestamp) {
+        int index = indexOf(timestamp);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @param timestamp the timestamp to search.
+     * @return the index of the first sample newer than given timestamp, or
+     * {@link #size()} if no sample is newer.
+     */
+    public int upperBound(long timestamp) {
+        int index = indexOf(timestamp);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Copy the samples within given time range.
+     *
+     * @param from the beginning of the range (included).
+     * @param to   the end of the range (included).
+     * @return a new series containing the samples within given range.
+     */
+    public SVTimeSeries slice(long from, long to) {
+        if (from > to)
+            return new SVTimeSeries();
+        return sliceByIndex(lowerBound(from), upperBound(to));
+    }
+
+    /**
+     * Copy the samples within given indexes.
+     *
+     * @param fromIndex the index of the first sample (included).
+     * @param toIndex   the index of the last sample (excluded).
+     * @return a new series containing the samples within given indexes.
+     */
+    public SVTimeSeries sliceByIndex(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException(String.format("Invalid slice [%d, %d) for series of size %d", fromIndex, toIndex, size));
+        int count = toIndex - fromIndex;
+        if (count == 0)
+            return new SVTimeSeries();
+        return new SVTimeSeries(Arrays.copyOfRange(timestamps, fromIndex, toIndex),
+                Arrays.copyOfRange(values, fromIndex, toIndex), count);
+    }
+
+
+    // Object
+
+    /**
+     * Two series are equals if they contain the same samples.
+     *
+     * @param o the object to compare.
+     * @return true if given object is a series with the same samples.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SVTimeSeries)) return false;
+        SVTimeSeries other = (SVTimeSeries) o;
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++)
+            if (timestamps[i] != other.timestamps[i]
+                    || Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(other.values[i]))
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + (int) (timestamps[i] ^ (timestamps[i] >>> 32));
+            long bits = Double.doubleToLongBits(values[i]);
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SVTimeSeries[%d samples]", size);
+    }
+
+
+    // Utils
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(String.format("Index %d out of series of size %d", index, size));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length)
+            return;
+        int newCapacity = Math.max(capacity, timestamps.length * 2);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    private static boolean isSorted(long[] timestamps, int count) {
+        for (int i = 1; i < count; i++)
+            if (timestamps[i] < timestamps[i - 1])
+                return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Multi-resolution view of an {@link SVTimeSeries}, used to display zoomed
+ * and panned portions of a series without processing again all his samples.
+ * <p>
+ * The pyramid is made of aggregated levels: the level 0 is the series itself,
+ * then each level halves the resolution of the previous one, so the level
+ * <code>k</code> contains a bucket each <code>2^k</code> samples. For each
+ * bucket, the pyramid keeps the min and the max samples (as series' indexes)
+ * and the average value. Levels are built in linear time, and they use less
+ * memory than the series itself.
+ * <p>
+ * Queries look for the visible samples with a binary search, then they pick
+ * the first level that fits the max data points. So, they run in
+ * <code>O(log n + visible points)</code>.
+ *
+ * @noinspection unused
+ */
+public class SVTimeSeriesPyramid {
+
+    // Constants
+
+    /**
+     * Each bucket is displayed with his min and max samples, so peaks are
+     * never dropped.
+     */
+    public static final int AGGREGATION_MIN_MAX = 0;
+    /**
+     * Each bucket is displayed with his average value.
+     */
+    public static final int AGGREGATION_AVERAGE = 1;
+
+
+    // Internal vars
+
+    /**
+     * The series, it's the pyramid's level 0.
+     */
+    private final SVTimeSeries series;
+    /**
+     * The aggregated levels, from the level 1.
+     */
+    private final List<Level> levels = new ArrayList<>();
+
+
+    // Constructors
+
+    /**
+     * Build the pyramid's levels for given series.
+     * <p>
+     * The series must not be modified after the pyramid's creation.
+     *
+     * @param series the series to aggregate.
+     */
+    public SVTimeSeriesPyramid(SVTimeSeries series) {
+        this.series = series;
+
+        if (series.size() < 2)
+            return;
+        Level level = Level.fromSeries(series);
+        levels.add(level);
+        while (level.size() > 1) {
+            level = Level.fromLevel(series, level);
+            levels.add(level);
+        }
+    }
+
+
+    // Getters
+
+    /**
+     * @return the aggregated series.
+     */
+    public SVTimeSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * @return the number of levels, including the level 0 (the series).
+     */
+    public int getLevelsCount() {
+        return levels.size() + 1;
+    }
+
+    /**
+     * @param level the level, 0 is the series itself.
+     * @return the number of buckets of given level.
+     */
+    public int getLevelSize(int level) {
+        return level == 0 ? series.size() : levels.get(level - 1).size();
+    }
+
+
+    // Query
+
+    /**
+     * Get the samples within given time range, aggregated to fit the max
+     * data points count.
+     * <p>
+     * The resulting series contains also the samples (or the buckets)
+     * immediately before and after the range, if any, so lines can be drawn
+     * up to the range's edges.
+     *
+     * @param from              the beginning of the range (included).
+     * @param to                the end of the range (included).
+     * @param maxDataPointCount the max number of data points to return.
+     * @param aggregation       {@link #AGGREGATION_MIN_MAX} or {@link #AGGREGATION_AVERAGE}.
+     * @return the samples within given range, sorted by timestamp.
+     */
+    public SVTimeSeries query(long from, long to, int maxDataPointCount, int aggregation) {
+        if (from > to || series.isEmpty())
+            return new SVTimeSeries();
+
+        int lo = series.lowerBound(from);
+        int hi = series.upperBound(to);
+        if (lo > 0) lo--;
+        if (hi < series.size()) hi++;
+        if (hi - lo <= maxDataPointCount)
+            return series.sliceByIndex(lo, hi);
+
+        // Select the first level that fits the max data points, with the
+        // buckets immediately before and after the range
+        int maxBuckets = Math.max(1, aggregation == AGGREGATION_MIN_MAX ? maxDataPointCount / 2 : maxDataPointCount);
+        int levelIdx = 0;
+        int firstBucket;
+        int lastBucket;
+        Level level;
+        do {
+            levelIdx++;
+            level = levels.get(levelIdx - 1);
+            firstBucket = Math.max(0, (lo >> levelIdx) - 1);
+            lastBucket = Math.min(level.size() - 1, ((hi - 1) >> levelIdx) + 1);
+        } while (levelIdx < levels.size() && lastBucket - firstBucket + 1 > maxBuckets);
+
+        SVTimeSeries result = new SVTimeSeries((lastBucket - firstBucket + 1) * (aggregation == AGGREGATION_MIN_MAX ? 2 : 1));
+        for (int b = firstBucket; b <= lastBucket; b++) {
+            if (aggregation == AGGREGATION_MIN_MAX) {
+                int first = Math.min(level.minIndex[b], level.maxIndex[b]);
+                int second = Math.max(level.minIndex[b], level.maxIndex[b]);
+                result.append(series.getTimestamp(first), series.getValue(first));
+                if (second != first)
+                    result.append(series.getTimestamp(second), series.getValue(second));
+            } else {
+                int bucketStart = b << levelIdx;
+                int bucketEnd = Math.min((b + 1) << levelIdx, series.size());
+                result.append(series.getTimestamp((bucketStart + bucketEnd - 1) / 2), level.avg[b]);
+            }
+        }
+        return result;
+    }
+
+
+    // Level
+
+    /**
+     * Aggregated level, each bucket aggregates 2 buckets of the previous
+     * level (or 2 samples for the level 1).
+     */
+    private static class Level {
+
+        private final int[] minIndex;
+        private final int[] maxIndex;
+        private final double[] avg;
+        /**
+         * Number of not NaN samples of each bucket, used to merge averages.
+         */
+        private final int[] count;
+
+        private Level(int size) {
+            minIndex = new int[size];
+            maxIndex = new int[size];
+            avg = new double[size];
+            count = new int[size];
+        }
+
+        private int size() {
+            return avg.length;
+        }
+
+        private static Level fromSeries(SVTimeSeries series) {
+            int size = series.size();
+            Level level = new Level((size + 1) / 2);
+            for (int b = 0; b < level.size(); b++) {
+                int a = 2 * b;
+                int c = Math.min(a + 1, size - 1);
+                level.minIndex[b] = minOf(series, a, c);
+                level.maxIndex[b] = maxOf(series, a, c);
+                double sum = 0;
+                int count = 0;
+                for (int i = a; i <= c; i++) {
+                    double value = series.getValue(i);
+                    if (Double.isNaN(value)) continue;
+                    sum += value;
+                    count++;
+                }
+                level.count[b] = count;
+                level.avg[b] = count > 0 ? sum / count : Double.NaN;
+            }
+            return level;
+        }
+
+        private static Level fromLevel(SVTimeSeries series, Level prev) {
+            Level level = new Level((prev.size() + 1) / 2);
+            for (int b = 0; b < level.size(); b++) {
+                int a = 2 * b;
+                int c = a + 1;
+                if (c >= prev.size()) {
+                    level.minIndex[b] = prev.minIndex[a];
+                    level.maxIndex[b] = prev.maxIndex[a];
+                    level.avg[b] = prev.avg[a];
+                    level.count[b] = prev.count[a];
+                    continue;
+                }
+
+                level.minIndex[b] = minOf(series, prev.minIndex[a], prev.minIndex[c]);
+                level.maxIndex[b] = maxOf(series, prev.maxIndex[a], prev.maxIndex[c]);
+                int count = prev.count[a] + prev.count[c];
+                level.count[b] = count;
+                if (count == 0)
+                    level.avg[b] = Double.NaN;
+                else
+                    level.avg[b] = ((prev.count[a] > 0 ? prev.avg[a] * prev.count[a] : 0)
+                            + (prev.count[c] > 0 ? prev.avg[c] * prev.count[c] : 0)) / count;
+            }
+            return level;
+        }
+
+        private static int minOf(SVTimeSeries series, int a, int b) {
+            double va = series.getValue(a);
+            double vb = series.getValue(b);
+            if (Double.isNaN(va)) return b;
+            if (Double.isNaN(vb)) return a;
+            return vb < va ? b : a;
+        }
+
+        private static int maxOf(SVTimeSeries series, int a, int b) {
+            double va = series.getValue(a);
+            double vb = series.getValue(b);
+            if (Double.isNaN(va)) return b;
+            if (Double.isNaN(vb)) return a;
+            return vb > va ? b : a;
+        }
+
+    }
+
+}
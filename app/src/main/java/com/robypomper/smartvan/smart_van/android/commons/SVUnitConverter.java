@@ -0,0 +1,86 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+
+/**
+ * Linear conversion of the components' values from the unit used by the
+ * remote object to the displayed one.
+ * <p>
+ * Converters can be added to a chart's {@link SVChartPipeline}, so the
+ * history values are converted while processed, or used directly to convert
+ * the components' current state.
+ *
+ * @noinspection unused
+ */
+public class SVUnitConverter implements SVChartPipeline.ValueStage {
+
+    // Constants
+
+    /**
+     * From thousandths of any unit to the unit itself (e.g. mV to V and
+     * mW to W).
+     */
+    public static final SVUnitConverter MILLI = new SVUnitConverter("m", "", 0.001);
+    public static final SVUnitConverter MILLIVOLT_TO_VOLT = new SVUnitConverter("mV", "V", 0.001);
+    public static final SVUnitConverter MILLIWATT_TO_WATT = new SVUnitConverter("mW", "W", 0.001);
+
+
+    // Internal vars
+
+    private final String fromUnit;
+    private final String toUnit;
+    private final double factor;
+    private final double offset;
+
+
+    // Constructors
+
+    public SVUnitConverter(String fromUnit, String toUnit, double factor) {
+        this(fromUnit, toUnit, factor, 0);
+    }
+
+    /**
+     * @param fromUnit the unit of the values to convert.
+     * @param toUnit   the unit of the converted values.
+     * @param factor   the factor multiplied to the values.
+     * @param offset   the offset added to the values, after the factor.
+     */
+    public SVUnitConverter(String fromUnit, String toUnit, double factor, double offset) {
+        this.fromUnit = fromUnit;
+        this.toUnit = toUnit;
+        this.factor = factor;
+        this.offset = offset;
+    }
+
+
+    // Getters
+
+    public String getFromUnit() {
+        return fromUnit;
+    }
+
+    public String getToUnit() {
+        return toUnit;
+    }
+
+
+    // Conversion
+
+    /**
+     * @param value the value to convert, expressed in {@link #getFromUnit()}.
+     * @return the converted value, expressed in {@link #getToUnit()}.
+     */
+    public double convert(double value) {
+        return value * factor + offset;
+    }
+
+    @Override
+    public double apply(double value) {
+        return convert(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s to %s", fromUnit, toUnit);
+    }
+
+}
@@ -1,9 +1,10 @@
 package com.robypomper.smartvan.smart_van.android.components;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 
 import androidx.annotation.Nullable;
 
@@ -21,14 +22,22 @@ import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.data.LineRadarDataSet;
 import com.github.mikephil.charting.data.LineScatterCandleRadarDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.commons.SVAxisLabelCache;
+import com.robypomper.smartvan.smart_van.android.commons.SVChartPipeline;
+import com.robypomper.smartvan.smart_van.android.commons.SVDownsampler;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeries;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeriesPyramid;
 import com.robypomper.smartvan.smart_van.android.utils.SVCustomGradientDrawable;
 
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -40,17 +49,17 @@ public class SVChartLineView
     // Constants
 
     private static final int LAYOUT = R.layout.view_sv_chart_line;
-    private static final int MAX_DISPLAYED_ENTRIES = 100;
-    private static final float SCALE_FACTOR = 0.001f;
-    private static final float EMPTY_RANGE_SCALE = 10;   // used in Period * Qty / EMPTY_RANGE_SCALE
-    private static final long MAX_EMPTY_RANGE_MS = (long) (1.5 * (60 * 1000));  // must be 1.5 times the sampling period
-    private static final long EMPTY_RANGE_DELTA_MS = 1000;
     private static final boolean ENABLE_AXIS_RIGHT = false;
+    private static final int DOWNSAMPLING_LINEAR = 0;
+    private static final int DOWNSAMPLING_LTTB = 1;
+    private static final int DOWNSAMPLING_MIN_MAX = 2;
+    private static final int DOWNSAMPLING_AVERAGE = 3;
 
 
     // Internal vars
 
     private final LineChart lineChart;
+    private volatile SVChartPipeline pipeline = SVChartPipeline.DEFAULT;
 
 
     // Constructors
@@ -66,222 +75,240 @@ public class SVChartLineView
     public SVChartLineView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(LAYOUT, context, attrs, defStyleAttr);
 
+        // Parse attributes
+        final TypedArray a = getContext().obtainStyledAttributes(attrs, R.styleable.SVChartLineView, defStyleAttr, 0);
+        pipeline = pipeline.withDownsampler(toDownsampler(a.getInt(R.styleable.SVChartLineView_chart_downsampling, DOWNSAMPLING_LTTB)));
+        a.recycle();
+
         lineChart = findViewById(R.id.chartComponents);
         lineChart.setData(new LineData());
+        lineChart.setOnChartGestureListener(zoomGestureListener);
 
 
     }
 
 
-    // Data management
-
-    @Override
-    protected void doProcessDataSet(List<ChartDataSet> dataSetsRaw) {
-        // TODO process data sets for bar chart
-        // reduce, aggregate, etc...
-
-        List<ChartDataSet> dataSetsProcessed = new ArrayList<>();
+    // Processing pipeline
 
-        for (ChartDataSet dataSetRaw : dataSetsRaw) {
-            ChartDataSet dataSetProcessed = dataSetRaw;
-            //dataSetProcessed = doProcessDataSet_addZeroAsMissingValues(this, dataSetProcessed, EMPTY_RANGE_SCALE, EMPTY_RANGE_DELTA_MS);
-            dataSetProcessed = doProcessDataSet_addZeroAsMissingValues(this, dataSetProcessed, MAX_EMPTY_RANGE_MS, EMPTY_RANGE_DELTA_MS);
-            dataSetProcessed = doProcessDataSet_alterDataSet_MaxDP(dataSetProcessed, MAX_DISPLAYED_ENTRIES);
-            dataSetProcessed = doProcessDataSet_scaleDataSet(dataSetProcessed, SCALE_FACTOR);
+    /**
+     * @return the stages applied to the data sets, before displaying them.
+     */
+    public SVChartPipeline getPipeline() {
+        return pipeline;
+    }
 
-            dataSetsProcessed.add(dataSetProcessed);
-        }
+    /**
+     * Set the stages applied to the data sets, before displaying them. It's
+     * applied from the next data fetching.
+     *
+     * @param pipeline the processing pipeline.
+     */
+    public void setPipeline(SVChartPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
 
-        onDataProcessed(dataSetsProcessed);
+    /**
+     * @return the strategy used to reduce the data sets to the max displayed entries.
+     */
+    public SVDownsampler getDownsampler() {
+        return pipeline.getDownsampler();
     }
 
-    private static ChartDataSet doProcessDataSet_alterDataSet_MaxDP(ChartDataSet dataSetsRaw, int maxDataPointCount) {
-        if (dataSetsRaw.data.isEmpty() || dataSetsRaw.data.size() < maxDataPointCount)
-            return dataSetsRaw;
+    /**
+     * Set the strategy used to reduce the data sets to the max displayed
+     * entries, it's applied from the next data fetching.
+     *
+     * @param downsampler the downsampling strategy.
+     */
+    public void setDownsampler(SVDownsampler downsampler) {
+        this.pipeline = pipeline.withDownsampler(downsampler);
+    }
 
-        else
-            // TODO improve: make sampled DPs heterogeneous distributed on X axis
-            // (the same DP count for each section of the X axis)
-            return doProcessDataSet___samplingDataSet(dataSetsRaw, maxDataPointCount);
+    private static SVDownsampler toDownsampler(int downsampling) {
+        switch (downsampling) {
+            case DOWNSAMPLING_LINEAR:
+                return SVDownsampler.LINEAR;
+            case DOWNSAMPLING_MIN_MAX:
+                return SVDownsampler.MIN_MAX;
+            case DOWNSAMPLING_AVERAGE:
+                return SVDownsampler.AVERAGE;
+            case DOWNSAMPLING_LTTB:
+            default:
+                return SVDownsampler.LTTB;
+        }
     }
 
-    private static ChartDataSet doProcessDataSet_alterDataSet_FixedDPCount(ChartDataSet dataSetRaw, int fixedDataPointCount) {
-        if (dataSetRaw.data.isEmpty() || dataSetRaw.data.size() == fixedDataPointCount)
-            return dataSetRaw;
 
-        else if (dataSetRaw.data.size() < fixedDataPointCount)
-            return doProcessDataSet___interpolateDataSet(dataSetRaw, fixedDataPointCount);
+    // Data management
 
-        else
-            return doProcessDataSet___samplingDataSet(dataSetRaw, fixedDataPointCount);
-    }
+    @Override
+    protected void doProcessDataSet(int generation, List<ChartDataSet> dataSetsRaw) {
+        // TODO process data sets for bar chart
+        // reduce, aggregate, etc...
 
-    private static ChartDataSet doProcessDataSet___samplingDataSet(ChartDataSet dataSetRaw, int maxDataPointCount) {
-        // TODO improve: update sampling strategy calculating the avg value for each section of the X axis
-        // Linear sampling
-        Map<Comparable<?>, Number> sampledDataSet = new LinkedHashMap<>();
-
-        // Sampling
-        float step = (float)dataSetRaw.data.size() / maxDataPointCount;
-        for (int i = 0; i < maxDataPointCount; i++) {
-            int index = Math.round(i * step);
-            Map.Entry<?, ? extends Number> entry = (Map.Entry<?, ? extends Number>) dataSetRaw.data.entrySet().toArray()[index];
-            sampledDataSet.put((Comparable)entry.getKey(), (Number)entry.getValue());
-        }
+        List<ChartDataSet> dataSetsProcessed = new ArrayList<>();
+        Map<ChartComponentInfo, SVTimeSeriesPyramid> pyramids = new HashMap<>();
+        SVChartPipeline pipeline = this.pipeline;
+        long fromMs = SVChartViewTSFiltered.calculateFromDate(getFilterTSPeriod(), getFilterTSQty(), getFilterTSOffset()).getTime();
+        long toMs = SVChartViewTSFiltered.calculateToDate(getFilterTSPeriod(), getFilterTSQty(), getFilterTSOffset()).getTime();
 
-        return new ChartDataSet(dataSetRaw.componentInfo, sampledDataSet);
-    }
+        for (ChartDataSet dataSetRaw : dataSetsRaw) {
+            if (isSuperseded(generation)) return;
 
-    private static ChartDataSet doProcessDataSet___interpolateDataSet(ChartDataSet dataSetRaw, int minDataPointCount) {
-        if (dataSetRaw.data.isEmpty())
-            return dataSetRaw;
+            final ChartComponentInfo componentInfo = dataSetRaw.componentInfo;
+            SVChartPipeline.Result processed = pipeline.process(dataSetRaw.data, fromMs, toMs, dataSetRaw.samplingPeriodMs, dataSetRaw.getMaxGapMs(), componentInfo.gapPolicy, new SVChartPipeline.StepListener() {
+                @Override
+                public void onStep(String step, SVTimeSeries in, SVTimeSeries out, long startNs) {
+                    recordStep(generation, step, dataSetRaw.withData(in), dataSetRaw.withData(out), startNs);
+                }
+            });
 
-        Object firstKey = dataSetRaw.data.keySet().iterator().next();
-        Object firstValue = dataSetRaw.data.values().iterator().next();
+            // Full resolution data set, used when the chart is zoomed
+            long stepNs = System.nanoTime();
+            SVTimeSeriesPyramid pyramid = new SVTimeSeriesPyramid(processed.full);
+            pyramids.put(componentInfo, pyramid);
+            recordStep(generation, "pyramid", componentInfo, processed.full.size(), pyramid.getLevelsCount(), stepNs);
 
-        if (firstKey instanceof Date)
-            return doProcessDataSet___interpolateDataSet_Date(dataSetRaw, minDataPointCount);
+            dataSetsProcessed.add(processed.displayed == dataSetRaw.data ? dataSetRaw : dataSetRaw.withData(processed.displayed));
+        }
 
-        throw new IllegalArgumentException("Unsupported key types: " + firstKey.getClass().getSimpleName() + " / " + firstValue.getClass().getSimpleName());
+        this.pyramids = pyramids;
+        onDataProcessed(generation, dataSetsProcessed);
     }
 
-    private static ChartDataSet doProcessDataSet___interpolateDataSet_Date(ChartDataSet dataSetRaw, int minDataPointCount) {
-        // Linear interpolation on Dates
-        Map<Date, Number> interpolatedDataSet = new LinkedHashMap<>();
+    // Zoom and pan
+    //
+    // On zoom and pan, the displayed entries are replaced with the visible
+    // portion of the full resolution data sets, aggregated by their pyramids
+    // to fit the max displayed entries. When the chart is fully zoomed out,
+    // the processed data sets are displayed again.
 
-        List<Date> keys = new ArrayList<>(((Map<Date,?>)dataSetRaw.data).keySet());
-        List<Number> values = new ArrayList<>(dataSetRaw.data.values());
+    private static final long ZOOM_UPDATE_MIN_MS = 100;
+    private volatile Map<ChartComponentInfo, SVTimeSeriesPyramid> pyramids = new HashMap<>();
+    private long doZoom_lastUpdateMs = 0;
 
-        long totalInterval = keys.get(keys.size() - 1).getTime() - keys.get(0).getTime();
+    private final OnChartGestureListener zoomGestureListener = new OnChartGestureListener() {
 
-        for (int i = 0; i < minDataPointCount; i++) {
-            long interpolatedTime = keys.get(0).getTime() + i * totalInterval / (minDataPointCount - 1);
-            Date interpolatedDate = new Date(interpolatedTime);
+        @Override
+        public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+        }
 
-            int index = 0;
-            while (index < keys.size() - 1 && keys.get(index + 1).getTime() < interpolatedTime) {
-                index++;
-            }
+        @Override
+        public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            doZoom_requestUpdate(true);
+        }
 
-            double ratio = (double) (interpolatedTime - keys.get(index).getTime()) / (keys.get(index + 1).getTime() - keys.get(index).getTime());
+        @Override
+        public void onChartLongPressed(MotionEvent me) {
+        }
+
+        @Override
+        public void onChartDoubleTapped(MotionEvent me) {
+            doZoom_requestUpdate(true);
+        }
 
-            double interpolatedValue = values.get(index).doubleValue() * (1 - ratio) +
-                    values.get(index + 1).doubleValue() * ratio;
+        @Override
+        public void onChartSingleTapped(MotionEvent me) {
+        }
 
-            interpolatedDataSet.put(interpolatedDate, interpolatedValue);
+        @Override
+        public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
         }
 
-        return new ChartDataSet(dataSetRaw.componentInfo, interpolatedDataSet);
-    }
+        @Override
+        public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+            doZoom_requestUpdate(false);
+        }
 
-    private static ChartDataSet doProcessDataSet_scaleDataSet(ChartDataSet dataSetRaw, float scaleFactor) {
-        Map<Comparable<?>, Number> scaledDataSet = new LinkedHashMap<>();
-        for (Map.Entry<? extends Comparable<?>, ? extends Number> entry : dataSetRaw.data.entrySet()) {
-            Number scaledValue = entry.getValue().doubleValue() * scaleFactor;
-            scaledDataSet.put(entry.getKey(), scaledValue);
+        @Override
+        public void onChartTranslate(MotionEvent me, float dX, float dY) {
+            doZoom_requestUpdate(false);
         }
-        return new ChartDataSet(dataSetRaw.componentInfo, scaledDataSet);
-    }
+
+    };
 
     /**
-     * Add zero values to the data set where the time range between two
-     * consecutive data points is too big.
-     * <p>
-     * This method calls the {@link #doProcessDataSet_addZeroAsMissingValues(SVChartViewTSFiltered, ChartDataSet, long, long)}
-     * with the maximum empty range (`maxEmptyRangeMS`) calculated as the product
-     * of the period duration and the quantity of periods divided by `emptyRangeScale`.
+     * Request to update the displayed entries with the chart's visible range,
+     * read after the current gesture was applied to the chart.
      *
-     * @param chart the chart
-     * @param dataSetRaw the data set
-     * @param emptyRangeScale the scale to determinate the maximum time range
-     *                        between two consecutive data points
-     * @param deltaRangeMS the time range to add a zero value, if 0 or less,
-     *                     `emptyRangeScale` is used
-     * @return the data set with zero values added
+     * @param force false to skip the update if the previous one was performed
+     *              less than {@link #ZOOM_UPDATE_MIN_MS} ago.
      */
-    private static ChartDataSet doProcessDataSet_addZeroAsMissingValues(SVChartViewTSFiltered chart, ChartDataSet dataSetRaw, float emptyRangeScale, long deltaRangeMS) {
-        int period = chart.getFilterTSPeriod();
-        int qty = chart.getFilterTSQty();
-        long maxEmptyRangeMS = (long) (SVChartViewTSFiltered.periodDurationMS(period) * qty / emptyRangeScale);
-        return doProcessDataSet_addZeroAsMissingValues(chart, dataSetRaw, maxEmptyRangeMS, deltaRangeMS);
+    private void doZoom_requestUpdate(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - doZoom_lastUpdateMs < ZOOM_UPDATE_MIN_MS)
+            return;
+        doZoom_lastUpdateMs = now;
+
+        lineChart.post(new Runnable() {
+            @Override
+            public void run() {
+                Date refFromDate = getFilterTSFromDate();
+                if (refFromDate == null || isFetching())
+                    return;
+
+                long fromMs = MPEntry2MapEntry_MPFloat2Date(refFromDate, getFilterTSPeriod(), getFilterTSQty(), lineChart.getLowestVisibleX()).getTime();
+                long toMs = MPEntry2MapEntry_MPFloat2Date(refFromDate, getFilterTSPeriod(), getFilterTSQty(), lineChart.getHighestVisibleX()).getTime();
+                boolean fullyZoomedOut = lineChart.isFullyZoomedOut();
+                int generation = getGeneration();
+                runOnProcessingThread(generation, new Runnable() {
+                    @Override
+                    public void run() {
+                        doZoom_update(generation, fromMs, toMs, fullyZoomedOut);
+                    }
+                });
+            }
+        });
     }
 
     /**
-     * Add zero values to the data set where the time range between two
-     * consecutive data points is too big.
-     * <p>
-     * The time range between two consecutive data points is considered too big
-     * if it is greater than the maximum empty range.
-     * <p>
-     * For each data point, if the time range between the previous/next data
-     * points is too big, a zero value is added at `deltaRangeMS` before/after
-     * the current data point. If the previous/next data point is the first/last
-     * data point, a zero value is added also at the beginning/end of the data
-     * set.
-     *
-     * @param chart the chart
-     * @param dataSetRaw the data set
-     * @param maxEmptyRangeMS the maximum time range between two consecutive
-     *                        data points, the best value is 1.5 times the
-     *                        sampling period
-     * @param deltaRangeMS the time range to add a zero value, if 0 or less,
-     *                     `maxEmptyRangeMS` is used
-     * @return the data set with zero values added
+     * Query the pyramids for the visible range, then replace the displayed
+     * entries. It runs on the processing thread.
      */
-    private static ChartDataSet doProcessDataSet_addZeroAsMissingValues(SVChartViewTSFiltered chart, ChartDataSet dataSetRaw, long maxEmptyRangeMS, long deltaRangeMS) {
-        Map<Comparable<?>, Number> zeroFilledDataSet = new LinkedHashMap<>();
-        List<Comparable<Object>> keys = (List<Comparable<Object>>)new ArrayList<>(dataSetRaw.data.keySet());
-        Collections.sort(keys);
-
-        Date fromDate = SVChartViewTSFiltered.calculateFromDate(chart.getFilterTSPeriod(), chart.getFilterTSQty(), chart.getFilterTSOffset());
-        Date toDate = SVChartViewTSFiltered.calculateToDate(chart.getFilterTSPeriod(), chart.getFilterTSQty(), chart.getFilterTSOffset());
-
-        if (deltaRangeMS <= 0)
-            deltaRangeMS = maxEmptyRangeMS;
-
-        if (keys.isEmpty()) {
-            // Set the first and last date
-            zeroFilledDataSet.put(fromDate, 0);
-            zeroFilledDataSet.put(toDate, 0);
-        } else {
-            Date prevDate = fromDate;
-            Date nextDate = toDate;
-            for (int i = 0; i < keys.size(); i++) {
-                // Get the previous and next date
-                if (i > 0) {
-                    Comparable<?> prevDateC = keys.get(i - 1);
-                    prevDate = (Date) prevDateC;
-                }
-                if (i < keys.size() - 1) {
-                    Comparable<?> nextDateC = keys.get(i + 1);
-                    nextDate = (Date) nextDateC;
-                } else nextDate = toDate;
-
-                // Get the current date
-                Comparable<?> currDateC = keys.get(i);
-                Date currDate = (Date) currDateC;
-
-                // If the current date is too far from the previous date, add a zero value
-                if (currDate.getTime() - prevDate.getTime() > maxEmptyRangeMS) {
-                    if (prevDate.compareTo(fromDate) == 0)  // assert i==0
-                        zeroFilledDataSet.put(prevDate, 0);
-                    Date currDatePrevZero = new Date(currDate.getTime() - deltaRangeMS);
-                    zeroFilledDataSet.put(currDatePrevZero, 0);
-                }
-
-                zeroFilledDataSet.put(currDate, dataSetRaw.data.get(currDate));
-
-                if (nextDate.getTime() - currDate.getTime() > maxEmptyRangeMS) {
-                    Date currDateNextZero = new Date(currDate.getTime() + deltaRangeMS);
-                    zeroFilledDataSet.put(currDateNextZero, 0);
-
-                    if (nextDate.compareTo(toDate) == 0)    // assert i==keys.size()-1
-                        zeroFilledDataSet.put(nextDate, 0);
-                  }
+    private void doZoom_update(int generation, long fromMs, long toMs, boolean fullyZoomedOut) {
+        Map<ChartComponentInfo, SVTimeSeriesPyramid> pyramids = this.pyramids;
+        int aggregation = pipeline.getDownsampler() == SVDownsampler.AVERAGE
+                ? SVTimeSeriesPyramid.AGGREGATION_AVERAGE
+                : SVTimeSeriesPyramid.AGGREGATION_MIN_MAX;
+
+        List<ChartDataSet> dataSetsProcessed = getDataSetsProcessed();
+        List<List<Entry>> mpEntriesList = new ArrayList<>(dataSetsProcessed.size());
+        for (ChartDataSet dataSet : dataSetsProcessed) {
+            SVTimeSeriesPyramid pyramid = pyramids.get(dataSet.componentInfo);
+            SVTimeSeries visible = dataSet.data;
+            if (!fullyZoomedOut && pyramid != null) {
+                visible = pyramid.query(fromMs, toMs, pipeline.getMaxDataPoints(), aggregation);
+                doZoom_keepExtent(visible, pyramid.getSeries());
             }
+            mpEntriesList.add(TSSeries2MPEntries(visible, getFilterTSFromDate(), getFilterTSPeriod(), getFilterTSQty()));
         }
 
-        return new ChartDataSet(dataSetRaw.componentInfo, zeroFilledDataSet);
+        runOnUiThread(generation, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < dataSetsProcessed.size(); i++) {
+                    LineDataSet lineDataSet = (LineDataSet) lineChart.getLineData().getDataSetByLabel(dataSetsProcessed.get(i).componentInfo.label, false);
+                    if (lineDataSet != null)
+                        lineDataSet.setValues(mpEntriesList.get(i));
+                }
+                lineChart.getLineData().notifyDataChanged();
+                lineChart.notifyDataSetChanged();
+                lineChart.invalidate();
+            }
+        });
+    }
+
+    /**
+     * Add the first and the last samples of the full series to the visible
+     * ones, so the chart's X range doesn't change when entries are replaced.
+     */
+    private static void doZoom_keepExtent(SVTimeSeries visible, SVTimeSeries full) {
+        if (full.isEmpty())
+            return;
+        if (visible.isEmpty() || visible.getFirstTimestamp() > full.getFirstTimestamp())
+            visible.put(full.getFirstTimestamp(), full.getValue(0));
+        if (visible.getLastTimestamp() < full.getLastTimestamp())
+            visible.put(full.getLastTimestamp(), full.getValue(full.size() - 1));
     }
 
     @Override
@@ -408,9 +435,20 @@ public class SVChartLineView
         }
     }
 
+    /**
+     * Formats the X axis' values as dates, depending on the current time
+     * window.
+     * <p>
+     * MPAndroidChart requests the labels on every frame, so they are cached
+     * and, when the window changes, the axis' ticks are precomputed. Like all
+     * chart's formatters, it's used only by the UI thread, so the caches
+     * (and their date formats) are not shared with other threads.
+     */
     private static class XAxisLineFormatter extends ValueFormatter {
 
         private final SVChartViewTSFiltered chart;
+        private final SVAxisLabelCache axisLabels = new SVAxisLabelCache();
+        private final SVAxisLabelCache detailsLabels = new SVAxisLabelCache();
 
         public XAxisLineFormatter(SVChartViewTSFiltered chart) {
             this.chart = chart;
@@ -418,34 +456,50 @@ public class SVChartLineView
 
         @Override
         public String getFormattedValue(float value) {
-            SimpleDateFormat sdf = SVChartViewTSFiltered.periodFormatterDetails(chart.getFilterTSPeriod(), chart.getFilterTSQty());
-            Date date = MPEntry2MapEntry_MPFloat2Date(chart.getFilterTSFromDate(), chart.getFilterTSPeriod(), chart.getFilterTSQty(), value);
-            return sdf.format(date);
+            int period = chart.getFilterTSPeriod();
+            int qty = chart.getFilterTSQty();
+            SimpleDateFormat sdf = SVChartViewTSFiltered.periodFormatterDetails(period, qty);
+            detailsLabels.setWindow(sdf.toPattern(), chart.getFilterTSFromDate().getTime(), SVChartViewTSFiltered.periodDurationMS(period) * qty);
+            return detailsLabels.getLabel(value);
         }
 
         @Override
         public String getAxisLabel(float value, AxisBase axis) {
-            SimpleDateFormat sdf = SVChartViewTSFiltered.periodFormatterAxis(chart.getFilterTSPeriod(), chart.getFilterTSQty());
-            Date date = MPEntry2MapEntry_MPFloat2Date(chart.getFilterTSFromDate(), chart.getFilterTSPeriod(), chart.getFilterTSQty(), value);
-            return sdf.format(date);
+            int period = chart.getFilterTSPeriod();
+            int qty = chart.getFilterTSQty();
+            SimpleDateFormat sdf = SVChartViewTSFiltered.periodFormatterAxis(period, qty);
+            if (axisLabels.setWindow(sdf.toPattern(), chart.getFilterTSFromDate().getTime(), SVChartViewTSFiltered.periodDurationMS(period) * qty))
+                axisLabels.precompute(axis.mEntries, axis.mEntryCount);
+            return axisLabels.getLabel(value);
         }
 
     }
 
+    /**
+     * Formats the Y axis' values, reusing the same number formats instead of
+     * parsing the format string on each call.
+     */
     private static class YAxisLineFormatter extends ValueFormatter {
 
+        private final DecimalFormat valueFormat = newDecimalFormat("0.00");
+        private final DecimalFormat axisFormat = newDecimalFormat("0");
+
         public YAxisLineFormatter() {}
 
-        @SuppressLint("DefaultLocale")
         @Override
         public String getFormattedValue(float value) {
-            return String.format("%.2f", value);
+            return valueFormat.format(value);
         }
 
-        @SuppressLint("DefaultLocale")
         @Override
         public String getAxisLabel(float value, AxisBase axis) {
-            return String.format("%.0f", value);
+            return axisFormat.format(value);
+        }
+
+        private static DecimalFormat newDecimalFormat(String pattern) {
+            DecimalFormat format = new DecimalFormat(pattern);
+            format.setRoundingMode(RoundingMode.HALF_UP);    // Same rounding of String.format()
+            return format;
         }
 
     }
@@ -2,6 +2,11 @@ package com.robypomper.smartvan.smart_van.android.components;
 
 import com.github.mikephil.charting.components.YAxis;
 import com.robypomper.josp.jsl.objs.structure.pillars.JSLRangeState;
+import com.robypomper.smartvan.smart_van.android.commons.SVChartMetrics;
+import com.robypomper.smartvan.smart_van.android.commons.SVGapPolicy;
+import com.robypomper.smartvan.smart_van.android.commons.SVHistoryCache;
+import com.robypomper.smartvan.smart_van.android.commons.SVRollingHistogram;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeries;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -25,22 +30,40 @@ public interface SVChartView {
         final String unit;
         final int color;
         final YAxis.AxisDependency axisDependency;
+        final SVGapPolicy gapPolicy;
 
 
         // Constructors
 
-        ChartComponentInfo(JSLRangeState jslRangeComponent, String label, String unit, int color, YAxis.AxisDependency axisDependency) {
+        ChartComponentInfo(JSLRangeState jslRangeComponent, String label, String unit, int color, YAxis.AxisDependency axisDependency, SVGapPolicy gapPolicy) {
             this.jslRangeComponent = jslRangeComponent;
             this.label = label;
             this.unit = unit;
             this.color = color;
             this.axisDependency = axisDependency;
+            this.gapPolicy = gapPolicy;
         }
 
     }
 
+    /**
+     * Same as {@link #addComponent(JSLRangeState, String, String, int, YAxis.AxisDependency, SVGapPolicy)},
+     * with the {@link SVGapPolicy#ZERO} gap policy.
+     */
     void addComponent(JSLRangeState comp, String compLabel, String compUnit, int compColor, YAxis.AxisDependency axisDependency);
 
+    /**
+     * Add a component to the chart.
+     *
+     * @param comp           the component to display.
+     * @param compLabel      the component's label, it must be unique within the chart.
+     * @param compUnit       the component's unit.
+     * @param compColor      the component's color.
+     * @param axisDependency the Y axis used to display the component.
+     * @param gapPolicy      the policy used to fill the gaps of the component's data.
+     */
+    void addComponent(JSLRangeState comp, String compLabel, String compUnit, int compColor, YAxis.AxisDependency axisDependency, SVGapPolicy gapPolicy);
+
     void removeComponent(JSLRangeState comp);
 
 
@@ -51,13 +74,48 @@ public interface SVChartView {
         // Internal vars
 
         final ChartComponentInfo componentInfo;
-        final Map<? extends Comparable<?>, ? extends Number> data;
+        final SVTimeSeries data;
+        /**
+         * The time between consecutive samples: the component's sampling
+         * period, or the buckets' duration if the data are aggregated.
+         */
+        final long samplingPeriodMs;
+        /**
+         * True if the data are aggregated into buckets, so they can't be
+         * mixed with the component's raw samples.
+         */
+        final boolean bucketed;
 
         // Constructors
 
-        ChartDataSet(ChartComponentInfo componentInfo, Map<? extends Comparable<?>, ? extends Number> data) {
+        ChartDataSet(ChartComponentInfo componentInfo, SVTimeSeries data, long samplingPeriodMs) {
+            this(componentInfo, data, samplingPeriodMs, false);
+        }
+
+        ChartDataSet(ChartComponentInfo componentInfo, SVTimeSeries data, long samplingPeriodMs, boolean bucketed) {
             this.componentInfo = componentInfo;
             this.data = data;
+            this.samplingPeriodMs = samplingPeriodMs;
+            this.bucketed = bucketed;
+        }
+
+        /**
+         * @return a data set with given data and the same sampling of the current one.
+         */
+        ChartDataSet withData(SVTimeSeries data) {
+            return new ChartDataSet(componentInfo, data, samplingPeriodMs, bucketed);
+        }
+
+        /**
+         * Aggregated data contain the min and the max samples of each bucket,
+         * so two samples of consecutive buckets can be up to two buckets
+         * apart.
+         *
+         * @return the max time range between two consecutive samples, over
+         * which there is a gap.
+         */
+        long getMaxGapMs() {
+            return bucketed ? 2 * samplingPeriodMs : SVGapPolicy.Engine.gapThresholdMs(samplingPeriodMs);
         }
 
     }
@@ -81,10 +139,28 @@ public interface SVChartView {
 
         void onFetchedTerminated();
 
+        /**
+         * Called when a fetching run received all his data sets, with the
+         * current metrics of the history cache shared by the charts.
+         *
+         * @param stats the history cache's metrics.
+         */
+        void onHistoryCacheStats(SVHistoryCache.Stats stats);
+
+        /**
+         * Called when a fetching run displayed his data, with the run's
+         * timings and sizes.
+         *
+         * @param metrics the run's metrics.
+         */
+        void onRunMetrics(SVChartMetrics metrics);
+
     }
 
     void addDataListener(DataListener listener);
 
     void removeDataListener(DataListener listener);
 
+    SVRollingHistogram getStageHistogram(int stage);
+
 }
@@ -1,7 +1,9 @@
 package com.robypomper.smartvan.smart_van.android.components;
 
 import android.annotation.SuppressLint;
+import android.app.Activity;
 import android.content.Context;
+import android.os.Process;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -12,9 +14,16 @@ import androidx.annotation.Nullable;
 
 import com.github.mikephil.charting.components.YAxis;
 import com.robypomper.josp.jsl.objs.structure.pillars.JSLRangeState;
+import com.robypomper.smartvan.smart_van.android.commons.SVChartMetrics;
+import com.robypomper.smartvan.smart_van.android.commons.SVGapPolicy;
+import com.robypomper.smartvan.smart_van.android.commons.SVHistoryCache;
+import com.robypomper.smartvan.smart_van.android.commons.SVRollingHistogram;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class SVChartViewAbs
         extends LinearLayout
@@ -22,7 +31,24 @@ public abstract class SVChartViewAbs
 
     // Internal vars
 
-    private boolean isFetching = false;
+    /**
+     * Executor shared by all charts, it processes the fetched data sets and
+     * builds the charts' entries out of the UI thread.
+     */
+    private static final ExecutorService processingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "SV_CHART_PROCESSING");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean isFetching = false;
+    /**
+     * Generation of the current fetching run, each {@link #fetchData()} call
+     * starts a new generation and supersedes the previous one.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
 
 
     // Constructors
@@ -46,10 +72,15 @@ public abstract class SVChartViewAbs
 
     @Override
     public void addComponent(JSLRangeState comp, String compLabel, String compUnit, int compColor, YAxis.AxisDependency axisDependency) {
+        addComponent(comp, compLabel, compUnit, compColor, axisDependency, SVGapPolicy.ZERO);
+    }
+
+    @Override
+    public void addComponent(JSLRangeState comp, String compLabel, String compUnit, int compColor, YAxis.AxisDependency axisDependency, SVGapPolicy gapPolicy) {
         if (findComponentInfo(comp) != null)
             removeComponent(comp);
 
-        chartComponents.add(new ChartComponentInfo(comp, compLabel, compUnit, compColor, axisDependency));
+        chartComponents.add(new ChartComponentInfo(comp, compLabel, compUnit, compColor, axisDependency, gapPolicy));
     }
 
     @Override
@@ -80,35 +111,51 @@ public abstract class SVChartViewAbs
 
     // Data management
 
-    List<ChartDataSet> dataSetsRaw = new ArrayList<>();
-    List<ChartDataSet> dataSetsProcessed = new ArrayList<>();
-    List<ChartDataSet> dataSetsDisplayed = new ArrayList<>();
+    volatile List<ChartDataSet> dataSetsRaw = new ArrayList<>();
+    volatile List<ChartDataSet> dataSetsProcessed = new ArrayList<>();
+    volatile List<ChartDataSet> dataSetsDisplayed = new ArrayList<>();
 
     @Override
     public boolean isFetching() {
         return isFetching;
     }
 
+    /**
+     * Start a new fetching run, if another run is in progress, it's
+     * superseded and his remaining work is discarded.
+     */
     @Override
     public void fetchData() {
+        int fetchGeneration = generation.incrementAndGet();
         if (isFetching)
-            return;
+            Log.d("SVChartViewAbs", String.format("fetchData (#%d) supersedes the running fetching", fetchGeneration));
         isFetching = true;
+        metrics = new SVChartMetrics(fetchGeneration);
 
         clearData(false);
         notifyFetchStartedListeners();
-        doFetching();
+        doFetching(fetchGeneration);
     }
 
+    /**
+     * Clear the chart, if a fetching run is in progress, it's superseded.
+     */
     @Override
     public void clearData() {
+        generation.incrementAndGet();
         clearData(true);
+
+        if (isFetching) {
+            isFetching = false;
+            notifyFetchedTerminatedListeners();
+        }
     }
 
     private void clearData(boolean clearUI) {
-        dataSetsRaw.clear();
-        dataSetsProcessed.clear();
-        dataSetsDisplayed.clear();
+        // Superseded runs could still read the previous lists
+        dataSetsRaw = new ArrayList<>();
+        dataSetsProcessed = new ArrayList<>();
+        dataSetsDisplayed = new ArrayList<>();
         if (clearUI)
             doCleanChart();
     }
@@ -117,18 +164,84 @@ public abstract class SVChartViewAbs
 
 
     // Data fetching and processing
+    //
+    // Each fetching run is identified by his generation, that must be passed
+    // along all the stages. Fetching runs on the network threads, processing
+    // and entries building on the processing executor, then only the final
+    // data sets swap runs on the UI thread. When a newer run starts, all
+    // stages of the superseded one are skipped.
+
+    /**
+     * @param generation the fetching run's generation.
+     * @return true if a newer fetching run was started, or the chart was
+     * cleared, after given run.
+     */
+    protected boolean isSuperseded(int generation) {
+        return generation != this.generation.get();
+    }
+
+    /**
+     * @return the generation of the current (or last) fetching run.
+     */
+    protected int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Execute given runnable on the processing executor, unless the fetching
+     * run was superseded in the meanwhile.
+     *
+     * @param generation the fetching run's generation.
+     * @param runnable   the work to execute.
+     */
+    protected void runOnProcessingThread(int generation, Runnable runnable) {
+        processingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (isSuperseded(generation)) return;
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * Execute given runnable on the UI thread, unless the fetching run was
+     * superseded in the meanwhile.
+     *
+     * @param generation the fetching run's generation.
+     * @param runnable   the work to execute.
+     */
+    protected void runOnUiThread(int generation, Runnable runnable) {
+        ((Activity) getContext()).runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (isSuperseded(generation)) return;
+                runnable.run();
+            }
+        });
+    }
+
+    protected abstract void doFetching(int generation);  // -> must call the onDataFetched method
 
-    protected abstract void doFetching();  // -> must call the onDataFetched method
+    protected void onDataFetched(int generation, List<ChartDataSet> dataSetsRaw) {
+        if (isSuperseded(generation)) return;
 
-    protected void onDataFetched(List<ChartDataSet> dataSetsRaw) {
         this.dataSetsRaw = dataSetsRaw;
         List<String> dataSetsList = new ArrayList<>();
         for (ChartDataSet dataSet : dataSetsRaw)
             dataSetsList.add(String.format("%s [%d]", dataSet.componentInfo.label, dataSet.data.size()));
         Log.d("SVChartViewAbs", String.format("onDataFetched (#%d): %s", dataSetsRaw.size(), String.join(", ", dataSetsList)));
 
+        SVChartMetrics runMetrics = getRunMetrics(generation);
+        if (runMetrics != null)
+            runMetrics.startStage(SVChartMetrics.STAGE_PROCESSING);
         notifyProcessingStartedListeners();
-        doProcessDataSet(dataSetsRaw);
+        runOnProcessingThread(generation, new Runnable() {
+            @Override
+            public void run() {
+                doProcessDataSet(generation, dataSetsRaw);
+            }
+        });
     }
 
     protected void onDataFetchedError(ChartComponentInfo componentInfo, Throwable error) {
@@ -136,23 +249,52 @@ public abstract class SVChartViewAbs
         Log.w("SVChartViewAbs", "onDataFetchedError: " + error.getMessage() + " for component " + componentInfo.label);
     }
 
-    protected abstract void doProcessDataSet(List<ChartDataSet> dataSetsRaw); // -> must call the onDataProcessed method
+    protected abstract void doProcessDataSet(int generation, List<ChartDataSet> dataSetsRaw); // on processing thread -> must call the onDataProcessed method
+
+    protected void onDataProcessed(int generation, List<ChartDataSet> dataSetsProcessed) {
+        if (isSuperseded(generation)) return;
 
-    protected void onDataProcessed(List<ChartDataSet> dataSetsProcessed) {
         this.dataSetsProcessed = dataSetsProcessed;
         List<String> dataSetsList = new ArrayList<>();
         for (ChartDataSet dataSet : dataSetsProcessed)
             dataSetsList.add(String.format("%s [%d]", dataSet.componentInfo.label, dataSet.data.size()));
         Log.d("SVChartViewAbs", String.format("onDataProcessed (#%d): %s", dataSetsProcessed.size(), String.join(", ", dataSetsList)));
 
-        doCleanChart();
-        notifyDisplayingStartedListeners();
-        doAddDataSetsToChart(dataSetsProcessed);
+        SVChartMetrics runMetrics = getRunMetrics(generation);
+        if (runMetrics != null)
+            runMetrics.startStage(SVChartMetrics.STAGE_DISPLAYING);
+        if (isFetching)
+            notifyDisplayingStartedListeners();
+        doAddDataSetsToChart(generation, dataSetsProcessed);
+    }
+
+    /**
+     * Replace the raw data sets with their updated copies, then process and
+     * display them again. Unlike a fetching run, data listeners are not
+     * notified.
+     * <p>
+     * Published raw data sets are read by other threads (e.g. the exports),
+     * so they must never be modified in place.
+     * <p>
+     * This method must be called on the processing thread, and it's ignored
+     * while fetching.
+     *
+     * @param generation  the generation of the fetching run that fetched the
+     *                    raw data sets.
+     * @param dataSetsRaw the updated raw data sets.
+     */
+    protected void onDataUpdated(int generation, List<ChartDataSet> dataSetsRaw) {
+        if (isSuperseded(generation) || isFetching) return;
+
+        this.dataSetsRaw = dataSetsRaw;
+        doProcessDataSet(generation, dataSetsRaw);
     }
 
-    protected abstract void doAddDataSetsToChart(List<ChartDataSet> dataSetsProcessed); // -> must call the onDataAddedToChart method
+    protected abstract void doAddDataSetsToChart(int generation, List<ChartDataSet> dataSetsProcessed); // on processing thread -> must clean the chart and call the onDataAddedToChart method on UI thread
+
+    protected void onDataAddedToChart(int generation, List<ChartDataSet> dataSetsDisplayed) {
+        if (isSuperseded(generation)) return;
 
-    protected void onDataAddedToChart(List<ChartDataSet> dataSetsDisplayed) {
         this.dataSetsDisplayed = dataSetsDisplayed;
         List<String> dataSetsList = new ArrayList<>();
         for (ChartDataSet dataSet : dataSetsDisplayed)
@@ -161,17 +303,93 @@ public abstract class SVChartViewAbs
     }
 
     @SuppressLint("DefaultLocale")
-    protected void onDoFetchAndProcessingCompleted() {
+    protected void onDoFetchAndProcessingCompleted(int generation) {
+        if (isSuperseded(generation)) return;
+        if (!isFetching) return;    // Raw data sets updated, see onDataUpdated()
+
         List<String> dataSetsList = new ArrayList<>();
         for (ChartDataSet dataSet : dataSetsDisplayed)
             dataSetsList.add(String.format("%s [%d]", dataSet.componentInfo.label, dataSet.data.size()));
         Log.i("SVChartViewAbs", String.format("onDoFetchAndProcessingCompleted (#%d): %s", dataSetsDisplayed.size(), String.join(", ", dataSetsList)));
+        SVChartMetrics runMetrics = getRunMetrics(generation);
         isFetching = false;
 
+        if (runMetrics != null) {
+            runMetrics.terminate();
+            for (int stage = 0; stage < SVChartMetrics.STAGES_COUNT; stage++)
+                stageHistograms[stage].record(runMetrics.getStageNs(stage));
+            Log.d("SVChartViewAbs", "Metrics " + runMetrics);
+            notifyRunMetricsListeners(runMetrics);
+        }
         notifyFetchedTerminatedListeners();
     }
 
 
+    // Metrics
+
+    private volatile SVChartMetrics metrics = null;
+    private final SVRollingHistogram[] stageHistograms = {
+            new SVRollingHistogram(), new SVRollingHistogram(), new SVRollingHistogram(), new SVRollingHistogram()
+    };
+
+    /**
+     * @param stage the stage, from {@link SVChartMetrics#STAGE_FETCH} to {@link SVChartMetrics#STAGE_TOTAL}.
+     * @return the durations (ns) of given stage, for the latest fetching runs.
+     */
+    @Override
+    public SVRollingHistogram getStageHistogram(int stage) {
+        return stageHistograms[stage];
+    }
+
+    /**
+     * @return the metrics of given fetching run, or null if it's not the
+     * current run or it's already completed (e.g. live updates).
+     */
+    protected SVChartMetrics getRunMetrics(int generation) {
+        SVChartMetrics runMetrics = metrics;
+        if (!isFetching || runMetrics == null || runMetrics.getGeneration() != generation)
+            return null;
+        return runMetrics;
+    }
+
+    /**
+     * Record the completion of a component's fetching, into the given run's
+     * metrics.
+     */
+    protected void recordComponentFetched(int generation, ChartComponentInfo componentInfo, int points) {
+        SVChartMetrics runMetrics = getRunMetrics(generation);
+        if (runMetrics != null)
+            runMetrics.addComponentFetched(componentInfo.label, points);
+    }
+
+    /**
+     * Record a processing step into the given run's metrics.
+     *
+     * @param generation the fetching run's generation.
+     * @param step       the step's name.
+     * @param in         the data set before the step.
+     * @param out        the data set after the step.
+     * @param startNs    the step's beginning, from {@link System#nanoTime()}.
+     * @return the data set after the step.
+     */
+    protected ChartDataSet recordStep(int generation, String step, ChartDataSet in, ChartDataSet out, long startNs) {
+        SVChartMetrics runMetrics = getRunMetrics(generation);
+        if (runMetrics != null)
+            runMetrics.addStep(in.componentInfo.label, step, in.data, out.data, startNs);
+        return out;
+    }
+
+    /**
+     * Same as {@link #recordStep(int, String, ChartDataSet, ChartDataSet, long)},
+     * for the steps that don't produce a data set.
+     */
+    protected void recordStep(int generation, String step, ChartComponentInfo componentInfo, int pointsIn, int pointsOut, long startNs) {
+        SVChartMetrics runMetrics = getRunMetrics(generation);
+        if (runMetrics != null)
+            runMetrics.addStep(componentInfo.label, step, pointsIn, pointsOut, startNs, SVChartMetrics.UNKNOWN_BYTES);
+    }
+
+
     // Data Listeners
 
     private final List<DataListener> dataListeners = new ArrayList<>();
@@ -204,6 +422,18 @@ public abstract class SVChartViewAbs
         }
     }
 
+    protected void notifyHistoryCacheStatsListeners(SVHistoryCache.Stats stats) {
+        for (DataListener listener : dataListeners) {
+            listener.onHistoryCacheStats(stats);
+        }
+    }
+
+    private void notifyRunMetricsListeners(SVChartMetrics runMetrics) {
+        for (DataListener listener : dataListeners) {
+            listener.onRunMetrics(runMetrics);
+        }
+    }
+
     private void notifyFetchedTerminatedListeners() {
         for (DataListener listener : dataListeners) {
             listener.onFetchedTerminated();
@@ -1,38 +1,57 @@
 package com.robypomper.smartvan.smart_van.android.components;
 
 import android.content.Context;
+import android.os.Process;
 import android.util.AttributeSet;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
-import com.robypomper.java.JavaThreads;
+import com.github.mikephil.charting.components.YAxis;
 import com.robypomper.josp.jcp.defs.base.internal.status.executable.Params20;
 import com.robypomper.josp.jsl.android.app.JSLApplication;
 import com.robypomper.josp.jsl.android.service.JSLService;
 import com.robypomper.josp.jsl.objs.JSLRemoteObject;
-import com.robypomper.josp.jsl.objs.history.HistoryCompStatus;
-import com.robypomper.josp.jsl.objs.remote.ObjStruct;
 import com.robypomper.josp.jsl.objs.structure.JSLComponent;
 import com.robypomper.josp.jsl.objs.structure.pillars.JSLRangeState;
-import com.robypomper.josp.protocol.HistoryLimits;
 import com.robypomper.josp.protocol.JOSPHistory;
+import com.robypomper.smartvan.smart_van.android.app.SVComponentDataHub;
+import com.robypomper.smartvan.smart_van.android.commons.SVBucketAggregator;
+import com.robypomper.smartvan.smart_van.android.commons.SVGapPolicy;
+import com.robypomper.smartvan.smart_van.android.commons.SVHistoryCache;
+import com.robypomper.smartvan.smart_van.android.commons.SVHistoryQueryPlanner;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeries;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeriesPyramid;
+import com.robypomper.smartvan.smart_van.android.storage.SVHistory;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class SVChartViewJSLAbs
         extends SVChartViewAbs
         implements SVChartView, SVChartViewTSFiltered {
 
 
+    // Constants
+
+    /**
+     * Sampling period of the charts' components, used to detect the data
+     * sets' gaps and to estimate the history size.
+     */
+    protected static final long SAMPLING_PERIOD_MS = 60 * 1000;
+
+
     // Internal vars
 
     private JSLApplication<? extends JSLService> jslApplication;
@@ -50,121 +69,450 @@ public abstract class SVChartViewJSLAbs
     }
 
 
-    // Data fetching and processing
+    // JSL Components management
+
+    @Override
+    public void addComponent(JSLRangeState comp, String compLabel, String compUnit, int compColor, YAxis.AxisDependency axisDependency, SVGapPolicy gapPolicy) {
+        super.addComponent(comp, compLabel, compUnit, compColor, axisDependency, gapPolicy);
+        SVComponentDataHub.get(comp).subscribe(comp, doLive_StateListener);
+    }
 
     @Override
-    protected void doFetching() {
-        doFetching_tmpData.clear();
-        doFetching_TimerTasks.clear();
+    public void removeComponent(JSLRangeState comp) {
+        SVComponentDataHub.get(comp).unsubscribe(comp, doLive_StateListener);
+        super.removeComponent(comp);
+    }
+
 
-        List<ChartComponentInfo> components = getComponents();
+    // Data fetching and processing
+
+    @Override
+    protected void doFetching(int generation) {
+        doPrefetch_cancel();
+        List<ChartComponentInfo> components = new ArrayList<>(getComponents());
         if (components.isEmpty())
             return;
 
         // Set history limits
-        HistoryLimits historyLimits = doFetching_getHistoryLimits();
+        Date fromDate = SVChartViewTSFiltered.calculateFromDate(filterTSPeriod, filterTSQty, filterTSOffset);
+        Date toDate = SVChartViewTSFiltered.calculateToDate(filterTSPeriod, filterTSQty, filterTSOffset);
+        setFilterTSFromDate(fromDate);
+        Log.d("SVChartViewJSLAbs", "Filtering from " + fromDate + " to " + toDate + " (offset " + filterTSOffset + " of " + filterTSQty + " partitions)");
+        SVHistory localHistory = doFetching_getLocalHistory();
+        SVHistoryQueryPlanner.Plan plan = SVHistoryQueryPlanner.plan(fromDate.getTime(), toDate.getTime(), filterTSPartitions, getWidth(), SAMPLING_PERIOD_MS);
+        Log.d("SVChartViewJSLAbs", "History query plan: " + plan);
+
+        // Replace the superseded run's aggregator, if any
+        FetchAggregator aggregator = new FetchAggregator(generation, components);
+        FetchAggregator supersededAggregator = doFetching_aggregator;
+        doFetching_aggregator = aggregator;
+        if (supersededAggregator != null)
+            supersededAggregator.cancel();
 
-        /*// Fetch data (SEQUENTIAL)
+        // Fetch data (PARALLEL)
         for (ChartComponentInfo chartComponentInfo : components) {
-            JSLComponent jslComp = chartComponentInfo.jslRangeComponent;
             jslApplication.runOnNetworkThread(new Runnable() {
                 @Override
                 public void run() {
-                    doFetching_startFetch(chartComponentInfo, jslComp, jslComp.getRemoteObject().getStruct(), historyLimits);
-                }
-            });
-        }//*/
+                    if (isSuperseded(generation)) return;
 
-        // Fetch data (PARALLEL)
-        jslApplication.runOnNetworkThread(new Runnable() {
-            @Override
-            public void run() {
-                // Fetch data
-                for (ChartComponentInfo chartComponentInfo : components) {
                     JSLComponent jslComp = chartComponentInfo.jslRangeComponent;
-                    doFetching_startFetch(chartComponentInfo, jslComp, jslComp.getRemoteObject().getStruct(), historyLimits);
-                    JavaThreads.softSleep(100);
+                    doFetching_startFetch(aggregator, chartComponentInfo, jslComp, localHistory, plan);
                 }
+            });
+        }
+    }
+
+    /**
+     * @return the local history of the current object, or null if no object
+     * is selected.
+     */
+    private SVHistory doFetching_getLocalHistory() {
+        SVStorage storage = SVStorageSingleton.getInstance();
+        if (storage == null || storage.getCurrentObjectId() == null)
+            return null;
+        return storage.getCurrentHistory();
+    }
+
+    /**
+     * Read the component's history from the history cache, then from the
+     * local history and, finally, request to the remote object only the
+     * sub-ranges not available locally.
+     * <p>
+     * When the cache covers the whole requested range, no request is sent to
+     * the remote object. Otherwise, the local history is used to fill the
+     * cache's missing sub-ranges, then a request is sent for each sub-range
+     * still missing. Received data are stored into the cache and the local
+     * history, then merged with the cached ones.
+     * Requests are sent through the object's {@link SVComponentDataHub}, so
+     * the same sub-range requested by more charts is fetched once.
+     * <p>
+     * When the plan is bucketed, the history is fetched by pages and
+     * aggregated into the plan's buckets, see {@link #doFetching_startBucketedFetch(FetchAggregator, ChartComponentInfo, JSLComponent, SVHistoryQueryPlanner.Plan)}.
+     */
+    private void doFetching_startFetch(FetchAggregator aggregator, ChartComponentInfo chartComponentInfo, JSLComponent jslComp, SVHistory localHistory, SVHistoryQueryPlanner.Plan plan) {
+        if (plan.isBucketed()) {
+            doFetching_startBucketedFetch(aggregator, chartComponentInfo, jslComp, plan);
+            return;
+        }
+
+        String objectId = jslComp.getRemoteObject().getId();
+        String compPath = jslComp.getPath().getString();
+        long fromMs = plan.getFromMs();
+        long toMs = plan.getToMs();
+        List<SVHistoryCache.Range> missing = historyCache.lookup(objectId, compPath, fromMs, toMs);
+        if (!missing.isEmpty() && localHistory != null) {
+            doFetching_loadLocalHistory(localHistory, objectId, compPath, missing);
+            missing = historyCache.getMissingRanges(objectId, compPath, fromMs, toMs);
+        }
+
+        SVTimeSeries cached = historyCache.query(objectId, compPath, fromMs, toMs);
+        if (missing.isEmpty()) {
+            aggregator.onFetched(new ChartDataSet(chartComponentInfo, cached, SAMPLING_PERIOD_MS));
+            return;
+        }
+
+        // Data newer than the request are not guaranteed to be already available on the remote object
+        long fetchToMs = System.currentTimeMillis();
+        ComponentFetch compFetch = new ComponentFetch(aggregator, chartComponentInfo, objectId, compPath, localHistory, cached, missing.size());
+        aggregator.startDeadline(chartComponentInfo);
+        for (SVHistoryCache.Range range : missing) {
+            try {
+                doFetching_requestHistory(jslComp, range, new ChartHistoryListener(compFetch, range.getFrom(), Math.min(range.getTo(), fetchToMs)));
+            } catch (JSLRemoteObject.ObjectNotConnected | JSLRemoteObject.MissingPermission e) {
+                aggregator.onFailed(chartComponentInfo, e);
+                return;
             }
-        });//*/
+        }
     }
 
-    private HistoryLimits doFetching_getHistoryLimits() {
-        Date fromDate = SVChartViewTSFiltered.calculateFromDate(filterTSPeriod, filterTSQty, filterTSOffset);
-        Date toDate = SVChartViewTSFiltered.calculateToDate(filterTSPeriod, filterTSQty, filterTSOffset);
+    /**
+     * Request the component's history within given range, through the
+     * object's {@link SVComponentDataHub}.
+     * <p>
+     * The range is extended to the sampling period's multiples, so the
+     * windows ending at "now" of different charts, computed at different
+     * times, result in the same request and they are shared by the hub.
+     */
+    private static void doFetching_requestHistory(JSLComponent jslComp, SVHistoryCache.Range range, SVComponentDataHub.HistoryListener listener) throws JSLRemoteObject.ObjectNotConnected, JSLRemoteObject.MissingPermission {
+        long fromMs = range.getFrom() / SAMPLING_PERIOD_MS * SAMPLING_PERIOD_MS;
+        long toMs = (range.getTo() + SAMPLING_PERIOD_MS - 1) / SAMPLING_PERIOD_MS * SAMPLING_PERIOD_MS;
+        SVComponentDataHub.get(jslComp).requestHistory(jslComp, new Date(fromMs), new Date(toMs), listener);
+    }
 
-        setFilterTSFromDate(fromDate);
-        Log.d("SVChartViewJSLAbs", "Filtering from " + fromDate + " to " + toDate + " (offset " + filterTSOffset + " of " + filterTSQty + " partitions)");
+    /**
+     * Fetch the component's history by pages, aggregating each page into the
+     * plan's buckets as soon as it's received.
+     * <p>
+     * If the history cache already covers the whole window, the cached data
+     * are aggregated and no request is sent to the remote object. Aggregated
+     * data are never stored into the history cache or the local history.
+     */
+    private void doFetching_startBucketedFetch(FetchAggregator aggregator, ChartComponentInfo chartComponentInfo, JSLComponent jslComp, SVHistoryQueryPlanner.Plan plan) {
+        String objectId = jslComp.getRemoteObject().getId();
+        String compPath = jslComp.getPath().getString();
+
+        if (historyCache.lookup(objectId, compPath, plan.getFromMs(), plan.getToMs()).isEmpty()) {
+            SVBucketAggregator buckets = plan.newAggregator();
+            buckets.addAll(historyCache.query(objectId, compPath, plan.getFromMs(), plan.getToMs()));
+            aggregator.onFetched(new ChartDataSet(chartComponentInfo, buckets.toSeries(SVTimeSeriesPyramid.AGGREGATION_MIN_MAX), plan.getBucketMs(), true));
+            return;
+        }
 
-        return new HistoryLimits(null, null, null, null,
-                fromDate, toDate,
-                null, null);
+        aggregator.startDeadline(chartComponentInfo);
+        new BucketedFetch(aggregator, chartComponentInfo, jslComp, plan).requestPage();
     }
 
-    private void doFetching_startFetch(ChartComponentInfo chartComponentInfo, JSLComponent jslComp, ObjStruct struct, HistoryLimits historyLimits) {
-        try {
-            struct.getComponentHistory(jslComp, historyLimits, new ChartHistoryListener(chartComponentInfo));
-        } catch (JSLRemoteObject.ObjectNotConnected | JSLRemoteObject.MissingPermission e) {
-            onDataFetchedError(chartComponentInfo, e);
+    /**
+     * Copy into the history cache the local history's data within the given
+     * missing sub-ranges, if covered by the local history.
+     */
+    private void doFetching_loadLocalHistory(SVHistory localHistory, String objectId, String compPath, List<SVHistoryCache.Range> missing) {
+        Date coveredFrom = localHistory.getCoveredFrom(compPath);
+        Date coveredTo = localHistory.getCoveredTo(compPath);
+        if (coveredFrom == null || coveredTo == null)
+            return;
+
+        for (SVHistoryCache.Range range : missing) {
+            long fromMs = Math.max(range.getFrom(), coveredFrom.getTime());
+            long toMs = Math.min(range.getTo(), coveredTo.getTime());
+            if (fromMs <= toMs)
+                historyCache.put(objectId, compPath, localHistory.query(compPath, new Date(fromMs), new Date(toMs)), fromMs, toMs);
         }
-        doFetching_startTimer(chartComponentInfo);
     }
 
     private final static long FETCHING_TIMEOUT_MS = 15 * 1000;
-    private final Timer timer = new Timer("TIMER_FOR_CHART_FETCHING");
-    private final Map<ChartComponentInfo, TimerTask> doFetching_TimerTasks = new HashMap<>();
+    /**
+     * Executor shared by all charts, it fails the components' fetching when
+     * their deadline expires and it schedules the live mode's frames.
+     */
+    private static final ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SV_CHART_SCHEDULER");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile FetchAggregator doFetching_aggregator = null;
+    /**
+     * History cache shared by all charts, so navigating back and forth in
+     * time does not fetch again the same data.
+     */
+    private static final SVHistoryCache historyCache = new SVHistoryCache();
+
+    /**
+     * Collects the data sets fetched in parallel by a fetching run.
+     * <p>
+     * Each component's data set completes once: when it's received, or when
+     * it fails (error or deadline expired). When all components completed,
+     * the received data sets are passed to the processing stage, sorted as
+     * the chart's components. So, failed components don't prevent the others
+     * to be displayed.
+     */
+    private final class FetchAggregator {
+        private final int generation;
+        private final List<ChartComponentInfo> components;
+        private final ChartDataSet[] dataSets;
+        private final boolean[] completed;
+        private final ScheduledFuture<?>[] deadlines;
+        private int pending;
+
+        private FetchAggregator(int generation, List<ChartComponentInfo> components) {
+            this.generation = generation;
+            this.components = components;
+            this.dataSets = new ChartDataSet[components.size()];
+            this.completed = new boolean[components.size()];
+            this.deadlines = new ScheduledFuture<?>[components.size()];
+            this.pending = components.size();
+        }
 
-    private void doFetching_startTimer(ChartComponentInfo chartComponentInfo) {
-        TimerTask task = new TimerTask() {
-            @Override
-            public void run() {
-                onDataFetchedError(chartComponentInfo, new TimeoutException("Timeout fetching dataset " + chartComponentInfo.label));
+        /**
+         * Start the component's deadline, or restart it if already started.
+         */
+        private synchronized void startDeadline(ChartComponentInfo chartComponentInfo) {
+            int index = components.indexOf(chartComponentInfo);
+            if (index < 0 || completed[index])
+                return;
+            if (deadlines[index] != null)
+                deadlines[index].cancel(false);
+
+            deadlines[index] = scheduledExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onFailed(chartComponentInfo, new TimeoutException("Timeout fetching dataset " + chartComponentInfo.label));
+                }
+            }, FETCHING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        private void onFetched(ChartDataSet dataSet) {
+            complete(dataSet.componentInfo, dataSet, null);
+        }
+
+        private void onFailed(ChartComponentInfo chartComponentInfo, Throwable error) {
+            complete(chartComponentInfo, null, error);
+        }
+
+        private void onDischarged(ChartComponentInfo chartComponentInfo) {
+            complete(chartComponentInfo, null, null);
+        }
+
+        private void complete(ChartComponentInfo chartComponentInfo, ChartDataSet dataSet, Throwable error) {
+            if (isSuperseded(generation))       // Late callback of a superseded run
+                return;
+
+            List<ChartDataSet> dataSetsRaw = null;
+            synchronized (this) {
+                int index = components.indexOf(chartComponentInfo);
+                if (index < 0 || completed[index])     // Already completed, e.g. late response after his deadline
+                    return;
+
+                completed[index] = true;
+                dataSets[index] = dataSet;
+                if (deadlines[index] != null)
+                    deadlines[index].cancel(false);
+
+                if (--pending == 0) {
+                    dataSetsRaw = new ArrayList<>(components.size());
+                    for (ChartDataSet fetched : dataSets)
+                        if (fetched != null)
+                            dataSetsRaw.add(fetched);
+                }
+            }
+
+            recordComponentFetched(generation, chartComponentInfo, dataSet != null ? dataSet.data.size() : 0);
+            if (error != null)
+                onDataFetchedError(chartComponentInfo, error);
+            if (dataSetsRaw == null)
+                return;
+
+            if (dataSetsRaw.size() < components.size())
+                Log.w("SVChartViewJSLAbs", String.format("Fetched only %d of %d data sets", dataSetsRaw.size(), components.size()));
+            if (!isSuperseded(generation)) {
+                SVHistoryCache.Stats stats = historyCache.getStats();
+                Log.d("SVChartViewJSLAbs", "History cache: " + stats);
+                notifyHistoryCacheStatsListeners(stats);
             }
-        };
+            onDataFetched(generation, dataSetsRaw);
+        }
 
-        timer.schedule(task, FETCHING_TIMEOUT_MS);
-        doFetching_TimerTasks.put(chartComponentInfo, task);
+        private synchronized void cancel() {
+            for (ScheduledFuture<?> deadline : deadlines)
+                if (deadline != null)
+                    deadline.cancel(false);
+        }
     }
 
-    private void doFetching_cancelTimer(ChartComponentInfo chartComponentInfo) {
-        for (Map.Entry<ChartComponentInfo, TimerTask> entry : doFetching_TimerTasks.entrySet()) {
-            if (entry.getKey() == chartComponentInfo) {
-                entry.getValue().cancel();
-                doFetching_TimerTasks.remove(entry.getKey());
+    /**
+     * Collects the responses of the requests sent for a component's missing
+     * sub-ranges, then completes the component's data set.
+     */
+    private final class ComponentFetch {
+        private final FetchAggregator aggregator;
+        private final ChartComponentInfo chartComponentInfo;
+        private final String objectId;
+        private final String compPath;
+        private final SVHistory localHistory;
+        private SVTimeSeries data;
+        private int pending;
+
+        private ComponentFetch(FetchAggregator aggregator, ChartComponentInfo chartComponentInfo, String objectId, String compPath, SVHistory localHistory, SVTimeSeries cached, int pending) {
+            this.aggregator = aggregator;
+            this.chartComponentInfo = chartComponentInfo;
+            this.objectId = objectId;
+            this.compPath = compPath;
+            this.localHistory = localHistory;
+            this.data = cached;
+            this.pending = pending;
+        }
+
+        private void onReceived(SVTimeSeries received, long fetchedFrom, long fetchedTo) {
+            // Received data are stored anyway, but discharged if a newer fetching was started
+            doFetching_storeReceived(objectId, compPath, localHistory, received, fetchedFrom, fetchedTo);
+            if (isSuperseded(aggregator.generation))
                 return;
+
+            SVTimeSeries merged;
+            synchronized (this) {
+                data = SVTimeSeries.merge(data, received);
+                if (--pending > 0)
+                    return;
+                merged = data;
             }
+            aggregator.onFetched(new ChartDataSet(chartComponentInfo, merged, SAMPLING_PERIOD_MS));
+        }
+    }
+
+    private final class ChartHistoryListener implements SVComponentDataHub.HistoryListener {
+        private final ComponentFetch compFetch;
+        private final long fetchedFrom;
+        private final long fetchedTo;
+
+        private ChartHistoryListener(ComponentFetch compFetch, long fetchedFrom, long fetchedTo) {
+            this.compFetch = compFetch;
+            this.fetchedFrom = fetchedFrom;
+            this.fetchedTo = fetchedTo;
+        }
+
+        @Override
+        public void receivedStatusHistory(List<JOSPHistory> history) {
+            if (!getComponents().contains(compFetch.chartComponentInfo)) {   // Data discharged because the component was removed from the chart
+                compFetch.aggregator.onDischarged(compFetch.chartComponentInfo);
+                return;
+            }
+
+            compFetch.onReceived(doFetching_JOSPHistory2Series(history), fetchedFrom, fetchedTo);
+        }
+
+        @Override
+        public void onHistoryFailed(Exception error) {
+            compFetch.aggregator.onFailed(compFetch.chartComponentInfo, error);
         }
     }
 
-    private final class ChartHistoryListener implements HistoryCompStatus.StatusHistoryListener {
+    /**
+     * Requests the component's history pages one at a time, and aggregates
+     * each received page into the plan's buckets. The component's deadline
+     * is restarted on each page, so long windows are not failed as long as
+     * pages keep arriving. The last page is the first one containing less
+     * samples than the page size.
+     */
+    private final class BucketedFetch implements SVComponentDataHub.HistoryListener {
+        private final FetchAggregator aggregator;
         private final ChartComponentInfo chartComponentInfo;
+        private final JSLComponent jslComp;
+        private final SVHistoryQueryPlanner.Plan plan;
+        private final SVBucketAggregator buckets;
+        private int pageNum = 0;
 
-        private ChartHistoryListener(ChartComponentInfo chartComponentInfo) {
+        private BucketedFetch(FetchAggregator aggregator, ChartComponentInfo chartComponentInfo, JSLComponent jslComp, SVHistoryQueryPlanner.Plan plan) {
+            this.aggregator = aggregator;
             this.chartComponentInfo = chartComponentInfo;
+            this.jslComp = jslComp;
+            this.plan = plan;
+            this.buckets = plan.newAggregator();
+        }
+
+        private void requestPage() {
+            try {
+                SVComponentDataHub.get(jslComp).requestHistory(jslComp, new Date(plan.getFromMs()), new Date(plan.getToMs()), plan.getPageSize(), pageNum, this);
+            } catch (JSLRemoteObject.ObjectNotConnected | JSLRemoteObject.MissingPermission e) {
+                aggregator.onFailed(chartComponentInfo, e);
+            }
         }
 
         @Override
         public void receivedStatusHistory(List<JOSPHistory> history) {
-            doFetching_cancelTimer(chartComponentInfo);
+            if (!getComponents().contains(chartComponentInfo)) {   // Data discharged because the component was removed from the chart
+                aggregator.onDischarged(chartComponentInfo);
+                return;
+            }
+            if (isSuperseded(aggregator.generation))
+                return;
 
-            if (!getComponents().contains(chartComponentInfo))   // Data discharged because the component was removed from the chart
+            for (JOSPHistory status : history)
+                buckets.add(status.getUpdatedAt().getTime(), doFetching_JOSPHistory2ChartDataSet_PayloadToDouble(status.getPayload()));
+
+            if (history.size() < plan.getPageSize()) {
+                Log.d("SVChartViewJSLAbs", String.format("Aggregated %d samples of '%s' from %d pages", buckets.getSamplesCount(), chartComponentInfo.label, pageNum + 1));
+                aggregator.onFetched(new ChartDataSet(chartComponentInfo, buckets.toSeries(SVTimeSeriesPyramid.AGGREGATION_MIN_MAX), plan.getBucketMs(), true));
                 return;
+            }
 
-            // TODO convert history to dataSet
-            ChartDataSet dataSet = doFetching_JOSPHistory2ChartDataSet(chartComponentInfo, history);
+            pageNum++;
+            aggregator.startDeadline(chartComponentInfo);
+            jslApplication.runOnNetworkThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (isSuperseded(aggregator.generation)) return;
+                    requestPage();
+                }
+            });
+        }
 
-            doFetching_storeData(chartComponentInfo, dataSet);
+        @Override
+        public void onHistoryFailed(Exception error) {
+            aggregator.onFailed(chartComponentInfo, error);
         }
     }
 
-    private ChartDataSet doFetching_JOSPHistory2ChartDataSet(ChartComponentInfo chartComponentInfo, List<JOSPHistory> history) {
-        Map<Date, Double> data = new HashMap<>();
+    /**
+     * Store the samples received from the remote object into the history
+     * cache and, if any, into the local history.
+     */
+    private static void doFetching_storeReceived(String objectId, String compPath, SVHistory localHistory, SVTimeSeries received, long fetchedFrom, long fetchedTo) {
+        historyCache.put(objectId, compPath, received, fetchedFrom, fetchedTo);
+        if (localHistory != null && fetchedFrom <= fetchedTo)
+            localHistory.append(compPath, received, new Date(fetchedFrom), new Date(fetchedTo));
+    }
+
+    private SVTimeSeries doFetching_JOSPHistory2Series(List<JOSPHistory> history) {
+        long[] timestamps = new long[history.size()];
+        double[] values = new double[history.size()];
+        int count = 0;
         for (JOSPHistory status : history) {
-            Date date = status.getUpdatedAt();
-            double value = doFetching_JOSPHistory2ChartDataSet_PayloadToDouble(status.getPayload());
-            data.put(date, value);
+            timestamps[count] = status.getUpdatedAt().getTime();
+            values[count] = doFetching_JOSPHistory2ChartDataSet_PayloadToDouble(status.getPayload());
+            count++;
         }
-        return new ChartDataSet(chartComponentInfo, data);
+        return SVTimeSeries.sortedOf(timestamps, values, count);
     }
 
     private double doFetching_JOSPHistory2ChartDataSet_PayloadToDouble(String payload) {
@@ -172,30 +520,287 @@ public abstract class SVChartViewJSLAbs
         return range.newState;
     }
 
-    private final List<ChartDataSet> doFetching_tmpData = new ArrayList<>();
 
-    private void doFetching_storeData(ChartComponentInfo chartComponentInfo, ChartDataSet dataSet) {
-        doFetching_tmpData.add(dataSet);
+    // Prefetching
+    //
+    // Once a window is displayed, the adjacent windows can be fetched into
+    // the history cache at low priority (see SVTimeNavigatorView), so the
+    // navigation to them is served by the cache. Prefetching is cancelled as
+    // soon as a new fetching run starts: the requests not sent yet are
+    // discarded, while the responses of the requests already sent are stored
+    // anyway.
+
+    /**
+     * Executor shared by all charts, it sends the prefetching requests at the
+     * lowest priority.
+     */
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+            runnable.run();
+        }, "SV_CHART_PREFETCH");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger doPrefetch_generation = new AtomicInteger();
+
+    /**
+     * Fetch the window at given offset into the history cache, at low
+     * priority and without displaying it.
+     * <p>
+     * Nothing is fetched while the chart is fetching, for future windows and
+     * for the windows fetched by pages (their aggregated data are not cached).
+     *
+     * @param offset the offset of the window to prefetch, with the current
+     *               period and quantity.
+     */
+    @Override
+    public void prefetchTS(int offset) {
+        if (isFetching() || offset > 0)
+            return;
+        List<ChartComponentInfo> components = new ArrayList<>(getComponents());
+        if (components.isEmpty())
+            return;
+
+        Date fromDate = SVChartViewTSFiltered.calculateFromDate(filterTSPeriod, filterTSQty, offset);
+        Date toDate = SVChartViewTSFiltered.calculateToDate(filterTSPeriod, filterTSQty, offset);
+        SVHistoryQueryPlanner.Plan plan = SVHistoryQueryPlanner.plan(fromDate.getTime(), toDate.getTime(), filterTSPartitions, getWidth(), SAMPLING_PERIOD_MS);
+        if (plan.isBucketed())
+            return;
+
+        SVHistory localHistory = doFetching_getLocalHistory();
+        int prefetchGeneration = doPrefetch_generation.get();
+        for (ChartComponentInfo chartComponentInfo : components) {
+            prefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (doPrefetch_generation.get() != prefetchGeneration) return;
+                    doPrefetch_startFetch(chartComponentInfo.jslRangeComponent, localHistory, plan);
+                }
+            });
+        }
+    }
+
+    /**
+     * Discard the prefetching requests not sent yet.
+     */
+    private void doPrefetch_cancel() {
+        doPrefetch_generation.incrementAndGet();
+    }
+
+    /**
+     * Request to the remote object the sub-ranges of the plan's window not
+     * available into the history cache, nor into the local history.
+     */
+    private void doPrefetch_startFetch(JSLComponent jslComp, SVHistory localHistory, SVHistoryQueryPlanner.Plan plan) {
+        String objectId = jslComp.getRemoteObject().getId();
+        String compPath = jslComp.getPath().getString();
+
+        List<SVHistoryCache.Range> missing = historyCache.getMissingRanges(objectId, compPath, plan.getFromMs(), plan.getToMs());
+        if (!missing.isEmpty() && localHistory != null) {
+            doFetching_loadLocalHistory(localHistory, objectId, compPath, missing);
+            missing = historyCache.getMissingRanges(objectId, compPath, plan.getFromMs(), plan.getToMs());
+        }
+        if (missing.isEmpty())
+            return;
 
-        if (doFetching_tmpData.size() == getComponents().size()) {
-            onDataFetched(doFetching_tmpData);
-            doFetching_tmpData.clear();
+        Log.d("SVChartViewJSLAbs", String.format("Prefetching %d ranges of '%s'", missing.size(), compPath));
+        long fetchToMs = System.currentTimeMillis();
+        for (SVHistoryCache.Range range : missing) {
+            long fetchedFrom = range.getFrom();
+            long fetchedTo = Math.min(range.getTo(), fetchToMs);
+            try {
+                doFetching_requestHistory(jslComp, range, new SVComponentDataHub.HistoryListener() {
+                    @Override
+                    public void receivedStatusHistory(List<JOSPHistory> history) {
+                        doFetching_storeReceived(objectId, compPath, localHistory, doFetching_JOSPHistory2Series(history), fetchedFrom, fetchedTo);
+                    }
+
+                    @Override
+                    public void onHistoryFailed(Exception error) {
+                        Log.d("SVChartViewJSLAbs", String.format("Can't prefetch '%s': %s", compPath, error.getMessage()));
+                    }
+                });
+            } catch (JSLRemoteObject.ObjectNotConnected | JSLRemoteObject.MissingPermission e) {
+                Log.d("SVChartViewJSLAbs", String.format("Can't prefetch '%s': %s", compPath, e.getMessage()));
+                return;
+            }
         }
     }
 
 
-    // TS/History Limits filter
+    // Live mode
+    //
+    // When the chart's window ends at "now" (offset 0), the components' state
+    // changes are appended to copies of the raw data sets and the points older
+    // than the window's beginning are trimmed. Then, the copies replace the
+    // raw data sets and they are processed and displayed again, without any
+    // request to the remote object. State changes are collected and applied
+    // at most once per frame, those received while fetching are applied once
+    // the fetching run completes.
+
+    private final static long LIVE_FRAME_MS = 1000;
+    private boolean liveModeEnabled = true;
+    private final List<LiveSample> doLive_pending = new ArrayList<>();
+    private boolean doLive_frameScheduled = false;
+    private long doLive_lastFrameMs = 0;
+
+    /**
+     * @return true if the chart's window is updated with the components'
+     * state changes, when it ends at "now".
+     */
+    public boolean isLiveModeEnabled() {
+        return liveModeEnabled;
+    }
+
+    /**
+     * Enable or disable the live mode.
+     *
+     * @param enabled true to update the chart's window with the components'
+     *                state changes, when it ends at "now".
+     */
+    public void setLiveModeEnabled(boolean enabled) {
+        liveModeEnabled = enabled;
+    }
+
+    /**
+     * @return true if the live mode is enabled and the chart's window ends at
+     * "now".
+     */
+    public boolean isLive() {
+        return liveModeEnabled && filterTSOffset == 0;
+    }
+
+    private final JSLRangeState.RangeStateListener doLive_StateListener = new JSLRangeState.RangeStateListener() {
+
+        @Override
+        public void onStateChanged(JSLRangeState component, double newState, double oldState) {
+            if (!isLive()) return;
+
+            ChartComponentInfo componentInfo = findComponentInfo(component);
+            if (componentInfo == null) return;
+
+            doLive_enqueue(new LiveSample(componentInfo, System.currentTimeMillis(), newState));
+        }
+
+        @Override
+        public void onMinReached(JSLRangeState component, double state, double min) {
+        }
+
+        @Override
+        public void onMaxReached(JSLRangeState component, double state, double max) {
+        }
+
+    };
+
+    private void doLive_enqueue(LiveSample sample) {
+        synchronized (doLive_pending) {
+            doLive_pending.add(sample);
+        }
+        if (!isFetching())      // Otherwise, applied once fetched
+            doLive_scheduleFrame();
+    }
+
+    private void doLive_scheduleFrame() {
+        long delayMs;
+        synchronized (doLive_pending) {
+            if (doLive_frameScheduled || doLive_pending.isEmpty())
+                return;
+            doLive_frameScheduled = true;
+            delayMs = Math.max(0, doLive_lastFrameMs + LIVE_FRAME_MS - System.currentTimeMillis());
+        }
+
+        scheduledExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (doLive_pending) {
+                    doLive_frameScheduled = false;
+                    doLive_lastFrameMs = System.currentTimeMillis();
+                }
+
+                int generation = getGeneration();
+                runOnProcessingThread(generation, new Runnable() {
+                    @Override
+                    public void run() {
+                        doLive_frame(generation);
+                    }
+                });
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void onDoFetchAndProcessingCompleted(int generation) {
+        super.onDoFetchAndProcessingCompleted(generation);
+        if (!isFetching())
+            doLive_scheduleFrame();     // State changes received while fetching
+    }
+
+    /**
+     * Apply the pending state changes to copies of the raw data sets, then
+     * process and display them again. It runs on the processing thread.
+     */
+    private void doLive_frame(int generation) {
+        List<LiveSample> samples;
+        synchronized (doLive_pending) {
+            if (isFetching())       // Kept pending, applied once fetched
+                return;
+            samples = new ArrayList<>(doLive_pending);
+            doLive_pending.clear();
+        }
+        if (!isLive() || samples.isEmpty())
+            return;
 
-    private int filterTSPeriod = Calendar.MINUTE;
-    private int filterTSQty = 15;
-    private int filterTSOffset = 0;
-    private int filterTSPartitions = 5; // depends on filterTSPeriod and filterTSQty, max 20
-    private Date filterTSFromDate = null;
+        // Roll the window
+        Date fromDate = SVChartViewTSFiltered.calculateFromDate(filterTSPeriod, filterTSQty, filterTSOffset);
+        setFilterTSFromDate(fromDate);
 
+        List<ChartDataSet> dataSetsRaw = getDataSetsRaw();
+        List<ChartDataSet> dataSetsUpdated = new ArrayList<>(dataSetsRaw.size());
+        for (ChartDataSet dataSet : dataSetsRaw) {
+            if (dataSet.bucketed) {     // State changes are raw samples, they can't be mixed with the buckets
+                dataSetsUpdated.add(dataSet);
+                continue;
+            }
+            SVTimeSeries data = dataSet.data.slice(fromDate.getTime(), Long.MAX_VALUE);
+            for (LiveSample sample : samples)
+                if (sample.componentInfo == dataSet.componentInfo && sample.timestamp >= fromDate.getTime())
+                    data.put(sample.timestamp, sample.value);
+            dataSetsUpdated.add(dataSet.withData(data));
+        }
+
+        onDataUpdated(generation, dataSetsUpdated);
+    }
+
+    private static class LiveSample {
+        private final ChartComponentInfo componentInfo;
+        private final long timestamp;
+        private final double value;
+
+        private LiveSample(ChartComponentInfo componentInfo, long timestamp, double value) {
+            this.componentInfo = componentInfo;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+
+
+    // TS/History Limits filter
+
+    private volatile int filterTSPeriod = Calendar.MINUTE;
+    private volatile int filterTSQty = 15;
+    private volatile int filterTSOffset = 0;
+    private volatile int filterTSPartitions = 5; // depends on filterTSPeriod and filterTSQty, max 20
+    private volatile Date filterTSFromDate = null;
+
+    /**
+     * Set the chart's time window, then fetch his data.
+     * <p>
+     * If a fetching run is in progress, it's superseded by the new one: his
+     * late responses are discarded and never mixed with the new window's data.
+     */
     @Override
     public void setFilterTS(int period, int qty, int offset, int partitions) {
-        if (isFetching()) throw new IllegalStateException("Can't set filter while fetching data");
-
         filterTSPeriod = period;
         filterTSQty = qty;
         filterTSOffset = offset;
@@ -1,7 +1,6 @@
 package com.robypomper.smartvan.smart_van.android.components;
 
 import android.annotation.SuppressLint;
-import android.app.Activity;
 import android.content.Context;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -20,17 +19,14 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.github.mikephil.charting.highlight.Highlight;
 import com.github.mikephil.charting.interfaces.datasets.IDataSet;
-import com.github.mikephil.charting.utils.EntryXComparator;
 import com.github.mikephil.charting.utils.MPPointF;
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeries;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 
@@ -61,106 +57,97 @@ public abstract class SVChartViewMPAbs <T extends Chart<? extends ChartData<? ex
     }
 
     @Override
-    protected void doAddDataSetsToChart(List<ChartDataSet> dataSetsProcessed) {
-        Object xMin = null;
+    protected void doAddDataSetsToChart(int generation, List<ChartDataSet> dataSetsProcessed) {
+        long xMinTs = Long.MAX_VALUE;
         float xMinF = Float.MAX_VALUE;
         float xMaxF = Float.MIN_VALUE;
         float yMinF = Float.MAX_VALUE;
         float yMaxF = Float.MIN_VALUE;
 
-        // Update chart data
-        ChartData<? extends IDataSet<? extends Entry>> data = getChart().getData();
-        assert data != null: "Chart data must be set during chart initialization";
+        // Build chart entries (on processing thread)
+        List<List<Entry>> mpEntriesList = new ArrayList<>(dataSetsProcessed.size());
         for (ChartDataSet dataSet : dataSetsProcessed) {
-            List<Entry> mpEntries = new ArrayList<>();
-            for (Comparable<?> key : dataSet.data.keySet()) {
-                Entry entryMPChart = MapEntry2MPEntry(key, dataSet.data.get(key), getFilterTSFromDate(), getFilterTSPeriod(), getFilterTSQty());
-                if (entryMPChart == null)
-                    continue;   // skip this data point
-                System.out.println(new SimpleDateFormat("hh:mm:ss.SSS").format(key) + "     entryMPChart: " + entryMPChart.getX() + " " + entryMPChart.getY());
+            if (isSuperseded(generation)) return;
+
+            long stepNs = System.nanoTime();
+            List<Entry> mpEntries = new ArrayList<>(dataSet.data.size());
+            for (int i = 0; i < dataSet.data.size(); i++) {
+                long timestamp = dataSet.data.getTimestamp(i);
+                Entry entryMPChart = TSSample2MPEntry(timestamp, dataSet.data.getValue(i), getFilterTSFromDate(), getFilterTSPeriod(), getFilterTSQty());
                 mpEntries.add(entryMPChart);
 
                 // Updated bounds, if needed
                 xMinF = Math.min(xMinF, entryMPChart.getX());
                 xMaxF = Math.max(xMaxF, entryMPChart.getX());
-                yMinF = Math.min(yMinF, entryMPChart.getY());
-                yMaxF = Math.max(yMaxF, entryMPChart.getY());
-                xMin = (xMin == null)
-                            ? key
-                            //: xMin.compareTo(key) < 0
-                            : ((Comparable<Object>)key).compareTo(xMin) > 0
-                                ? xMin
-                            : key;
+                if (!Float.isNaN(entryMPChart.getY())) {     // NaN values are line breaks
+                    yMinF = Math.min(yMinF, entryMPChart.getY());
+                    yMaxF = Math.max(yMaxF, entryMPChart.getY());
+                }
+                xMinTs = Math.min(xMinTs, timestamp);
             }
-            Collections.sort(mpEntries, new EntryXComparator());
-            doAddDataSetsToChart_addMPDataSet(getChart(), dataSet, mpEntries);
-            getChart().notifyDataSetChanged();
+            // Entries are already sorted on X axis, because series are sorted by timestamp
+            mpEntriesList.add(mpEntries);
+            recordStep(generation, "chart_entries", dataSet.componentInfo, dataSet.data.size(), mpEntries.size(), stepNs);
         }
 
-        // Update chart formatters
-        doAddDataSetsToChart_FormatChart(xMin, xMinF, xMaxF, yMinF, yMaxF);
-
-        // Refresh chart
-        ((Activity)getContext()).runOnUiThread(new Runnable() {
+        // Swap chart data sets (on UI thread)
+        Date xMin = xMinTs != Long.MAX_VALUE ? new Date(xMinTs) : null;
+        float[] bounds = {xMinF, xMaxF, yMinF, yMaxF};
+        runOnUiThread(generation, new Runnable() {
             @Override
             public void run() {
+                doCleanChart();
+
+                // Update chart data
+                ChartData<? extends IDataSet<? extends Entry>> data = getChart().getData();
+                assert data != null: "Chart data must be set during chart initialization";
+                for (int i = 0; i < dataSetsProcessed.size(); i++)
+                    doAddDataSetsToChart_addMPDataSet(getChart(), dataSetsProcessed.get(i), mpEntriesList.get(i));
+
+                // Update chart formatters
+                doAddDataSetsToChart_FormatChart(xMin, bounds[0], bounds[1], bounds[2], bounds[3]);
+
+                // Refresh chart
                 getChart().getData().notifyDataChanged();
                 getChart().notifyDataSetChanged();
                 getChart().invalidate();
                 getChart().setDrawMarkers(true);
+
+                // Notify "data sets added to chart" and "fetch and processing completed"
+                onDataAddedToChart(generation, dataSetsProcessed);
+                onDoFetchAndProcessingCompleted(generation);
             }
         });
-        //getChart().getData().notifyDataChanged();
-        //getChart().notifyDataSetChanged();
-        //getChart().invalidate();
-
-        // Notify "data sets added to chart" and "fetch and processing completed"
-        onDataAddedToChart(dataSetsProcessed);
-        onDoFetchAndProcessingCompleted();
     }
 
     protected abstract void doAddDataSetsToChart_addMPDataSet(T data, ChartDataSet dataSet, List<Entry> mpEntries);
 
     protected abstract void doAddDataSetsToChart_FormatChart(Object xMin, float xMinF, float xMaxF, float yMinF, float yMaxF);
 
-    private static Entry doAddDataSetsToChart_Generic2MPChart(Map.Entry<Comparable<?>, Number> entry, Date refFromDate, int filterTSPeriod, int filterTSQty) {
-        return MapEntry2MPEntry(entry, refFromDate, filterTSPeriod, filterTSQty);
+    protected static List<Entry> TSSeries2MPEntries(SVTimeSeries series, Date refFromDate, int filterTSPeriod, int filterTSQty) {
+        List<Entry> mpEntries = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++)
+            mpEntries.add(TSSample2MPEntry(series.getTimestamp(i), series.getValue(i), refFromDate, filterTSPeriod, filterTSQty));
+        return mpEntries;
     }
 
-    protected static Entry MapEntry2MPEntry(Map.Entry<Comparable<?>, Number> entry, Date refFromDate, int filterTSPeriod, int filterTSQty) {
-        return MapEntry2MPEntry(entry.getKey(), entry.getValue(), refFromDate, filterTSPeriod, filterTSQty);
-    }
-
-    protected static Entry MapEntry2MPEntry(Comparable<?> key, Number value, Date refFromDate, int filterTSPeriod, int filterTSQty) {
-        float k;
-        if (key instanceof Date) {
-            k = MapEntry2MPEntry_Date2MPFloat(refFromDate, filterTSPeriod, filterTSQty, (Date) key);
-            MPEntry2MapEntry_MPFloat2Date(refFromDate, filterTSPeriod, filterTSQty, k);
-        }
-        else if (key instanceof Number)
-            k = ((Number) key).floatValue();
-        else
-            return null;    // skip this data point
-
-        float v;
-        if (value == null)
-            return null;    // skip this data point
-        v = value.floatValue();
-
+    protected static Entry TSSample2MPEntry(long timestamp, double value, Date refFromDate, int filterTSPeriod, int filterTSQty) {
+        float k = TSSample2MPEntry_Timestamp2MPFloat(refFromDate, filterTSPeriod, filterTSQty, timestamp);
+        float v = (float) value;
         return new Entry(k, v);
     }
 
-    private static float MapEntry2MPEntry_Date2MPFloat(Date refFromDate, int period, int qty, Date date) {
+    private static float TSSample2MPEntry_Timestamp2MPFloat(Date refFromDate, int period, int qty, long timestamp) {
         long periodMS = SVChartViewTSFiltered.periodDurationMS(period);
         long rangeMS = periodMS * qty;
 
-        long relativeTimeMS = date.getTime() - refFromDate.getTime();
+        long relativeTimeMS = timestamp - refFromDate.getTime();
         float relativeTime = relativeTimeMS / (float)(periodMS / 1);      // Keep 2 digits after the comma
         float range = rangeMS / (float)(periodMS / 1);                    // Keep 2 digits after the comma
 
         float dateFloat = (relativeTime * 100) / range;
         //Log.e("Date2MPFloat", String.format("refFromDate=%s, date=%s, => dateFloat=%f",
-        //        refFromDate, new SimpleDateFormat("hh:mm:ss.SSS").format(date), dateFloat));
+        //        refFromDate, new SimpleDateFormat("hh:mm:ss.SSS").format(new Date(timestamp)), dateFloat));
         return dateFloat;
     }
 
@@ -29,6 +29,14 @@ public interface SVChartViewTSFiltered {
 
     Date getFilterTSFromDate();
 
+    /**
+     * Fetch in background the window at given offset, with the current period
+     * and quantity, so it's displayed faster when selected.
+     *
+     * @param offset the offset of the window to prefetch.
+     */
+    void prefetchTS(int offset);
+
     // TSFiltered Listeners
 
     interface TSFilteredListener {
@@ -34,7 +34,6 @@ import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 
 /**
@@ -476,16 +475,15 @@ public class SVExportsBottomSheet extends BottomSheetDialogFragment {
     private static String toJSONFile(List<SVChartView.ChartDataSet> data, SimpleDateFormat formatDate) {
         StringBuilder jsonBuilder = new StringBuilder("[");
         for (SVChartView.ChartDataSet dataSet : data) {
-            for (Map.Entry<?, ?> dataSetEntry : dataSet.data.entrySet()) {
+            Date date = new Date();
+            for (int i = 0; i < dataSet.data.size(); i++) {
 
-                Object key = dataSetEntry.getKey();
-                String dateStr;
-                if (key instanceof Date)
-                    dateStr = formatDate.format((Date)key);
-                else
-                    dateStr = key.toString();
+                date.setTime(dataSet.data.getTimestamp(i));
+                String dateStr = formatDate.format(date);
 
-                double value = ((Number) dataSetEntry.getValue()).doubleValue();
+                double value = dataSet.data.getValue(i);
+                if (Double.isNaN(value))    // Line breaks, not samples
+                    continue;
 
                 jsonBuilder.append(String.format(JSON_FORMAT, dateStr, dataSet.componentInfo.label, value));
             }
@@ -502,17 +500,16 @@ public class SVExportsBottomSheet extends BottomSheetDialogFragment {
     private static String toCSVFile(List<SVChartView.ChartDataSet> data, SimpleDateFormat formatDate) {
         StringBuilder csvBuilder = new StringBuilder(CSV_TITLE);
         for (SVChartView.ChartDataSet dataSet : data) {
-            for (Map.Entry<?, ?> dataSetEntry : dataSet.data.entrySet()) {
+            Date date = new Date();
+            for (int i = 0; i < dataSet.data.size(); i++) {
 
-                // Convert key to string
-                Object key = dataSetEntry.getKey();
-                String dateStr;
-                if (key instanceof Date)
-                    dateStr = formatDate.format((Date)key);
-                else
-                    dateStr = key.toString();
+                // Convert timestamp to string
+                date.setTime(dataSet.data.getTimestamp(i));
+                String dateStr = formatDate.format(date);
 
-                double value = ((Number) dataSetEntry.getValue()).doubleValue();
+                double value = dataSet.data.getValue(i);
+                if (Double.isNaN(value))    // Line breaks, not samples
+                    continue;
 
                 csvBuilder.append(String.format(CSV_FORMAT, dateStr, dataSet.componentInfo.label, value));
             }
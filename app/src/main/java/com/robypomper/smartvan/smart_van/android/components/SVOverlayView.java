@@ -12,6 +12,8 @@ import android.widget.TextView;
 import androidx.annotation.Nullable;
 
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.commons.SVChartMetrics;
+import com.robypomper.smartvan.smart_van.android.commons.SVHistoryCache;
 
 public class SVOverlayView extends LinearLayout {
 
@@ -177,5 +179,11 @@ public class SVOverlayView extends LinearLayout {
             show(false);
         }
 
+        @Override
+        public void onHistoryCacheStats(SVHistoryCache.Stats stats) {}
+
+        @Override
+        public void onRunMetrics(SVChartMetrics metrics) {}
+
     };
 }
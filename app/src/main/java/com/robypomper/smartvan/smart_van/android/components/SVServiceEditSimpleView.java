@@ -64,8 +64,11 @@ public class SVServiceEditSimpleView extends LinearLayout {
                         //Yes button clicked
                         String newName = editView.getName();
                         String newIcon = editView.getIconName();
-                        storage.getCurrentPreferencesServices().setName(srvPath, newName);
-                        storage.getCurrentPreferencesServices().setIconName(srvPath, newIcon);
+                        //noinspection ResultOfMethodCallIgnored
+                        storage.getCurrentPreferencesServices().edit()
+                                .setName(srvPath, newName)
+                                .setIconName(srvPath, newIcon)
+                                .commit();
                         observer.onServiceEdited(editView, service, newName, newIcon);
                         break;
 
@@ -5,7 +5,6 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.os.Build;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.ContextThemeWrapper;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -16,6 +15,8 @@ import android.widget.TextView;
 import androidx.annotation.StyleRes;
 
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.commons.SVChartMetrics;
+import com.robypomper.smartvan.smart_van.android.commons.SVHistoryCache;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -100,14 +101,19 @@ public class SVTimeNavigatorView extends LinearLayout {
     // Getters/Setters
 
     public void setChart(SVChartViewTSFiltered chartView) {
-        if (chart != null)
+        if (chart != null) {
             chart.removeTSFilteredListener(chartFilterListener);
+            if (chart instanceof SVChartView)
+                ((SVChartView) chart).removeDataListener(chartDataListener);
+        }
 
         chart = chartView;
 
         if (chart != null) {
             chartFilterListener.onFilterChanged(chart.getFilterTSPeriod(), chart.getFilterTSQty(), chart.getFilterTSOffset(), chart.getFilterTSPartitions());
             chart.addTSFilteredListener(chartFilterListener);
+            if (chart instanceof SVChartView)
+                ((SVChartView) chart).addDataListener(chartDataListener);
         } else {
             chartFilterListener.onFilterChanged(
                     SVChartViewTSFiltered.DEFAULT_TIME_RANGE_PERIOD,
@@ -187,11 +193,7 @@ public class SVTimeNavigatorView extends LinearLayout {
                 newRangeOffset = rangeOffset + 1;
             else return;
 
-            try {
-                chart.setFilterTS(chart.getFilterTSPeriod(), chart.getFilterTSQty(), newRangeOffset, chart.getFilterTSPartitions());
-            } catch (IllegalStateException e) {
-                Log.d("TimeSettingsView", e.getMessage());
-            }
+            chart.setFilterTS(chart.getFilterTSPeriod(), chart.getFilterTSQty(), newRangeOffset, chart.getFilterTSPartitions());
             // Do not update UI, because it will be updated by the listener
         }
     };
@@ -205,6 +207,49 @@ public class SVTimeNavigatorView extends LinearLayout {
     };
 
 
+    // Prefetching
+
+    /**
+     * Once the current window is displayed, prefetch the previous window and,
+     * if it's not in the future, the next one. So, the navigation to the
+     * adjacent windows doesn't wait for the remote object.
+     */
+    private void prefetchAdjacentWindows() {
+        if (chart == null || chart.getFilterTSOffset() != rangeOffset) return;
+
+        chart.prefetchTS(rangeOffset - 1);
+        if (rangeOffset + 1 <= 0)
+            chart.prefetchTS(rangeOffset + 1);
+    }
+
+    private final SVChartView.DataListener chartDataListener = new SVChartView.DataListener() {
+        @Override
+        public void onFetchStarted() {
+        }
+
+        @Override
+        public void onProcessingStarted() {
+        }
+
+        @Override
+        public void onDisplayingStarted() {
+        }
+
+        @Override
+        public void onFetchedTerminated() {
+            prefetchAdjacentWindows();
+        }
+
+        @Override
+        public void onHistoryCacheStats(SVHistoryCache.Stats stats) {
+        }
+
+        @Override
+        public void onRunMetrics(SVChartMetrics metrics) {
+        }
+    };
+
+
     // Static utils
 
     @SuppressLint("SimpleDateFormat")
@@ -6,7 +6,6 @@ import android.content.res.TypedArray;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -295,11 +294,7 @@ public class SVTimeSettingsBottomSheet extends BottomSheetDialogFragment {
         @Override
         public void onClick(View v) {
             isInternalUpdate = true;
-            try {
-                chart.setFilterTS(rangePeriod, rangeQty, chart.getFilterTSOffset(), chart.getFilterTSPartitions());
-            } catch (IllegalStateException e) {
-                Log.d("TimeSettingsBottomSheet", e.getMessage());
-            }
+            chart.setFilterTS(rangePeriod, rangeQty, chart.getFilterTSOffset(), chart.getFilterTSPartitions());
             dismiss();
         }
     };
@@ -195,11 +195,7 @@ public class SVTimeSettingsView extends LinearLayout {
             if (period == rangePeriod) return;
 
             Log.d("TimeSettingsView", "onItemSelected-Period: " + period);
-            try {
-                chart.setFilterTS(rangePeriod, chart.getFilterTSQty(), chart.getFilterTSOffset(), chart.getFilterTSPartitions());
-            } catch (IllegalStateException e) {
-                Log.d("TimeSettingsView", e.getMessage());
-            }
+            chart.setFilterTS(rangePeriod, chart.getFilterTSQty(), chart.getFilterTSOffset(), chart.getFilterTSPartitions());
             // Do not update UI, because it will be updated by the listener
         }
 
@@ -227,11 +223,7 @@ public class SVTimeSettingsView extends LinearLayout {
             if (qty == rangeQty) return;
 
             Log.d("TimeSettingsView", "onItemSelected-Qty: " + qty);
-            try {
-                chart.setFilterTS(rangePeriod, qty, chart.getFilterTSOffset(), chart.getFilterTSPartitions());
-            } catch (IllegalStateException e) {
-                Log.d("TimeSettingsView", e.getMessage());
-            }
+            chart.setFilterTS(rangePeriod, qty, chart.getFilterTSOffset(), chart.getFilterTSPartitions());
             // Do not update UI, because it will be updated by the listener
         }
 
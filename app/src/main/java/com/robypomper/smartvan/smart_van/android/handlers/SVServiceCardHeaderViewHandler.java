@@ -3,12 +3,18 @@ package com.robypomper.smartvan.smart_van.android.handlers;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.core.view.ViewCompat;
+
 import com.robypomper.josp.jsl.android.handlers.view.JSLBaseStateViewHandler;
 import com.robypomper.josp.jsl.android.handlers.view.JSLBaseViewHandler;
 import com.robypomper.josp.jsl.objs.structure.JSLComponent;
 import com.robypomper.smartvan.smart_van.android.R;
 import com.robypomper.smartvan.smart_van.android.commons.SVServiceIcons;
 import com.robypomper.smartvan.smart_van.android.components.SVServiceEditSimpleView;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
+
+import io.reactivex.rxjava3.disposables.Disposable;
 
 
 /**
@@ -100,6 +106,11 @@ public class SVServiceCardHeaderViewHandler {
      * If `null`, the component's type is used.
      */
     private String svType;
+    /**
+     * The subscription to the service's name changes, active only while the
+     * main view is attached to the window.
+     */
+    private Disposable nameSubscription;
 
 
     // Client interface
@@ -182,6 +193,19 @@ public class SVServiceCardHeaderViewHandler {
                 System.out.println("################################### Show menu ###################################");
             }
         });
+        getMainView().addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View v) {
+                subscribeNameChanges();
+            }
+
+            @Override
+            public void onViewDetachedFromWindow(View v) {
+                unsubscribeNameChanges();
+            }
+        });
+        if (ViewCompat.isAttachedToWindow(getMainView()))
+            subscribeNameChanges();
     }
 
 
@@ -210,6 +234,8 @@ public class SVServiceCardHeaderViewHandler {
 
         component = newComp;
 
+        if (nameSubscription != null)
+            subscribeNameChanges();
         updateUI();
         // no handler to update
     }
@@ -302,4 +328,54 @@ public class SVServiceCardHeaderViewHandler {
         });
     }
 
+
+
+    // Preferences changes
+
+    /**
+     * Update the SVName when the service's name is changed into the
+     * current object's preferences.
+     * <p>
+     * While subscribed, the object's storage is held, so his preferences are
+     * not released.
+     */
+    private void subscribeNameChanges() {
+        unsubscribeNameChanges();
+        SVStorage storage = SVStorageSingleton.getInstance();
+        if (getComponent() == null || storage.getCurrentObjectId() == null)
+            return;
+
+        String objId = storage.getCurrentObjectId();
+        String srvPath = getComponent().getPath().getString();
+        nameSubscription = storage.getCurrentPreferencesServices()
+                .observeName(srvPath)
+                .doOnSubscribe(s -> storage.holdObjectStorage(objId))
+                .doFinally(() -> storage.releaseObjectStorage(objId))
+                .subscribe(change -> setSVName(change.getNewValue()),
+                        error -> onNameChangesTerminated(),
+                        this::onNameChangesTerminated);
+    }
+
+    /**
+     * The name's flow completes when the object's preferences are released
+     * (e.g. the current object changed, or his storage was closed by the
+     * pool). So, if the handler is still subscribed, it subscribes again to
+     * the current object's preferences.
+     */
+    private void onNameChangesTerminated() {
+        getMainView().post(new Runnable() {
+            @Override
+            public void run() {
+                if (nameSubscription != null && nameSubscription.isDisposed() && ViewCompat.isAttachedToWindow(getMainView()))
+                    subscribeNameChanges();
+            }
+        });
+    }
+
+    private void unsubscribeNameChanges() {
+        if (nameSubscription == null) return;
+        nameSubscription.dispose();
+        nameSubscription = null;
+    }
+
 }
@@ -3,14 +3,21 @@ package com.robypomper.smartvan.smart_van.android.handlers;
 
 import android.content.Context;
 import android.graphics.drawable.Drawable;
+import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.DrawableRes;
 import androidx.appcompat.content.res.AppCompatResources;
+import androidx.core.view.ViewCompat;
 
 import com.robypomper.josp.jsl.android.handlers.view.JSLBaseViewHandler;
 import com.robypomper.josp.jsl.objs.structure.JSLComponent;
 import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.commons.SVServiceIcons;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
+
+import io.reactivex.rxjava3.disposables.Disposable;
 
 /**
  * View handler for service's icon.
@@ -50,11 +57,16 @@ public class SVServiceIconViewHandler {
     /**
      * The component to show, it's not final to allows view recycling.
      */
-    private JSLComponent component;     // maintained only because it can be used in the future
+    private JSLComponent component;
     /**
      * The drawable of the `icon` field.
      */
     private Drawable icon;
+    /**
+     * The subscription to the service's icon changes, active only while the
+     * main view is attached to the window.
+     */
+    private Disposable iconSubscription;
 
 
     // Client interface
@@ -105,6 +117,20 @@ public class SVServiceIconViewHandler {
         this.component = component;
         this.icon = AppCompatResources.getDrawable(ctx, DEF_ICON);
 
+        mainView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View v) {
+                subscribeIconChanges();
+            }
+
+            @Override
+            public void onViewDetachedFromWindow(View v) {
+                unsubscribeIconChanges();
+            }
+        });
+        if (ViewCompat.isAttachedToWindow(mainView))
+            subscribeIconChanges();
+
         if (!avoidUpdateUI) updateUI();
     }
 
@@ -134,6 +160,8 @@ public class SVServiceIconViewHandler {
 
         component = newComp;
 
+        if (iconSubscription != null)
+            subscribeIconChanges();
         updateUI();
         // no sub-handler to update
     }
@@ -188,4 +216,54 @@ public class SVServiceIconViewHandler {
         });
     }
 
+
+
+    // Preferences changes
+
+    /**
+     * Update the icon when the service's icon is changed into the current
+     * object's preferences.
+     * <p>
+     * While subscribed, the object's storage is held, so his preferences are
+     * not released.
+     */
+    private void subscribeIconChanges() {
+        unsubscribeIconChanges();
+        SVStorage storage = SVStorageSingleton.getInstance();
+        if (getComponent() == null || storage.getCurrentObjectId() == null)
+            return;
+
+        String objId = storage.getCurrentObjectId();
+        String srvPath = getComponent().getPath().getString();
+        iconSubscription = storage.getCurrentPreferencesServices()
+                .observeIconName(srvPath)
+                .doOnSubscribe(s -> storage.holdObjectStorage(objId))
+                .doFinally(() -> storage.releaseObjectStorage(objId))
+                .subscribe(change -> setIcon(SVServiceIcons.iconString2Res(change.getNewValue())),
+                        error -> onIconChangesTerminated(),
+                        this::onIconChangesTerminated);
+    }
+
+    /**
+     * The icon's flow completes when the object's preferences are released
+     * (e.g. the current object changed, or his storage was closed by the
+     * pool). So, if the handler is still subscribed, it subscribes again to
+     * the current object's preferences.
+     */
+    private void onIconChangesTerminated() {
+        getMainView().post(new Runnable() {
+            @Override
+            public void run() {
+                if (iconSubscription != null && iconSubscription.isDisposed() && ViewCompat.isAttachedToWindow(getMainView()))
+                    subscribeIconChanges();
+            }
+        });
+    }
+
+    private void unsubscribeIconChanges() {
+        if (iconSubscription == null) return;
+        iconSubscription.dispose();
+        iconSubscription = null;
+    }
+
 }
@@ -21,6 +21,17 @@ public abstract class SVAbsSubStorage implements SVSubStorage {
         return objectId != null;
     }
 
+    /**
+     * This method is used to fail fast when the storage is used before his
+     * generation, or after his release.
+     *
+     * @throws IllegalStateException if the storage is not generated.
+     */
+    protected void checkStorageGenerated() {
+        if (objectId == null)
+            throw new IllegalStateException(String.format("Storage '%s' not generated or already released", getClass().getSimpleName()));
+    }
+
     /**
      * This method is used to get the objectId of the storage.
      *
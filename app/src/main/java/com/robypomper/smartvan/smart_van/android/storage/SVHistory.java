@@ -0,0 +1,77 @@
+package com.robypomper.smartvan.smart_van.android.storage;
+
+
+import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeries;
+
+import java.util.Date;
+
+/**
+ * Interface for SV components' history.
+ * <p>
+ * This interface is used to store on the device the history of the object's
+ * components, identified by their component's path. So, clients can read the
+ * history locally and request to the remote object only the missing data.
+ * <p>
+ * For each component, the history keeps track of the time range synchronized
+ * with the remote object (the "covered" range): a query within that range
+ * does not require any remote request.
+ */
+public interface SVHistory extends SVSubStorage {
+
+    // Constants
+
+    int DIR_NAME_PREFIX = R.string.pref_group__history_prefix; // + ObjectId
+    /**
+     * Default history's retention, 30 days.
+     */
+    long DEF_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+
+
+    // SVHistory
+
+    /**
+     * Get the stored history of the specified component.
+     *
+     * @param compPath the path of the component for which to get the history.
+     * @param from     the beginning of the range to query (included).
+     * @param to       the end of the range to query (included).
+     * @return the component's values within given range, sorted by date.
+     */
+    SVTimeSeries query(String compPath, Date from, Date to);
+
+    /**
+     * Append the history received from the remote object.
+     * <p>
+     * Only values newer than the last stored one are appended, and the given
+     * range is used to update the component's covered range.
+     *
+     * @param compPath    the path of the component for which to append the history.
+     * @param values      the component's values to append.
+     * @param fetchedFrom the beginning of the range requested to the remote object.
+     * @param fetchedTo   the end of the range requested to the remote object.
+     */
+    void append(String compPath, SVTimeSeries values, Date fetchedFrom, Date fetchedTo);
+
+    /**
+     * Get the beginning of the range synchronized with the remote object.
+     *
+     * @param compPath the path of the component.
+     * @return the beginning of the covered range, or null if no range is covered.
+     */
+    Date getCoveredFrom(String compPath);
+
+    /**
+     * Get the end of the range synchronized with the remote object.
+     *
+     * @param compPath the path of the component.
+     * @return the end of the covered range, or null if no range is covered.
+     */
+    Date getCoveredTo(String compPath);
+
+    /**
+     * Delete the history older than the retention period.
+     */
+    void applyRetention();
+
+}
@@ -5,6 +5,8 @@ import androidx.annotation.ColorInt;
 
 import com.robypomper.smartvan.smart_van.android.R;
 
+import io.reactivex.rxjava3.core.Flowable;
+
 /**
  * This interface is used to define the generic preferences of the SmartVan.
  */
@@ -68,4 +70,28 @@ public interface SVPreferences extends SVSubStorage {
      */
     void setChartTimeoutSeconds(int chartTimeoutSeconds);
 
+
+
+    // Change streams
+
+    /**
+     * Flow of the SV box color's changes.
+     * <p>
+     * Emits the new color each time it changes, or the default color if it
+     * was removed.
+     *
+     * @return the flow of the SV box color's changes.
+     */
+    Flowable<Integer> observeSVBoxColor();
+
+    /**
+     * Flow of the chart timeout's changes.
+     * <p>
+     * Emits the new timeout each time it changes, or the default timeout if
+     * it was removed.
+     *
+     * @return the flow of the chart timeout's changes.
+     */
+    Flowable<Integer> observeChartTimeoutSeconds();
+
 }
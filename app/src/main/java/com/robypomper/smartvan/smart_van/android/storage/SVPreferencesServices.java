@@ -3,6 +3,12 @@ package com.robypomper.smartvan.smart_van.android.storage;
 
 import com.robypomper.smartvan.smart_van.android.R;
 
+import java.util.Collection;
+import java.util.Map;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+
 /**
  * Interface for SV Services' preferences.
  * <p>
@@ -21,6 +27,178 @@ public interface SVPreferencesServices extends SVSubStorage {
     String DEF_ICON_NAME = null;
 
 
+    // Service's preferences
+
+    /**
+     * All preferences stored for a single SV Service.
+     * <p>
+     * Instances are immutable, and preferences not set by the user are null.
+     */
+    final class ServicePrefs {
+
+        private final String srvPath;
+        private final String name;
+        private final String iconName;
+
+        public ServicePrefs(String srvPath, String name, String iconName) {
+            this.srvPath = srvPath;
+            this.name = name;
+            this.iconName = iconName;
+        }
+
+        /**
+         * @return the path of the SV Service.
+         */
+        public String getSrvPath() {
+            return srvPath;
+        }
+
+        /**
+         * @return the name of the SV Service, or null if not set.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the string corresponding to the icon of the SV Service, or null if not set.
+         */
+        public String getIconName() {
+            return iconName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ServicePrefs)) return false;
+            ServicePrefs that = (ServicePrefs) o;
+            return srvPath.equals(that.srvPath)
+                    && (name != null ? name.equals(that.name) : that.name == null)
+                    && (iconName != null ? iconName.equals(that.iconName) : that.iconName == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = srvPath.hashCode();
+            result = 31 * result + (name != null ? name.hashCode() : 0);
+            result = 31 * result + (iconName != null ? iconName.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ServicePrefs{srvPath='%s', name='%s', iconName='%s'}", srvPath, name, iconName);
+        }
+
+    }
+
+
+    /**
+     * Change of a single SV Service's preference.
+     */
+    final class ServicePrefsChange {
+
+        /**
+         * The SV Service's preferences that can change.
+         */
+        public enum Property {
+            NAME,
+            ICON
+        }
+
+        private final String srvPath;
+        private final Property property;
+        private final String oldValue;
+        private final String newValue;
+
+        public ServicePrefsChange(String srvPath, Property property, String oldValue, String newValue) {
+            this.srvPath = srvPath;
+            this.property = property;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        /**
+         * @return the path of the changed SV Service.
+         */
+        public String getSrvPath() {
+            return srvPath;
+        }
+
+        /**
+         * @return the changed preference.
+         */
+        public Property getProperty() {
+            return property;
+        }
+
+        /**
+         * @return the preference's value before the change, or null if it was not set.
+         */
+        public String getOldValue() {
+            return oldValue;
+        }
+
+        /**
+         * @return the preference's value after the change, or null if it was removed.
+         */
+        public String getNewValue() {
+            return newValue;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ServicePrefsChange{srvPath='%s', property=%s, oldValue='%s', newValue='%s'}", srvPath, property, oldValue, newValue);
+        }
+
+    }
+
+
+    // Transactions
+
+    /**
+     * Editor to update many SV Services' preferences with a single write.
+     */
+    interface Editor {
+
+        /**
+         * @param srvPath the path of the SV Service for which to set the name.
+         * @param name    the name to set for the SV Service.
+         * @return this editor.
+         * @see SVPreferencesServices#setName(String, String)
+         */
+        Editor setName(String srvPath, String name);
+
+        /**
+         * @param srvPath  the path of the SV Service for which to set the icon.
+         * @param iconName the string corresponding to the icon to set for the SV Service.
+         * @return this editor.
+         * @see SVPreferencesServices#setIconName(String, String)
+         */
+        Editor setIconName(String srvPath, String iconName);
+
+        /**
+         * Apply all the editor's values with a single write.
+         * <p>
+         * New values are immediately available from the preferences' getters,
+         * while they are persisted asynchronously. The values are persisted
+         * even if the returned Completable is not subscribed.
+         *
+         * @return a Completable that completes when the values are persisted.
+         */
+        Completable commit();
+
+    }
+
+    /**
+     * Create a new editor to update many SV Services' preferences with a
+     * single write.
+     *
+     * @return a new SV Services' preferences editor.
+     */
+    Editor edit();
+
+
     // SVPreferencesServices
 
     /**
@@ -55,4 +233,57 @@ public interface SVPreferencesServices extends SVSubStorage {
      */
     String getIconName(String srvPath);
 
+
+    /**
+     * Get the preferences of all SV Services that have at least one
+     * preference set.
+     * <p>
+     * All values are read from the same storage's snapshot.
+     *
+     * @return a map containing the SV Services' preferences, by service path.
+     */
+    Map<String, ServicePrefs> getAll();
+
+    /**
+     * Get the preferences of the specified SV Services.
+     * <p>
+     * All values are read from the same storage's snapshot. The returned map
+     * contains an entry for each given path, also if no preference is set for
+     * the corresponding SV Service.
+     *
+     * @param srvPaths the paths of the SV Services for which to get the preferences.
+     * @return a map containing the SV Services' preferences, by service path.
+     */
+    Map<String, ServicePrefs> getAll(Collection<String> srvPaths);
+
+
+
+    // Change streams
+
+    /**
+     * Flow of the changes to the SV Services' preferences.
+     * <p>
+     * Each emission describes the change of a single preference of a single
+     * SV Service, computed comparing consecutive storage's snapshots.
+     *
+     * @return the flow of the changes to the SV Services' preferences.
+     */
+    Flowable<ServicePrefsChange> changes();
+
+    /**
+     * Flow of the changes to the name of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service to observe.
+     * @return the flow of the changes to the SV Service's name.
+     */
+    Flowable<ServicePrefsChange> observeName(String srvPath);
+
+    /**
+     * Flow of the changes to the icon of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service to observe.
+     * @return the flow of the changes to the SV Service's icon.
+     */
+    Flowable<ServicePrefsChange> observeIconName(String srvPath);
+
 }
@@ -6,6 +6,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+import io.reactivex.rxjava3.core.Completable;
+
 
 /**
  * Main SmartVan storage interface.
@@ -66,6 +68,86 @@ public interface SVStorage {
      * The default value for the list of known object ids.
      */
     Set<String> DEF_OBJ_ID_KNOWN = Collections.emptySet();
+    /**
+     * The key for the list of the most recently used object ids.
+     */
+    int OBJ_ID_RECENT = R.string.pref__storage__recent_obj_ids;
+
+
+    // Transactions
+
+    /**
+     * Editor to update many storage's values with a single write.
+     * <p>
+     * All values set on the editor are applied together when the
+     * {@link #commit()} method is called. Each method behaves like the
+     * corresponding {@link SVStorage} setter.
+     */
+    interface Editor {
+
+        /**
+         * @param objectId the id of the object to set as current.
+         * @return this editor.
+         * @see SVStorage#setCurrentObjectId(String)
+         */
+        Editor setCurrentObjectId(String objectId);
+
+        /**
+         * @param objectId the id of the object to set as favourite.
+         * @return this editor.
+         * @see SVStorage#setFavouriteObjectId(String)
+         */
+        Editor setFavouriteObjectId(String objectId);
+
+        /**
+         * @param askForUseFavouriteObjectId true if it must ask the user if he wants
+         *                                   to use the favourite object, false otherwise.
+         * @return this editor.
+         * @see SVStorage#setAskForUseFavouriteObjectId(boolean)
+         */
+        Editor setAskForUseFavouriteObjectId(boolean askForUseFavouriteObjectId);
+
+        /**
+         * @param askForSetFavouriteObjectId true if it must ask the user to set the
+         *                                   favourite object id, false otherwise.
+         * @return this editor.
+         * @see SVStorage#setAskForSetFavouriteObjectId(boolean)
+         */
+        Editor setAskForSetFavouriteObjectId(boolean askForSetFavouriteObjectId);
+
+        /**
+         * @param objectId the id of the object to add to the list of known object ids.
+         * @return this editor.
+         * @see SVStorage#addKnownObjectId(String)
+         */
+        Editor addKnownObjectId(String objectId);
+
+        /**
+         * @param objectId the id of the object to remove from the list of known object ids.
+         * @return this editor.
+         * @see SVStorage#removeKnownObjectId(String)
+         */
+        Editor removeKnownObjectId(String objectId);
+
+        /**
+         * Apply all the editor's values with a single write.
+         * <p>
+         * New values are immediately available from the storage's getters,
+         * while they are persisted asynchronously. The values are persisted
+         * even if the returned Completable is not subscribed.
+         *
+         * @return a Completable that completes when the values are persisted.
+         */
+        Completable commit();
+
+    }
+
+    /**
+     * Create a new editor to update many storage's values with a single write.
+     *
+     * @return a new storage's editor.
+     */
+    Editor edit();
 
 
     // Current object's id
@@ -261,6 +343,14 @@ public interface SVStorage {
      */
     SVPreferencesServices getCurrentPreferencesServices();
 
+    /**
+     * Get the history for the current object id.
+     *
+     * @return the history for the current object id.
+     * @throws IllegalStateException if no current object is set.
+     */
+    SVHistory getCurrentHistory();
+
     /**
      * Get the generic application preferences for the given object id.
      *
@@ -291,4 +381,31 @@ public interface SVStorage {
      */
     void resetPreferencesServices(String objId);
 
+    /**
+     * Get the history for the given object id.
+     *
+     * @param objectId the id of the object for which to get the history.
+     * @return the history for the given object id.
+     */
+    SVHistory getHistory(String objectId);
+
+    /**
+     * Hold the sub-storages of the given object id, so they are not released
+     * while in use (e.g. while observing their changes).
+     * <p>
+     * Each call must be paired with a {@link #releaseObjectStorage(String)}
+     * call.
+     *
+     * @param objectId the id of the object for which to hold the sub-storages.
+     */
+    void holdObjectStorage(String objectId);
+
+    /**
+     * Release a hold on the sub-storages of the given object id, see
+     * {@link #holdObjectStorage(String)}.
+     *
+     * @param objectId the id of the object for which to release the sub-storages.
+     */
+    void releaseObjectStorage(String objectId);
+
 }
@@ -0,0 +1,290 @@
+package com.robypomper.smartvan.smart_van.android.storage;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+
+/**
+ * Non-blocking facade for the {@link SVStorage}.
+ * <p>
+ * Each method executes the corresponding {@link SVStorage} method on a
+ * dedicated storage thread, so it can be called safely from the UI thread
+ * (for example during the application's startup) without waiting for the
+ * disk. Operations are executed in the same order they are subscribed.
+ * <p>
+ * Results are emitted on the storage thread, then UI components must switch
+ * back to the UI thread (via <code>runOnUiThread()</code>) before updating
+ * their views.
+ * <p>
+ * An instance of SVStorageAsync is provided by the {@link SVStorageSingleton}.
+ *
+ * @noinspection unused
+ */
+public class SVStorageAsync {
+
+    // Constants
+
+    private static final String THREAD_NAME = "SVStorageAsync";
+
+
+    // Internal vars
+
+    /**
+     * The wrapped synchronous storage.
+     */
+    private final SVStorage storage;
+    /**
+     * Single thread scheduler used to execute the storage operations.
+     */
+    private final Scheduler scheduler;
+
+
+    // Constructors
+
+    /**
+     * Create a non-blocking facade for given storage.
+     *
+     * @param storage the storage to wrap.
+     */
+    public SVStorageAsync(SVStorage storage) {
+        this.storage = storage;
+        this.scheduler = Schedulers.from(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+
+    // Getters
+
+    /**
+     * @return the wrapped synchronous storage.
+     */
+    public SVStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return the scheduler used to execute the storage operations.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+
+    // Current object's id
+
+    /**
+     * @return a Maybe that emits the currently selected object id, or
+     * completes empty if no object has been selected yet.
+     * @see SVStorage#getCurrentObjectId()
+     */
+    public Maybe<String> getCurrentObjectId() {
+        return Maybe.fromCallable(storage::getCurrentObjectId).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param objectId the id of the object to set as current.
+     * @return a Completable that completes when the new value is readable
+     * from the storage.
+     * @see SVStorage#setCurrentObjectId(String)
+     */
+    public Completable setCurrentObjectId(String objectId) {
+        return Completable.fromAction(() -> storage.setCurrentObjectId(objectId)).subscribeOn(scheduler);
+    }
+
+
+    // Favourite object's id
+
+    /**
+     * @return a Maybe that emits the user favourite object id, or completes
+     * empty if the user didn't select a favourite object yet.
+     * @see SVStorage#getFavouriteObjectId()
+     */
+    public Maybe<String> getFavouriteObjectId() {
+        return Maybe.fromCallable(storage::getFavouriteObjectId).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param objectId the id of the object to set as favourite.
+     * @return a Completable that completes when the new value is readable
+     * from the storage.
+     * @see SVStorage#setFavouriteObjectId(String)
+     */
+    public Completable setFavouriteObjectId(String objectId) {
+        return Completable.fromAction(() -> storage.setFavouriteObjectId(objectId)).subscribeOn(scheduler);
+    }
+
+    /**
+     * @return a Single that emits true if it must ask the user if he wants
+     * to use the favourite object.
+     * @see SVStorage#askForUseFavouriteObjectId()
+     */
+    public Single<Boolean> askForUseFavouriteObjectId() {
+        return Single.fromCallable(storage::askForUseFavouriteObjectId).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param askForUseFavouriteObjectId true if it must ask the user if he wants
+     *                                   to use the favourite object, false otherwise.
+     * @return a Completable that completes when the new value is readable
+     * from the storage.
+     * @see SVStorage#setAskForUseFavouriteObjectId(boolean)
+     */
+    public Completable setAskForUseFavouriteObjectId(boolean askForUseFavouriteObjectId) {
+        return Completable.fromAction(() -> storage.setAskForUseFavouriteObjectId(askForUseFavouriteObjectId)).subscribeOn(scheduler);
+    }
+
+    /**
+     * @return a Single that emits true if it must ask the user to set the
+     * favourite object id.
+     * @see SVStorage#askForSetFavouriteObjectId()
+     */
+    public Single<Boolean> askForSetFavouriteObjectId() {
+        return Single.fromCallable(storage::askForSetFavouriteObjectId).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param askForSetFavouriteObjectId true if it must ask the user to set the
+     *                                   favourite object id, false otherwise.
+     * @return a Completable that completes when the new value is readable
+     * from the storage.
+     * @see SVStorage#setAskForSetFavouriteObjectId(boolean)
+     */
+    public Completable setAskForSetFavouriteObjectId(boolean askForSetFavouriteObjectId) {
+        return Completable.fromAction(() -> storage.setAskForSetFavouriteObjectId(askForSetFavouriteObjectId)).subscribeOn(scheduler);
+    }
+
+
+    // Known object ids
+
+    /**
+     * @return a Single that emits the list of known object ids.
+     * @see SVStorage#getKnownObjectIds()
+     */
+    public Single<List<String>> getKnownObjectIds() {
+        return Single.fromCallable(storage::getKnownObjectIds).subscribeOn(scheduler);
+    }
+
+
+    // Transactions
+
+    /**
+     * Create a new editor to update many storage's values with a single write.
+     * <p>
+     * The editor must be applied with the {@link #apply(SVStorage.Editor)}
+     * method, so his values are written from the storage thread.
+     *
+     * @return a new storage's editor.
+     */
+    public SVStorage.Editor edit() {
+        return storage.edit();
+    }
+
+    /**
+     * Apply all the editor's values from the storage thread.
+     *
+     * @param editor the editor to apply.
+     * @return a Completable that completes when the new values are readable
+     * from the storage, while they are persisted in background.
+     * @see SVStorage.Editor#commit()
+     */
+    public Completable apply(SVStorage.Editor editor) {
+        return Completable.fromAction(editor::commit).subscribeOn(scheduler);
+    }
+
+
+    // Storage mngm
+
+    /**
+     * @param objectId the id of the object for which to generate the storage.
+     * @return a Completable that completes when the storage is generated.
+     * @see SVStorage#generateStorage(String)
+     */
+    public Completable generateStorage(String objectId) {
+        return Completable.fromAction(() -> storage.generateStorage(objectId)).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param objectId the id of the object for which to clear the storage.
+     * @return a Completable that completes when the storage is cleared.
+     * @see SVStorage#clearStorage(String)
+     */
+    public Completable clearStorage(String objectId) {
+        return Completable.fromAction(() -> storage.clearStorage(objectId)).subscribeOn(scheduler);
+    }
+
+
+    // Getters for object related storage sub-components
+
+    /**
+     * @return a Single that emits the application preferences for the current
+     * object id, or fails with an {@link IllegalStateException} if no current
+     * object is set.
+     * @see SVStorage#getCurrentPreferencesApp()
+     */
+    public Single<SVPreferences> getCurrentPreferencesApp() {
+        return Single.fromCallable(storage::getCurrentPreferencesApp).subscribeOn(scheduler);
+    }
+
+    /**
+     * @return a Single that emits the preferences services for the current
+     * object id, or fails with an {@link IllegalStateException} if no current
+     * object is set.
+     * @see SVStorage#getCurrentPreferencesServices()
+     */
+    public Single<SVPreferencesServices> getCurrentPreferencesServices() {
+        return Single.fromCallable(storage::getCurrentPreferencesServices).subscribeOn(scheduler);
+    }
+
+    /**
+     * @return a Single that emits the history for the current object id, or
+     * fails with an {@link IllegalStateException} if no current object is set.
+     * @see SVStorage#getCurrentHistory()
+     */
+    public Single<SVHistory> getCurrentHistory() {
+        return Single.fromCallable(storage::getCurrentHistory).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param objectId the id of the object for which to get the application preferences.
+     * @return a Maybe that emits the preferences for the given object id, or
+     * completes empty if the object is unknown.
+     * @see SVStorage#getPreferencesApp(String)
+     */
+    public Maybe<SVPreferences> getPreferencesApp(String objectId) {
+        return Maybe.fromCallable(() -> storage.getPreferencesApp(objectId)).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param objectId the id of the object for which to get the preferences services.
+     * @return a Maybe that emits the preferences services for the given object
+     * id, or completes empty if the object is unknown.
+     * @see SVStorage#getPreferencesServices(String)
+     */
+    public Maybe<SVPreferencesServices> getPreferencesServices(String objectId) {
+        return Maybe.fromCallable(() -> storage.getPreferencesServices(objectId)).subscribeOn(scheduler);
+    }
+
+    /**
+     * @param objectId the id of the object for which to get the history.
+     * @return a Maybe that emits the history for the given object id, or
+     * completes empty if the object is unknown.
+     * @see SVStorage#getHistory(String)
+     */
+    public Maybe<SVHistory> getHistory(String objectId) {
+        return Maybe.fromCallable(() -> storage.getHistory(objectId)).subscribeOn(scheduler);
+    }
+
+}
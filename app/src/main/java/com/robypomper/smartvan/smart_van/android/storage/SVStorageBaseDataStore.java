@@ -5,12 +5,20 @@ import android.content.Context;
 import androidx.datastore.preferences.core.Preferences;
 import androidx.datastore.rxjava3.RxDataStore;
 
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreEditor;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreKeys;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreSnapshotCache;
 import com.robypomper.smartvan.smart_van.android.utils.DataStoreUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+
+import io.reactivex.rxjava3.core.Completable;
 
 
 /**
@@ -29,6 +37,20 @@ import java.util.Set;
  */
 public abstract class SVStorageBaseDataStore implements SVStorage {
 
+    // Constants
+
+    /**
+     * Max number of object ids kept in the most recently used list.
+     */
+    public static final int MAX_RECENT_OBJ_IDS = 5;
+    /**
+     * Separator between the position and the id of each object, into the
+     * set of the most recently used object ids. String sets are unordered,
+     * so each id is stored with his position into the list.
+     */
+    private static final String RECENT_OBJ_IDS_SEPARATOR = ":";
+
+
     // Internal vars
 
     /**
@@ -39,6 +61,19 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      * The AndroidX DataStore used by this class.
      */
     private final RxDataStore<Preferences> dataStore;
+    /**
+     * The in-memory snapshot of the {@link #dataStore}, used to serve reads.
+     */
+    private final DataStoreSnapshotCache dataStoreCache;
+    /**
+     * Preference keys, resolved once on storage initialization.
+     */
+    private final Preferences.Key<String> keyCurrObjId;
+    private final Preferences.Key<String> keyFavObjId;
+    private final Preferences.Key<Boolean> keyAskUseFavObjId;
+    private final Preferences.Key<Boolean> keyAskSetFavObjId;
+    private final Preferences.Key<Set<String>> keyObjIdKnown;
+    private final Preferences.Key<Set<String>> keyObjIdRecent;
 
 
     // Constructor
@@ -51,6 +86,13 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
     public SVStorageBaseDataStore(Context ctx) {
         this.ctx = ctx;
         dataStore = DataStoreUtils.initDataStore(ctx, ctx.getString(DATA_STORE_NAME));
+        dataStoreCache = new DataStoreSnapshotCache(dataStore);
+        keyCurrObjId = DataStoreKeys.stringKey(ctx, CURR_OBJ_ID);
+        keyFavObjId = DataStoreKeys.stringKey(ctx, FAV_OBJ_ID);
+        keyAskUseFavObjId = DataStoreKeys.booleanKey(ctx, ASK_USE_FAV_OBJ_ID);
+        keyAskSetFavObjId = DataStoreKeys.booleanKey(ctx, ASK_SET_FAV_OBJ_ID);
+        keyObjIdKnown = DataStoreKeys.stringSetKey(ctx, OBJ_ID_KNOWN);
+        keyObjIdRecent = DataStoreKeys.stringSetKey(ctx, OBJ_ID_RECENT);
     }
 
 
@@ -66,6 +108,20 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
     }
 
 
+    // Transactions
+
+    /**
+     * Create a new editor to update many storage's values with a single
+     * DataStore write.
+     *
+     * @return a new storage's editor.
+     */
+    @Override
+    public SVStorage.Editor edit() {
+        return new StorageEditor();
+    }
+
+
     // Current object's id
 
     /**
@@ -78,7 +134,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public String getCurrentObjectId() {
-        return DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.stringKey(ctx, CURR_OBJ_ID), DEF_CURR_OBJ_ID);
+        return DataStoreUtils.getFromDataStore(dataStoreCache, keyCurrObjId, DEF_CURR_OBJ_ID);
     }
 
     /**
@@ -92,10 +148,8 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public void setCurrentObjectId(String objectId) {
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.stringKey(ctx, CURR_OBJ_ID), objectId);
-
-        if (objectId != null && !getKnownObjectIds().contains(objectId))
-            addKnownObjectId(objectId);
+        //noinspection ResultOfMethodCallIgnored
+        edit().setCurrentObjectId(objectId).commit();
     }
 
 
@@ -117,7 +171,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public String getFavouriteObjectId() {
-        return DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.stringKey(ctx, FAV_OBJ_ID), DEF_FAV_OBJ_ID);
+        return DataStoreUtils.getFromDataStore(dataStoreCache, keyFavObjId, DEF_FAV_OBJ_ID);
     }
 
     /**
@@ -131,7 +185,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public void setFavouriteObjectId(String objectId) {
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.stringKey(ctx, FAV_OBJ_ID), objectId);
+        DataStoreUtils.setToDataStore(dataStoreCache, keyFavObjId, objectId);
     }
 
     /**
@@ -147,7 +201,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public boolean askForUseFavouriteObjectId() {
-        return DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.booleanKey(ctx, ASK_USE_FAV_OBJ_ID), DEF_ASK_USE_FAV_OBJ_ID);
+        return DataStoreUtils.getFromDataStore(dataStoreCache, keyAskUseFavObjId, DEF_ASK_USE_FAV_OBJ_ID);
     }
 
     /**
@@ -163,7 +217,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public void setAskForUseFavouriteObjectId(boolean askForUseFavouriteObjectId) {
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.booleanKey(ctx, ASK_USE_FAV_OBJ_ID), askForUseFavouriteObjectId);
+        DataStoreUtils.setToDataStore(dataStoreCache, keyAskUseFavObjId, askForUseFavouriteObjectId);
     }
 
     /**
@@ -180,7 +234,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public boolean askForSetFavouriteObjectId() {
-        return DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.booleanKey(ctx, ASK_SET_FAV_OBJ_ID), DEF_ASK_SET_FAV_OBJ_ID);
+        return DataStoreUtils.getFromDataStore(dataStoreCache, keyAskSetFavObjId, DEF_ASK_SET_FAV_OBJ_ID);
     }
 
     /**
@@ -197,7 +251,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public void setAskForSetFavouriteObjectId(boolean askForSetFavouriteObjectId) {
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.booleanKey(ctx, ASK_SET_FAV_OBJ_ID), askForSetFavouriteObjectId);
+        DataStoreUtils.setToDataStore(dataStoreCache, keyAskSetFavObjId, askForSetFavouriteObjectId);
     }
 
 
@@ -213,7 +267,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public List<String> getKnownObjectIds() {
-        Set<String> knownIds = DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.stringSetKey(ctx, OBJ_ID_KNOWN), DEF_OBJ_ID_KNOWN);
+        Set<String> knownIds = DataStoreUtils.getFromDataStore(dataStoreCache, keyObjIdKnown, DEF_OBJ_ID_KNOWN);
         return new ArrayList<>(knownIds);
     }
 
@@ -228,12 +282,8 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public void addKnownObjectId(String objectId) {
-        Set<String> knownIds = new HashSet<>(DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.stringSetKey(ctx, OBJ_ID_KNOWN), DEF_OBJ_ID_KNOWN));
-        if (!knownIds.contains(objectId)) {
-            knownIds.add(objectId);
-            DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.stringSetKey(ctx, OBJ_ID_KNOWN), knownIds);
-        }
-        generateStorage(objectId);      // it works also for loading existing data
+        //noinspection ResultOfMethodCallIgnored
+        edit().addKnownObjectId(objectId).commit();
     }
 
     /**
@@ -246,13 +296,44 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
      */
     @Override
     public void removeKnownObjectId(String objectId) {
-        Set<String> knownIds = DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.stringSetKey(ctx, OBJ_ID_KNOWN), DEF_OBJ_ID_KNOWN);
-        List<String> knownIdsList = new ArrayList<>(knownIds);
-        if (!knownIdsList.remove(objectId))
-            return;
-        knownIds = new HashSet<>(knownIdsList);
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.stringSetKey(ctx, OBJ_ID_KNOWN), knownIds);
-        clearStorage(objectId);
+        //noinspection ResultOfMethodCallIgnored
+        edit().removeKnownObjectId(objectId).commit();
+    }
+
+
+    /**
+     * Get the most recently used object ids.
+     * <p>
+     * Each time an object is set as current, his id is moved on top of this
+     * list. Only the latest {@link #MAX_RECENT_OBJ_IDS} ids are kept.
+     *
+     * @return the most recently used object ids, starting from the latest.
+     */
+    public List<String> getRecentObjectIds() {
+        return parseRecentObjectIds(DataStoreUtils.getFromDataStore(dataStoreCache, keyObjIdRecent, Collections.<String>emptySet()));
+    }
+
+    private static List<String> parseRecentObjectIds(Set<String> recentIds) {
+        if (recentIds == null)
+            return new ArrayList<>();
+
+        TreeMap<Integer, String> sorted = new TreeMap<>();
+        for (String recentId : recentIds) {
+            int separator = recentId.indexOf(RECENT_OBJ_IDS_SEPARATOR);
+            if (separator <= 0) continue;
+            try {
+                sorted.put(Integer.parseInt(recentId.substring(0, separator)), recentId.substring(separator + 1));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return new ArrayList<>(sorted.values());
+    }
+
+    private static Set<String> formatRecentObjectIds(List<String> recent) {
+        Set<String> recentIds = new HashSet<>();
+        for (int i = 0; i < recent.size(); i++)
+            recentIds.add(i + RECENT_OBJ_IDS_SEPARATOR + recent.get(i));
+        return recentIds;
     }
 
 
@@ -269,8 +350,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
     public void generateStorage(String objectId) {
         generatePreferenceApp(objectId);
         generatePreferenceServices(objectId);
-        // TODO uncomment when the history is implemented
-        // generateHistory(objectId);
+        generateHistory(objectId);
         // TODO uncomment when the automations are implemented
         // generateAutomations(objectId);
     }
@@ -287,8 +367,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
     public void clearStorage(String objectId) {
         clearPreferenceApp(objectId);
         clearPreferenceServices(objectId);
-        // TODO uncomment when the history is implemented
-        // clearHistory(objectId);
+        clearHistory(objectId);
         // TODO uncomment when the automations are implemented
         // clearAutomations(objectId);
     }
@@ -300,7 +379,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
 
     protected abstract void generatePreferenceServices(String objectId);
 
-    //protected abstract void generateHistory(String objectId);
+    protected abstract void generateHistory(String objectId);
 
     //protected abstract void generateAutomations(String objectId);
 
@@ -308,7 +387,7 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
 
     protected abstract void clearPreferenceServices(String objectId);
 
-    //protected abstract void clearHistory(String objectId);
+    protected abstract void clearHistory(String objectId);
 
     //protected abstract void clearAutomations(String objectId);
 
@@ -342,6 +421,19 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
         return getPreferencesServices(getCurrentObjectId());
     }
 
+    /**
+     * Get the history for the current object id.
+     *
+     * @return the history for the current object id.
+     * @throws IllegalStateException if no current object is set.
+     */
+    @Override
+    public SVHistory getCurrentHistory() {
+        if (getCurrentObjectId() == null)
+            throw new IllegalStateException("No current object is set");
+        return getHistory(getCurrentObjectId());
+    }
+
     /**
      * Reset the generic application preferences for the given object id.
      *
@@ -364,4 +456,91 @@ public abstract class SVStorageBaseDataStore implements SVStorage {
         generatePreferenceServices(objId);
     }
 
+
+
+    // Editor implementation
+
+    /**
+     * {@link SVStorage.Editor} implementation that collects all updates into a
+     * single {@link DataStoreEditor}.
+     * <p>
+     * Object's storage generation and clearing, required by added and removed
+     * known object ids, are executed on commit.
+     */
+    private class StorageEditor implements SVStorage.Editor {
+
+        private final DataStoreEditor editor = dataStoreCache.edit();
+        private final Set<String> toGenerate = new LinkedHashSet<>();
+        private final Set<String> toClear = new LinkedHashSet<>();
+
+        @Override
+        public SVStorage.Editor setCurrentObjectId(String objectId) {
+            editor.set(keyCurrObjId, objectId);
+            if (objectId == null)
+                return this;
+            if (!getKnownObjectIds().contains(objectId))
+                addKnownObjectId(objectId);
+            editor.apply(prefs -> {
+                List<String> recent = new ArrayList<>();
+                recent.add(objectId);
+                for (String recentId : parseRecentObjectIds(prefs.get(keyObjIdRecent)))
+                    if (!recentId.equals(objectId) && recent.size() < MAX_RECENT_OBJ_IDS)
+                        recent.add(recentId);
+                prefs.set(keyObjIdRecent, formatRecentObjectIds(recent));
+            });
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor setFavouriteObjectId(String objectId) {
+            editor.set(keyFavObjId, objectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor setAskForUseFavouriteObjectId(boolean askForUseFavouriteObjectId) {
+            editor.set(keyAskUseFavObjId, askForUseFavouriteObjectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor setAskForSetFavouriteObjectId(boolean askForSetFavouriteObjectId) {
+            editor.set(keyAskSetFavObjId, askForSetFavouriteObjectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor addKnownObjectId(String objectId) {
+            editor.addToStringSet(keyObjIdKnown, objectId);
+            toClear.remove(objectId);
+            toGenerate.add(objectId);      // it works also for loading existing data
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor removeKnownObjectId(String objectId) {
+            if (!toGenerate.remove(objectId) && !getKnownObjectIds().contains(objectId))
+                return this;
+            editor.removeFromStringSet(keyObjIdKnown, objectId);
+            editor.apply(prefs -> {
+                List<String> recent = parseRecentObjectIds(prefs.get(keyObjIdRecent));
+                if (recent.remove(objectId))
+                    prefs.set(keyObjIdRecent, formatRecentObjectIds(recent));
+            });
+            toClear.add(objectId);
+            return this;
+        }
+
+        @Override
+        public Completable commit() {
+            Completable result = editor.commit();
+            for (String objectId : toGenerate)
+                generateStorage(objectId);
+            for (String objectId : toClear)
+                clearStorage(objectId);
+            return result;
+        }
+
+    }
+
 }
@@ -21,6 +21,10 @@ public class SVStorageSingleton {
      * The singleton instance.
      */
     private static SVStorage instance;
+    /**
+     * The non-blocking facade for the singleton instance.
+     */
+    private static SVStorageAsync asyncInstance;
 
 
     // Getters and Setters
@@ -32,6 +36,14 @@ public class SVStorageSingleton {
         return instance;
     }
 
+    /**
+     * @return the non-blocking facade for the singleton instance, or null if
+     * the singleton instance was not set yet.
+     */
+    public static SVStorageAsync getAsyncInstance() {
+        return asyncInstance;
+    }
+
     /**
      * Set the singleton instance.
      * <p>
@@ -44,6 +56,7 @@ public class SVStorageSingleton {
         if (SVStorageSingleton.instance != null)
             throw new IllegalStateException("Instance for SVStorageSingleton already set");
         SVStorageSingleton.instance = instance;
+        SVStorageSingleton.asyncInstance = new SVStorageAsync(instance);
     }
 
 }
@@ -38,4 +38,15 @@ public interface SVSubStorage {
      */
     void clearStorage(String objectId);
 
+    /**
+     * Release the resources used by the storage for the given object id,
+     * without deleting his data.
+     * <p>
+     * This method is called when the object's storage is not used anymore,
+     * then it can be generated again to reload the object's data.
+     *
+     * @param objectId the id of the object for which to release the storage.
+     */
+    void releaseStorage(String objectId);
+
 }
@@ -0,0 +1,180 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import com.robypomper.smartvan.smart_van.android.storage.SVAbsSubStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferences;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+
+
+/**
+ * The {@link SVPreferences} implementation backed by the
+ * {@link CompactStorageFile}.
+ * <p>
+ * Object's preferences are stored into the object's record of the shared
+ * compact storage file.
+ */
+public class CompactPreferences extends SVAbsSubStorage implements SVPreferences {
+
+    // Internal vars
+
+    /**
+     * The shared compact storage file.
+     */
+    private final CompactStorageFile storeFile;
+    /**
+     * Flow of the changed preferences, identified by their key resource.
+     */
+    private final FlowableProcessor<Integer> changesProcessor = PublishProcessor.<Integer>create().toSerialized();
+
+
+    // Constructor
+
+    /**
+     * Initialize the compact preferences.
+     *
+     * @param storeFile the shared compact storage file.
+     */
+    public CompactPreferences(CompactStorageFile storeFile) {
+        this.storeFile = storeFile;
+    }
+
+
+    // SVSubStorage
+
+    /**
+     * Generate the storage for the given object id.
+     * <p>
+     * The object's record is created on the first write.
+     *
+     * @param objectId the id of the object for which to generate the storage.
+     */
+    @Override
+    public void generateStorage(String objectId) {
+        setObjectId(objectId);
+    }
+
+    /**
+     * Clear the storage for the given object id.
+     *
+     * @param objectId the id of the object for which to clear the storage.
+     */
+    @Override
+    public void clearStorage(String objectId) {
+        final boolean[] wasSet = new boolean[2];
+        //noinspection ResultOfMethodCallIgnored
+        storeFile.update(data -> {
+            CompactStorageData.ObjectRecord record = data.getObject(objectId);
+            if (record == null) return;
+            wasSet[0] = record.svBoxColor != null;
+            wasSet[1] = record.chartTimeoutSeconds != null;
+            record.svBoxColor = null;
+            record.chartTimeoutSeconds = null;
+            if (record.isEmpty()) data.objects.remove(objectId);
+        });
+
+        if (objectId.equals(getObjectId())) {
+            if (wasSet[0]) changesProcessor.onNext(SVBOX_COLOR);
+            if (wasSet[1]) changesProcessor.onNext(CHARTS_TIMEOUT);
+        }
+        releaseStorage(objectId);
+    }
+
+    /**
+     * Release the storage for the given object id.
+     *
+     * @param objectId the id of the object for which to release the storage.
+     */
+    @Override
+    public void releaseStorage(String objectId) {
+        setObjectId(null);
+    }
+
+
+    // SVPreferences
+
+    /**
+     * @return the color used for the SVBox icon background.
+     */
+    @Override
+    public int getSVBoxColor() {
+        final String objectId = getObjectId();
+        return storeFile.read(data -> {
+            CompactStorageData.ObjectRecord record = data.getObject(objectId);
+            return record != null && record.svBoxColor != null ? record.svBoxColor : DEF_SVBOX_COLOR;
+        });
+    }
+
+    /**
+     * @param color the color used for the SVBox icon background.
+     */
+    @Override
+    public void setSVBoxColor(int color) {
+        final String objectId = getObjectId();
+        final boolean[] changed = new boolean[1];
+        //noinspection ResultOfMethodCallIgnored
+        storeFile.update(data -> {
+            CompactStorageData.ObjectRecord record = data.getOrCreateObject(objectId);
+            changed[0] = record.svBoxColor == null || record.svBoxColor != color;
+            record.svBoxColor = color;
+        });
+        if (changed[0]) changesProcessor.onNext(SVBOX_COLOR);
+    }
+
+    /**
+     * @return the chart's fetching timeout in seconds.
+     */
+    @Override
+    public int getChartTimeoutSeconds() {
+        final String objectId = getObjectId();
+        return storeFile.read(data -> {
+            CompactStorageData.ObjectRecord record = data.getObject(objectId);
+            return record != null && record.chartTimeoutSeconds != null ? record.chartTimeoutSeconds : DEF_CHARTS_TIMEOUT;
+        });
+    }
+
+    /**
+     * @param chartTimeoutSeconds the chart's fetching timeout in seconds.
+     */
+    @Override
+    public void setChartTimeoutSeconds(int chartTimeoutSeconds) {
+        final String objectId = getObjectId();
+        final boolean[] changed = new boolean[1];
+        //noinspection ResultOfMethodCallIgnored
+        storeFile.update(data -> {
+            CompactStorageData.ObjectRecord record = data.getOrCreateObject(objectId);
+            changed[0] = record.chartTimeoutSeconds == null || record.chartTimeoutSeconds != chartTimeoutSeconds;
+            record.chartTimeoutSeconds = chartTimeoutSeconds;
+        });
+        if (changed[0]) changesProcessor.onNext(CHARTS_TIMEOUT);
+    }
+
+
+    // Change streams
+
+    /**
+     * Flow of the SVBox color's changes.
+     *
+     * @return the flow of the SVBox color's changes.
+     */
+    @Override
+    public Flowable<Integer> observeSVBoxColor() {
+        return changesProcessor.onBackpressureBuffer()
+                .filter(pref -> pref == SVBOX_COLOR)
+                .map(pref -> getSVBoxColor());
+    }
+
+    /**
+     * Flow of the chart timeout's changes.
+     *
+     * @return the flow of the chart timeout's changes.
+     */
+    @Override
+    public Flowable<Integer> observeChartTimeoutSeconds() {
+        return changesProcessor.onBackpressureBuffer()
+                .filter(pref -> pref == CHARTS_TIMEOUT)
+                .map(pref -> getChartTimeoutSeconds());
+    }
+
+}
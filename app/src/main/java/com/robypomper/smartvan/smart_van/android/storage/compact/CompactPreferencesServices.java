@@ -0,0 +1,312 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import com.robypomper.smartvan.smart_van.android.storage.SVAbsSubStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferencesServices;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+
+
+/**
+ * The {@link SVPreferencesServices} implementation backed by the
+ * {@link CompactStorageFile}.
+ * <p>
+ * SV Services' preferences are stored as typed records, by service path, into
+ * the object's record of the shared compact storage file.
+ */
+public class CompactPreferencesServices extends SVAbsSubStorage implements SVPreferencesServices {
+
+    // Internal vars
+
+    /**
+     * The shared compact storage file.
+     */
+    private final CompactStorageFile storeFile;
+    /**
+     * Flow of the SV Services' preferences changes.
+     */
+    private final FlowableProcessor<ServicePrefsChange> changesProcessor = PublishProcessor.<ServicePrefsChange>create().toSerialized();
+
+
+    // Constructor
+
+    /**
+     * Initialize the compact SV Services' preferences.
+     *
+     * @param storeFile the shared compact storage file.
+     */
+    public CompactPreferencesServices(CompactStorageFile storeFile) {
+        this.storeFile = storeFile;
+    }
+
+
+    // SVSubStorage
+
+    /**
+     * Generate the storage for the given object id.
+     * <p>
+     * The object's record is created on the first write.
+     *
+     * @param objectId the id of the object for which to generate the storage.
+     */
+    @Override
+    public void generateStorage(String objectId) {
+        setObjectId(objectId);
+    }
+
+    /**
+     * Clear the storage for the given object id.
+     *
+     * @param objectId the id of the object for which to clear the storage.
+     */
+    @Override
+    public void clearStorage(String objectId) {
+        final List<ServicePrefsChange> changes = new ArrayList<>();
+        //noinspection ResultOfMethodCallIgnored
+        storeFile.update(data -> {
+            CompactStorageData.ObjectRecord record = data.getObject(objectId);
+            if (record == null) return;
+            for (Map.Entry<String, CompactStorageData.ServiceRecord> service : record.services.entrySet()) {
+                if (service.getValue().name != null)
+                    changes.add(new ServicePrefsChange(service.getKey(), ServicePrefsChange.Property.NAME, service.getValue().name, null));
+                if (service.getValue().iconName != null)
+                    changes.add(new ServicePrefsChange(service.getKey(), ServicePrefsChange.Property.ICON, service.getValue().iconName, null));
+            }
+            record.services.clear();
+            if (record.isEmpty()) data.objects.remove(objectId);
+        });
+
+        if (objectId.equals(getObjectId()))
+            for (ServicePrefsChange change : changes)
+                changesProcessor.onNext(change);
+        releaseStorage(objectId);
+    }
+
+    /**
+     * Release the storage for the given object id.
+     *
+     * @param objectId the id of the object for which to release the storage.
+     */
+    @Override
+    public void releaseStorage(String objectId) {
+        setObjectId(null);
+    }
+
+
+    // SVPreferencesServices
+
+    /**
+     * Create a new editor to update many SV Services' preferences with a
+     * single file write.
+     *
+     * @return a new SV Services' preferences editor.
+     */
+    @Override
+    public SVPreferencesServices.Editor edit() {
+        final List<ServicePrefsChange> updates = new ArrayList<>();
+        return new SVPreferencesServices.Editor() {
+            @Override
+            public SVPreferencesServices.Editor setName(String srvPath, String name) {
+                updates.add(new ServicePrefsChange(srvPath, ServicePrefsChange.Property.NAME, null, name));
+                return this;
+            }
+
+            @Override
+            public SVPreferencesServices.Editor setIconName(String srvPath, String iconName) {
+                updates.add(new ServicePrefsChange(srvPath, ServicePrefsChange.Property.ICON, null, iconName));
+                return this;
+            }
+
+            @Override
+            public Completable commit() {
+                return applyUpdates(updates);
+            }
+        };
+    }
+
+    /**
+     * Set the name of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service for which to set the name.
+     * @param name    the name to set for the SV Service.
+     */
+    @Override
+    public void setName(String srvPath, String name) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().setName(srvPath, name).commit();
+    }
+
+    /**
+     * Get the name of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service for which to get the name.
+     * @return the name of the SV Service.
+     */
+    @Override
+    public String getName(String srvPath) {
+        final String objectId = getObjectId();
+        return storeFile.read(data -> {
+            CompactStorageData.ServiceRecord service = getService(data, objectId, srvPath);
+            return service != null && service.name != null ? service.name : DEF_NAME;
+        });
+    }
+
+    /**
+     * Set the icon of the specified SV Service.
+     *
+     * @param srvPath  the path of the SV Service for which to set the icon.
+     * @param iconName the string corresponding to the icon to set for the SV Service.
+     */
+    @Override
+    public void setIconName(String srvPath, String iconName) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().setIconName(srvPath, iconName).commit();
+    }
+
+    /**
+     * Get the icon drawable of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service for which to get the icon drawable.
+     * @return the string corresponding to the icon drawable of the SV Service.
+     */
+    @Override
+    public String getIconName(String srvPath) {
+        final String objectId = getObjectId();
+        return storeFile.read(data -> {
+            CompactStorageData.ServiceRecord service = getService(data, objectId, srvPath);
+            return service != null && service.iconName != null ? service.iconName : DEF_ICON_NAME;
+        });
+    }
+
+    /**
+     * Get the preferences of all SV Services that have at least one
+     * preference set.
+     *
+     * @return a map containing the SV Services' preferences, by service path.
+     */
+    @Override
+    public Map<String, ServicePrefs> getAll() {
+        final String objectId = getObjectId();
+        return storeFile.read(data -> {
+            Map<String, ServicePrefs> all = new HashMap<>();
+            CompactStorageData.ObjectRecord record = data.getObject(objectId);
+            if (record == null) return all;
+            for (Map.Entry<String, CompactStorageData.ServiceRecord> service : record.services.entrySet())
+                all.put(service.getKey(), new ServicePrefs(service.getKey(), service.getValue().name, service.getValue().iconName));
+            return all;
+        });
+    }
+
+    /**
+     * Get the preferences of the specified SV Services.
+     *
+     * @param srvPaths the paths of the SV Services for which to get the preferences.
+     * @return a map containing the SV Services' preferences, by service path.
+     */
+    @Override
+    public Map<String, ServicePrefs> getAll(Collection<String> srvPaths) {
+        final String objectId = getObjectId();
+        return storeFile.read(data -> {
+            Map<String, ServicePrefs> all = new HashMap<>();
+            for (String srvPath : srvPaths) {
+                CompactStorageData.ServiceRecord service = getService(data, objectId, srvPath);
+                all.put(srvPath, new ServicePrefs(srvPath,
+                        service != null && service.name != null ? service.name : DEF_NAME,
+                        service != null && service.iconName != null ? service.iconName : DEF_ICON_NAME));
+            }
+            return all;
+        });
+    }
+
+
+    // Change streams
+
+    /**
+     * Flow of the changes to the SV Services' preferences.
+     *
+     * @return the flow of the changes to the SV Services' preferences.
+     */
+    @Override
+    public Flowable<ServicePrefsChange> changes() {
+        return changesProcessor.onBackpressureBuffer();
+    }
+
+    /**
+     * Flow of the changes to the name of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service to observe.
+     * @return the flow of the changes to the SV Service's name.
+     */
+    @Override
+    public Flowable<ServicePrefsChange> observeName(String srvPath) {
+        return changes().filter(change -> change.getProperty() == ServicePrefsChange.Property.NAME
+                && change.getSrvPath().equals(srvPath));
+    }
+
+    /**
+     * Flow of the changes to the icon of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service to observe.
+     * @return the flow of the changes to the SV Service's icon.
+     */
+    @Override
+    public Flowable<ServicePrefsChange> observeIconName(String srvPath) {
+        return changes().filter(change -> change.getProperty() == ServicePrefsChange.Property.ICON
+                && change.getSrvPath().equals(srvPath));
+    }
+
+
+    // Utils
+
+    private static CompactStorageData.ServiceRecord getService(CompactStorageData data, String objectId, String srvPath) {
+        CompactStorageData.ObjectRecord record = data.getObject(objectId);
+        return record != null ? record.services.get(srvPath) : null;
+    }
+
+    /**
+     * Apply given updates with a single storage's update, then emit the
+     * corresponding changes.
+     *
+     * @param updates the updates to apply, as changes with only the new value.
+     * @return a Completable that completes when the updates are written to the file.
+     */
+    private Completable applyUpdates(List<ServicePrefsChange> updates) {
+        if (updates.isEmpty())
+            return Completable.complete();
+
+        final String objectId = getObjectId();
+        final List<ServicePrefsChange> changes = new ArrayList<>();
+        Completable result = storeFile.update(data -> {
+            CompactStorageData.ObjectRecord record = data.getOrCreateObject(objectId);
+            for (ServicePrefsChange update : updates) {
+                CompactStorageData.ServiceRecord service = record.getOrCreateService(update.getSrvPath());
+                String oldValue;
+                if (update.getProperty() == ServicePrefsChange.Property.NAME) {
+                    oldValue = service.name;
+                    service.name = update.getNewValue();
+                } else {
+                    oldValue = service.iconName;
+                    service.iconName = update.getNewValue();
+                }
+                if (service.isEmpty())
+                    record.services.remove(update.getSrvPath());
+                if (oldValue == null ? update.getNewValue() != null : !oldValue.equals(update.getNewValue()))
+                    changes.add(new ServicePrefsChange(update.getSrvPath(), update.getProperty(), oldValue, update.getNewValue()));
+            }
+            if (record.isEmpty()) data.objects.remove(objectId);
+        });
+
+        for (ServicePrefsChange change : changes)
+            changesProcessor.onNext(change);
+        return result;
+    }
+
+}
@@ -0,0 +1,300 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Typed content of the {@link CompactStorageFile}.
+ * <p>
+ * It contains the storage's global values (current and favourite object ids,
+ * known object ids...) and a record for each object, with his preferences and
+ * his SV Services' preferences.
+ * <p>
+ * The content is serialized into a compact binary format: all strings (object
+ * ids, service paths, names...) are written once into a string table and then
+ * referenced by index, so the service paths shared by many objects don't
+ * increase the file size.
+ * <p>
+ * This class is not thread-safe, all accesses must be synchronized by the
+ * {@link CompactStorageFile}.
+ *
+ * @noinspection unused
+ */
+public class CompactStorageData {
+
+    // Constants
+
+    /**
+     * File signature, "SVCS".
+     */
+    static final int MAGIC = 0x53564353;
+    /**
+     * Current format's version.
+     */
+    static final int VERSION = 1;
+    private static final int FLAG_HAS_SVBOX_COLOR = 0x01;
+    private static final int FLAG_HAS_CHARTS_TIMEOUT = 0x02;
+    private static final int BOOL_UNSET = 0;
+    private static final int BOOL_FALSE = 1;
+    private static final int BOOL_TRUE = 2;
+
+
+    // Internal vars
+
+    String currObjId = null;
+    String favObjId = null;
+    Boolean askUseFavObjId = null;
+    Boolean askSetFavObjId = null;
+    final LinkedHashSet<String> knownObjIds = new LinkedHashSet<>();
+    final LinkedHashMap<String, ObjectRecord> objects = new LinkedHashMap<>();
+
+
+    // Object records
+
+    /**
+     * Preferences of a single object.
+     */
+    public static class ObjectRecord {
+
+        Integer svBoxColor = null;
+        Integer chartTimeoutSeconds = null;
+        final LinkedHashMap<String, ServiceRecord> services = new LinkedHashMap<>();
+
+        /**
+         * @return true if the record contains no values.
+         */
+        boolean isEmpty() {
+            return svBoxColor == null && chartTimeoutSeconds == null && services.isEmpty();
+        }
+
+        /**
+         * @param srvPath the path of the SV Service.
+         * @return the record of the given SV Service, created if not exists.
+         */
+        ServiceRecord getOrCreateService(String srvPath) {
+            ServiceRecord service = services.get(srvPath);
+            if (service == null) {
+                service = new ServiceRecord();
+                services.put(srvPath, service);
+            }
+            return service;
+        }
+
+    }
+
+    /**
+     * Preferences of a single SV Service.
+     */
+    public static class ServiceRecord {
+
+        String name = null;
+        String iconName = null;
+
+        /**
+         * @return true if the record contains no values.
+         */
+        boolean isEmpty() {
+            return name == null && iconName == null;
+        }
+
+    }
+
+
+    // Objects
+
+    /**
+     * @param objectId the id of the object.
+     * @return the record of the given object, or null if not exists.
+     */
+    ObjectRecord getObject(String objectId) {
+        return objects.get(objectId);
+    }
+
+    /**
+     * @param objectId the id of the object.
+     * @return the record of the given object, created if not exists.
+     */
+    ObjectRecord getOrCreateObject(String objectId) {
+        ObjectRecord object = objects.get(objectId);
+        if (object == null) {
+            object = new ObjectRecord();
+            objects.put(objectId, object);
+        }
+        return object;
+    }
+
+
+    // Serialization
+
+    /**
+     * Write the content to given stream.
+     *
+     * @param out the stream to write to.
+     * @throws IOException if the content can't be written.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        strings.add(currObjId);
+        strings.add(favObjId);
+        for (String objId : knownObjIds)
+            strings.add(objId);
+        for (Map.Entry<String, ObjectRecord> object : objects.entrySet()) {
+            strings.add(object.getKey());
+            for (Map.Entry<String, ServiceRecord> service : object.getValue().services.entrySet()) {
+                strings.add(service.getKey());
+                strings.add(service.getValue().name);
+                strings.add(service.getValue().iconName);
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        writeVarInt(out, strings.values.size());
+        for (String value : strings.values)
+            out.writeUTF(value);
+
+        writeVarInt(out, strings.ref(currObjId));
+        writeVarInt(out, strings.ref(favObjId));
+        out.writeByte(boolToByte(askUseFavObjId));
+        out.writeByte(boolToByte(askSetFavObjId));
+        writeVarInt(out, knownObjIds.size());
+        for (String objId : knownObjIds)
+            writeVarInt(out, strings.ref(objId));
+
+        writeVarInt(out, objects.size());
+        for (Map.Entry<String, ObjectRecord> object : objects.entrySet()) {
+            ObjectRecord record = object.getValue();
+            writeVarInt(out, strings.ref(object.getKey()));
+            int flags = (record.svBoxColor != null ? FLAG_HAS_SVBOX_COLOR : 0)
+                    | (record.chartTimeoutSeconds != null ? FLAG_HAS_CHARTS_TIMEOUT : 0);
+            out.writeByte(flags);
+            if (record.svBoxColor != null)
+                out.writeInt(record.svBoxColor);
+            if (record.chartTimeoutSeconds != null)
+                writeVarInt(out, record.chartTimeoutSeconds);
+
+            writeVarInt(out, record.services.size());
+            for (Map.Entry<String, ServiceRecord> service : record.services.entrySet()) {
+                writeVarInt(out, strings.ref(service.getKey()));
+                writeVarInt(out, strings.ref(service.getValue().name));
+                writeVarInt(out, strings.ref(service.getValue().iconName));
+            }
+        }
+    }
+
+    /**
+     * Read the content from given stream.
+     *
+     * @param in the stream to read from.
+     * @return the content read.
+     * @throws IOException if the content can't be read or the stream doesn't
+     *                     contain a valid compact storage.
+     */
+    public static CompactStorageData readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IOException("Invalid compact storage file signature");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported compact storage version %d", version));
+
+        int stringsCount = readVarInt(in);
+        List<String> strings = new ArrayList<>(stringsCount);
+        for (int i = 0; i < stringsCount; i++)
+            strings.add(in.readUTF());
+
+        CompactStorageData data = new CompactStorageData();
+        data.currObjId = deref(strings, readVarInt(in));
+        data.favObjId = deref(strings, readVarInt(in));
+        data.askUseFavObjId = byteToBool(in.readUnsignedByte());
+        data.askSetFavObjId = byteToBool(in.readUnsignedByte());
+        int knownCount = readVarInt(in);
+        for (int i = 0; i < knownCount; i++)
+            data.knownObjIds.add(deref(strings, readVarInt(in)));
+
+        int objectsCount = readVarInt(in);
+        for (int o = 0; o < objectsCount; o++) {
+            ObjectRecord record = data.getOrCreateObject(deref(strings, readVarInt(in)));
+            int flags = in.readUnsignedByte();
+            if ((flags & FLAG_HAS_SVBOX_COLOR) != 0)
+                record.svBoxColor = in.readInt();
+            if ((flags & FLAG_HAS_CHARTS_TIMEOUT) != 0)
+                record.chartTimeoutSeconds = readVarInt(in);
+
+            int servicesCount = readVarInt(in);
+            for (int s = 0; s < servicesCount; s++) {
+                ServiceRecord service = record.getOrCreateService(deref(strings, readVarInt(in)));
+                service.name = deref(strings, readVarInt(in));
+                service.iconName = deref(strings, readVarInt(in));
+            }
+        }
+        return data;
+    }
+
+
+    // Utils
+
+    private static int boolToByte(Boolean value) {
+        return value == null ? BOOL_UNSET : value ? BOOL_TRUE : BOOL_FALSE;
+    }
+
+    private static Boolean byteToBool(int value) {
+        return value == BOOL_UNSET ? null : value == BOOL_TRUE;
+    }
+
+    private static String deref(List<String> strings, int ref) throws IOException {
+        if (ref == 0) return null;
+        if (ref > strings.size())
+            throw new IOException(String.format("Invalid string reference %d", ref));
+        return strings.get(ref - 1);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Strings written into the file, referenced by their index + 1 (0 is
+     * reserved for null values).
+     */
+    private static class StringTable {
+
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> refs = new HashMap<>();
+
+        void add(String value) {
+            if (value == null || refs.containsKey(value)) return;
+            values.add(value);
+            refs.put(value, values.size());
+        }
+
+        int ref(String value) {
+            return value == null ? 0 : refs.get(value);
+        }
+
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+
+
+/**
+ * Single binary file containing the whole {@link CompactStorageData}.
+ * <p>
+ * The file is loaded once, on first access, then all reads are served from
+ * memory. Updates are applied to the in-memory content immediately, while
+ * they are written to the file asynchronously: all updates received within
+ * the coalescing window are written with a single (atomic) file write.
+ * <p>
+ * When the file doesn't exist yet, the content is initialized by the
+ * {@link Initializer} (if any), for example to import the values from a
+ * previous storage implementation. When the file is corrupted, it's moved
+ * aside and the content is initialized as for a missing file.
+ *
+ * @noinspection unused
+ */
+public class CompactStorageFile {
+
+    // Constants
+
+    /**
+     * Default time window within which consecutive updates are written together.
+     */
+    public static final long DEF_COALESCE_WINDOW_MS = 50;
+    private static final String TMP_EXT = ".tmp";
+    private static final String CORRUPTED_EXT = ".corrupted";
+
+
+    // Interfaces
+
+    /**
+     * Read values from the storage's content.
+     *
+     * @param <T> the type of the value read.
+     */
+    public interface Reader<T> {
+        T read(CompactStorageData data);
+    }
+
+    /**
+     * Update the storage's content.
+     */
+    public interface Update {
+        void apply(CompactStorageData data);
+    }
+
+    /**
+     * Initialize the storage's content when the file doesn't exist yet.
+     */
+    public interface Initializer {
+        void init(CompactStorageData data);
+    }
+
+
+    // Internal vars
+
+    private final File file;
+    private final long coalesceWindowMs;
+    private final Initializer initializer;
+    /**
+     * Lock that serializes the file writes.
+     */
+    private final Object saveLock = new Object();
+    /**
+     * The storage's content, null until the file is loaded.
+     */
+    private CompactStorageData data = null;
+    /**
+     * Result of the next file write, null if no write is scheduled.
+     */
+    private CompletableSubject pendingSave = null;
+
+
+    // Constructors
+
+    /**
+     * @param file        the storage's file.
+     * @param initializer the content's initializer for missing file, can be null.
+     */
+    public CompactStorageFile(File file, Initializer initializer) {
+        this(file, initializer, DEF_COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * @param file             the storage's file.
+     * @param initializer      the content's initializer for missing file, can be null.
+     * @param coalesceWindowMs the time window within which consecutive updates are written together.
+     */
+    public CompactStorageFile(File file, Initializer initializer, long coalesceWindowMs) {
+        this.file = file;
+        this.initializer = initializer;
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+
+    // Getters
+
+    /**
+     * @return the storage's file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return true if the file was already loaded.
+     */
+    public synchronized boolean isLoaded() {
+        return data != null;
+    }
+
+
+    // Read and update
+
+    /**
+     * Load the file, if not loaded yet.
+     * <p>
+     * This method can be called from a background thread to avoid that the
+     * first read waits for the disk.
+     */
+    public synchronized void load() {
+        getData();
+    }
+
+    /**
+     * Read values from the storage's content.
+     *
+     * @param reader the reader to execute.
+     * @param <T>    the type of the value read.
+     * @return the value returned by the reader.
+     */
+    public synchronized <T> T read(Reader<T> reader) {
+        return reader.read(getData());
+    }
+
+    /**
+     * Apply given update to the storage's content.
+     * <p>
+     * The update is immediately visible to the {@link #read(Reader)} method,
+     * and it's written to the file even if the returned Completable is not
+     * subscribed.
+     *
+     * @param update the update to apply.
+     * @return a Completable that completes when the update is written to the file.
+     */
+    public synchronized Completable update(Update update) {
+        update.apply(getData());
+
+        if (pendingSave == null) {
+            pendingSave = CompletableSubject.create();
+            Schedulers.io().scheduleDirect(this::save, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+        return pendingSave;
+    }
+
+    /**
+     * Write pending updates to the file, without waiting for the coalescing window.
+     *
+     * @return a Completable that completes when the pending updates are written.
+     */
+    public Completable flush() {
+        Completable result;
+        synchronized (this) {
+            result = pendingSave != null ? pendingSave : Completable.complete();
+        }
+        Schedulers.io().scheduleDirect(this::save);
+        return result;
+    }
+
+
+    // Load and save
+
+    private CompactStorageData getData() {
+        if (data == null)
+            data = loadData();
+        return data;
+    }
+
+    private CompactStorageData loadData() {
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return CompactStorageData.readFrom(in);
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                file.renameTo(new File(file.getPath() + CORRUPTED_EXT));
+            }
+        }
+
+        CompactStorageData initData = new CompactStorageData();
+        if (initializer != null) {
+            initializer.init(initData);
+            if (pendingSave == null) {
+                pendingSave = CompletableSubject.create();
+                Schedulers.io().scheduleDirect(this::save);
+            }
+        }
+        return initData;
+    }
+
+    private void save() {
+        synchronized (saveLock) {
+            CompletableSubject result;
+            byte[] bytes;
+            synchronized (this) {
+                result = pendingSave;
+                pendingSave = null;
+                if (result == null || data == null) return;
+
+                try {
+                    bytes = encode(data);
+                } catch (IOException e) {
+                    result.onError(e);
+                    return;
+                }
+            }
+
+            try {
+                writeAtomically(bytes);
+                result.onComplete();
+            } catch (IOException e) {
+                result.onError(e);
+            }
+        }
+    }
+
+    private static byte[] encode(CompactStorageData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        data.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeAtomically(byte[] bytes) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException(String.format("Can't create compact storage directory '%s'", parent));
+
+        File tmpFile = new File(file.getPath() + TMP_EXT);
+        FileOutputStream fileOut = new FileOutputStream(tmpFile);
+        try (BufferedOutputStream out = new BufferedOutputStream(fileOut)) {
+            out.write(bytes);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!tmpFile.renameTo(file))
+            throw new IOException(String.format("Can't replace compact storage file '%s'", file));
+    }
+
+}
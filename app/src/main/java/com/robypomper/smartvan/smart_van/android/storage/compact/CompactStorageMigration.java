@@ -0,0 +1,138 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import android.content.Context;
+
+import androidx.datastore.preferences.core.Preferences;
+
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferences;
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferencesServices;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
+import com.robypomper.smartvan.smart_van.android.storage.local.LocalPreferences;
+import com.robypomper.smartvan.smart_van.android.storage.local.LocalPreferencesServices;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreKeys;
+import com.robypomper.smartvan.smart_van.android.utils.DataStorePool;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Import the values stored by the {@link com.robypomper.smartvan.smart_van.android.storage.local.SVLocalStorage}
+ * into a new {@link CompactStorageData}.
+ * <p>
+ * It reads the global storage's DataStore and, for each known object, the
+ * object's preferences and SV Services' preferences DataStores. The original
+ * DataStore files are left untouched, so the application can still switch
+ * back to the {@link com.robypomper.smartvan.smart_van.android.storage.local.SVLocalStorage}.
+ * <p>
+ * This class is used as {@link CompactStorageFile.Initializer}, so the
+ * migration is executed only once, when the compact storage file doesn't
+ * exist yet.
+ */
+public class CompactStorageMigration implements CompactStorageFile.Initializer {
+
+    // Constants
+
+    private static final String DATA_STORE_DIR = "datastore";
+    private static final String DATA_STORE_EXT = ".preferences_pb";
+
+
+    // Internal vars
+
+    private final Context ctx;
+
+
+    // Constructor
+
+    /**
+     * @param ctx the application's context.
+     */
+    public CompactStorageMigration(Context ctx) {
+        this.ctx = ctx;
+    }
+
+
+    // CompactStorageFile.Initializer
+
+    /**
+     * Import all values from the existing DataStores, if any.
+     *
+     * @param data the compact storage's content to initialize.
+     */
+    @Override
+    public void init(CompactStorageData data) {
+        String storageName = ctx.getString(SVStorage.DATA_STORE_NAME);
+        if (!getDataStoreFile(storageName).exists())
+            return;     // nothing to migrate
+
+        DataStorePool pool = new DataStorePool(ctx, 0);
+        try {
+            Preferences storage = readDataStore(pool, storageName);
+            data.currObjId = storage.get(DataStoreKeys.stringKey(ctx, SVStorage.CURR_OBJ_ID));
+            data.favObjId = storage.get(DataStoreKeys.stringKey(ctx, SVStorage.FAV_OBJ_ID));
+            data.askUseFavObjId = storage.get(DataStoreKeys.booleanKey(ctx, SVStorage.ASK_USE_FAV_OBJ_ID));
+            data.askSetFavObjId = storage.get(DataStoreKeys.booleanKey(ctx, SVStorage.ASK_SET_FAV_OBJ_ID));
+            Set<String> knownObjIds = storage.get(DataStoreKeys.stringSetKey(ctx, SVStorage.OBJ_ID_KNOWN));
+            if (knownObjIds == null)
+                return;
+
+            for (String objectId : knownObjIds) {
+                data.knownObjIds.add(objectId);
+                importPreferences(pool, data, objectId);
+                importPreferencesServices(pool, data, objectId);
+                if (data.getObject(objectId) != null && data.getObject(objectId).isEmpty())
+                    data.objects.remove(objectId);
+            }
+        } finally {
+            pool.dispose();
+        }
+    }
+
+
+    // Import
+
+    private void importPreferences(DataStorePool pool, CompactStorageData data, String objectId) {
+        String dataStoreName = LocalPreferences.getDataStoreName(ctx, objectId);
+        if (!getDataStoreFile(dataStoreName).exists()) return;
+
+        Preferences prefs = readDataStore(pool, dataStoreName);
+        CompactStorageData.ObjectRecord record = data.getOrCreateObject(objectId);
+        record.svBoxColor = prefs.get(DataStoreKeys.intKey(ctx, SVPreferences.SVBOX_COLOR));
+        record.chartTimeoutSeconds = prefs.get(DataStoreKeys.intKey(ctx, SVPreferences.CHARTS_TIMEOUT));
+    }
+
+    private void importPreferencesServices(DataStorePool pool, CompactStorageData data, String objectId) {
+        String dataStoreName = LocalPreferencesServices.getDataStoreName(objectId);
+        if (!getDataStoreFile(dataStoreName).exists()) return;
+
+        Preferences prefs = readDataStore(pool, dataStoreName);
+        String namePrefix = ctx.getString(SVPreferencesServices.NAME_PROP_PREFIX, "");
+        String iconPrefix = ctx.getString(SVPreferencesServices.ICON_PROP_PREFIX, "");
+        CompactStorageData.ObjectRecord record = data.getOrCreateObject(objectId);
+        for (Map.Entry<Preferences.Key<?>, Object> pref : prefs.asMap().entrySet()) {
+            String keyName = pref.getKey().getName();
+            if (!(pref.getValue() instanceof String)) continue;
+            if (keyName.startsWith(namePrefix))
+                record.getOrCreateService(keyName.substring(namePrefix.length())).name = (String) pref.getValue();
+            else if (keyName.startsWith(iconPrefix))
+                record.getOrCreateService(keyName.substring(iconPrefix.length())).iconName = (String) pref.getValue();
+        }
+    }
+
+
+    // Utils
+
+    private File getDataStoreFile(String dataStoreName) {
+        return new File(new File(ctx.getFilesDir(), DATA_STORE_DIR), dataStoreName + DATA_STORE_EXT);
+    }
+
+    private static Preferences readDataStore(DataStorePool pool, String dataStoreName) {
+        try {
+            return pool.acquire(dataStoreName).getSnapshot();
+        } finally {
+            pool.release(dataStoreName);
+        }
+    }
+
+}
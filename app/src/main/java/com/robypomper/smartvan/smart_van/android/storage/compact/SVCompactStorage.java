@@ -0,0 +1,456 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import android.content.Context;
+
+import com.robypomper.smartvan.smart_van.android.R;
+import com.robypomper.smartvan.smart_van.android.storage.SVHistory;
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferences;
+import com.robypomper.smartvan.smart_van.android.storage.SVPreferencesServices;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
+import com.robypomper.smartvan.smart_van.android.storage.local.LocalHistory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+
+/**
+ * The compact {@link SVStorage} implementation for the SmartVan application.
+ * <p>
+ * Differently from the {@link com.robypomper.smartvan.smart_van.android.storage.local.SVLocalStorage},
+ * that uses a DataStore file for the global values plus two for each known
+ * object, this implementation stores all values (global, objects' preferences
+ * and SV Services' preferences) as typed records into a single
+ * {@link CompactStorageFile}. So, loading the storage requires a single file
+ * read, regardless of the number of known objects.
+ * <p>
+ * On first start, the values stored by the SVLocalStorage are imported via
+ * the {@link CompactStorageMigration}. The objects' history is stored as for
+ * the SVLocalStorage, via {@link LocalHistory}.
+ */
+public class SVCompactStorage implements SVStorage {
+
+    // Constants
+
+    /**
+     * The name of the compact storage file.
+     */
+    public static final int FILE_NAME = R.string.pref_group__compact_storage;
+
+
+    // Internal vars
+
+    /**
+     * The application's context.
+     */
+    private final Context ctx;
+    /**
+     * The compact storage file, shared with all sub-storages.
+     */
+    private final CompactStorageFile storeFile;
+    private final Map<String, SVPreferences> preferencesApp = new HashMap<>();
+    private final Map<String, SVPreferencesServices> preferencesServices = new HashMap<>();
+    private final Map<String, SVHistory> history = new HashMap<>();
+
+
+    // Constructor
+
+    /**
+     * Initialize the compact storage and start loading his file in background.
+     *
+     * @param ctx the application's context.
+     */
+    public SVCompactStorage(Context ctx) {
+        this(ctx, new CompactStorageFile(new File(ctx.getFilesDir(), ctx.getString(FILE_NAME)), new CompactStorageMigration(ctx)));
+    }
+
+    /**
+     * Initialize the compact storage on given file and start loading it in background.
+     *
+     * @param ctx       the application's context.
+     * @param storeFile the compact storage file.
+     */
+    public SVCompactStorage(Context ctx, CompactStorageFile storeFile) {
+        this.ctx = ctx;
+        this.storeFile = storeFile;
+        Schedulers.io().scheduleDirect(storeFile::load);
+
+        SVStorageSingleton.setInstance(this);
+    }
+
+
+    // Getters
+
+    /**
+     * @return the compact storage file used by this class.
+     */
+    public CompactStorageFile getStoreFile() {
+        return storeFile;
+    }
+
+
+    // Transactions
+
+    /**
+     * Create a new editor to update many storage's values with a single
+     * file write.
+     *
+     * @return a new storage's editor.
+     */
+    @Override
+    public SVStorage.Editor edit() {
+        return new StorageEditor();
+    }
+
+
+    // Current object's id
+
+    /**
+     * @return the currently selected object id, or null if no object has been selected yet.
+     */
+    @Override
+    public String getCurrentObjectId() {
+        return storeFile.read(data -> data.currObjId);
+    }
+
+    /**
+     * @param objectId the id of the object to set as current.
+     */
+    @Override
+    public void setCurrentObjectId(String objectId) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().setCurrentObjectId(objectId).commit();
+    }
+
+
+    // Favourite object's id
+
+    /**
+     * @return the user favourite object id, or null if the user didn't select a favourite object yet.
+     */
+    @Override
+    public String getFavouriteObjectId() {
+        return storeFile.read(data -> data.favObjId);
+    }
+
+    /**
+     * @param objectId the id of the object to set as favourite.
+     */
+    @Override
+    public void setFavouriteObjectId(String objectId) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().setFavouriteObjectId(objectId).commit();
+    }
+
+    /**
+     * @return true if it must ask the user if he wants to use the favourite
+     * object, false otherwise.
+     */
+    @Override
+    public boolean askForUseFavouriteObjectId() {
+        return storeFile.read(data -> data.askUseFavObjId != null ? data.askUseFavObjId : DEF_ASK_USE_FAV_OBJ_ID);
+    }
+
+    /**
+     * @param askForUseFavouriteObjectId true if it must ask the user if he wants
+     *                                   to use the favourite object, false otherwise.
+     */
+    @Override
+    public void setAskForUseFavouriteObjectId(boolean askForUseFavouriteObjectId) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().setAskForUseFavouriteObjectId(askForUseFavouriteObjectId).commit();
+    }
+
+    /**
+     * @return true if it must ask the user to set the favourite object id, false
+     * otherwise.
+     */
+    @Override
+    public boolean askForSetFavouriteObjectId() {
+        return storeFile.read(data -> data.askSetFavObjId != null ? data.askSetFavObjId : DEF_ASK_SET_FAV_OBJ_ID);
+    }
+
+    /**
+     * @param askForSetFavouriteObjectId true if it must ask the user to set the
+     *                                   favourite object id, false otherwise.
+     */
+    @Override
+    public void setAskForSetFavouriteObjectId(boolean askForSetFavouriteObjectId) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().setAskForSetFavouriteObjectId(askForSetFavouriteObjectId).commit();
+    }
+
+
+    // Known object ids
+
+    /**
+     * @return the list of known object ids.
+     */
+    @Override
+    public List<String> getKnownObjectIds() {
+        return storeFile.read(data -> new ArrayList<>(data.knownObjIds));
+    }
+
+    /**
+     * @param objectId the id of the object to add to the list of known object ids.
+     */
+    @Override
+    public void addKnownObjectId(String objectId) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().addKnownObjectId(objectId).commit();
+    }
+
+    /**
+     * @param objectId the id of the object to remove from the list of known object ids.
+     */
+    @Override
+    public void removeKnownObjectId(String objectId) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().removeKnownObjectId(objectId).commit();
+    }
+
+    /**
+     * Generate the storage for the given object id.
+     *
+     * @param objectId the id of the object for which to generate the storage.
+     */
+    @Override
+    public synchronized void generateStorage(String objectId) {
+        generatePreferenceApp(objectId);
+        generatePreferenceServices(objectId);
+        generateHistory(objectId);
+    }
+
+    /**
+     * Clear the storage for the given object id.
+     *
+     * @param objectId the id of the object for which to clear the storage.
+     */
+    @Override
+    public synchronized void clearStorage(String objectId) {
+        SVPreferences prefs = preferencesApp.remove(objectId);
+        (prefs != null ? prefs : new CompactPreferences(storeFile)).clearStorage(objectId);
+        SVPreferencesServices prefsServices = preferencesServices.remove(objectId);
+        (prefsServices != null ? prefsServices : new CompactPreferencesServices(storeFile)).clearStorage(objectId);
+        SVHistory objHistory = history.remove(objectId);
+        (objHistory != null ? objHistory : new LocalHistory(ctx)).clearStorage(objectId);
+    }
+
+
+    // Getters for object related storage sub-components
+
+    /**
+     * @return the application preferences for the current object id.
+     * @throws IllegalStateException if no current object is set.
+     */
+    @Override
+    public SVPreferences getCurrentPreferencesApp() {
+        if (getCurrentObjectId() == null)
+            throw new IllegalStateException("No current object is set");
+        return getPreferencesApp(getCurrentObjectId());
+    }
+
+    /**
+     * @return the preferences services for the current object id.
+     * @throws IllegalStateException if no current object is set.
+     */
+    @Override
+    public SVPreferencesServices getCurrentPreferencesServices() {
+        if (getCurrentObjectId() == null)
+            throw new IllegalStateException("No current object is set");
+        return getPreferencesServices(getCurrentObjectId());
+    }
+
+    /**
+     * @return the history for the current object id.
+     * @throws IllegalStateException if no current object is set.
+     */
+    @Override
+    public SVHistory getCurrentHistory() {
+        if (getCurrentObjectId() == null)
+            throw new IllegalStateException("No current object is set");
+        return getHistory(getCurrentObjectId());
+    }
+
+    /**
+     * @param objectId the id of the object for which to get the application preferences.
+     * @return the preferences for the given object id, or null if the object is unknown.
+     */
+    @Override
+    public synchronized SVPreferences getPreferencesApp(String objectId) {
+        if (!preferencesApp.containsKey(objectId) && !getKnownObjectIds().contains(objectId))
+            return null;
+        return generatePreferenceApp(objectId);
+    }
+
+    /**
+     * @param objId the id of the object for which to reset the application preferences.
+     */
+    @Override
+    public synchronized void resetPreferencesApp(String objId) {
+        SVPreferences prefs = preferencesApp.remove(objId);
+        (prefs != null ? prefs : new CompactPreferences(storeFile)).clearStorage(objId);
+        generatePreferenceApp(objId);
+    }
+
+    /**
+     * @param objectId the id of the object for which to get the preferences services.
+     * @return the preferences services for the given object id, or null if the object is unknown.
+     */
+    @Override
+    public synchronized SVPreferencesServices getPreferencesServices(String objectId) {
+        if (!preferencesServices.containsKey(objectId) && !getKnownObjectIds().contains(objectId))
+            return null;
+        return generatePreferenceServices(objectId);
+    }
+
+    /**
+     * @param objId the id of the object for which to reset the preferences services.
+     */
+    @Override
+    public synchronized void resetPreferencesServices(String objId) {
+        SVPreferencesServices prefsServices = preferencesServices.remove(objId);
+        (prefsServices != null ? prefsServices : new CompactPreferencesServices(storeFile)).clearStorage(objId);
+        generatePreferenceServices(objId);
+    }
+
+    /**
+     * @param objectId the id of the object for which to get the history.
+     * @return the history for the given object id, or null if the object is unknown.
+     */
+    @Override
+    public synchronized SVHistory getHistory(String objectId) {
+        if (!history.containsKey(objectId) && !getKnownObjectIds().contains(objectId))
+            return null;
+        return generateHistory(objectId);
+    }
+
+    /**
+     * All sub-storages are views of the same file, kept open until the
+     * storage is disposed. So, there's nothing to hold.
+     */
+    @Override
+    public void holdObjectStorage(String objectId) {
+    }
+
+    /**
+     * See {@link #holdObjectStorage(String)}.
+     */
+    @Override
+    public void releaseObjectStorage(String objectId) {
+    }
+
+
+    // Utils
+
+    private SVPreferences generatePreferenceApp(String objectId) {
+        SVPreferences prefs = preferencesApp.get(objectId);
+        if (prefs != null) return prefs;
+        prefs = new CompactPreferences(storeFile);
+        prefs.generateStorage(objectId);
+        preferencesApp.put(objectId, prefs);
+        return prefs;
+    }
+
+    private SVPreferencesServices generatePreferenceServices(String objectId) {
+        SVPreferencesServices prefsServices = preferencesServices.get(objectId);
+        if (prefsServices != null) return prefsServices;
+        prefsServices = new CompactPreferencesServices(storeFile);
+        prefsServices.generateStorage(objectId);
+        preferencesServices.put(objectId, prefsServices);
+        return prefsServices;
+    }
+
+    private SVHistory generateHistory(String objectId) {
+        SVHistory objHistory = history.get(objectId);
+        if (objHistory != null) return objHistory;
+        objHistory = new LocalHistory(ctx);
+        objHistory.generateStorage(objectId);
+        history.put(objectId, objHistory);
+        return objHistory;
+    }
+
+
+    // Editor implementation
+
+    /**
+     * {@link SVStorage.Editor} implementation that applies all updates with
+     * a single {@link CompactStorageFile#update(CompactStorageFile.Update)}.
+     * <p>
+     * Object's storage generation and clearing, required by added and removed
+     * known object ids, are executed on commit.
+     */
+    private class StorageEditor implements SVStorage.Editor {
+
+        private final List<CompactStorageFile.Update> updates = new ArrayList<>();
+        private final Set<String> toGenerate = new LinkedHashSet<>();
+        private final Set<String> toClear = new LinkedHashSet<>();
+
+        @Override
+        public SVStorage.Editor setCurrentObjectId(String objectId) {
+            updates.add(data -> data.currObjId = objectId);
+            if (objectId != null && !getKnownObjectIds().contains(objectId))
+                addKnownObjectId(objectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor setFavouriteObjectId(String objectId) {
+            updates.add(data -> data.favObjId = objectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor setAskForUseFavouriteObjectId(boolean askForUseFavouriteObjectId) {
+            updates.add(data -> data.askUseFavObjId = askForUseFavouriteObjectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor setAskForSetFavouriteObjectId(boolean askForSetFavouriteObjectId) {
+            updates.add(data -> data.askSetFavObjId = askForSetFavouriteObjectId);
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor addKnownObjectId(String objectId) {
+            updates.add(data -> data.knownObjIds.add(objectId));
+            toClear.remove(objectId);
+            toGenerate.add(objectId);      // it works also for loading existing data
+            return this;
+        }
+
+        @Override
+        public SVStorage.Editor removeKnownObjectId(String objectId) {
+            if (!toGenerate.remove(objectId) && !getKnownObjectIds().contains(objectId))
+                return this;
+            updates.add(data -> data.knownObjIds.remove(objectId));
+            toClear.add(objectId);
+            return this;
+        }
+
+        @Override
+        public Completable commit() {
+            Completable result = updates.isEmpty() ? Completable.complete()
+                    : storeFile.update(data -> {
+                for (CompactStorageFile.Update update : updates)
+                    update.apply(data);
+            });
+            for (String objectId : toGenerate)
+                generateStorage(objectId);
+            for (String objectId : toClear)
+                clearStorage(objectId);
+            return result;
+        }
+
+    }
+
+}
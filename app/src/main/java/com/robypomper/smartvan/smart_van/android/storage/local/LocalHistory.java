@@ -0,0 +1,272 @@
+package com.robypomper.smartvan.smart_van.android.storage.local;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.robypomper.smartvan.smart_van.android.commons.SVTimeSeries;
+import com.robypomper.smartvan.smart_van.android.storage.SVAbsSubStorage;
+import com.robypomper.smartvan.smart_van.android.storage.SVHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The local {@link SVHistory} implementation for the SmartVan application.
+ * <p>
+ * This implementation stores the history of each component into a dedicated
+ * {@link LocalHistorySeries}, within the object's history directory.
+ * <p>
+ * The history is a local copy of the remote object's data, so any I/O error
+ * is logged and handled as missing local data.
+ */
+public class LocalHistory extends SVAbsSubStorage implements SVHistory {
+
+    // Constants
+
+    private static final String LOG_TAG = "LocalHistory";
+
+
+    // Internal vars
+
+    /**
+     * The application's context.
+     */
+    private final Context ctx;
+    /**
+     * The history's retention in milliseconds.
+     */
+    private final long retentionMs;
+    /**
+     * The object's history directory, null if the storage was not generated.
+     */
+    private File historyDir;
+    /**
+     * The opened components' series, by component path.
+     */
+    private final Map<String, LocalHistorySeries> series = new HashMap<>();
+
+
+    // Constructors
+
+    /**
+     * Initialize the local history with the default retention.
+     *
+     * @param ctx the application's context.
+     */
+    public LocalHistory(Context ctx) {
+        this(ctx, DEF_RETENTION_MS);
+    }
+
+    /**
+     * Initialize the local history.
+     *
+     * @param ctx         the application's context.
+     * @param retentionMs the history's retention in milliseconds.
+     */
+    public LocalHistory(Context ctx, long retentionMs) {
+        this.ctx = ctx;
+        this.retentionMs = retentionMs;
+    }
+
+
+    // SVSubStorage
+
+    /**
+     * Generate the storage for the given object id.
+     * <p>
+     * This method is called when the user selects a new object from the
+     * {@link com.robypomper.smartvan.smart_van.android.activities.SVSelectObjectActivity}
+     * activity.
+     *
+     * @param objectId the id of the object for which to generate the storage.
+     */
+    @Override
+    public synchronized void generateStorage(String objectId) {
+        if (isStorageGenerated() && objectId.equals(getObjectId())) return;
+        releaseStorage(getObjectId());
+
+        historyDir = getHistoryDir(objectId);
+        setObjectId(objectId);
+    }
+
+    /**
+     * Clear the storage for the given object id.
+     * <p>
+     * This method is called when the user requires to delete all the data
+     * for a specific object.
+     *
+     * @param objectId the id of the object for which to clear the storage.
+     */
+    @Override
+    public synchronized void clearStorage(String objectId) {
+        releaseStorage(objectId);
+        deleteRecursively(getHistoryDir(objectId));
+    }
+
+    /**
+     * Close all opened components' series, without deleting their data.
+     *
+     * @param objectId the id of the object for which to release the storage.
+     */
+    @Override
+    public synchronized void releaseStorage(String objectId) {
+        series.clear();
+        historyDir = null;
+        setObjectId(null);
+    }
+
+
+    // SVHistory
+
+    /**
+     * Get the stored history of the specified component.
+     *
+     * @param compPath the path of the component for which to get the history.
+     * @param from     the beginning of the range to query (included).
+     * @param to       the end of the range to query (included).
+     * @return the component's values within given range, sorted by date.
+     */
+    @Override
+    public SVTimeSeries query(String compPath, Date from, Date to) {
+        LocalHistorySeries compSeries = getSeries(compPath);
+        if (compSeries == null)
+            return new SVTimeSeries();
+
+        try {
+            LocalHistorySeries.Records records = compSeries.query(from.getTime(), to.getTime());
+            SVTimeSeries values = new SVTimeSeries(records.size());
+            for (int i = 0; i < records.size(); i++)
+                values.append(records.getTimestamp(i), records.getValue(i));
+            return values;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, String.format("Error reading history for component '%s': %s", compPath, e.getMessage()), e);
+            return new SVTimeSeries();
+        }
+    }
+
+    /**
+     * Append the history received from the remote object.
+     *
+     * @param compPath    the path of the component for which to append the history.
+     * @param values      the component's values to append.
+     * @param fetchedFrom the beginning of the range requested to the remote object.
+     * @param fetchedTo   the end of the range requested to the remote object.
+     */
+    @Override
+    public void append(String compPath, SVTimeSeries values, Date fetchedFrom, Date fetchedTo) {
+        LocalHistorySeries compSeries = getSeries(compPath);
+        if (compSeries == null)
+            return;
+
+        try {
+            compSeries.append(values.toTimestampsArray(), values.toValuesArray(), values.size(), fetchedFrom.getTime(), fetchedTo.getTime());
+        } catch (IOException e) {
+            Log.w(LOG_TAG, String.format("Error writing history for component '%s': %s", compPath, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Get the beginning of the range synchronized with the remote object.
+     *
+     * @param compPath the path of the component.
+     * @return the beginning of the covered range, or null if no range is covered.
+     */
+    @Override
+    public Date getCoveredFrom(String compPath) {
+        LocalHistorySeries compSeries = getSeries(compPath);
+        if (compSeries == null || compSeries.getCoveredFrom() == LocalHistorySeries.NOT_COVERED)
+            return null;
+        return new Date(compSeries.getCoveredFrom());
+    }
+
+    /**
+     * Get the end of the range synchronized with the remote object.
+     *
+     * @param compPath the path of the component.
+     * @return the end of the covered range, or null if no range is covered.
+     */
+    @Override
+    public Date getCoveredTo(String compPath) {
+        LocalHistorySeries compSeries = getSeries(compPath);
+        if (compSeries == null || compSeries.getCoveredTo() == LocalHistorySeries.NOT_COVERED)
+            return null;
+        return new Date(compSeries.getCoveredTo());
+    }
+
+    /**
+     * Delete the history older than the retention period, for all opened
+     * components' series.
+     */
+    @Override
+    public void applyRetention() {
+        List<LocalHistorySeries> opened;
+        synchronized (this) {
+            opened = new ArrayList<>(series.values());
+        }
+        for (LocalHistorySeries compSeries : opened)
+            applyRetention(compSeries);
+    }
+
+
+    // Utils
+
+    private File getHistoryDir(String objectId) {
+        return new File(ctx.getFilesDir(), ctx.getString(DIR_NAME_PREFIX, objectId));
+    }
+
+    /**
+     * Get (or open) the series of the given component.
+     * <p>
+     * On opening, the retention is applied to the series.
+     *
+     * @param compPath the path of the component.
+     * @return the component's series, or null if the storage was not generated
+     * or the series can't be opened.
+     */
+    private synchronized LocalHistorySeries getSeries(String compPath) {
+        if (historyDir == null)
+            return null;
+
+        LocalHistorySeries compSeries = series.get(compPath);
+        if (compSeries != null)
+            return compSeries;
+
+        try {
+            compSeries = new LocalHistorySeries(new File(historyDir, URLEncoder.encode(compPath, "UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UTF-8 encoding not supported", e);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, String.format("Error opening history for component '%s': %s", compPath, e.getMessage()), e);
+            return null;
+        }
+        applyRetention(compSeries);
+        series.put(compPath, compSeries);
+        return compSeries;
+    }
+
+    private void applyRetention(LocalHistorySeries compSeries) {
+        try {
+            compSeries.deleteOlderThan(System.currentTimeMillis() - retentionMs);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, String.format("Error applying retention to history '%s': %s", compSeries.getDir(), e.getMessage()), e);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                deleteRecursively(child);
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+}
@@ -0,0 +1,479 @@
+package com.robypomper.smartvan.smart_van.android.storage.local;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Append-only time-series store for a single component.
+ * <p>
+ * All the series' data are stored into a dedicated directory, split into
+ * segment files. Each segment contains fixed-width records (8 bytes for the
+ * timestamp in milliseconds and 8 bytes for the value), sorted by timestamp.
+ * Segment files are named with their first timestamp, so they are sorted too.
+ * <p>
+ * The series keeps an in-memory time-index of his segments (first and last
+ * timestamp of each segment), so range queries first look for the segments
+ * to read, then, because records have a fixed size, they use a binary search
+ * on the memory-mapped segment to find the first record to return.
+ * <p>
+ * Only records newer than the last stored one can be appended. Moreover, the
+ * series keeps track of the time range fully synchronized with the remote
+ * object (the "covered" range), so clients can decide if a query can be
+ * served only by local data.
+ *
+ * @noinspection unused
+ */
+public class LocalHistorySeries {
+
+    // Constants
+
+    /**
+     * Size in bytes of each record: timestamp (long) + value (double).
+     */
+    public static final int RECORD_SIZE = 16;
+    /**
+     * Default max number of records for each segment file (1MB per segment).
+     */
+    public static final int DEF_SEGMENT_RECORDS = 64 * 1024;
+    /**
+     * Value used for the covered range limits when no range is covered.
+     */
+    public static final long NOT_COVERED = -1;
+    private static final String SEGMENT_EXT = ".seg";
+    private static final String META_FILE = "series.meta";
+
+
+    // Internal vars
+
+    private final File dir;
+    private final int segmentRecords;
+    /**
+     * The series' segments sorted by timestamp, it's the series' time-index.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private long coveredFrom = NOT_COVERED;
+    private long coveredTo = NOT_COVERED;
+
+
+    // Constructors
+
+    /**
+     * Open (or create) the series stored into the given directory.
+     *
+     * @param dir the series' directory.
+     * @throws IOException if the series' directory can't be created or read.
+     */
+    public LocalHistorySeries(File dir) throws IOException {
+        this(dir, DEF_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Open (or create) the series stored into the given directory.
+     *
+     * @param dir            the series' directory.
+     * @param segmentRecords the max number of records for each segment file.
+     * @throws IOException if the series' directory can't be created or read.
+     */
+    public LocalHistorySeries(File dir, int segmentRecords) throws IOException {
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException(String.format("Can't create history series directory '%s'", dir));
+
+        loadMeta();
+        loadSegments();
+    }
+
+
+    // Getters
+
+    /**
+     * @return the series' directory.
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * @return the number of records stored into the series.
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Segment segment : segments)
+            size += segment.count;
+        return size;
+    }
+
+    /**
+     * @return the number of segment files of the series.
+     */
+    public synchronized int getSegmentsCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return the timestamp of the first stored record, or {@link #NOT_COVERED}
+     * if the series is empty.
+     */
+    public synchronized long getFirstTimestamp() {
+        return segments.isEmpty() ? NOT_COVERED : segments.get(0).firstTs;
+    }
+
+    /**
+     * @return the timestamp of the last stored record, or {@link #NOT_COVERED}
+     * if the series is empty.
+     */
+    public synchronized long getLastTimestamp() {
+        return segments.isEmpty() ? NOT_COVERED : segments.get(segments.size() - 1).lastTs;
+    }
+
+    /**
+     * @return the beginning of the range synchronized with the remote object,
+     * or {@link #NOT_COVERED}.
+     */
+    public synchronized long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    /**
+     * @return the end of the range synchronized with the remote object, or
+     * {@link #NOT_COVERED}.
+     */
+    public synchronized long getCoveredTo() {
+        return coveredTo;
+    }
+
+    /**
+     * @param from the beginning of the range to check.
+     * @param to   the end of the range to check.
+     * @return true if the given range is fully synchronized with the remote
+     * object.
+     */
+    public synchronized boolean covers(long from, long to) {
+        return coveredFrom != NOT_COVERED && coveredFrom <= from && to <= coveredTo;
+    }
+
+
+    // Append
+
+    /**
+     * Append the given records to the series.
+     * <p>
+     * Records must be sorted by timestamp, records not newer than the last
+     * stored one are skipped.
+     * <p>
+     * The fetched range is used to update the series' covered range: if it's
+     * contiguous to the current covered range, then the covered range is
+     * extended; otherwise the covered range is replaced by the fetched one.
+     *
+     * @param timestamps the records' timestamps, sorted.
+     * @param values     the records' values.
+     * @param count      the number of records to append.
+     * @param fetchedFrom the beginning of the range synchronized with the remote object.
+     * @param fetchedTo   the end of the range synchronized with the remote object.
+     * @return the number of appended records.
+     * @throws IOException if the records can't be written.
+     */
+    public synchronized int append(long[] timestamps, double[] values, int count, long fetchedFrom, long fetchedTo) throws IOException {
+        int appended = append(timestamps, values, count);
+
+        if (coveredFrom == NOT_COVERED || fetchedFrom > coveredTo) {
+            coveredFrom = fetchedFrom;
+            coveredTo = fetchedTo;
+        } else if (fetchedTo > coveredTo)
+            coveredTo = fetchedTo;
+        storeMeta();
+
+        return appended;
+    }
+
+    /**
+     * Append the given records to the series.
+     * <p>
+     * Records must be sorted by timestamp, records not newer than the last
+     * stored one are skipped.
+     *
+     * @param timestamps the records' timestamps, sorted.
+     * @param values     the records' values.
+     * @param count      the number of records to append.
+     * @return the number of appended records.
+     * @throws IOException if the records can't be written.
+     */
+    public synchronized int append(long[] timestamps, double[] values, int count) throws IOException {
+        long lastTs = getLastTimestamp();
+        int i = 0;
+        while (i < count && timestamps[i] <= lastTs)
+            i++;
+
+        int appended = 0;
+        while (i < count) {
+            Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || segment.count >= segmentRecords) {
+                segment = new Segment(new File(dir, String.format("%020d%s", timestamps[i], SEGMENT_EXT)));
+                segments.add(segment);
+            }
+
+            int toWrite = Math.min(count - i, segmentRecords - segment.count);
+            ByteBuffer buffer = ByteBuffer.allocate(toWrite * RECORD_SIZE);
+            for (int r = 0; r < toWrite; r++) {
+                buffer.putLong(timestamps[i + r]);
+                buffer.putDouble(values[i + r]);
+            }
+            buffer.flip();
+            try (FileOutputStream out = new FileOutputStream(segment.file, true)) {
+                out.getChannel().write(buffer);
+            }
+
+            if (segment.count == 0)
+                segment.firstTs = timestamps[i];
+            segment.lastTs = timestamps[i + toWrite - 1];
+            segment.count += toWrite;
+            segment.mapped = null;
+            i += toWrite;
+            appended += toWrite;
+        }
+        return appended;
+    }
+
+
+    // Query
+
+    /**
+     * Get all records with timestamp between given limits (both included).
+     *
+     * @param from the beginning of the range to query.
+     * @param to   the end of the range to query.
+     * @return the records found, sorted by timestamp.
+     * @throws IOException if the records can't be read.
+     */
+    public synchronized Records query(long from, long to) throws IOException {
+        Records records = new Records();
+        if (segments.isEmpty() || from > to)
+            return records;
+
+        for (int s = findFirstSegment(from); s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            if (segment.firstTs > to) break;
+            if (segment.lastTs < from) continue;
+
+            ByteBuffer buffer = segment.map();
+            int index = findFirstRecord(buffer, segment.count, from);
+            for (; index < segment.count; index++) {
+                long ts = buffer.getLong(index * RECORD_SIZE);
+                if (ts > to) break;
+                records.add(ts, buffer.getDouble(index * RECORD_SIZE + 8));
+            }
+        }
+        return records;
+    }
+
+
+    // Retention
+
+    /**
+     * Delete all segments containing only records older than given timestamp.
+     * <p>
+     * Segments are deleted only as a whole, so some records older than the
+     * given timestamp can remain into the series.
+     *
+     * @param olderThan the retention limit.
+     * @return the number of deleted segments.
+     * @throws IOException if the series' metadata can't be updated.
+     */
+    public synchronized int deleteOlderThan(long olderThan) throws IOException {
+        int deleted = 0;
+        long lastDeletedTs = NOT_COVERED;
+        while (!segments.isEmpty() && segments.get(0).lastTs < olderThan
+                && segments.size() > 1) {       // always keep the active segment
+            Segment segment = segments.remove(0);
+            lastDeletedTs = segment.lastTs;
+            //noinspection ResultOfMethodCallIgnored
+            segment.file.delete();
+            deleted++;
+        }
+
+        if (deleted > 0 && coveredFrom != NOT_COVERED && coveredFrom <= lastDeletedTs) {
+            coveredFrom = lastDeletedTs + 1;
+            if (coveredFrom > coveredTo)
+                coveredFrom = coveredTo = NOT_COVERED;
+            storeMeta();
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete all series' data, including his directory.
+     */
+    public synchronized void delete() {
+        for (Segment segment : segments)
+            //noinspection ResultOfMethodCallIgnored
+            segment.file.delete();
+        segments.clear();
+        //noinspection ResultOfMethodCallIgnored
+        new File(dir, META_FILE).delete();
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+        coveredFrom = coveredTo = NOT_COVERED;
+    }
+
+
+    // Utils
+
+    private int findFirstSegment(long from) {
+        // last segment with firstTs <= from
+        int lo = 0, hi = segments.size() - 1, found = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (segments.get(mid).firstTs <= from) {
+                found = mid;
+                lo = mid + 1;
+            } else
+                hi = mid - 1;
+        }
+        return found;
+    }
+
+    private static int findFirstRecord(ByteBuffer buffer, int count, long from) {
+        // first record with ts >= from
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buffer.getLong(mid * RECORD_SIZE) < from)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private void loadSegments() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_EXT));
+        if (files == null) return;
+        Arrays.sort(files);
+
+        for (File file : files) {
+            Segment segment = new Segment(file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                long length = raf.length();
+                if (length % RECORD_SIZE != 0) {       // discard partially written record
+                    length -= length % RECORD_SIZE;
+                    raf.setLength(length);
+                }
+                if (length == 0) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                    continue;
+                }
+                segment.count = (int) (length / RECORD_SIZE);
+                raf.seek(0);
+                segment.firstTs = raf.readLong();
+                raf.seek(length - RECORD_SIZE);
+                segment.lastTs = raf.readLong();
+            }
+            segments.add(segment);
+        }
+    }
+
+    private void loadMeta() throws IOException {
+        File meta = new File(dir, META_FILE);
+        if (!meta.exists()) return;
+        try (RandomAccessFile raf = new RandomAccessFile(meta, "r")) {
+            if (raf.length() < 16) return;
+            coveredFrom = raf.readLong();
+            coveredTo = raf.readLong();
+        }
+    }
+
+    private void storeMeta() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, META_FILE), "rw")) {
+            raf.setLength(0);
+            raf.writeLong(coveredFrom);
+            raf.writeLong(coveredTo);
+        }
+    }
+
+
+    // Segment
+
+    private static class Segment {
+
+        private final File file;
+        private long firstTs = NOT_COVERED;
+        private long lastTs = NOT_COVERED;
+        private int count = 0;
+        /**
+         * Read-only mapping of the segment file, reset on each append.
+         */
+        private MappedByteBuffer mapped;
+
+        Segment(File file) {
+            this.file = file;
+        }
+
+        ByteBuffer map() throws IOException {
+            if (mapped == null)
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, (long) count * RECORD_SIZE);
+                }
+            return mapped;
+        }
+
+    }
+
+
+    // Records
+
+    /**
+     * Records returned by a query, stored as primitive arrays.
+     */
+    public static class Records {
+
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size = 0;
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        /**
+         * @return the number of records.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param index the record's index.
+         * @return the timestamp of the given record.
+         */
+        public long getTimestamp(int index) {
+            return timestamps[index];
+        }
+
+        /**
+         * @param index the record's index.
+         * @return the value of the given record.
+         */
+        public double getValue(int index) {
+            return values[index];
+        }
+
+    }
+
+}
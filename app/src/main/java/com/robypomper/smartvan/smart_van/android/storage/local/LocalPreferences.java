@@ -7,8 +7,13 @@ import androidx.datastore.rxjava3.RxDataStore;
 
 import com.robypomper.smartvan.smart_van.android.storage.SVAbsSubStorage;
 import com.robypomper.smartvan.smart_van.android.storage.SVPreferences;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreKeys;
+import com.robypomper.smartvan.smart_van.android.utils.DataStorePool;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreSnapshotCache;
 import com.robypomper.smartvan.smart_van.android.utils.DataStoreUtils;
 
+import io.reactivex.rxjava3.core.Flowable;
+
 
 /**
  * The local {@link SVPreferences} implementation for the SmartVan application.
@@ -23,10 +28,28 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      * The application's context.
      */
     private final Context ctx;
+    /**
+     * The pool that provides the DataStore used by this class.
+     */
+    private final DataStorePool dataStorePool;
+    /**
+     * The name of the DataStore used by this class, null if the storage was
+     * not generated or was released.
+     */
+    private String dataStoreName;
     /**
      * The DataStore used by this class.
      */
     private RxDataStore<Preferences> dataStore;
+    /**
+     * The in-memory snapshot of the {@link #dataStore}, used to serve reads.
+     */
+    private DataStoreSnapshotCache dataStoreCache;
+    /**
+     * Preference keys, resolved once on initialization.
+     */
+    private final Preferences.Key<Integer> keySVBoxColor;
+    private final Preferences.Key<Integer> keyChartsTimeout;
 
 
     // Constructors
@@ -34,10 +57,28 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
     /**
      * Initialize the local preferences.
      *
-     * @param ctx the application's context.
+     * @param ctx           the application's context.
+     * @param dataStorePool the pool that provides the DataStore used by this class.
      */
-    public LocalPreferences(Context ctx) {
+    public LocalPreferences(Context ctx, DataStorePool dataStorePool) {
         this.ctx = ctx;
+        this.dataStorePool = dataStorePool;
+        this.keySVBoxColor = DataStoreKeys.intKey(ctx, SVBOX_COLOR);
+        this.keyChartsTimeout = DataStoreKeys.intKey(ctx, CHARTS_TIMEOUT);
+    }
+
+
+    // DataStore name
+
+    /**
+     * The name of the DataStore used to store the preferences of given object.
+     *
+     * @param ctx      the application's context.
+     * @param objectId the object's id.
+     * @return the name of the object's DataStore.
+     */
+    public static String getDataStoreName(Context ctx, String objectId) {
+        return ctx.getString(DATA_STORE_NAME_PREFIX, objectId);
     }
 
 
@@ -51,9 +92,16 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      * activity.
      *
      * @param objectId the id of the object for which to generate the storage.
-     */    @Override
+     */
+    @Override
     public void generateStorage(String objectId) {
-        dataStore = DataStoreUtils.initDataStore(ctx, ctx.getString(DATA_STORE_NAME_PREFIX, objectId));
+        if (isStorageGenerated() && objectId.equals(getObjectId())) return;
+        releaseStorage(getObjectId());
+
+        dataStoreName = getDataStoreName(ctx, objectId);
+        dataStoreCache = dataStorePool.acquire(dataStoreName);
+        dataStore = dataStoreCache.getDataStore();
+        setObjectId(objectId);
     }
 
     /**
@@ -66,7 +114,24 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      */
     @Override
     public void clearStorage(String objectId) {
-        DataStoreUtils.clearDataStore(dataStore);
+        dataStorePool.clear(getDataStoreName(ctx, objectId));
+        releaseStorage(objectId);
+    }
+
+    /**
+     * Release the DataStore used by this class to the pool, without deleting
+     * his data.
+     *
+     * @param objectId the id of the object for which to release the storage.
+     */
+    @Override
+    public void releaseStorage(String objectId) {
+        if (dataStoreName == null) return;
+        dataStorePool.release(dataStoreName);
+        dataStoreName = null;
+        dataStore = null;
+        dataStoreCache = null;
+        setObjectId(null);
     }
 
 
@@ -76,11 +141,26 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      * Get the AndroidX DataStore used by this class.
      *
      * @return the AndroidX DataStore used by this class.
+     * @throws IllegalStateException if the storage was not generated, or it
+     *                               was already released.
      */
     public RxDataStore<Preferences> getDataStore() {
+        checkStorageGenerated();
         return dataStore;
     }
 
+    /**
+     * Get the cache of the DataStore used by this class.
+     *
+     * @return the cache of the DataStore used by this class.
+     * @throws IllegalStateException if the storage was not generated, or it
+     *                               was already released.
+     */
+    private DataStoreSnapshotCache getDataStoreCache() {
+        checkStorageGenerated();
+        return dataStoreCache;
+    }
+
     // SVPreferences
 
     /**
@@ -93,7 +173,7 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      */
     @Override
     public int getSVBoxColor() {
-        return DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.intKey(ctx, SVBOX_COLOR), DEF_SVBOX_COLOR);
+        return DataStoreUtils.getFromDataStore(getDataStoreCache(), keySVBoxColor, DEF_SVBOX_COLOR);
     }
 
     /**
@@ -104,7 +184,7 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      */
     @Override
     public void setSVBoxColor(int color) {
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.intKey(ctx, SVBOX_COLOR), color);
+        DataStoreUtils.setToDataStore(getDataStoreCache(), keySVBoxColor, color);
     }
 
     /**
@@ -117,7 +197,7 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      */
     @Override
     public int getChartTimeoutSeconds() {
-        return DataStoreUtils.getFromDataStore(dataStore, DataStoreUtils.intKey(ctx, CHARTS_TIMEOUT), DEF_CHARTS_TIMEOUT);
+        return DataStoreUtils.getFromDataStore(getDataStoreCache(), keyChartsTimeout, DEF_CHARTS_TIMEOUT);
     }
 
     /**
@@ -128,7 +208,41 @@ public class LocalPreferences extends SVAbsSubStorage implements SVPreferences {
      */
     @Override
     public void setChartTimeoutSeconds(int chartTimeoutSeconds) {
-        DataStoreUtils.setToDataStore(dataStore, DataStoreUtils.intKey(ctx, CHARTS_TIMEOUT), chartTimeoutSeconds);
+        DataStoreUtils.setToDataStore(getDataStoreCache(), keyChartsTimeout, chartTimeoutSeconds);
+    }
+
+
+
+    // Change streams
+
+    /**
+     * Flow of the SV box color's changes.
+     *
+     * @return the flow of the SV box color's changes.
+     */
+    @Override
+    public Flowable<Integer> observeSVBoxColor() {
+        return getDataStoreCache().changes()
+                .filter(change -> change.isChanged(keySVBoxColor))
+                .map(change -> {
+                    Integer color = change.getNewValue(keySVBoxColor);
+                    return color != null ? color : DEF_SVBOX_COLOR;
+                });
+    }
+
+    /**
+     * Flow of the chart timeout's changes.
+     *
+     * @return the flow of the chart timeout's changes.
+     */
+    @Override
+    public Flowable<Integer> observeChartTimeoutSeconds() {
+        return getDataStoreCache().changes()
+                .filter(change -> change.isChanged(keyChartsTimeout))
+                .map(change -> {
+                    Integer timeout = change.getNewValue(keyChartsTimeout);
+                    return timeout != null ? timeout : DEF_CHARTS_TIMEOUT;
+                });
     }
 
 }
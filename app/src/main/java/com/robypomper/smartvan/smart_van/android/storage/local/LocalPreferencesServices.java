@@ -3,13 +3,26 @@ package com.robypomper.smartvan.smart_van.android.storage.local;
 import android.content.Context;
 
 import androidx.datastore.preferences.core.Preferences;
-import androidx.datastore.preferences.core.PreferencesKeys;
 import androidx.datastore.rxjava3.RxDataStore;
 
 import com.robypomper.smartvan.smart_van.android.storage.SVAbsSubStorage;
 import com.robypomper.smartvan.smart_van.android.storage.SVPreferencesServices;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreChange;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreEditor;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreKeys;
+import com.robypomper.smartvan.smart_van.android.utils.DataStorePool;
+import com.robypomper.smartvan.smart_van.android.utils.DataStoreSnapshotCache;
 import com.robypomper.smartvan.smart_van.android.utils.DataStoreUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+
 
 /**
  * The local {@link SVPreferencesServices} implementation for the SmartVan application.
@@ -25,10 +38,23 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      * The application's context.
      */
     private final Context ctx;
+    /**
+     * The pool that provides the DataStore used by this class.
+     */
+    private final DataStorePool dataStorePool;
+    /**
+     * The name of the DataStore used by this class, null if the storage was
+     * not generated or was released.
+     */
+    private String dataStoreName;
     /**
      * The DataStore used by this class.
      */
     private RxDataStore<Preferences> dataStore;
+    /**
+     * The in-memory snapshot of the {@link #dataStore}, used to serve reads.
+     */
+    private DataStoreSnapshotCache dataStoreCache;
 
 
     // Constructors
@@ -36,10 +62,31 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
     /**
      * Initialize the local preferences services.
      *
-     * @param ctx the application's context.
+     * @param ctx           the application's context.
+     * @param dataStorePool the pool that provides the DataStore used by this class.
      */
-    public LocalPreferencesServices(Context ctx) {
+    public LocalPreferencesServices(Context ctx, DataStorePool dataStorePool) {
         this.ctx = ctx;
+        this.dataStorePool = dataStorePool;
+    }
+
+
+    // DataStore name
+
+    /**
+     * The name of the DataStore used to store the services' preferences of
+     * given object.
+     * <p>
+     * The name is the {@link SVPreferencesServices#DATA_STORE_NAME_PREFIX}
+     * resource's id followed by the object's id, not the formatted resource.
+     * Existing DataStores are stored with this name, so it must be used
+     * wherever they are opened.
+     *
+     * @param objectId the object's id.
+     * @return the name of the object's DataStore.
+     */
+    public static String getDataStoreName(String objectId) {
+        return DATA_STORE_NAME_PREFIX + objectId;
     }
 
 
@@ -56,7 +103,12 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      */
     @Override
     public void generateStorage(String objectId) {
-        dataStore = DataStoreUtils.initDataStore(ctx, DATA_STORE_NAME_PREFIX + objectId);
+        if (isStorageGenerated() && objectId.equals(getObjectId())) return;
+        releaseStorage(getObjectId());
+
+        dataStoreName = getDataStoreName(objectId);
+        dataStoreCache = dataStorePool.acquire(dataStoreName);
+        dataStore = dataStoreCache.getDataStore();
         setObjectId(objectId);
     }
 
@@ -70,7 +122,24 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      */
     @Override
     public void clearStorage(String objectId) {
-        DataStoreUtils.clearDataStore(dataStore);
+        dataStorePool.clear(getDataStoreName(objectId));
+        releaseStorage(objectId);
+    }
+
+    /**
+     * Release the DataStore used by this class to the pool, without deleting
+     * his data.
+     *
+     * @param objectId the id of the object for which to release the storage.
+     */
+    @Override
+    public void releaseStorage(String objectId) {
+        if (dataStoreName == null) return;
+        dataStorePool.release(dataStoreName);
+        dataStoreName = null;
+        dataStore = null;
+        dataStoreCache = null;
+        setObjectId(null);
     }
 
 
@@ -80,14 +149,58 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      * Get the AndroidX DataStore used by this class.
      *
      * @return the AndroidX DataStore used by this class.
+     * @throws IllegalStateException if the storage was not generated, or it
+     *                               was already released.
      */
     public RxDataStore<Preferences> getDataStore() {
+        checkStorageGenerated();
         return dataStore;
     }
 
+    /**
+     * Get the cache of the DataStore used by this class.
+     *
+     * @return the cache of the DataStore used by this class.
+     * @throws IllegalStateException if the storage was not generated, or it
+     *                               was already released.
+     */
+    private DataStoreSnapshotCache getDataStoreCache() {
+        checkStorageGenerated();
+        return dataStoreCache;
+    }
+
 
     // SVPreferencesServices
 
+    /**
+     * Create a new editor to update many SV Services' preferences with a
+     * single DataStore write.
+     *
+     * @return a new SV Services' preferences editor.
+     */
+    @Override
+    public SVPreferencesServices.Editor edit() {
+        final DataStoreEditor editor = getDataStoreCache().edit();
+        return new SVPreferencesServices.Editor() {
+            @Override
+            public SVPreferencesServices.Editor setName(String srvPath, String name) {
+                editor.set(DataStoreKeys.stringKey(ctx, NAME_PROP_PREFIX, srvPath), name);
+                return this;
+            }
+
+            @Override
+            public SVPreferencesServices.Editor setIconName(String srvPath, String iconName) {
+                editor.set(DataStoreKeys.stringKey(ctx, ICON_PROP_PREFIX, srvPath), iconName);
+                return this;
+            }
+
+            @Override
+            public Completable commit() {
+                return editor.commit();
+            }
+        };
+    }
+
     /**
      * Set the name of the specified SV Service.
      *
@@ -96,8 +209,8 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      */
     @Override
     public void setName(String srvPath, String name) {
-        final Preferences.Key<String> PREF = PreferencesKeys.stringKey(ctx.getString(NAME_PROP_PREFIX, srvPath));
-        DataStoreUtils.setToDataStore(dataStore, PREF, name);
+        final Preferences.Key<String> PREF = DataStoreKeys.stringKey(ctx, NAME_PROP_PREFIX, srvPath);
+        DataStoreUtils.setToDataStore(getDataStoreCache(), PREF, name);
     }
 
     /**
@@ -108,8 +221,8 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      */
     @Override
     public String getName(String srvPath) {
-        final Preferences.Key<String> PREF = PreferencesKeys.stringKey(ctx.getString(NAME_PROP_PREFIX, srvPath));
-        return DataStoreUtils.getFromDataStore(dataStore, PREF, DEF_NAME);
+        final Preferences.Key<String> PREF = DataStoreKeys.stringKey(ctx, NAME_PROP_PREFIX, srvPath);
+        return DataStoreUtils.getFromDataStore(getDataStoreCache(), PREF, DEF_NAME);
     }
 
     /**
@@ -120,8 +233,8 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      */
     @Override
     public void setIconName(String srvPath, String iconName) {
-        final Preferences.Key<String> PREF = PreferencesKeys.stringKey(ctx.getString(ICON_PROP_PREFIX, srvPath));
-        DataStoreUtils.setToDataStore(dataStore, PREF, iconName);
+        final Preferences.Key<String> PREF = DataStoreKeys.stringKey(ctx, ICON_PROP_PREFIX, srvPath);
+        DataStoreUtils.setToDataStore(getDataStoreCache(), PREF, iconName);
     }
 
     /**
@@ -132,8 +245,134 @@ public class LocalPreferencesServices extends SVAbsSubStorage implements SVPrefe
      */
     @Override
     public String getIconName(String srvPath) {
-        final Preferences.Key<String> PREF = PreferencesKeys.stringKey(ctx.getString(ICON_PROP_PREFIX, srvPath));
-        return DataStoreUtils.getFromDataStore(dataStore, PREF, DEF_ICON_NAME);
+        final Preferences.Key<String> PREF = DataStoreKeys.stringKey(ctx, ICON_PROP_PREFIX, srvPath);
+        return DataStoreUtils.getFromDataStore(getDataStoreCache(), PREF, DEF_ICON_NAME);
+    }
+
+
+    /**
+     * Get the preferences of all SV Services that have at least one
+     * preference set.
+     * <p>
+     * All values are read from the same DataStore's snapshot.
+     *
+     * @return a map containing the SV Services' preferences, by service path.
+     */
+    @Override
+    public Map<String, ServicePrefs> getAll() {
+        Preferences snapshot = getDataStoreCache().getSnapshot();
+        String namePrefix = ctx.getString(NAME_PROP_PREFIX, "");
+        String iconPrefix = ctx.getString(ICON_PROP_PREFIX, "");
+
+        Map<String, String> names = new HashMap<>();
+        Map<String, String> icons = new HashMap<>();
+        for (Map.Entry<Preferences.Key<?>, Object> pref : snapshot.asMap().entrySet()) {
+            String keyName = pref.getKey().getName();
+            if (!(pref.getValue() instanceof String)) continue;
+            if (keyName.startsWith(namePrefix))
+                names.put(keyName.substring(namePrefix.length()), (String) pref.getValue());
+            else if (keyName.startsWith(iconPrefix))
+                icons.put(keyName.substring(iconPrefix.length()), (String) pref.getValue());
+        }
+
+        Map<String, ServicePrefs> all = new HashMap<>();
+        for (Map.Entry<String, String> name : names.entrySet())
+            all.put(name.getKey(), new ServicePrefs(name.getKey(), name.getValue(), icons.remove(name.getKey())));
+        for (Map.Entry<String, String> icon : icons.entrySet())
+            all.put(icon.getKey(), new ServicePrefs(icon.getKey(), null, icon.getValue()));
+        return all;
+    }
+
+    /**
+     * Get the preferences of the specified SV Services.
+     * <p>
+     * All values are read from the same DataStore's snapshot.
+     *
+     * @param srvPaths the paths of the SV Services for which to get the preferences.
+     * @return a map containing the SV Services' preferences, by service path.
+     */
+    @Override
+    public Map<String, ServicePrefs> getAll(Collection<String> srvPaths) {
+        Preferences snapshot = getDataStoreCache().getSnapshot();
+
+        Map<String, ServicePrefs> all = new HashMap<>();
+        for (String srvPath : srvPaths) {
+            String name = snapshot.get(DataStoreKeys.stringKey(ctx, NAME_PROP_PREFIX, srvPath));
+            String iconName = snapshot.get(DataStoreKeys.stringKey(ctx, ICON_PROP_PREFIX, srvPath));
+            all.put(srvPath, new ServicePrefs(srvPath, name != null ? name : DEF_NAME, iconName != null ? iconName : DEF_ICON_NAME));
+        }
+        return all;
+    }
+
+
+
+    // Change streams
+
+    /**
+     * Flow of the changes to the SV Services' preferences.
+     * <p>
+     * Each emission describes the change of a single preference of a single
+     * SV Service, computed comparing consecutive DataStore's snapshots.
+     *
+     * @return the flow of the changes to the SV Services' preferences.
+     */
+    @Override
+    public Flowable<ServicePrefsChange> changes() {
+        final String namePrefix = ctx.getString(NAME_PROP_PREFIX, "");
+        final String iconPrefix = ctx.getString(ICON_PROP_PREFIX, "");
+        return getDataStoreCache().changes().concatMapIterable(change -> toServicePrefsChanges(change, namePrefix, iconPrefix));
+    }
+
+    /**
+     * Flow of the changes to the name of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service to observe.
+     * @return the flow of the changes to the SV Service's name.
+     */
+    @Override
+    public Flowable<ServicePrefsChange> observeName(String srvPath) {
+        final Preferences.Key<String> PREF = DataStoreKeys.stringKey(ctx, NAME_PROP_PREFIX, srvPath);
+        return getDataStoreCache().changes()
+                .filter(change -> change.isChanged(PREF))
+                .map(change -> new ServicePrefsChange(srvPath, ServicePrefsChange.Property.NAME, change.getOldValue(PREF), change.getNewValue(PREF)));
+    }
+
+    /**
+     * Flow of the changes to the icon of the specified SV Service.
+     *
+     * @param srvPath the path of the SV Service to observe.
+     * @return the flow of the changes to the SV Service's icon.
+     */
+    @Override
+    public Flowable<ServicePrefsChange> observeIconName(String srvPath) {
+        final Preferences.Key<String> PREF = DataStoreKeys.stringKey(ctx, ICON_PROP_PREFIX, srvPath);
+        return getDataStoreCache().changes()
+                .filter(change -> change.isChanged(PREF))
+                .map(change -> new ServicePrefsChange(srvPath, ServicePrefsChange.Property.ICON, change.getOldValue(PREF), change.getNewValue(PREF)));
+    }
+
+    private static List<ServicePrefsChange> toServicePrefsChanges(DataStoreChange change, String namePrefix, String iconPrefix) {
+        List<ServicePrefsChange> changes = new ArrayList<>();
+        for (Preferences.Key<?> key : change.getChangedKeys()) {
+            String keyName = key.getName();
+            ServicePrefsChange.Property property;
+            String srvPath;
+            if (keyName.startsWith(namePrefix)) {
+                property = ServicePrefsChange.Property.NAME;
+                srvPath = keyName.substring(namePrefix.length());
+            } else if (keyName.startsWith(iconPrefix)) {
+                property = ServicePrefsChange.Property.ICON;
+                srvPath = keyName.substring(iconPrefix.length());
+            } else
+                continue;
+
+            Object oldValue = change.getPrevious().asMap().get(key);
+            Object newValue = change.getCurrent().asMap().get(key);
+            changes.add(new ServicePrefsChange(srvPath, property,
+                    oldValue instanceof String ? (String) oldValue : null,
+                    newValue instanceof String ? (String) newValue : null));
+        }
+        return changes;
     }
 
 }
@@ -0,0 +1,163 @@
+package com.robypomper.smartvan.smart_van.android.storage.local;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.robypomper.smartvan.smart_van.android.utils.DataStorePool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Background warm-up of the per-object DataStores used by the
+ * {@link SVLocalStorage}.
+ * <p>
+ * On application start, the prefetcher reads the DataStores of the favourite
+ * object and of the most recently used ones, on a low-priority thread. So,
+ * when the user selects one of those objects from the
+ * {@link com.robypomper.smartvan.smart_van.android.activities.SVSelectObjectActivity},
+ * his storage is generated from the {@link DataStorePool} without waiting for
+ * the file I/O.
+ * <p>
+ * The number of prefetched objects is limited by the pool's max idle
+ * DataStores, so prefetched DataStores are not disposed before they are used.
+ * The pool's hit/miss counters tell how often the warm-up was useful.
+ */
+public class LocalStoragePrefetcher {
+
+    // Constants
+
+    private static final String LOG_TAG = "LocalStoragePrefetcher";
+    /**
+     * Number of DataStores used by each object: the object's preferences
+     * and the SV Services' preferences.
+     */
+    private static final int DATA_STORES_PER_OBJECT = 2;
+
+
+    // Internal vars
+
+    /**
+     * The application's context.
+     */
+    private final Context ctx;
+    /**
+     * The local storage of which prefetch the objects.
+     */
+    private final SVLocalStorage storage;
+    /**
+     * The pool that holds the prefetched DataStores.
+     */
+    private final DataStorePool dataStorePool;
+    /**
+     * The low-priority executor used to read the DataStores.
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, LOG_TAG);
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Number of objects prefetched since the prefetcher's creation.
+     */
+    private volatile int prefetchedObjects = 0;
+
+
+    // Constructor
+
+    /**
+     * Initialize the prefetcher.
+     *
+     * @param ctx           the application's context.
+     * @param storage       the local storage of which prefetch the objects.
+     * @param dataStorePool the pool that holds the prefetched DataStores.
+     */
+    public LocalStoragePrefetcher(Context ctx, SVLocalStorage storage, DataStorePool dataStorePool) {
+        this.ctx = ctx;
+        this.storage = storage;
+        this.dataStorePool = dataStorePool;
+    }
+
+
+    // Getters
+
+    /**
+     * @return the number of objects prefetched since the prefetcher's creation.
+     */
+    public int getPrefetchedObjects() {
+        return prefetchedObjects;
+    }
+
+    /**
+     * @return the number of per-object DataStores acquired while already warm.
+     */
+    public int getHitCount() {
+        return dataStorePool.getHitCount();
+    }
+
+    /**
+     * @return the number of per-object DataStores acquired while still cold.
+     */
+    public int getMissCount() {
+        return dataStorePool.getMissCount();
+    }
+
+
+    // Prefetch
+
+    /**
+     * Start the warm-up of the favourite and most recently used objects'
+     * DataStores, in background.
+     */
+    public void start() {
+        executor.execute(this::prefetchObjects);
+    }
+
+    /**
+     * Stop the warm-up, the DataStore currently loading completes anyway.
+     */
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void prefetchObjects() {
+        List<String> objectIds = getObjectsToPrefetch();
+        for (String objectId : objectIds) {
+            if (Thread.currentThread().isInterrupted())
+                return;
+            dataStorePool.prefetch(LocalPreferences.getDataStoreName(ctx, objectId));
+            dataStorePool.prefetch(LocalPreferencesServices.getDataStoreName(objectId));
+            prefetchedObjects++;
+        }
+        Log.d(LOG_TAG, String.format("Prefetched %d objects' storage", objectIds.size()));
+    }
+
+    /**
+     * @return the ids of the objects to prefetch: the favourite one, then
+     * the most recently used ones, up to the pool's max idle DataStores.
+     */
+    private List<String> getObjectsToPrefetch() {
+        List<String> knownIds = storage.getKnownObjectIds();
+        Set<String> objectIds = new LinkedHashSet<>();
+        String favObjId = storage.getFavouriteObjectId();
+        if (favObjId != null && knownIds.contains(favObjId))
+            objectIds.add(favObjId);
+        for (String objectId : storage.getRecentObjectIds())
+            if (knownIds.contains(objectId))
+                objectIds.add(objectId);
+
+        int max = dataStorePool.getMaxIdle() / DATA_STORES_PER_OBJECT;
+        List<String> toPrefetch = new ArrayList<>(objectIds);
+        return toPrefetch.size() > max ? toPrefetch.subList(0, max) : toPrefetch;
+    }
+
+}
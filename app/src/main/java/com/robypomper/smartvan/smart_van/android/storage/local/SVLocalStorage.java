@@ -2,13 +2,19 @@ package com.robypomper.smartvan.smart_van.android.storage.local;
 
 import android.content.Context;
 
+import com.robypomper.smartvan.smart_van.android.storage.SVHistory;
 import com.robypomper.smartvan.smart_van.android.storage.SVPreferences;
 import com.robypomper.smartvan.smart_van.android.storage.SVPreferencesServices;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorage;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorageBaseDataStore;
 import com.robypomper.smartvan.smart_van.android.storage.SVStorageSingleton;
+import com.robypomper.smartvan.smart_van.android.storage.SVSubStorage;
+import com.robypomper.smartvan.smart_van.android.utils.DataStorePool;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 
@@ -16,13 +22,30 @@ import java.util.Map;
  * The local {@link SVStorage} implementation for the SmartVan application.
  * <p>
  * This implementation use implementations for sub-components that use local
- * storage: {@link LocalPreferences}.
+ * storage: {@link LocalPreferences}, {@link LocalPreferencesServices} and
+ * {@link LocalHistory}.
  * <p>
  * This class inherits from {@link SVStorageBaseDataStore} that uses the
  * Android's {@link androidx.datastore.core.DataStore} to store the data.
+ * <p>
+ * Per-object DataStores are provided by a {@link DataStorePool}. Only the
+ * sub-storages of the {@link #MAX_OPEN_OBJECTS} most recently used objects
+ * are kept open, the others are released to the pool (that keeps them warm
+ * for a while) and re-generated on next access. Sub-storages held by their
+ * users (see {@link #holdObjectStorage(String)}) are never released.
  */
 public class SVLocalStorage extends SVStorageBaseDataStore implements SVStorage {
 
+    // Constants
+
+    /**
+     * Max number of objects whose sub-storages are kept open.
+     * <p>
+     * The current object's sub-storages are never released.
+     */
+    public static final int MAX_OPEN_OBJECTS = 2;
+
+
     // Internal vars
 
     /**
@@ -30,13 +53,31 @@ public class SVLocalStorage extends SVStorageBaseDataStore implements SVStorage
      */
     private final Context ctx;
     /**
-     * The application's generic preferences object.
+     * The pool of the per-object DataStores.
+     */
+    private final DataStorePool dataStorePool;
+    /**
+     * The application's generic preferences for each open object id, in
+     * least recently used order.
+     */
+    private final LinkedHashMap<String, SVPreferences> preferencesApp;
+    /**
+     * SV Services preferences for each open object id, in least recently used
+     * order.
+     */
+    private final LinkedHashMap<String, SVPreferencesServices> preferencesServices;
+    /**
+     * The history for each open object id, in least recently used order.
+     */
+    private final LinkedHashMap<String, SVHistory> history;
+    /**
+     * Number of holds for each held object id.
      */
-    private final Map<String, SVPreferences> preferencesApp;
+    private final Map<String, Integer> holds = new HashMap<>();
     /**
-     * SV Services preferences for each known object id.
+     * The background warm-up of the favourite and recent objects' storage.
      */
-    private final Map<String, SVPreferencesServices> preferencesServices;
+    private final LocalStoragePrefetcher prefetcher;
 
 
     // Constructor
@@ -49,36 +90,62 @@ public class SVLocalStorage extends SVStorageBaseDataStore implements SVStorage
     public SVLocalStorage(Context ctx) {
         super(ctx);
         this.ctx = ctx;
-        this.preferencesApp = new HashMap<>();
-        this.preferencesServices = new HashMap<>();
+        this.dataStorePool = new DataStorePool(ctx);
+        this.preferencesApp = new LinkedHashMap<>(MAX_OPEN_OBJECTS + 1, 0.75f, true);
+        this.preferencesServices = new LinkedHashMap<>(MAX_OPEN_OBJECTS + 1, 0.75f, true);
+        this.history = new LinkedHashMap<>(MAX_OPEN_OBJECTS + 1, 0.75f, true);
+        this.prefetcher = new LocalStoragePrefetcher(ctx, this, dataStorePool);
 
         SVStorageSingleton.setInstance(this);
     }
 
 
+    // Getters
+
+    /**
+     * @return the background warm-up of the favourite and recent objects' storage.
+     */
+    public LocalStoragePrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * Start the background warm-up of the favourite and most recently used
+     * objects' storage.
+     * <p>
+     * It should be called on application start, so the user doesn't wait for
+     * the file I/O when he selects one of those objects.
+     */
+    public void prefetchObjects() {
+        prefetcher.start();
+    }
+
+
     // Storage mngm implementation
 
-    protected void generatePreferenceApp(String objectId) {
+    protected synchronized void generatePreferenceApp(String objectId) {
         if (preferencesApp.containsKey(objectId)) return;
-        SVPreferences locPreferences = new LocalPreferences(ctx);
+        SVPreferences locPreferences = new LocalPreferences(ctx, dataStorePool);
         locPreferences.generateStorage(objectId);
         preferencesApp.put(objectId, locPreferences);
+        releaseLeastRecentlyUsed(preferencesApp);
     }
 
-    protected void generatePreferenceServices(String objectId) {
+    protected synchronized void generatePreferenceServices(String objectId) {
         if (preferencesServices.containsKey(objectId)) return;
-        SVPreferencesServices locPreferencesServices = new LocalPreferencesServices(ctx);
+        SVPreferencesServices locPreferencesServices = new LocalPreferencesServices(ctx, dataStorePool);
         locPreferencesServices.generateStorage(objectId);
         preferencesServices.put(objectId, locPreferencesServices);
+        releaseLeastRecentlyUsed(preferencesServices);
     }
 
-    // TODO uncomment when the history is implemented
-    //protected void generateHistory(String objectId) {
-    // if (history.containsKey(objectId)) return;
-    // SVHistory locHistory = new LocalHistory();
-    // locHistory.generateStorage(objectId);
-    // history.put(objectId, locHistory);
-    //}
+    protected synchronized void generateHistory(String objectId) {
+        if (history.containsKey(objectId)) return;
+        SVHistory locHistory = new LocalHistory(ctx);
+        locHistory.generateStorage(objectId);
+        history.put(objectId, locHistory);
+        releaseLeastRecentlyUsed(history);
+    }
 
     // TODO uncomment when the automations are implemented
     //protected void generateAutomations(String objectId) {
@@ -88,21 +155,96 @@ public class SVLocalStorage extends SVStorageBaseDataStore implements SVStorage
     // automations.put(objectId, locAutomations);
     //}
 
-    protected void clearPreferenceApp(String objectId) {
+    protected synchronized void clearPreferenceApp(String objectId) {
         SVPreferences locPreferences = preferencesApp.remove(objectId);
-        if (locPreferences != null) locPreferences.clearStorage(objectId);
+        if (locPreferences == null) locPreferences = new LocalPreferences(ctx, dataStorePool);
+        locPreferences.clearStorage(objectId);
     }
 
-    protected void clearPreferenceServices(String objectId) {
+    protected synchronized void clearPreferenceServices(String objectId) {
         SVPreferencesServices locPreferencesServices = preferencesServices.remove(objectId);
-        if (locPreferencesServices != null) locPreferencesServices.clearStorage(objectId);
+        if (locPreferencesServices == null) locPreferencesServices = new LocalPreferencesServices(ctx, dataStorePool);
+        locPreferencesServices.clearStorage(objectId);
     }
 
-    // TODO uncomment when the history is implemented
-    //protected void clearHistory(String objectId) {
-    // SVHistory locHistory = history.remove(objectId);
-    // if (locHistory != null) locHistory.clearStorage(objectId);
-    //}
+    /**
+     * Release the sub-storages of the least recently used objects, until
+     * the given map contains at most {@link #MAX_OPEN_OBJECTS} objects.
+     * <p>
+     * The current object's sub-storage and the held ones are never released,
+     * so the map can contain more objects until they are released.
+     *
+     * @param subStorages the map of sub-storages to trim.
+     */
+    private <T extends SVSubStorage> void releaseLeastRecentlyUsed(LinkedHashMap<String, T> subStorages) {
+        String currObjId = getCurrentObjectId();
+        Iterator<Map.Entry<String, T>> iterator = subStorages.entrySet().iterator();
+        while (subStorages.size() > MAX_OPEN_OBJECTS && iterator.hasNext()) {
+            Map.Entry<String, T> eldest = iterator.next();
+            if (eldest.getKey().equals(currObjId) || holds.containsKey(eldest.getKey())) continue;
+            iterator.remove();
+            eldest.getValue().releaseStorage(eldest.getKey());
+        }
+    }
+
+    /**
+     * Hold the sub-storages of the given object id, so they are not released
+     * while in use, also if the object is not the most recently used.
+     *
+     * @param objectId the id of the object for which to hold the sub-storages.
+     */
+    @Override
+    public synchronized void holdObjectStorage(String objectId) {
+        Integer count = holds.get(objectId);
+        holds.put(objectId, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * Release a hold on the sub-storages of the given object id. When the
+     * last hold is released, the least recently used sub-storages are
+     * trimmed again.
+     *
+     * @param objectId the id of the object for which to release the sub-storages.
+     */
+    @Override
+    public synchronized void releaseObjectStorage(String objectId) {
+        Integer count = holds.get(objectId);
+        if (count == null) return;
+        if (count > 1) {
+            holds.put(objectId, count - 1);
+            return;
+        }
+
+        holds.remove(objectId);
+        releaseLeastRecentlyUsed(preferencesApp);
+        releaseLeastRecentlyUsed(preferencesServices);
+        releaseLeastRecentlyUsed(history);
+    }
+
+    /**
+     * Release all sub-storages and dispose all per-object DataStores.
+     * <p>
+     * After this method call, the per-object storages can't be used anymore.
+     */
+    public synchronized void dispose() {
+        prefetcher.stop();
+        for (Map.Entry<String, SVPreferences> p : new ArrayList<>(preferencesApp.entrySet()))
+            p.getValue().releaseStorage(p.getKey());
+        preferencesApp.clear();
+        for (Map.Entry<String, SVPreferencesServices> p : new ArrayList<>(preferencesServices.entrySet()))
+            p.getValue().releaseStorage(p.getKey());
+        preferencesServices.clear();
+        for (Map.Entry<String, SVHistory> h : new ArrayList<>(history.entrySet()))
+            h.getValue().releaseStorage(h.getKey());
+        history.clear();
+        dataStorePool.dispose();
+    }
+
+    protected synchronized void clearHistory(String objectId) {
+        SVHistory locHistory = history.remove(objectId);
+        if (locHistory == null) locHistory = new LocalHistory(ctx);
+        locHistory.clearStorage(objectId);
+    }
 
     // TODO uncomment when the automations are implemented
     //protected void clearAutomations(String objectId) {
@@ -120,7 +262,9 @@ public class SVLocalStorage extends SVStorageBaseDataStore implements SVStorage
      * @return the preferences for the given object id.
      */
     @Override
-    public SVPreferences getPreferencesApp(String objectId) {
+    public synchronized SVPreferences getPreferencesApp(String objectId) {
+        if (!preferencesApp.containsKey(objectId) && getKnownObjectIds().contains(objectId))
+            generatePreferenceApp(objectId);
         return preferencesApp.get(objectId);
     }
 
@@ -131,8 +275,23 @@ public class SVLocalStorage extends SVStorageBaseDataStore implements SVStorage
      * @return the preferences services for the given object id.
      */
     @Override
-    public SVPreferencesServices getPreferencesServices(String objectId) {
+    public synchronized SVPreferencesServices getPreferencesServices(String objectId) {
+        if (!preferencesServices.containsKey(objectId) && getKnownObjectIds().contains(objectId))
+            generatePreferenceServices(objectId);
         return preferencesServices.get(objectId);
     }
 
+    /**
+     * Get the history for the given object id.
+     *
+     * @param objectId the id of the object for which to get the history.
+     * @return the history for the given object id.
+     */
+    @Override
+    public synchronized SVHistory getHistory(String objectId) {
+        if (!history.containsKey(objectId) && getKnownObjectIds().contains(objectId))
+            generateHistory(objectId);
+        return history.get(objectId);
+    }
+
 }
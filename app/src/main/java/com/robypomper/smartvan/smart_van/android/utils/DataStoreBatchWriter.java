@@ -0,0 +1,164 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import android.util.Log;
+
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.rxjava3.RxDataStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+
+
+/**
+ * Coalescing writer for an AndroidX {@link RxDataStore}.
+ * <p>
+ * Each {@link RxDataStore#updateDataAsync(io.reactivex.rxjava3.functions.Function)}
+ * call serializes and writes the whole preferences file. This class collects
+ * all the mutations submitted within a short window and applies them with a
+ * single DataStore update, keeping the submission order.
+ */
+public class DataStoreBatchWriter {
+
+    // Constants
+
+    private static final String LOG_TAG = "DataStoreBatchWriter";
+    /**
+     * Default window, in milliseconds, used to coalesce the submitted mutations.
+     */
+    public static final long DEF_COALESCE_WINDOW_MS = 50;
+
+
+    // Internal vars
+
+    /**
+     * The DataStore to write to.
+     */
+    private final RxDataStore<Preferences> dataStore;
+    /**
+     * The window, in milliseconds, used to coalesce the submitted mutations.
+     */
+    private final long coalesceWindowMs;
+    /**
+     * Lock for the pending mutations and results.
+     */
+    private final Object pendingLock = new Object();
+    /**
+     * The mutations waiting for the next flush.
+     */
+    private List<DataStoreEditor.Mutation> pendingMutations = new ArrayList<>();
+    /**
+     * The results to notify on the next flush.
+     */
+    private List<CompletableSubject> pendingResults = new ArrayList<>();
+    /**
+     * True if a flush is already scheduled.
+     */
+    private boolean isFlushScheduled = false;
+    /**
+     * The result of the last flushed batch.
+     */
+    private Completable lastWrite = Completable.complete();
+
+
+    // Constructors
+
+    /**
+     * Create a writer with the default coalesce window.
+     *
+     * @param dataStore the DataStore to write to.
+     */
+    public DataStoreBatchWriter(RxDataStore<Preferences> dataStore) {
+        this(dataStore, DEF_COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * Create a writer with the given coalesce window.
+     *
+     * @param dataStore        the DataStore to write to.
+     * @param coalesceWindowMs the window, in milliseconds, used to coalesce
+     *                         the submitted mutations.
+     */
+    public DataStoreBatchWriter(RxDataStore<Preferences> dataStore, long coalesceWindowMs) {
+        this.dataStore = dataStore;
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+
+    // Writer methods
+
+    /**
+     * Submit a list of mutations to be applied to the DataStore.
+     * <p>
+     * The returned Completable is hot: mutations are written even if it is
+     * not subscribed.
+     *
+     * @param mutations the mutations to apply.
+     * @return a Completable that completes when the mutations are persisted.
+     */
+    public Completable submit(List<DataStoreEditor.Mutation> mutations) {
+        CompletableSubject result = CompletableSubject.create();
+        synchronized (pendingLock) {
+            pendingMutations.addAll(mutations);
+            pendingResults.add(result);
+            if (!isFlushScheduled) {
+                isFlushScheduled = true;
+                Schedulers.io().scheduleDirect(this::flush, coalesceWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write all pending mutations with a single DataStore update.
+     * <p>
+     * Each batch is written only after the previous one terminated, so
+     * batches flushed by different threads (e.g. an explicit flush and the
+     * scheduled one) reach the DataStore in the order they were taken. Then,
+     * when the returned Completable completes, also all previously submitted
+     * mutations are persisted.
+     *
+     * @return a Completable that completes when the pending mutations are persisted.
+     */
+    public Completable flush() {
+        final List<DataStoreEditor.Mutation> mutations;
+        final List<CompletableSubject> results;
+        final CompletableSubject batchResult = CompletableSubject.create();
+        final Completable previousWrite;
+        synchronized (pendingLock) {
+            mutations = pendingMutations;
+            results = pendingResults;
+            pendingMutations = new ArrayList<>();
+            pendingResults = new ArrayList<>();
+            isFlushScheduled = false;
+            if (results.isEmpty())
+                return lastWrite;
+            results.add(batchResult);
+            previousWrite = lastWrite;
+            lastWrite = batchResult;
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        previousWrite.onErrorComplete().andThen(Single.defer(() -> dataStore.updateDataAsync(prefs -> {
+            MutablePreferences mutablePreferences = prefs.toMutablePreferences();
+            for (DataStoreEditor.Mutation mutation : mutations)
+                mutation.apply(mutablePreferences);
+            return Single.just(mutablePreferences);
+        }))).subscribe(prefs -> {
+            for (CompletableSubject result : results)
+                result.onComplete();
+        }, error -> {
+            Log.w(LOG_TAG, String.format("Error writing %d mutations to DataStore: %s", mutations.size(), error.getMessage()), error);
+            for (CompletableSubject result : results)
+                result.onError(error);
+        });
+        return batchResult;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import androidx.datastore.preferences.core.Preferences;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Difference between two consecutive DataStore's snapshots.
+ * <p>
+ * Instances are emitted by the {@link DataStoreSnapshotCache#changes()} flow
+ * and contain only the keys whose value was added, updated or removed.
+ *
+ * @noinspection unused
+ */
+public class DataStoreChange {
+
+    // Internal vars
+
+    private final Preferences previous;
+    private final Preferences current;
+    private final Set<Preferences.Key<?>> changedKeys;
+
+
+    // Constructors
+
+    private DataStoreChange(Preferences previous, Preferences current, Set<Preferences.Key<?>> changedKeys) {
+        this.previous = previous;
+        this.current = current;
+        this.changedKeys = Collections.unmodifiableSet(changedKeys);
+    }
+
+    /**
+     * Compute the difference between two snapshots.
+     *
+     * @param previous the previous snapshot.
+     * @param current  the current snapshot.
+     * @return the difference between given snapshots, or null if they contain
+     * the same values.
+     */
+    public static DataStoreChange diff(Preferences previous, Preferences current) {
+        Map<Preferences.Key<?>, Object> prevValues = previous.asMap();
+        Map<Preferences.Key<?>, Object> currValues = current.asMap();
+
+        Set<Preferences.Key<?>> changedKeys = new HashSet<>();
+        for (Map.Entry<Preferences.Key<?>, Object> curr : currValues.entrySet())
+            if (!areEquals(curr.getValue(), prevValues.get(curr.getKey())))
+                changedKeys.add(curr.getKey());
+        for (Preferences.Key<?> prevKey : prevValues.keySet())
+            if (!currValues.containsKey(prevKey))
+                changedKeys.add(prevKey);
+
+        return changedKeys.isEmpty() ? null : new DataStoreChange(previous, current, changedKeys);
+    }
+
+
+    // Getters
+
+    /**
+     * @return the snapshot before the change.
+     */
+    public Preferences getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return the snapshot after the change.
+     */
+    public Preferences getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the keys whose value was added, updated or removed.
+     */
+    public Set<Preferences.Key<?>> getChangedKeys() {
+        return changedKeys;
+    }
+
+    /**
+     * @param preference the preference key to check.
+     * @return true if the given preference was changed.
+     */
+    public boolean isChanged(Preferences.Key<?> preference) {
+        return changedKeys.contains(preference);
+    }
+
+    /**
+     * @param preference the preference key to get the value for.
+     * @param <T>        the type of the value to get.
+     * @return the value before the change, or null if it was not set.
+     */
+    public <T> T getOldValue(Preferences.Key<T> preference) {
+        return previous.get(preference);
+    }
+
+    /**
+     * @param preference the preference key to get the value for.
+     * @param <T>        the type of the value to get.
+     * @return the value after the change, or null if it was removed.
+     */
+    public <T> T getNewValue(Preferences.Key<T> preference) {
+        return current.get(preference);
+    }
+
+
+    // Utils
+
+    private static boolean areEquals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.reactivex.rxjava3.core.Completable;
+
+
+/**
+ * Transaction over a DataStore's snapshot cache.
+ * <p>
+ * An editor collects any number of key updates and, on {@link #commit()},
+ * applies all of them to the DataStore with a single
+ * {@link androidx.datastore.rxjava3.RxDataStore#updateDataAsync(io.reactivex.rxjava3.functions.Function)}
+ * call. The updates are applied in the same order they were added to the
+ * editor.
+ * <p>
+ * Editors are created by the {@link DataStoreSnapshotCache#edit()} method and
+ * they are not thread-safe: each thread must use his own editor.
+ *
+ * @noinspection unused, UnusedReturnValue
+ */
+public class DataStoreEditor {
+
+    // Mutation interface
+
+    /**
+     * A single update to apply to the DataStore's preferences.
+     * <p>
+     * Mutations can be applied more than once (to the cached snapshot and to
+     * the DataStore), so they must be idempotent.
+     */
+    public interface Mutation {
+
+        /**
+         * Apply the update to given preferences.
+         *
+         * @param prefs the preferences to update.
+         */
+        void apply(MutablePreferences prefs);
+
+    }
+
+
+    // Internal vars
+
+    /**
+     * The cache on which the editor's mutations are committed.
+     */
+    private final DataStoreSnapshotCache cache;
+    /**
+     * The mutations collected by this editor.
+     */
+    private final List<Mutation> mutations = new ArrayList<>();
+
+
+    // Constructors
+
+    /**
+     * Create a new editor for the given cache.
+     *
+     * @param cache the cache on which the editor's mutations are committed.
+     */
+    DataStoreEditor(DataStoreSnapshotCache cache) {
+        this.cache = cache;
+    }
+
+
+    // Editor methods
+
+    /**
+     * Set a value.
+     *
+     * @param preference the preference key to set the value for.
+     * @param value      the value to set, if null the preference is removed.
+     * @param <T>        the type of the value to set.
+     * @return this editor.
+     */
+    public <T> DataStoreEditor set(Preferences.Key<T> preference, T value) {
+        mutations.add(prefs -> prefs.set(preference, value));
+        return this;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param preference the preference key to remove.
+     * @return this editor.
+     */
+    public DataStoreEditor remove(Preferences.Key<?> preference) {
+        mutations.add(prefs -> prefs.remove(preference));
+        return this;
+    }
+
+    /**
+     * Add a value to a string set, if not already present.
+     *
+     * @param preference the preference key of the string set.
+     * @param value      the value to add.
+     * @return this editor.
+     */
+    public DataStoreEditor addToStringSet(Preferences.Key<Set<String>> preference, String value) {
+        mutations.add(prefs -> {
+            Set<String> values = prefs.get(preference);
+            if (values != null && values.contains(value)) return;
+            Set<String> newValues = values != null ? new HashSet<>(values) : new HashSet<>();
+            newValues.add(value);
+            prefs.set(preference, newValues);
+        });
+        return this;
+    }
+
+    /**
+     * Remove a value from a string set, if present.
+     *
+     * @param preference the preference key of the string set.
+     * @param value      the value to remove.
+     * @return this editor.
+     */
+    public DataStoreEditor removeFromStringSet(Preferences.Key<Set<String>> preference, String value) {
+        mutations.add(prefs -> {
+            Set<String> values = prefs.get(preference);
+            if (values == null || !values.contains(value)) return;
+            Set<String> newValues = new HashSet<>(values);
+            newValues.remove(value);
+            prefs.set(preference, newValues);
+        });
+        return this;
+    }
+
+    /**
+     * Add a custom mutation.
+     *
+     * @param mutation the mutation to add.
+     * @return this editor.
+     */
+    public DataStoreEditor apply(Mutation mutation) {
+        mutations.add(mutation);
+        return this;
+    }
+
+    /**
+     * @return true if no mutation was added to this editor.
+     */
+    public boolean isEmpty() {
+        return mutations.isEmpty();
+    }
+
+    /**
+     * @return the mutations collected by this editor.
+     */
+    List<Mutation> getMutations() {
+        return Collections.unmodifiableList(mutations);
+    }
+
+    /**
+     * Commit all collected mutations.
+     * <p>
+     * The mutations are immediately visible from the cache, while the
+     * DataStore is updated asynchronously. Commits issued within a short
+     * window are merged into a single DataStore update.
+     * <p>
+     * The DataStore update is executed even if the returned Completable is
+     * not subscribed.
+     *
+     * @return a Completable that completes when the mutations are persisted.
+     */
+    public Completable commit() {
+        if (mutations.isEmpty())
+            return Completable.complete();
+        return cache.commit(new ArrayList<>(mutations));
+    }
+
+}
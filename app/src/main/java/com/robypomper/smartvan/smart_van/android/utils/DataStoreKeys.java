@@ -0,0 +1,160 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import android.content.Context;
+
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.preferences.core.PreferencesKeys;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Registry of interned AndroidX DataStore's {@link Preferences.Key}.
+ * <p>
+ * Resource-based keys are resolved (via {@link Context#getString(int)}) only
+ * once, then the same key instance is returned on every call. Keys generated
+ * from a format resource and an argument (like the SV Services' keys, that
+ * depend on the service's path) are interned too, so the read path does no
+ * string formatting nor key allocation.
+ * <p>
+ * Interned formatted keys are bounded to {@link #MAX_INTERNED_KEYS} for each
+ * format resource; when the limit is reached, the corresponding keys are
+ * discarded and interned again on next usage.
+ *
+ * @noinspection unused
+ */
+public class DataStoreKeys {
+
+    // Constants
+
+    /**
+     * Max number of keys interned for each format resource.
+     */
+    public static final int MAX_INTERNED_KEYS = 1024;
+
+
+    // Internal vars
+
+    private static final KeyCache<Boolean> booleanKeys = new KeyCache<>(PreferencesKeys::booleanKey);
+    private static final KeyCache<Integer> intKeys = new KeyCache<>(PreferencesKeys::intKey);
+    private static final KeyCache<Long> longKeys = new KeyCache<>(PreferencesKeys::longKey);
+    private static final KeyCache<Float> floatKeys = new KeyCache<>(PreferencesKeys::floatKey);
+    private static final KeyCache<Double> doubleKeys = new KeyCache<>(PreferencesKeys::doubleKey);
+    private static final KeyCache<String> stringKeys = new KeyCache<>(PreferencesKeys::stringKey);
+    private static final KeyCache<Set<String>> stringSetKeys = new KeyCache<>(PreferencesKeys::stringSetKey);
+    /**
+     * Format strings resolved from resources, by resource id.
+     */
+    private static final ConcurrentHashMap<Integer, String> formats = new ConcurrentHashMap<>();
+
+
+    // Resource-based keys
+
+    public static Preferences.Key<Boolean> booleanKey(Context ctx, int propKeyAsRes) {
+        return booleanKeys.get(ctx, propKeyAsRes);
+    }
+
+    public static Preferences.Key<Integer> intKey(Context ctx, int propKeyAsRes) {
+        return intKeys.get(ctx, propKeyAsRes);
+    }
+
+    public static Preferences.Key<Long> longKey(Context ctx, int propKeyAsRes) {
+        return longKeys.get(ctx, propKeyAsRes);
+    }
+
+    public static Preferences.Key<Float> floatKey(Context ctx, int propKeyAsRes) {
+        return floatKeys.get(ctx, propKeyAsRes);
+    }
+
+    public static Preferences.Key<Double> doubleKey(Context ctx, int propKeyAsRes) {
+        return doubleKeys.get(ctx, propKeyAsRes);
+    }
+
+    public static Preferences.Key<String> stringKey(Context ctx, int propKeyAsRes) {
+        return stringKeys.get(ctx, propKeyAsRes);
+    }
+
+    public static Preferences.Key<Set<String>> stringSetKey(Context ctx, int propKeyAsRes) {
+        return stringSetKeys.get(ctx, propKeyAsRes);
+    }
+
+
+    // Format-based keys
+
+    public static Preferences.Key<Boolean> booleanKey(Context ctx, int propKeyFormatAsRes, String arg) {
+        return booleanKeys.get(ctx, propKeyFormatAsRes, arg);
+    }
+
+    public static Preferences.Key<Integer> intKey(Context ctx, int propKeyFormatAsRes, String arg) {
+        return intKeys.get(ctx, propKeyFormatAsRes, arg);
+    }
+
+    public static Preferences.Key<String> stringKey(Context ctx, int propKeyFormatAsRes, String arg) {
+        return stringKeys.get(ctx, propKeyFormatAsRes, arg);
+    }
+
+
+    // Utils
+
+    private static String getFormat(Context ctx, int formatAsRes) {
+        String format = formats.get(formatAsRes);
+        if (format != null)
+            return format;
+        format = ctx.getString(formatAsRes);
+        String prev = formats.putIfAbsent(formatAsRes, format);
+        return prev != null ? prev : format;
+    }
+
+    /**
+     * Factory for a specific type of keys.
+     */
+    private interface KeyFactory<T> {
+        Preferences.Key<T> create(String name);
+    }
+
+    /**
+     * Interned keys of a specific type.
+     */
+    private static class KeyCache<T> {
+
+        private final KeyFactory<T> factory;
+        private final ConcurrentHashMap<Integer, Preferences.Key<T>> resKeys = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, Preferences.Key<T>>> formattedKeys = new ConcurrentHashMap<>();
+
+        KeyCache(KeyFactory<T> factory) {
+            this.factory = factory;
+        }
+
+        Preferences.Key<T> get(Context ctx, int propKeyAsRes) {
+            Preferences.Key<T> key = resKeys.get(propKeyAsRes);
+            if (key != null)
+                return key;
+
+            key = factory.create(ctx.getString(propKeyAsRes));
+            Preferences.Key<T> prev = resKeys.putIfAbsent(propKeyAsRes, key);
+            return prev != null ? prev : key;
+        }
+
+        Preferences.Key<T> get(Context ctx, int propKeyFormatAsRes, String arg) {
+            ConcurrentHashMap<String, Preferences.Key<T>> keys = formattedKeys.get(propKeyFormatAsRes);
+            if (keys == null) {
+                keys = new ConcurrentHashMap<>();
+                ConcurrentHashMap<String, Preferences.Key<T>> prevKeys = formattedKeys.putIfAbsent(propKeyFormatAsRes, keys);
+                if (prevKeys != null) keys = prevKeys;
+            }
+
+            Preferences.Key<T> key = keys.get(arg);
+            if (key != null)
+                return key;
+
+            if (keys.size() >= MAX_INTERNED_KEYS)
+                keys.clear();
+            key = factory.create(String.format(getFormat(ctx, propKeyFormatAsRes), arg));
+            Preferences.Key<T> prev = keys.putIfAbsent(arg, key);
+            return prev != null ? prev : key;
+        }
+
+    }
+
+}
@@ -0,0 +1,371 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.datastore.preferences.core.MutablePreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+
+/**
+ * Pool of AndroidX DataStores, identified by their names.
+ * <p>
+ * The pool guarantees that only one DataStore (and his
+ * {@link DataStoreSnapshotCache}) exists for each name, so two instances
+ * never point to the same file. Disposed DataStores are kept as closing
+ * until their pending writes are flushed and they are disposed, meanwhile
+ * the acquire of the same name waits for them.
+ * <p>
+ * Each DataStore is reference counted: it's acquired by the sub-storages that
+ * use it and released when they don't need it anymore. Released DataStores
+ * are kept warm, so re-acquiring them don't require to read the file again,
+ * up to {@link #getMaxIdle()} instances. Then the least recently used ones
+ * are disposed.
+ *
+ * @noinspection unused
+ */
+public class DataStorePool {
+
+    // Constants
+
+    private static final String LOG_TAG = "DataStorePool";
+    /**
+     * Default max number of idle DataStores kept warm by the pool.
+     */
+    public static final int DEF_MAX_IDLE = 8;
+
+
+    // Internal vars
+
+    /**
+     * The application's context.
+     */
+    private final Context ctx;
+    /**
+     * Max number of idle DataStores kept warm by the pool.
+     */
+    private final int maxIdle;
+    /**
+     * Pooled DataStores, in least recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * DataStores removed from the pool and not yet disposed, by name. Each
+     * latch is released when his DataStore was disposed.
+     */
+    private final Map<String, CountDownLatch> closing = new HashMap<>();
+    /**
+     * True if the pool was disposed.
+     */
+    private boolean isDisposed = false;
+    /**
+     * Number of acquired DataStores that were already pooled and warm.
+     */
+    private int hitCount = 0;
+    /**
+     * Number of acquired DataStores that had to be initialized or still
+     * waited for their first snapshot.
+     */
+    private int missCount = 0;
+    /**
+     * Number of DataStores loaded by the {@link #prefetch(String)} method.
+     */
+    private int prefetchCount = 0;
+
+
+    // Constructors
+
+    /**
+     * Create a pool that keeps warm up to {@link #DEF_MAX_IDLE} idle DataStores.
+     *
+     * @param ctx the context used to initialize the DataStores.
+     */
+    public DataStorePool(Context ctx) {
+        this(ctx, DEF_MAX_IDLE);
+    }
+
+    /**
+     * Create a pool that keeps warm up to given idle DataStores.
+     *
+     * @param ctx     the context used to initialize the DataStores.
+     * @param maxIdle the max number of idle DataStores kept warm by the pool.
+     */
+    public DataStorePool(Context ctx, int maxIdle) {
+        this.ctx = ctx;
+        this.maxIdle = maxIdle;
+    }
+
+
+    // Getters
+
+    /**
+     * @return the max number of idle DataStores kept warm by the pool.
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * @return the number of DataStores currently held by the pool, both in use and idle.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param dataStoreName the name of the DataStore.
+     * @return the number of references to the given DataStore, 0 if it is
+     * idle or not pooled.
+     */
+    public synchronized int getRefCount(String dataStoreName) {
+        Entry entry = entries.get(dataStoreName);
+        return entry != null ? entry.refCount : 0;
+    }
+
+    /**
+     * @return the number of {@link #acquire(String)} calls that found the
+     * DataStore already pooled and warm.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of {@link #acquire(String)} calls that had to
+     * initialize the DataStore or that found it still cold.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of DataStores loaded by the {@link #prefetch(String)} method.
+     */
+    public synchronized int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+
+    // Pool methods
+
+    /**
+     * Get the cache of the given DataStore, initializing it if not pooled yet.
+     * <p>
+     * Each call must be paired with a {@link #release(String)} call.
+     * <p>
+     * If the DataStore was just removed from the pool and it's still closing,
+     * this method blocks until it's disposed, then it initializes a new one.
+     *
+     * @param dataStoreName the name of the DataStore.
+     * @return the snapshot cache of the DataStore.
+     */
+    public DataStoreSnapshotCache acquire(String dataStoreName) {
+        while (true) {
+            CountDownLatch closingLatch;
+            synchronized (this) {
+                closingLatch = getClosing(dataStoreName);
+                if (closingLatch == null)
+                    return acquireOpen(dataStoreName);
+            }
+            awaitClosing(dataStoreName, closingLatch);
+        }
+    }
+
+    private DataStoreSnapshotCache acquireOpen(String dataStoreName) {
+        if (isDisposed)
+            throw new IllegalStateException("DataStorePool already disposed");
+
+        Entry entry = entries.get(dataStoreName);
+        if (entry != null && entry.cache.isWarm())
+            hitCount++;
+        else
+            missCount++;
+        entry = openEntry(dataStoreName);
+        entry.refCount++;
+        return entry.cache;
+    }
+
+    /**
+     * Get the entry of the given DataStore, initializing it if not pooled
+     * yet. It doesn't count as an acquire, nor it references the entry.
+     */
+    private Entry openEntry(String dataStoreName) {
+        Entry entry = entries.get(dataStoreName);
+        if (entry == null) {
+            entry = new Entry(new DataStoreSnapshotCache(DataStoreUtils.initDataStore(ctx, dataStoreName)));
+            entries.put(dataStoreName, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Initialize the given DataStore and wait for his first snapshot, so
+     * next {@link #acquire(String)} call doesn't have to read the file.
+     * <p>
+     * The prefetched DataStore is added to the pool as idle, so it's kept
+     * warm up to {@link #getMaxIdle()} idle DataStores. This method blocks
+     * until the DataStore's file was read, so it must be called from a
+     * background thread.
+     *
+     * @param dataStoreName the name of the DataStore.
+     * @return true if the DataStore was loaded, false if it was already
+     * pooled or still closing.
+     */
+    public boolean prefetch(String dataStoreName) {
+        Entry entry;
+        synchronized (this) {
+            if (isDisposed || entries.containsKey(dataStoreName) || getClosing(dataStoreName) != null)
+                return false;
+            entry = openEntry(dataStoreName);
+            entry.refCount++;
+            prefetchCount++;
+        }
+
+        try {
+            entry.cache.getSnapshot();
+        } finally {
+            release(dataStoreName);
+        }
+        return true;
+    }
+
+    /**
+     * Release a reference to the given DataStore.
+     * <p>
+     * When no references left, the DataStore became idle and can be disposed
+     * if the pool holds more than {@link #getMaxIdle()} idle DataStores.
+     *
+     * @param dataStoreName the name of the DataStore.
+     */
+    public synchronized void release(String dataStoreName) {
+        Entry entry = entries.get(dataStoreName);
+        if (entry == null || entry.refCount == 0)
+            return;
+
+        entry.refCount--;
+        if (entry.refCount == 0)
+            trimIdle();
+    }
+
+    /**
+     * Remove all values from the given DataStore.
+     * <p>
+     * The DataStore is cleared through his cache, so the values are removed
+     * also from the cache's snapshot and the DataStore stays pooled.
+     *
+     * @param dataStoreName the name of the DataStore.
+     */
+    public void clear(String dataStoreName) {
+        DataStoreSnapshotCache cache = acquire(dataStoreName);
+        //noinspection ResultOfMethodCallIgnored
+        cache.edit().apply(MutablePreferences::clear).commit();
+        release(dataStoreName);
+    }
+
+    /**
+     * Dispose all pooled DataStores, also if they are still referenced.
+     * <p>
+     * Pending writes are flushed before disposing each DataStore. After this
+     * method call, the pool can't be used anymore.
+     */
+    public synchronized void dispose() {
+        isDisposed = true;
+        List<Map.Entry<String, Entry>> toDispose = new ArrayList<>(entries.entrySet());
+        entries.clear();
+        for (Map.Entry<String, Entry> entry : toDispose)
+            disposeEntry(entry.getKey(), entry.getValue());
+    }
+
+
+    // Utils
+
+    private void trimIdle() {
+        int idle = 0;
+        for (Entry entry : entries.values())
+            if (entry.refCount == 0) idle++;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (idle > maxIdle && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getValue().refCount > 0) continue;
+            iterator.remove();
+            idle--;
+            disposeEntry(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * Flush and dispose the given entry, already removed from the pool.
+     * <p>
+     * Until the DataStore is disposed, his name is kept as closing, so it
+     * can't be initialized again.
+     */
+    private void disposeEntry(String dataStoreName, Entry entry) {
+        CountDownLatch closingLatch = new CountDownLatch(1);
+        closing.put(dataStoreName, closingLatch);
+
+        entry.cache.dispose();
+        //noinspection ResultOfMethodCallIgnored
+        entry.cache.flush()
+                .doOnError(error -> Log.w(LOG_TAG, String.format("Error flushing DataStore before dispose: %s", error.getMessage()), error))
+                .onErrorComplete()
+                .subscribe(() -> {
+                    try {
+                        entry.cache.getDataStore().dispose();
+                    } finally {
+                        closingLatch.countDown();
+                        synchronized (this) {
+                            if (closing.get(dataStoreName) == closingLatch)
+                                closing.remove(dataStoreName);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @return the latch of the given DataStore, if it's still closing.
+     */
+    private CountDownLatch getClosing(String dataStoreName) {
+        CountDownLatch closingLatch = closing.get(dataStoreName);
+        if (closingLatch != null && closingLatch.getCount() == 0) {
+            closing.remove(dataStoreName);
+            return null;
+        }
+        return closingLatch;
+    }
+
+    /**
+     * Wait, without holding the pool's lock, until the given DataStore was
+     * disposed.
+     */
+    private static void awaitClosing(String dataStoreName, CountDownLatch closingLatch) {
+        try {
+            closingLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while waiting DataStore '%s' to close", dataStoreName), e);
+        }
+    }
+
+    /**
+     * A pooled DataStore with his reference counter.
+     */
+    private static class Entry {
+
+        private final DataStoreSnapshotCache cache;
+        private int refCount = 0;
+
+        Entry(DataStoreSnapshotCache cache) {
+            this.cache = cache;
+        }
+
+    }
+
+}
@@ -0,0 +1,316 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.preferences.core.PreferencesFactory;
+import androidx.datastore.rxjava3.RxDataStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+
+
+/**
+ * In-memory snapshot cache for an AndroidX {@link RxDataStore}.
+ * <p>
+ * The cache subscribes once to the {@link RxDataStore#data()} flow and keeps
+ * the latest (immutable) {@link Preferences} snapshot emitted by the DataStore.
+ * Then all reads are served from that snapshot, without blocking the caller
+ * on a DataStore read.
+ * <p>
+ * Only the very first read, if the DataStore didn't emit his first snapshot
+ * yet, waits for it. Because the subscription is started by the constructor,
+ * usually the cache is already warm when the first read occurs.
+ * <p>
+ * Writes executed through this class are applied immediately to the current
+ * snapshot (so the caller can read his own writes) and then forwarded to the
+ * DataStore via a {@link DataStoreBatchWriter}. Until the DataStore confirms
+ * them, pending writes are re-applied on top of every new snapshot, so an
+ * older snapshot can't hide them.
+ *
+ * @noinspection unused
+ */
+public class DataStoreSnapshotCache {
+
+    // Constants
+
+    private static final String LOG_TAG = "DataStoreSnapshotCache";
+
+
+    // Internal vars
+
+    /**
+     * The DataStore wrapped by this cache, can be null only on tests.
+     */
+    private final RxDataStore<Preferences> dataStore;
+    /**
+     * The writer used to persist the mutations, null if dataStore is null.
+     */
+    private final DataStoreBatchWriter writer;
+    /**
+     * The subscription to the DataStore's data flow.
+     */
+    private final Disposable subscription;
+    /**
+     * Released when the first snapshot is available.
+     */
+    private final CountDownLatch firstSnapshotLatch = new CountDownLatch(1);
+    /**
+     * Lock used to serialize the local snapshot updates.
+     */
+    private final Object snapshotLock = new Object();
+    /**
+     * The latest snapshot emitted by the DataStore, null until the first
+     * emission.
+     */
+    private volatile Preferences snapshot = null;
+    /**
+     * The committed mutations not yet confirmed by the DataStore.
+     */
+    private final List<List<DataStoreEditor.Mutation>> pendingMutations = new ArrayList<>();
+    /**
+     * Emits the differences between consecutive snapshots.
+     */
+    private final FlowableProcessor<DataStoreChange> changesProcessor = PublishProcessor.<DataStoreChange>create().toSerialized();
+
+
+    // Constructors
+
+    /**
+     * Create the cache and subscribe to the given DataStore's data flow.
+     *
+     * @param dataStore the DataStore to cache.
+     */
+    public DataStoreSnapshotCache(RxDataStore<Preferences> dataStore) {
+        this(dataStore, dataStore.data());
+    }
+
+    /**
+     * Create the cache and subscribe to the given snapshots source.
+     * <p>
+     * The given DataStore is used only for writes, so it can be null when the
+     * cache is used only for reads.
+     *
+     * @param dataStore the DataStore used for writes.
+     * @param source    the snapshots source.
+     */
+    @VisibleForTesting
+    DataStoreSnapshotCache(RxDataStore<Preferences> dataStore, Flowable<Preferences> source) {
+        this.dataStore = dataStore;
+        this.writer = dataStore != null ? new DataStoreBatchWriter(dataStore) : null;
+        this.subscription = source.subscribe(this::onSnapshot, this::onSnapshotError);
+    }
+
+
+    // Getters
+
+    /**
+     * Get the DataStore wrapped by this cache.
+     *
+     * @return the DataStore wrapped by this cache.
+     */
+    public RxDataStore<Preferences> getDataStore() {
+        return dataStore;
+    }
+
+    /**
+     * @return true if the cache already received his first snapshot.
+     */
+    public boolean isWarm() {
+        return snapshot != null;
+    }
+
+    /**
+     * Get the latest DataStore's snapshot.
+     * <p>
+     * If the cache is still cold, then this method waits for the first
+     * snapshot emitted by the DataStore.
+     *
+     * @return the latest DataStore's snapshot.
+     */
+    public Preferences getSnapshot() {
+        Preferences current = snapshot;
+        if (current != null)
+            return current;
+
+        try {
+            firstSnapshotLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PreferencesFactory.createEmpty();
+        }
+        return snapshot;
+    }
+
+
+    // Read and write
+
+    /**
+     * Get a value from the cached snapshot.
+     *
+     * @param preference the preference key to get the value for.
+     * @param defValue   the default value to return if the preference is not set.
+     * @param <T>        the type of the value to get.
+     * @return the cached value, or the default value if the preference is not set.
+     */
+    public <T> T get(Preferences.Key<T> preference, T defValue) {
+        T value = getSnapshot().get(preference);
+        return value != null ? value : defValue;
+    }
+
+    /**
+     * Set a value to the cached snapshot and to the DataStore.
+     * <p>
+     * The value is immediately available from the {@link #get(Preferences.Key, Object)}
+     * method, while the DataStore is updated asynchronously.
+     *
+     * @param preference the preference key to set the value for.
+     * @param value      the value to set, if null the preference is removed.
+     * @param <T>        the type of the value to set.
+     */
+    public <T> void set(Preferences.Key<T> preference, T value) {
+        //noinspection ResultOfMethodCallIgnored
+        edit().set(preference, value).commit();
+    }
+
+    /**
+     * Create a new editor to update many values with a single DataStore write.
+     *
+     * @return a new editor for this cache.
+     */
+    public DataStoreEditor edit() {
+        return new DataStoreEditor(this);
+    }
+
+    /**
+     * Apply the given mutations to the cached snapshot and submit them to the
+     * DataStore.
+     *
+     * @param mutations the mutations to commit.
+     * @return a Completable that completes when the mutations are persisted.
+     */
+    Completable commit(List<DataStoreEditor.Mutation> mutations) {
+        // ensure the cache is warm before acquiring the snapshot lock
+        getSnapshot();
+
+        synchronized (snapshotLock) {
+            updateSnapshot(applyMutations(snapshot, Collections.singletonList(mutations)));
+            if (writer != null)
+                pendingMutations.add(mutations);
+        }
+
+        if (writer == null)
+            return Completable.complete();
+
+        Completable result = writer.submit(mutations);
+        //noinspection ResultOfMethodCallIgnored
+        result.subscribe(() -> onMutationsConfirmed(mutations), error -> onMutationsConfirmed(mutations));
+        return result;
+    }
+
+    /**
+     * Immediately write all mutations still waiting for the DataStore.
+     *
+     * @return a Completable that completes when all committed mutations are
+     * persisted.
+     */
+    public Completable flush() {
+        if (writer == null)
+            return Completable.complete();
+        return writer.flush();
+    }
+
+    /**
+     * Flow of the changes applied to the cached snapshot.
+     * <p>
+     * Each emission contains the keys changed between two consecutive
+     * snapshots, both if they were received from the DataStore or if they were
+     * generated by a local write. The first snapshot does not generate any
+     * emission.
+     *
+     * @return the flow of the changes applied to the cached snapshot.
+     */
+    public Flowable<DataStoreChange> changes() {
+        return changesProcessor.onBackpressureBuffer();
+    }
+
+    /**
+     * Stop listening for DataStore's updates.
+     * <p>
+     * After this method call, the cache keeps serving the latest snapshot
+     * and the {@link #changes()} flow is completed.
+     */
+    public void dispose() {
+        subscription.dispose();
+        changesProcessor.onComplete();
+    }
+
+
+    // Snapshots source listeners
+
+    private void onSnapshot(Preferences newSnapshot) {
+        synchronized (snapshotLock) {
+            updateSnapshot(pendingMutations.isEmpty() ? newSnapshot : applyMutations(newSnapshot, pendingMutations));
+        }
+        firstSnapshotLatch.countDown();
+    }
+
+    private void onSnapshotError(Throwable error) {
+        Log.w(LOG_TAG, String.format("Error reading DataStore's snapshots: %s", error.getMessage()), error);
+        synchronized (snapshotLock) {
+            if (snapshot == null)
+                snapshot = PreferencesFactory.createEmpty();
+        }
+        firstSnapshotLatch.countDown();
+    }
+
+    private void onMutationsConfirmed(List<DataStoreEditor.Mutation> mutations) {
+        synchronized (snapshotLock) {
+            for (int i = 0; i < pendingMutations.size(); i++)
+                if (pendingMutations.get(i) == mutations) {
+                    pendingMutations.remove(i);
+                    break;
+                }
+        }
+    }
+
+
+    // Utils
+
+    /**
+     * Replace the current snapshot and notify his changes, if any.
+     * <p>
+     * Must be called holding the {@link #snapshotLock}.
+     *
+     * @param newSnapshot the new snapshot.
+     */
+    private void updateSnapshot(Preferences newSnapshot) {
+        Preferences previous = snapshot;
+        snapshot = newSnapshot;
+        if (previous == null || !changesProcessor.hasSubscribers())
+            return;
+
+        DataStoreChange change = DataStoreChange.diff(previous, newSnapshot);
+        if (change != null)
+            changesProcessor.onNext(change);
+    }
+
+    private static Preferences applyMutations(Preferences base, List<List<DataStoreEditor.Mutation>> mutationsLists) {
+        MutablePreferences mutablePreferences = base.toMutablePreferences();
+        for (List<DataStoreEditor.Mutation> mutations : mutationsLists)
+            for (DataStoreEditor.Mutation mutation : mutations)
+                mutation.apply(mutablePreferences);
+        return mutablePreferences.toPreferences();
+    }
+
+}
@@ -78,6 +78,23 @@ public class DataStoreUtils {
         }
     }
 
+    /**
+     * Get a value from the DataStore's snapshot cache.
+     * <p>
+     * Differently from {@link #getFromDataStore(RxDataStore, Preferences.Key, Object)},
+     * this method does not block the caller on a DataStore read, once the
+     * cache received his first snapshot.
+     *
+     * @param cache      the DataStore's snapshot cache to get the value from.
+     * @param preference the preference key to get the value for.
+     * @param defValue   the default value to return if the preference is not set.
+     * @param <T>        the type of the value to get.
+     * @return the value from the cache, or the default value if the preference is not set.
+     */
+    public static <T> T getFromDataStore(DataStoreSnapshotCache cache, Preferences.Key<T> preference, T defValue) {
+        return cache.get(preference, defValue);
+    }
+
     /**
      * Set a value to the DataStore.
      * <p>
@@ -99,53 +116,68 @@ public class DataStoreUtils {
         }).subscribe();
     }
 
+    /**
+     * Set a value to the DataStore through his snapshot cache.
+     * <p>
+     * The value is immediately available from the cache, while the DataStore
+     * is updated asynchronously.
+     *
+     * @param cache      the DataStore's snapshot cache to set the value to.
+     * @param preference the preference key to set the value for.
+     * @param value      the value to set.
+     * @param <T>        the type of the value to set.
+     */
+    public static <T> void setToDataStore(DataStoreSnapshotCache cache, Preferences.Key<T> preference, T value) {
+        cache.set(preference, value);
+    }
+
 
     // Preference key generators
 
     public static Preferences.Key<Boolean> booleanKey(Context ctx, int propKeyAsRes) {
-        return booleanKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.booleanKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<Boolean> booleanKey(String propKey) {
         return PreferencesKeys.booleanKey(propKey);
     }
 
     public static Preferences.Key<Integer> intKey(Context ctx, int propKeyAsRes) {
-        return intKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.intKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<Integer> intKey(String propKey) {
         return PreferencesKeys.intKey(propKey);
     }
 
     public static Preferences.Key<Long> longKey(Context ctx, int propKeyAsRes) {
-        return longKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.longKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<Long> longKey(String propKey) {
         return PreferencesKeys.longKey(propKey);
     }
 
     public static Preferences.Key<Float> floatKey(Context ctx, int propKeyAsRes) {
-        return floatKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.floatKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<Float> floatKey(String propKey) {
         return PreferencesKeys.floatKey(propKey);
     }
 
     public static Preferences.Key<Double> doubleKey(Context ctx, int propKeyAsRes) {
-        return doubleKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.doubleKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<Double> doubleKey(String propKey) {
         return PreferencesKeys.doubleKey(propKey);
     }
 
     public static Preferences.Key<String> stringKey(Context ctx, int propKeyAsRes) {
-        return stringKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.stringKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<String> stringKey(String propKey) {
         return PreferencesKeys.stringKey(propKey);
     }
 
     public static Preferences.Key<Set<String>> stringSetKey(Context ctx, int propKeyAsRes) {
-        return stringSetKey(ctx.getString(propKeyAsRes));
+        return DataStoreKeys.stringSetKey(ctx, propKeyAsRes);
     }
     public static Preferences.Key<Set<String>> stringSetKey(String propKey) {
         return PreferencesKeys.stringSetKey(propKey);
@@ -0,0 +1,79 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+
+public class SVAxisLabelCacheTest {
+
+    private static final long FROM_MS = 1700000000000L;
+    private static final long RANGE_MS = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void labels_match_the_date_format() {
+        SVAxisLabelCache cache = new SVAxisLabelCache();
+        cache.setWindow("dd/MM HH:mm:ss.SSS", FROM_MS, RANGE_MS);
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM HH:mm:ss.SSS");
+
+        for (float value = -10; value <= 110; value += 0.37f) {
+            Date date = new Date(FROM_MS + (long) ((value / 100) * RANGE_MS));
+            assertEquals(sdf.format(date), cache.getLabel(value));
+        }
+    }
+
+    @Test
+    public void values_within_the_pattern_resolution_share_the_label() {
+        SVAxisLabelCache cache = new SVAxisLabelCache();
+        cache.setWindow("HH:mm", FROM_MS, RANGE_MS);
+
+        // 0.0001% of a day is ~86 ms, so all values fall within the same minute
+        String label = cache.getLabel(50f);
+        for (int i = 1; i < 100; i++)
+            assertSame(label, cache.getLabel(50f + i * 0.0001f));
+        assertEquals(1, cache.getMisses());
+        assertEquals(99, cache.getHits());
+    }
+
+    @Test
+    public void window_change_discards_the_labels() {
+        SVAxisLabelCache cache = new SVAxisLabelCache();
+        assertTrue(cache.setWindow("HH:mm", FROM_MS, RANGE_MS));
+        assertFalse(cache.setWindow("HH:mm", FROM_MS, RANGE_MS));
+        String label = cache.getLabel(0);
+
+        assertTrue(cache.setWindow("HH:mm", FROM_MS + 60 * 60 * 1000, RANGE_MS));
+        assertFalse(label.equals(cache.getLabel(0)));
+        assertEquals(2, cache.getMisses());
+
+        assertTrue(cache.setWindow("dd/MM", FROM_MS, RANGE_MS));
+        assertEquals("dd/MM", cache.getPattern());
+    }
+
+    @Test
+    public void precomputed_ticks_are_cache_hits() {
+        SVAxisLabelCache cache = new SVAxisLabelCache();
+        cache.setWindow("HH:mm", FROM_MS, RANGE_MS);
+        float[] ticks = new float[]{0, 12.5f, 25, 37.5f, 50, 62.5f, 75, 87.5f, 100};
+        cache.precompute(ticks, ticks.length);
+        assertEquals(ticks.length, cache.getMisses());
+
+        for (int frame = 0; frame < 60; frame++)
+            for (float tick : ticks)
+                cache.getLabel(tick);
+        assertEquals(ticks.length, cache.getMisses());
+        assertEquals(60 * ticks.length, cache.getHits());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void labels_require_the_window() {
+        new SVAxisLabelCache().getLabel(0);
+    }
+
+}
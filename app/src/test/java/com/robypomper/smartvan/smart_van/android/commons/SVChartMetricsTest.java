@@ -0,0 +1,63 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class SVChartMetricsTest {
+
+    @Test
+    public void stages_are_terminated_in_order() throws InterruptedException {
+        SVChartMetrics metrics = new SVChartMetrics(7);
+        Thread.sleep(2);
+        metrics.startStage(SVChartMetrics.STAGE_PROCESSING);
+        assertTrue(metrics.getStageNs(SVChartMetrics.STAGE_FETCH) > 0);
+        assertEquals(0, metrics.getStageNs(SVChartMetrics.STAGE_PROCESSING));
+
+        metrics.startStage(SVChartMetrics.STAGE_DISPLAYING);
+        metrics.terminate();
+        long stagesNs = 0;
+        for (int stage = SVChartMetrics.STAGE_FETCH; stage <= SVChartMetrics.STAGE_DISPLAYING; stage++)
+            stagesNs += metrics.getStageNs(stage);
+        assertTrue(metrics.getStageNs(SVChartMetrics.STAGE_TOTAL) >= stagesNs);
+        assertEquals(7, metrics.getGeneration());
+    }
+
+    @Test
+    public void steps_record_points_and_allocated_bytes() {
+        SVTimeSeries in = new SVTimeSeries();
+        for (int i = 0; i < 1000; i++)
+            in.append(i, i);
+        SVChartMetrics metrics = new SVChartMetrics(1);
+
+        long startNs = System.nanoTime();
+        metrics.addStep("comp", "scale", in, SVChartProcessing.scale(in, 2), startNs);
+        metrics.addStep("comp", "max_dp", in, SVChartProcessing.alterMaxDP(in, 2000), startNs);
+        metrics.addStep("comp", "chart_entries", 1000, 1000, startNs, SVChartMetrics.UNKNOWN_BYTES);
+        metrics.addComponentFetched("comp", 1000);
+
+        assertEquals(3, metrics.getSteps().size());
+        assertEquals(1000 * SVHistoryCache.BYTES_PER_POINT, metrics.getSteps().get(0).bytes);
+        assertEquals(0, metrics.getSteps().get(1).bytes);
+        assertEquals(1000 * SVHistoryCache.BYTES_PER_POINT, metrics.getAllocatedBytes());
+        assertEquals(1000, metrics.getComponents().get(0).points);
+    }
+
+    @Test
+    public void rolling_histogram_keeps_the_latest_values() {
+        SVRollingHistogram histogram = new SVRollingHistogram(10);
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(91, histogram.getPercentile(0));
+        assertEquals(95, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(100, histogram.getMax());
+        assertEquals(0, new SVRollingHistogram().getPercentile(50));
+    }
+
+}
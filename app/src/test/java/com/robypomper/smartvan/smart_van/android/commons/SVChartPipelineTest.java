@@ -0,0 +1,86 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class SVChartPipelineTest {
+
+    private static final long SAMPLING_MS = 60 * 1000;
+
+    private static SVTimeSeries newSeries(int count) {
+        SVTimeSeries series = new SVTimeSeries(count);
+        for (int i = 0; i < count; i++)
+            series.append(i * SAMPLING_MS, 1000 + i);
+        return series;
+    }
+
+    @Test
+    public void pipeline_matches_the_separate_steps() {
+        SVTimeSeries raw = newSeries(1000);
+        long toMs = 999 * SAMPLING_MS;
+        SVChartPipeline pipeline = SVChartPipeline.DEFAULT.withValueStages(SVUnitConverter.MILLI);
+
+        SVChartPipeline.Result result = pipeline.process(raw, 0, toMs, SAMPLING_MS, SVGapPolicy.ZERO, null);
+
+        SVTimeSeries filled = SVChartProcessing.fillGaps(raw, 0, toMs, SAMPLING_MS, SVGapPolicy.ZERO);
+        SVTimeSeries scaled = new SVTimeSeries(filled.size());
+        for (int i = 0; i < filled.size(); i++)
+            scaled.append(filled.getTimestamp(i), filled.getValue(i) * 0.001);
+        assertEquals(scaled, result.full);
+        assertEquals(SVChartProcessing.alterMaxDP(scaled, SVChartPipeline.DEF_MAX_DATA_POINTS, SVDownsampler.LTTB), result.displayed);
+        assertEquals(1.0, result.full.getValue(0), 1e-9);
+    }
+
+    @Test
+    public void value_stages_are_applied_in_order() {
+        SVChartPipeline pipeline = SVChartPipeline.DEFAULT
+                .withValueStages(new SVChartPipeline.Scale(2))
+                .withValueStages(new SVUnitConverter("C", "F", 1.8, 32));
+
+        assertEquals((10 * 2) * 1.8 + 32, pipeline.applyValueStages(10), 1e-9);
+        assertTrue(Double.isNaN(pipeline.applyValueStages(Double.NaN)));
+        assertEquals(2, pipeline.getValueStages().length);
+        assertEquals(0, SVChartPipeline.DEFAULT.getValueStages().length);
+    }
+
+    @Test
+    public void steps_are_notified_and_unchanged_series_are_reused() {
+        SVTimeSeries raw = newSeries(50);
+        final List<String> steps = new ArrayList<>();
+        SVChartPipeline.Result result = SVChartPipeline.DEFAULT.process(raw, 0, 49 * SAMPLING_MS, SAMPLING_MS, SVGapPolicy.LINE_BREAK, new SVChartPipeline.StepListener() {
+            @Override
+            public void onStep(String step, SVTimeSeries in, SVTimeSeries out, long startNs) {
+                steps.add(step);
+            }
+        });
+
+        assertEquals(3, steps.size());
+        assertEquals(SVChartPipeline.STEP_FILL_GAPS, steps.get(0));
+        assertEquals(SVChartPipeline.STEP_VALUES, steps.get(1));
+        assertEquals(SVChartPipeline.STEP_DOWNSAMPLE, steps.get(2));
+        // No value stages and less samples than the max data points
+        assertSame(result.full, result.displayed);
+        assertEquals(raw, result.full);
+    }
+
+    @Test
+    public void with_methods_keep_the_other_stages() {
+        SVChartPipeline pipeline = SVChartPipeline.DEFAULT
+                .withValueStages(SVUnitConverter.MILLI)
+                .withDownsampler(SVDownsampler.MIN_MAX)
+                .withMaxDataPoints(200);
+
+        assertSame(SVDownsampler.MIN_MAX, pipeline.getDownsampler());
+        assertEquals(200, pipeline.getMaxDataPoints());
+        assertEquals(1, pipeline.getValueStages().length);
+        assertSame(SVDownsampler.LTTB, SVChartPipeline.DEFAULT.getDownsampler());
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Check that the processing on {@link SVTimeSeries} produces the same chart
+ * data of the previous implementation based on maps of boxed values.
+ */
+public class SVChartProcessingTest {
+
+    // Same parameters used by the SVChartLineView
+    private static final int MAX_DISPLAYED_ENTRIES = 100;
+    private static final float SCALE_FACTOR = 0.001f;
+    private static final long MAX_EMPTY_RANGE_MS = (long) (1.5 * (60 * 1000));
+    private static final long EMPTY_RANGE_DELTA_MS = 1000;
+
+    private static final long FROM_MS = 1700000000000L;
+    private static final long MINUTE_MS = 60 * 1000;
+
+    @Test
+    public void empty_data_set_matches_map_implementation() {
+        assertSameChartData(new long[0], new double[0], FROM_MS, FROM_MS + 15 * MINUTE_MS);
+    }
+
+    @Test
+    public void small_data_set_with_gaps_matches_map_implementation() {
+        long toMs = FROM_MS + 15 * MINUTE_MS;
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            int count = 5 + random.nextInt(10);
+            long[] timestamps = new long[count];
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = FROM_MS + random.nextInt((int) (toMs - FROM_MS));
+                values[i] = random.nextInt(20000);
+            }
+            assertSameChartData(timestamps, values, FROM_MS, toMs);
+        }
+    }
+
+    @Test
+    public void big_data_set_with_duplicates_matches_map_implementation() {
+        long toMs = FROM_MS + 24 * 60 * MINUTE_MS;
+        for (int seed = 0; seed < 5; seed++) {
+            Random random = new Random(seed);
+            List<Long> timestamps = new ArrayList<>();
+            long ts = FROM_MS + random.nextInt(5 * (int) MINUTE_MS);
+            while (ts < toMs) {
+                timestamps.add(ts);
+                if (random.nextInt(10) == 0)
+                    timestamps.add(ts);     // duplicated sample
+                ts += random.nextInt(50) == 0 ? 10 * MINUTE_MS : MINUTE_MS + random.nextInt(1000);
+            }
+            Collections.shuffle(timestamps, random);
+
+            long[] tsArray = new long[timestamps.size()];
+            double[] values = new double[timestamps.size()];
+            for (int i = 0; i < tsArray.length; i++) {
+                tsArray[i] = timestamps.get(i);
+                values[i] = random.nextDouble() * 15000;
+            }
+            assertSameChartData(tsArray, values, FROM_MS, toMs);
+        }
+    }
+
+
+    // Helpers
+
+    private static void assertSameChartData(long[] timestamps, double[] values, long fromMs, long toMs) {
+        // Map implementation: fetched data were stored into an HashMap, processed data into LinkedHashMaps
+        Map<Date, Double> raw = new HashMap<>();
+        for (int i = 0; i < timestamps.length; i++)
+            raw.put(new Date(timestamps[i]), values[i]);
+        Map<Comparable<?>, Number> expected = legacyAddZeroAsMissingValues(raw, new Date(fromMs), new Date(toMs), MAX_EMPTY_RANGE_MS, EMPTY_RANGE_DELTA_MS);
+        expected = legacyAlterMaxDP(expected, MAX_DISPLAYED_ENTRIES);
+        expected = legacyScale(expected, SCALE_FACTOR);
+
+        // Columnar implementation
+        SVTimeSeries actual = SVTimeSeries.sortedOf(timestamps, values, timestamps.length);
+        assertEquals(raw.size(), actual.size());
+        actual = SVChartProcessing.addZeroAsMissingValues(actual, fromMs, toMs, MAX_EMPTY_RANGE_MS, EMPTY_RANGE_DELTA_MS);
+        actual = SVChartProcessing.alterMaxDP(actual, MAX_DISPLAYED_ENTRIES);
+        actual = SVChartProcessing.scale(actual, SCALE_FACTOR);
+
+        // Entries were sorted by X axis before being displayed
+        List<Date> expectedKeys = new ArrayList<>();
+        for (Comparable<?> key : expected.keySet())
+            expectedKeys.add((Date) key);
+        Collections.sort(expectedKeys);
+
+        assertEquals(expectedKeys.size(), actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expectedKeys.get(i).getTime(), actual.getTimestamp(i));
+            assertEquals(expected.get(expectedKeys.get(i)).doubleValue(), actual.getValue(i), 0);
+        }
+    }
+
+
+    // Previous map based implementation (from SVChartLineView)
+
+    private static Map<Comparable<?>, Number> legacyAlterMaxDP(Map<Comparable<?>, Number> data, int maxDataPointCount) {
+        if (data.isEmpty() || data.size() < maxDataPointCount)
+            return data;
+
+        Map<Comparable<?>, Number> sampledDataSet = new LinkedHashMap<>();
+        float step = (float) data.size() / maxDataPointCount;
+        for (int i = 0; i < maxDataPointCount; i++) {
+            int index = Math.round(i * step);
+            @SuppressWarnings("unchecked")
+            Map.Entry<Comparable<?>, Number> entry = (Map.Entry<Comparable<?>, Number>) data.entrySet().toArray()[index];
+            sampledDataSet.put(entry.getKey(), entry.getValue());
+        }
+        return sampledDataSet;
+    }
+
+    private static Map<Comparable<?>, Number> legacyScale(Map<Comparable<?>, Number> data, float scaleFactor) {
+        Map<Comparable<?>, Number> scaledDataSet = new LinkedHashMap<>();
+        for (Map.Entry<Comparable<?>, Number> entry : data.entrySet()) {
+            Number scaledValue = entry.getValue().doubleValue() * scaleFactor;
+            scaledDataSet.put(entry.getKey(), scaledValue);
+        }
+        return scaledDataSet;
+    }
+
+    private static Map<Comparable<?>, Number> legacyAddZeroAsMissingValues(Map<Date, Double> data, Date fromDate, Date toDate, long maxEmptyRangeMS, long deltaRangeMS) {
+        Map<Comparable<?>, Number> zeroFilledDataSet = new LinkedHashMap<>();
+        List<Date> keys = new ArrayList<>(data.keySet());
+        Collections.sort(keys);
+
+        if (deltaRangeMS <= 0)
+            deltaRangeMS = maxEmptyRangeMS;
+
+        if (keys.isEmpty()) {
+            zeroFilledDataSet.put(fromDate, 0);
+            zeroFilledDataSet.put(toDate, 0);
+        } else {
+            Date prevDate = fromDate;
+            Date nextDate;
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0)
+                    prevDate = keys.get(i - 1);
+                if (i < keys.size() - 1)
+                    nextDate = keys.get(i + 1);
+                else nextDate = toDate;
+
+                Date currDate = keys.get(i);
+
+                if (currDate.getTime() - prevDate.getTime() > maxEmptyRangeMS) {
+                    if (prevDate.compareTo(fromDate) == 0)
+                        zeroFilledDataSet.put(prevDate, 0);
+                    zeroFilledDataSet.put(new Date(currDate.getTime() - deltaRangeMS), 0);
+                }
+
+                zeroFilledDataSet.put(currDate, data.get(currDate));
+
+                if (nextDate.getTime() - currDate.getTime() > maxEmptyRangeMS) {
+                    zeroFilledDataSet.put(new Date(currDate.getTime() + deltaRangeMS), 0);
+                    if (nextDate.compareTo(toDate) == 0)
+                        zeroFilledDataSet.put(nextDate, 0);
+                }
+            }
+        }
+        return zeroFilledDataSet;
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+
+public class SVDownsamplerTest {
+
+    private static final SVDownsampler[] DOWNSAMPLERS = {SVDownsampler.LINEAR, SVDownsampler.LTTB, SVDownsampler.MIN_MAX, SVDownsampler.AVERAGE};
+    private static final int MAX_DATA_POINTS = 100;
+    private static final int LARGE_POINTS = 1000 * 1000;
+    private static final long STEP_MS = 1000;
+
+    /**
+     * Noisy sine wave, with a single spike at given index.
+     */
+    private static SVTimeSeries generateSeries(int count, int spikeIndex, double spikeValue) {
+        Random random = new Random(42);
+        SVTimeSeries series = new SVTimeSeries(count);
+        for (int i = 0; i < count; i++) {
+            double value = i == spikeIndex ? spikeValue : 100 * Math.sin(i / 500.0) + random.nextDouble();
+            series.append(i * STEP_MS, value);
+        }
+        return series;
+    }
+
+    private static boolean containsValue(SVTimeSeries series, double value) {
+        for (int i = 0; i < series.size(); i++)
+            if (series.getValue(i) == value)
+                return true;
+        return false;
+    }
+
+    @Test
+    public void small_series_are_not_downsampled() {
+        SVTimeSeries series = generateSeries(MAX_DATA_POINTS, -1, 0);
+        for (SVDownsampler downsampler : DOWNSAMPLERS)
+            assertSame(series, downsampler.downsample(series, MAX_DATA_POINTS));
+    }
+
+    @Test
+    public void downsampled_series_are_sorted_and_within_limit() {
+        SVTimeSeries series = generateSeries(10007, -1, 0);
+        for (SVDownsampler downsampler : DOWNSAMPLERS) {
+            SVTimeSeries sampled = downsampler.downsample(series, MAX_DATA_POINTS);
+            assertTrue(sampled.size() <= MAX_DATA_POINTS);
+            assertTrue(sampled.size() >= MAX_DATA_POINTS - 1);
+            for (int i = 1; i < sampled.size(); i++)
+                assertTrue(sampled.getTimestamp(i) > sampled.getTimestamp(i - 1));
+        }
+    }
+
+    @Test
+    public void lttb_keeps_first_last_and_spike() {
+        SVTimeSeries series = generateSeries(10000, 4321, 1000);
+        SVTimeSeries sampled = SVDownsampler.LTTB.downsample(series, MAX_DATA_POINTS);
+
+        assertEquals(MAX_DATA_POINTS, sampled.size());
+        assertEquals(series.getFirstTimestamp(), sampled.getFirstTimestamp());
+        assertEquals(series.getLastTimestamp(), sampled.getLastTimestamp());
+        assertTrue(containsValue(sampled, 1000));
+    }
+
+    @Test
+    public void min_max_keeps_spikes() {
+        SVTimeSeries series = generateSeries(10000, 4321, 1000);
+        SVTimeSeries sampled = SVDownsampler.MIN_MAX.downsample(series, MAX_DATA_POINTS);
+        assertTrue(containsValue(sampled, 1000));
+
+        series = generateSeries(10000, 1234, -1000);
+        sampled = SVDownsampler.MIN_MAX.downsample(series, MAX_DATA_POINTS);
+        assertTrue(containsValue(sampled, -1000));
+    }
+
+    @Test
+    public void average_aggregates_buckets() {
+        SVTimeSeries series = new SVTimeSeries();
+        for (int i = 0; i < 10; i++)
+            series.append(i * STEP_MS, i < 6 ? 1 : 3);
+        series.append(10 * STEP_MS, Double.NaN);
+        series.append(11 * STEP_MS, 3);
+
+        SVTimeSeries sampled = SVDownsampler.AVERAGE.downsample(series, 2);
+        assertEquals(2, sampled.size());
+        assertEquals(1, sampled.getValue(0), 0);
+        assertEquals(2500, sampled.getTimestamp(0));
+        assertEquals(3, sampled.getValue(1), 0);
+    }
+
+    /**
+     * Series of given samples with a gap in the middle, filled by the
+     * {@link SVGapPolicy#LINE_BREAK} policy.
+     */
+    private static SVTimeSeries generateSeriesWithLineBreak(int count) {
+        SVTimeSeries series = new SVTimeSeries(count);
+        for (int i = 0; i < count; i++)
+            series.append((i < count / 2 ? i : i + count) * STEP_MS, 100 * Math.sin(i / 500.0));
+        return SVGapPolicy.LINE_BREAK.fill(series, series.getFirstTimestamp(), series.getLastTimestamp(), STEP_MS);
+    }
+
+    private static void assertLineBreakSurvives(SVTimeSeries filled, SVTimeSeries sampled) {
+        int breakIndex = -1;
+        for (int i = 0; i < sampled.size(); i++)
+            if (Double.isNaN(sampled.getValue(i)))
+                breakIndex = i;
+        assertTrue("Line break dropped", breakIndex > 0 && breakIndex < sampled.size() - 1);
+        assertTrue(sampled.size() <= MAX_DATA_POINTS);
+        assertEquals(filled.getFirstTimestamp(), sampled.getFirstTimestamp());
+        assertEquals(filled.getLastTimestamp(), sampled.getLastTimestamp());
+        for (int i = 1; i < sampled.size(); i++)
+            assertTrue(sampled.getTimestamp(i) > sampled.getTimestamp(i - 1));
+    }
+
+    @Test
+    public void line_break_survives_lttb() {
+        SVTimeSeries filled = generateSeriesWithLineBreak(10000);
+        SVTimeSeries sampled = SVDownsampler.LTTB.downsample(filled, MAX_DATA_POINTS);
+
+        assertLineBreakSurvives(filled, sampled);
+        assertEquals(MAX_DATA_POINTS, sampled.size());
+    }
+
+    @Test
+    public void line_break_survives_average() {
+        SVTimeSeries filled = generateSeriesWithLineBreak(10000);
+        SVTimeSeries sampled = SVDownsampler.AVERAGE.downsample(filled, MAX_DATA_POINTS);
+
+        // Averaged timestamps, so the edges are the buckets' centers
+        int breakIndex = -1;
+        for (int i = 0; i < sampled.size(); i++)
+            if (Double.isNaN(sampled.getValue(i)))
+                breakIndex = i;
+        assertTrue("Line break dropped", breakIndex > 0 && breakIndex < sampled.size() - 1);
+        assertTrue(sampled.size() <= MAX_DATA_POINTS);
+        for (int i = 0; i < sampled.size(); i++)
+            if (i != breakIndex)
+                assertFalse(Double.isNaN(sampled.getValue(i)));
+    }
+
+    @Test
+    public void line_breaks_survive_all_downsamplers() {
+        SVTimeSeries filled = generateSeriesWithLineBreak(10007);
+        for (SVDownsampler downsampler : DOWNSAMPLERS) {
+            SVTimeSeries sampled = downsampler.downsample(filled, MAX_DATA_POINTS);
+            assertTrue(downsampler.getClass().getSimpleName(), containsNaN(sampled));
+            assertTrue(sampled.size() <= MAX_DATA_POINTS);
+            for (int i = 1; i < sampled.size(); i++)
+                assertTrue(sampled.getTimestamp(i) > sampled.getTimestamp(i - 1));
+        }
+    }
+
+    private static boolean containsNaN(SVTimeSeries series) {
+        for (int i = 0; i < series.size(); i++)
+            if (Double.isNaN(series.getValue(i)))
+                return true;
+        return false;
+    }
+
+    @Test
+    public void spike_is_kept_on_1M_points() {
+        int spikeIndex = LARGE_POINTS / 3;
+        SVTimeSeries series = generateSeries(LARGE_POINTS, spikeIndex, 1000);
+
+        for (SVDownsampler downsampler : new SVDownsampler[]{SVDownsampler.LTTB, SVDownsampler.MIN_MAX}) {
+            SVTimeSeries sampled = downsampler.downsample(series, MAX_DATA_POINTS);
+            assertTrue(sampled.size() <= MAX_DATA_POINTS);
+            assertTrue(downsampler.getClass().getSimpleName(), containsValue(sampled, 1000));
+        }
+
+        // Averages can't keep the spike's value, but his bucket must include it
+        SVTimeSeries sampled = SVDownsampler.AVERAGE.downsample(series, MAX_DATA_POINTS);
+        assertEquals(MAX_DATA_POINTS, sampled.size());
+        int bucket = (int) ((long) spikeIndex * MAX_DATA_POINTS / LARGE_POINTS);
+        int start = (int) ((long) bucket * LARGE_POINTS / MAX_DATA_POINTS);
+        int end = (int) ((long) (bucket + 1) * LARGE_POINTS / MAX_DATA_POINTS);
+        double sum = 0;
+        for (int i = start; i < end; i++)
+            sum += series.getValue(i);
+        assertEquals(sum / (end - start), sampled.getValue(bucket), 1e-9);
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class SVGapPolicyTest {
+
+    private static final long PERIOD_MS = 60 * 1000;
+    private static final long FROM_MS = 0;
+    private static final long TO_MS = 20 * PERIOD_MS;
+
+    /**
+     * Samples each minute from the 5th to the 15th minute, with a gap between
+     * the 8th and the 12th minute.
+     */
+    private static SVTimeSeries generateSeries() {
+        SVTimeSeries series = new SVTimeSeries();
+        for (int m = 5; m <= 15; m++)
+            if (m <= 8 || m >= 12)
+                series.append(m * PERIOD_MS, m);
+        return series;
+    }
+
+    private static void assertSorted(SVTimeSeries series) {
+        for (int i = 1; i < series.size(); i++)
+            assertTrue(series.getTimestamp(i) > series.getTimestamp(i - 1));
+    }
+
+    @Test
+    public void zero_drops_the_line_within_gaps_and_at_edges() {
+        SVTimeSeries filled = SVGapPolicy.ZERO.fill(generateSeries(), FROM_MS, TO_MS, PERIOD_MS);
+
+        assertSorted(filled);
+        assertEquals(8 + 6, filled.size());
+        assertEquals(FROM_MS, filled.getFirstTimestamp());
+        assertEquals(0, filled.getValue(filled.indexOf(5 * PERIOD_MS - SVGapPolicy.DEF_ZERO_DELTA_MS)), 0);
+        assertEquals(0, filled.getValue(filled.indexOf(8 * PERIOD_MS + SVGapPolicy.DEF_ZERO_DELTA_MS)), 0);
+        assertEquals(0, filled.getValue(filled.indexOf(12 * PERIOD_MS - SVGapPolicy.DEF_ZERO_DELTA_MS)), 0);
+        assertEquals(TO_MS, filled.getLastTimestamp());
+
+        SVTimeSeries empty = SVGapPolicy.ZERO.fill(new SVTimeSeries(), FROM_MS, TO_MS, PERIOD_MS);
+        assertEquals(2, empty.size());
+    }
+
+    @Test
+    public void line_break_adds_a_nan_within_gaps() {
+        SVTimeSeries filled = SVGapPolicy.LINE_BREAK.fill(generateSeries(), FROM_MS, TO_MS, PERIOD_MS);
+
+        assertSorted(filled);
+        assertEquals(8 + 1, filled.size());
+        assertTrue(Double.isNaN(filled.getValue(filled.indexOf(10 * PERIOD_MS))));
+        assertEquals(5 * PERIOD_MS, filled.getFirstTimestamp());
+        assertEquals(15 * PERIOD_MS, filled.getLastTimestamp());
+    }
+
+    @Test
+    public void hold_last_keeps_the_previous_value_until_the_next_sample() {
+        SVTimeSeries filled = SVGapPolicy.HOLD_LAST.fill(generateSeries(), FROM_MS, TO_MS, PERIOD_MS);
+
+        assertSorted(filled);
+        assertEquals(8 + 1, filled.size());
+        assertEquals(8, filled.getValue(filled.indexOf(12 * PERIOD_MS - 1)), 0);
+    }
+
+    @Test
+    public void linear_interpolates_at_the_sampling_period() {
+        SVTimeSeries filled = SVGapPolicy.LINEAR.fill(generateSeries(), FROM_MS, TO_MS, PERIOD_MS);
+
+        assertSorted(filled);
+        assertEquals(11, filled.size());
+        for (int i = 0; i < filled.size(); i++)
+            assertEquals(filled.getTimestamp(i) / (double) PERIOD_MS, filled.getValue(i), 1e-9);
+    }
+
+    @Test
+    public void ranges_within_threshold_are_not_gaps() {
+        SVTimeSeries series = new SVTimeSeries();
+        series.append(0, 1);
+        series.append(SVGapPolicy.Engine.gapThresholdMs(PERIOD_MS), 2);
+
+        SVGapPolicy[] policies = {SVGapPolicy.ZERO, SVGapPolicy.LINE_BREAK, SVGapPolicy.HOLD_LAST, SVGapPolicy.LINEAR};
+        for (SVGapPolicy policy : policies)
+            assertEquals(series, policy.fill(series, series.getFirstTimestamp(), series.getLastTimestamp(), PERIOD_MS));
+    }
+
+    @Test
+    public void bucketed_series_use_the_buckets_as_sampling_period() {
+        // One day of samples each minute, with a gap from 10:00 to 12:00, aggregated into 15 minutes buckets
+        long bucketMs = 15 * PERIOD_MS;
+        SVBucketAggregator buckets = new SVBucketAggregator(0, bucketMs, 24 * 4);
+        for (int m = 0; m < 24 * 60; m++)
+            if (m < 10 * 60 || m >= 12 * 60)
+                buckets.add(m * PERIOD_MS, m % 7);
+        SVTimeSeries bucketed = buckets.toSeries(SVTimeSeriesPyramid.AGGREGATION_MIN_MAX);
+        long toMs = (24 * 60 - 1) * PERIOD_MS;
+
+        // Min and max samples of consecutive buckets are up to two buckets apart
+        SVTimeSeries filled = SVGapPolicy.ZERO.fill(bucketed, 0, toMs, bucketMs, 2 * bucketMs);
+        assertSorted(filled);
+        assertEquals(bucketed.size() + 2, filled.size());
+        assertEquals(0, filled.getValue(filled.lowerBound(10 * 60 * PERIOD_MS) - 1), 0);
+
+        filled = SVGapPolicy.LINE_BREAK.fill(bucketed, 0, toMs, bucketMs, 2 * bucketMs);
+        assertEquals(bucketed.size() + 1, filled.size());
+        assertTrue(Double.isNaN(filled.getValue(filled.lowerBound(10 * 60 * PERIOD_MS))));
+
+        // With the raw sampling period, zeros are added between most buckets
+        filled = SVGapPolicy.ZERO.fill(bucketed, 0, toMs, PERIOD_MS);
+        assertTrue(filled.size() > bucketed.size() * 2);
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+
+public class SVHistoryCacheTest {
+
+    private static final String OBJ_ID = "OBJ-ID";
+    private static final String COMP_PATH = "battery>voltage";
+
+    private static SVTimeSeries series(long from, long to, long step) {
+        SVTimeSeries series = new SVTimeSeries();
+        for (long ts = from; ts <= to; ts += step)
+            series.append(ts, ts / 10.0);
+        return series;
+    }
+
+    @Test
+    public void only_not_covered_sub_ranges_are_missing() {
+        SVHistoryCache cache = new SVHistoryCache();
+        assertEquals(Collections.singletonList(new SVHistoryCache.Range(0, 999)), cache.lookup(OBJ_ID, COMP_PATH, 0, 999));
+
+        cache.put(OBJ_ID, COMP_PATH, series(200, 399, 10), 200, 399);
+        cache.put(OBJ_ID, COMP_PATH, series(600, 699, 10), 600, 699);
+        assertEquals(Arrays.asList(new SVHistoryCache.Range(0, 199), new SVHistoryCache.Range(400, 599), new SVHistoryCache.Range(700, 999)),
+                cache.lookup(OBJ_ID, COMP_PATH, 0, 999));
+        assertEquals(Collections.singletonList(new SVHistoryCache.Range(400, 450)), cache.lookup(OBJ_ID, COMP_PATH, 300, 450));
+
+        // Contiguous ranges are merged
+        cache.put(OBJ_ID, COMP_PATH, series(400, 599, 10), 400, 599);
+        assertTrue(cache.lookup(OBJ_ID, COMP_PATH, 200, 699).isEmpty());
+        assertEquals(series(250, 650, 10), cache.query(OBJ_ID, COMP_PATH, 250, 650));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getPartialHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void components_are_evicted_by_points_in_lru_order() {
+        SVHistoryCache cache = new SVHistoryCache(250);
+        cache.put(OBJ_ID, "comp1", series(0, 999, 10), 0, 999);     // 100 points
+        cache.put(OBJ_ID, "comp2", series(0, 999, 10), 0, 999);
+        cache.lookup(OBJ_ID, "comp1", 0, 999);                       // comp1 is now the most recently used
+        cache.put(OBJ_ID, "comp3", series(0, 999, 10), 0, 999);
+
+        assertEquals(200, cache.getPointsCount());
+        assertEquals(200L * SVHistoryCache.BYTES_PER_POINT, cache.getBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.lookup(OBJ_ID, "comp1", 0, 999).isEmpty());
+        assertEquals(1, cache.lookup(OBJ_ID, "comp2", 0, 999).size());
+        assertTrue(cache.lookup(OBJ_ID, "comp3", 0, 999).isEmpty());
+
+        cache.invalidate(OBJ_ID);
+        assertEquals(0, cache.getPointsCount());
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class SVHistoryQueryPlannerTest {
+
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+    private static final int DISPLAY_WIDTH = 1080;
+    private static final int PARTITIONS = 7;
+
+    @Test
+    public void short_windows_request_raw_samples() {
+        SVHistoryQueryPlanner.Plan plan = SVHistoryQueryPlanner.plan(0, DAY_MS - 1, PARTITIONS, DISPLAY_WIDTH, MINUTE_MS);
+        assertFalse(plan.isBucketed());
+        assertEquals(24 * 60, plan.getExpectedSamples());
+    }
+
+    @Test
+    public void long_windows_request_pages_aggregated_into_buckets() {
+        long toMs = 5 * 365 * DAY_MS - 1;
+        SVHistoryQueryPlanner.Plan plan = SVHistoryQueryPlanner.plan(0, toMs, PARTITIONS, DISPLAY_WIDTH, MINUTE_MS);
+
+        assertTrue(plan.isBucketed());
+        assertEquals(0, plan.getBucketsCount() % PARTITIONS);
+        assertTrue(plan.getBucketsCount() >= DISPLAY_WIDTH);
+        assertTrue((long) plan.getBucketsCount() * plan.getBucketMs() > toMs);
+        assertEquals(SVHistoryQueryPlanner.DEF_PAGE_SIZE, plan.getPageSize());
+    }
+
+    @Test
+    public void unknown_display_width_uses_default_buckets() {
+        SVHistoryQueryPlanner.Plan plan = SVHistoryQueryPlanner.plan(0, 365 * DAY_MS - 1, 0, 0, MINUTE_MS);
+        assertEquals(SVHistoryQueryPlanner.DEF_BUCKETS_COUNT, plan.getBucketsCount());
+    }
+
+    @Test
+    public void streamed_pages_keep_buckets_min_max_and_average() {
+        long toMs = 30 * DAY_MS - 1;
+        SVHistoryQueryPlanner.Plan plan = SVHistoryQueryPlanner.plan(0, toMs, PARTITIONS, DISPLAY_WIDTH, MINUTE_MS);
+        SVBucketAggregator buckets = plan.newAggregator();
+
+        // Pages of samples each minute, value 1, with a spike and a NaN
+        int pageSize = plan.getPageSize();
+        for (long ts = 0; ts <= toMs; ts += MINUTE_MS * pageSize) {
+            SVTimeSeries page = new SVTimeSeries(pageSize);
+            for (long pageTs = ts; pageTs < ts + MINUTE_MS * pageSize && pageTs <= toMs; pageTs += MINUTE_MS)
+                page.append(pageTs, pageTs == 10 * DAY_MS ? 1000 : pageTs == 20 * DAY_MS ? Double.NaN : 1);
+            buckets.addAll(page);
+        }
+        assertEquals(30 * 24 * 60 - 1, buckets.getSamplesCount());
+
+        SVTimeSeries minMax = buckets.toSeries(SVTimeSeriesPyramid.AGGREGATION_MIN_MAX);
+        assertTrue(minMax.size() <= 2 * plan.getBucketsCount());
+        assertEquals(1000, minMax.getValue(minMax.indexOf(10 * DAY_MS)), 0);
+
+        SVTimeSeries average = buckets.toSeries(SVTimeSeriesPyramid.AGGREGATION_AVERAGE);
+        assertEquals(plan.getBucketsCount(), average.size());
+        for (int i = 0; i < average.size(); i++) {
+            assertFalse(Double.isNaN(average.getValue(i)));
+            assertTrue(average.getValue(i) >= 1);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+
+public class SVTimeSeriesPyramidTest {
+
+    private static final int MAX_DATA_POINTS = 100;
+    private static final long STEP_MS = 1000;
+
+    private static SVTimeSeries generateSeries(int count, int spikeIndex, double spikeValue) {
+        Random random = new Random(42);
+        SVTimeSeries series = new SVTimeSeries(count);
+        for (int i = 0; i < count; i++)
+            series.append(i * STEP_MS, i == spikeIndex ? spikeValue : random.nextDouble() * 10);
+        return series;
+    }
+
+    private static boolean containsValue(SVTimeSeries series, double value) {
+        for (int i = 0; i < series.size(); i++)
+            if (series.getValue(i) == value)
+                return true;
+        return false;
+    }
+
+    @Test
+    public void each_level_halves_the_resolution() {
+        SVTimeSeriesPyramid pyramid = new SVTimeSeriesPyramid(generateSeries(1000, -1, 0));
+
+        assertEquals(11, pyramid.getLevelsCount());
+        assertEquals(1000, pyramid.getLevelSize(0));
+        assertEquals(500, pyramid.getLevelSize(1));
+        assertEquals(63, pyramid.getLevelSize(4));
+        assertEquals(1, pyramid.getLevelSize(10));
+    }
+
+    @Test
+    public void small_ranges_return_the_samples_with_their_neighbours() {
+        SVTimeSeries series = generateSeries(10000, -1, 0);
+        SVTimeSeriesPyramid pyramid = new SVTimeSeriesPyramid(series);
+
+        SVTimeSeries visible = pyramid.query(5000 * STEP_MS, 5049 * STEP_MS, MAX_DATA_POINTS, SVTimeSeriesPyramid.AGGREGATION_MIN_MAX);
+        assertEquals(series.sliceByIndex(4999, 5051), visible);
+    }
+
+    @Test
+    public void zoomed_ranges_fit_max_points_and_keep_spikes() {
+        SVTimeSeries series = generateSeries(100000, 54321, 1000);
+        SVTimeSeriesPyramid pyramid = new SVTimeSeriesPyramid(series);
+
+        long from = 40000 * STEP_MS;
+        long to = 70000 * STEP_MS;
+        for (int aggregation : new int[]{SVTimeSeriesPyramid.AGGREGATION_MIN_MAX, SVTimeSeriesPyramid.AGGREGATION_AVERAGE}) {
+            SVTimeSeries visible = pyramid.query(from, to, MAX_DATA_POINTS, aggregation);
+            assertTrue(visible.size() <= MAX_DATA_POINTS);
+            assertTrue(visible.getFirstTimestamp() <= from);
+            assertTrue(visible.getLastTimestamp() >= to);
+            for (int i = 1; i < visible.size(); i++)
+                assertTrue(visible.getTimestamp(i) > visible.getTimestamp(i - 1));
+        }
+        assertTrue(containsValue(pyramid.query(from, to, MAX_DATA_POINTS, SVTimeSeriesPyramid.AGGREGATION_MIN_MAX), 1000));
+    }
+
+    @Test
+    public void average_buckets_ignore_nan_values() {
+        SVTimeSeries series = new SVTimeSeries();
+        for (int i = 0; i < 8; i++)
+            series.append(i * STEP_MS, i < 4 ? 2 : (i == 4 ? Double.NaN : 4));
+        SVTimeSeriesPyramid pyramid = new SVTimeSeriesPyramid(series);
+
+        SVTimeSeries visible = pyramid.query(0, 7 * STEP_MS, 2, SVTimeSeriesPyramid.AGGREGATION_AVERAGE);
+        assertEquals(2, visible.size());
+        assertEquals(2, visible.getValue(0), 0);
+        assertEquals(4, visible.getValue(1), 0);
+    }
+
+    @Test
+    public void queries_on_1M_points_fit_max_points_and_keep_min_max() {
+        int count = 1000 * 1000;
+        SVTimeSeries series = generateSeries(count, -1, 0);
+        SVTimeSeriesPyramid pyramid = new SVTimeSeriesPyramid(series);
+
+        // 2^19 < 1M <= 2^20, plus the level 0
+        assertEquals(21, pyramid.getLevelsCount());
+        assertEquals(1, pyramid.getLevelSize(pyramid.getLevelsCount() - 1));
+
+        Random random = new Random(1);
+        for (int run = 0; run < 200; run++) {
+            long from = random.nextInt(900 * 1000) * STEP_MS;
+            long to = from + (1 + random.nextInt(100 * 1000)) * STEP_MS;
+            SVTimeSeries range = series.slice(from, to);
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = 0; i < range.size(); i++) {
+                min = Math.min(min, range.getValue(i));
+                max = Math.max(max, range.getValue(i));
+            }
+
+            SVTimeSeries visible = pyramid.query(from, to, MAX_DATA_POINTS, SVTimeSeriesPyramid.AGGREGATION_MIN_MAX);
+            assertTrue(visible.size() <= MAX_DATA_POINTS);
+            assertTrue(containsValue(visible, min));
+            assertTrue(containsValue(visible, max));
+            // Only the edge buckets' min and max samples can be out of range
+            assertTrue(visible.lowerBound(from) <= 4);
+            assertTrue(visible.size() - visible.upperBound(to) <= 4);
+
+            visible = pyramid.query(from, to, MAX_DATA_POINTS, SVTimeSeriesPyramid.AGGREGATION_AVERAGE);
+            assertTrue(visible.size() <= MAX_DATA_POINTS);
+            assertTrue(visible.lowerBound(from) <= 2);
+            assertTrue(visible.size() - visible.upperBound(to) <= 2);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.robypomper.smartvan.smart_van.android.commons;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class SVTimeSeriesTest {
+
+    private static SVTimeSeries series(long... timestamps) {
+        SVTimeSeries series = new SVTimeSeries();
+        for (long timestamp : timestamps)
+            series.append(timestamp, timestamp / 10.0);
+        return series;
+    }
+
+    @Test
+    public void unsorted_samples_are_sorted_keeping_the_latest_duplicate() {
+        long[] timestamps = {30, 10, 20, 10};
+        double[] values = {3, 1, 2, 4};
+        SVTimeSeries series = SVTimeSeries.sortedOf(timestamps, values, timestamps.length);
+
+        assertEquals(3, series.size());
+        assertEquals(10, series.getFirstTimestamp());
+        assertEquals(4, series.getValue(0), 0);
+        assertEquals(30, series.getLastTimestamp());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void append_rejects_older_samples() {
+        series(10, 20).append(15, 0);
+    }
+
+    @Test
+    public void put_inserts_at_chronological_position() {
+        SVTimeSeries series = series(10, 30);
+        series.put(20, 2);
+        series.put(30, 5);
+
+        assertEquals(series(10, 20, 30).size(), series.size());
+        assertEquals(20, series.getTimestamp(1));
+        assertEquals(5, series.getValue(2), 0);
+    }
+
+    @Test
+    public void remove_before_trims_the_oldest_samples() {
+        SVTimeSeries series = series(10, 20, 30, 40);
+
+        assertEquals(0, series.removeBefore(5));
+        assertEquals(2, series.removeBefore(25));
+        assertEquals(series(30, 40), series);
+        series.append(50, 5);
+        assertEquals(3, series.size());
+        assertEquals(3, series.removeBefore(100));
+        assertEquals(0, series.size());
+    }
+
+    @Test
+    public void bounds_and_slices_use_inclusive_ranges() {
+        SVTimeSeries series = series(10, 20, 30, 40, 50);
+
+        assertEquals(2, series.indexOf(30));
+        assertEquals(-3, series.indexOf(25));
+        assertEquals(2, series.lowerBound(25));
+        assertEquals(3, series.upperBound(30));
+        assertEquals(series(20, 30, 40), series.slice(20, 40));
+        assertEquals(series(20, 30), series.slice(15, 35));
+        assertEquals(0, series.slice(60, 70).size());
+    }
+
+    @Test
+    public void merge_prefers_override_values() {
+        SVTimeSeries base = series(10, 20, 30);
+        SVTimeSeries override = new SVTimeSeries();
+        override.append(20, -1);
+        override.append(40, -2);
+
+        SVTimeSeries merged = SVTimeSeries.merge(base, override);
+        assertEquals(4, merged.size());
+        assertEquals(-1, merged.getValue(1), 0);
+        assertEquals(40, merged.getLastTimestamp());
+    }
+
+}
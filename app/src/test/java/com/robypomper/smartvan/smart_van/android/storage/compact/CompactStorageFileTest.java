@@ -0,0 +1,115 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+public class CompactStorageFileTest {
+
+    private static final long NO_COALESCE_MS = 0;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    static void fillObject(CompactStorageData data, String objectId, int servicesCount) {
+        data.knownObjIds.add(objectId);
+        CompactStorageData.ObjectRecord record = data.getOrCreateObject(objectId);
+        record.svBoxColor = 0xFF0BB2B2;
+        record.chartTimeoutSeconds = 30;
+        for (int s = 0; s < servicesCount; s++) {
+            CompactStorageData.ServiceRecord service = record.getOrCreateService("Services>Actuators>Switch>" + s);
+            service.name = "Service " + s;
+            service.iconName = "ic_light";
+        }
+    }
+
+    static void writeInitialized(File file, CompactStorageFile.Initializer initializer) {
+        CompactStorageFile storeFile = new CompactStorageFile(file, initializer, NO_COALESCE_MS);
+        storeFile.load();
+        storeFile.flush().blockingAwait();
+    }
+
+    @Test
+    public void content_is_written_and_read_back() {
+        File file = new File(tmpFolder.getRoot(), "storage.svcs");
+        CompactStorageFile storeFile = new CompactStorageFile(file, null, NO_COALESCE_MS);
+        storeFile.update(data -> {
+            data.currObjId = "obj-1";
+            data.askUseFavObjId = false;
+            fillObject(data, "obj-1", 5);
+            fillObject(data, "obj-2", 5);
+        }).blockingAwait();
+
+        CompactStorageFile reopened = new CompactStorageFile(file, null, NO_COALESCE_MS);
+        assertEquals("obj-1", reopened.read(data -> data.currObjId));
+        assertNull(reopened.read(data -> data.favObjId));
+        assertEquals(Boolean.FALSE, reopened.read(data -> data.askUseFavObjId));
+        assertNull(reopened.read(data -> data.askSetFavObjId));
+        assertEquals(Arrays.asList("obj-1", "obj-2"), reopened.read(data -> Arrays.asList(data.knownObjIds.toArray())));
+        assertEquals(Integer.valueOf(30), reopened.read(data -> data.getObject("obj-2").chartTimeoutSeconds));
+        assertEquals("Service 3", reopened.read(data -> data.getObject("obj-2").services.get("Services>Actuators>Switch>3").name));
+    }
+
+    @Test
+    public void updates_are_readable_before_being_written() {
+        File file = new File(tmpFolder.getRoot(), "storage.svcs");
+        CompactStorageFile storeFile = new CompactStorageFile(file, null, 60 * 1000);
+
+        storeFile.update(data -> data.favObjId = "obj-1");
+        assertEquals("obj-1", storeFile.read(data -> data.favObjId));
+        assertFalse(file.exists());
+
+        storeFile.flush().blockingAwait();
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void initializer_is_used_only_for_missing_file() {
+        File file = new File(tmpFolder.getRoot(), "storage.svcs");
+        CompactStorageFile storeFile = new CompactStorageFile(file, data -> fillObject(data, "imported", 1), NO_COALESCE_MS);
+        assertEquals(Arrays.asList("imported"), storeFile.read(data -> Arrays.asList(data.knownObjIds.toArray())));
+        storeFile.flush().blockingAwait();
+
+        CompactStorageFile reopened = new CompactStorageFile(file, data -> fillObject(data, "imported-again", 1), NO_COALESCE_MS);
+        assertEquals(Arrays.asList("imported"), reopened.read(data -> Arrays.asList(data.knownObjIds.toArray())));
+    }
+
+    @Test
+    public void corrupted_file_is_moved_aside() throws IOException {
+        File file = new File(tmpFolder.getRoot(), "storage.svcs");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        }
+
+        CompactStorageFile storeFile = new CompactStorageFile(file, null, NO_COALESCE_MS);
+        assertNull(storeFile.read(data -> data.currObjId));
+        assertTrue(new File(file.getPath() + ".corrupted").exists());
+    }
+
+    @Test
+    public void shared_strings_are_written_once() {
+        File file1 = new File(tmpFolder.getRoot(), "one.svcs");
+        File file50 = new File(tmpFolder.getRoot(), "fifty.svcs");
+        writeInitialized(file1, data -> fillObject(data, "obj-0", 10));
+        writeInitialized(file50, data -> {
+            for (int o = 0; o < 50; o++)
+                fillObject(data, "obj-" + o, 10);
+        });
+
+        // Each additional object costs his id and the references to the shared strings
+        long perObjectBytes = (file50.length() - file1.length()) / 49;
+        assertTrue("Per object size: " + perObjectBytes, perObjectBytes < 64);
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.robypomper.smartvan.smart_van.android.storage.compact;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.preferences.core.PreferencesKeys;
+import androidx.datastore.preferences.rxjava3.RxPreferenceDataStoreBuilder;
+import androidx.datastore.rxjava3.RxDataStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.reactivex.rxjava3.core.Single;
+
+
+/**
+ * Compare the file size of the compact storage file with the DataStores used
+ * by the SVLocalStorage (one for the global values plus two for each known
+ * object), for 1, 10 and 50 known objects.
+ */
+public class CompactStorageSizeTest {
+
+    private static final int[] OBJECTS_COUNTS = {1, 10, 50};
+    private static final int SERVICES_COUNT = 20;
+    private static final String DATA_STORE_EXT = ".preferences_pb";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void compact_storage_is_smaller() throws IOException {
+        for (int objectsCount : OBJECTS_COUNTS) {
+            // Compact storage
+            File compactFile = new File(tmpFolder.newFolder(), "storage.svcs");
+            CompactStorageFileTest.writeInitialized(compactFile, data -> {
+                for (int o = 0; o < objectsCount; o++)
+                    CompactStorageFileTest.fillObject(data, "obj-" + o, SERVICES_COUNT);
+            });
+            CompactStorageFile compactStorage = new CompactStorageFile(compactFile, null);
+            assertEquals(objectsCount, (int) compactStorage.read(data -> data.objects.size()));
+
+            // DataStores
+            File dataStoresDir = tmpFolder.newFolder();
+            long dataStoresSize = 0;
+            for (String name : writeDataStores(dataStoresDir, objectsCount))
+                dataStoresSize += new File(dataStoresDir, name + DATA_STORE_EXT).length();
+
+            assertTrue(String.format("Compact file (%d B) bigger than DataStores (%d B) with %d objects", compactFile.length(), dataStoresSize, objectsCount),
+                    compactFile.length() < dataStoresSize);
+        }
+    }
+
+    private static RxDataStore<Preferences> buildDataStore(File dir, String name) {
+        return new RxPreferenceDataStoreBuilder(() -> new File(dir, name + DATA_STORE_EXT)).build();
+    }
+
+    /**
+     * Write the same values of the compact storage into DataStores with the
+     * same layout (and keys) used by the SVLocalStorage.
+     */
+    private static List<String> writeDataStores(File dir, int objectsCount) {
+        List<String> names = new ArrayList<>();
+        Set<String> knownObjIds = new HashSet<>();
+        for (int o = 0; o < objectsCount; o++) {
+            String objectId = "obj-" + o;
+            knownObjIds.add(objectId);
+
+            names.add("preferences_" + objectId);
+            writeDataStore(dir, "preferences_" + objectId, prefs -> {
+                prefs.set(PreferencesKeys.intKey("svbox_color"), 0xFF0BB2B2);
+                prefs.set(PreferencesKeys.intKey("charts_timeout"), 30);
+            });
+
+            names.add("services_" + objectId);
+            writeDataStore(dir, "services_" + objectId, prefs -> {
+                for (int s = 0; s < SERVICES_COUNT; s++) {
+                    prefs.set(PreferencesKeys.stringKey("name_Services>Actuators>Switch>" + s), "Service " + s);
+                    prefs.set(PreferencesKeys.stringKey("icon_Services>Actuators>Switch>" + s), "ic_light");
+                }
+            });
+        }
+
+        names.add("storage");
+        writeDataStore(dir, "storage", prefs -> {
+            prefs.set(PreferencesKeys.stringKey("curr_obj_id"), "obj-0");
+            prefs.set(PreferencesKeys.stringSetKey("known_obj_id"), knownObjIds);
+        });
+        return names;
+    }
+
+    private interface PrefsWriter {
+        void write(MutablePreferences prefs);
+    }
+
+    private static void writeDataStore(File dir, String name, PrefsWriter writer) {
+        RxDataStore<Preferences> dataStore = buildDataStore(dir, name);
+        dataStore.updateDataAsync(prefs -> {
+            MutablePreferences mutablePrefs = prefs.toMutablePreferences();
+            writer.write(mutablePrefs);
+            return Single.just(mutablePrefs);
+        }).blockingGet();
+        dataStore.dispose();
+    }
+
+}
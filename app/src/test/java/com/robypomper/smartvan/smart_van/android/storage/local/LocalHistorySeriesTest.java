@@ -0,0 +1,106 @@
+package com.robypomper.smartvan.smart_van.android.storage.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+
+public class LocalHistorySeriesTest {
+
+    private static final int SEGMENT_RECORDS = 100;
+    private static final int RECORDS = 1000;
+    private static final long STEP_MS = 10;
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static void appendRecords(LocalHistorySeries series, long firstTs, int count) throws IOException {
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = firstTs + i * STEP_MS;
+            values[i] = i;
+        }
+        series.append(timestamps, values, count, firstTs, firstTs + (count - 1) * STEP_MS);
+    }
+
+    @Test
+    public void appended_records_are_split_into_segments() throws IOException {
+        LocalHistorySeries series = new LocalHistorySeries(tmpFolder.newFolder(), SEGMENT_RECORDS);
+        appendRecords(series, 0, RECORDS);
+
+        assertEquals(RECORDS, series.size());
+        assertEquals(RECORDS / SEGMENT_RECORDS, series.getSegmentsCount());
+        assertEquals(0, series.getFirstTimestamp());
+        assertEquals((RECORDS - 1) * STEP_MS, series.getLastTimestamp());
+    }
+
+    @Test
+    public void query_returns_only_records_within_range() throws IOException {
+        LocalHistorySeries series = new LocalHistorySeries(tmpFolder.newFolder(), SEGMENT_RECORDS);
+        appendRecords(series, 0, RECORDS);
+
+        LocalHistorySeries.Records records = series.query(995, 2505);
+        assertEquals(151, records.size());
+        assertEquals(1000, records.getTimestamp(0));
+        assertEquals(100, records.getValue(0), 0);
+        assertEquals(2500, records.getTimestamp(records.size() - 1));
+
+        assertEquals(0, series.query(-100, -1).size());
+        assertEquals(0, series.query(RECORDS * STEP_MS, RECORDS * STEP_MS * 2).size());
+    }
+
+    @Test
+    public void old_records_are_not_appended_twice() throws IOException {
+        LocalHistorySeries series = new LocalHistorySeries(tmpFolder.newFolder(), SEGMENT_RECORDS);
+        appendRecords(series, 0, 50);
+        appendRecords(series, 250, 50);     // overlaps 25 records
+
+        assertEquals(75, series.size());
+        assertTrue(series.covers(0, 740));
+        assertFalse(series.covers(0, 750));
+    }
+
+    @Test
+    public void records_and_coverage_are_persisted() throws IOException {
+        File dir = tmpFolder.newFolder();
+        LocalHistorySeries series = new LocalHistorySeries(dir, SEGMENT_RECORDS);
+        appendRecords(series, 0, RECORDS);
+
+        LocalHistorySeries reopened = new LocalHistorySeries(dir, SEGMENT_RECORDS);
+        assertEquals(RECORDS, reopened.size());
+        assertEquals(series.getCoveredFrom(), reopened.getCoveredFrom());
+        assertEquals(series.getCoveredTo(), reopened.getCoveredTo());
+        assertEquals(series.query(0, 5000).size(), reopened.query(0, 5000).size());
+    }
+
+    @Test
+    public void retention_deletes_whole_old_segments() throws IOException {
+        LocalHistorySeries series = new LocalHistorySeries(tmpFolder.newFolder(), SEGMENT_RECORDS);
+        appendRecords(series, 0, RECORDS);
+
+        assertEquals(2, series.deleteOlderThan(2500));
+        assertEquals(RECORDS - 2 * SEGMENT_RECORDS, series.size());
+        assertEquals(2000, series.getFirstTimestamp());
+        assertEquals(1991, series.getCoveredFrom());
+        assertFalse(series.covers(0, 2500));
+    }
+
+    @Test
+    public void delete_removes_all_files() throws IOException {
+        File dir = tmpFolder.newFolder();
+        LocalHistorySeries series = new LocalHistorySeries(dir, SEGMENT_RECORDS);
+        appendRecords(series, 0, RECORDS);
+
+        series.delete();
+        assertFalse(dir.exists());
+    }
+
+}
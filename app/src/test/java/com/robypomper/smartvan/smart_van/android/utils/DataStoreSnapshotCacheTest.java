@@ -0,0 +1,129 @@
+package com.robypomper.smartvan.smart_van.android.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.datastore.preferences.core.MutablePreferences;
+import androidx.datastore.preferences.core.Preferences;
+import androidx.datastore.preferences.core.PreferencesFactory;
+import androidx.datastore.preferences.core.PreferencesKeys;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+
+
+public class DataStoreSnapshotCacheTest {
+
+    private static final Preferences.Key<String> KEY_OBJ_ID = PreferencesKeys.stringKey("curr_obj_id");
+    private static final Preferences.Key<Set<String>> KEY_KNOWN_IDS = PreferencesKeys.stringSetKey("known_obj_id");
+    private static final int READS = 10_000;
+
+    private static Preferences snapshotWith(String objId) {
+        MutablePreferences prefs = PreferencesFactory.createMutable();
+        prefs.set(KEY_OBJ_ID, objId);
+        return prefs.toPreferences();
+    }
+
+    @Test
+    public void reads_from_latest_snapshot() {
+        PublishProcessor<Preferences> source = PublishProcessor.create();
+        DataStoreSnapshotCache cache = new DataStoreSnapshotCache(null, source);
+        assertFalse(cache.isWarm());
+
+        source.onNext(snapshotWith("obj-1"));
+        assertTrue(cache.isWarm());
+        assertEquals("obj-1", cache.get(KEY_OBJ_ID, null));
+
+        source.onNext(snapshotWith("obj-2"));
+        assertEquals("obj-2", cache.get(KEY_OBJ_ID, null));
+
+        source.onNext(PreferencesFactory.createEmpty());
+        assertEquals("default", cache.get(KEY_OBJ_ID, "default"));
+
+        cache.dispose();
+    }
+
+    @Test
+    public void local_writes_are_readable_immediately() {
+        DataStoreSnapshotCache cache = new DataStoreSnapshotCache(null, Flowable.just(snapshotWith("obj-1")));
+
+        cache.set(KEY_OBJ_ID, "obj-2");
+        assertEquals("obj-2", cache.get(KEY_OBJ_ID, null));
+
+        cache.set(KEY_OBJ_ID, null);
+        assertEquals("default", cache.get(KEY_OBJ_ID, "default"));
+    }
+
+    @Test
+    public void editor_commits_all_mutations_together() {
+        PublishProcessor<Preferences> source = PublishProcessor.create();
+        DataStoreSnapshotCache cache = new DataStoreSnapshotCache(null, source);
+        source.onNext(snapshotWith("obj-1"));
+
+        DataStoreEditor editor = cache.edit()
+                .set(KEY_OBJ_ID, "obj-2")
+                .addToStringSet(KEY_KNOWN_IDS, "obj-1")
+                .addToStringSet(KEY_KNOWN_IDS, "obj-2")
+                .removeFromStringSet(KEY_KNOWN_IDS, "obj-1");
+        assertEquals("obj-1", cache.get(KEY_OBJ_ID, null));
+
+        editor.commit().blockingAwait();
+        assertEquals("obj-2", cache.get(KEY_OBJ_ID, null));
+        assertEquals(Collections.singleton("obj-2"), cache.get(KEY_KNOWN_IDS, null));
+
+        cache.dispose();
+    }
+
+    @Test
+    public void changes_contain_only_changed_keys() {
+        PublishProcessor<Preferences> source = PublishProcessor.create();
+        DataStoreSnapshotCache cache = new DataStoreSnapshotCache(null, source);
+        TestSubscriber<DataStoreChange> changes = cache.changes().test();
+
+        source.onNext(snapshotWith("obj-1"));
+        changes.assertNoValues();
+
+        source.onNext(snapshotWith("obj-2"));
+        cache.edit().addToStringSet(KEY_KNOWN_IDS, "obj-2").commit();
+        changes.assertValueCount(2);
+
+        DataStoreChange updated = changes.values().get(0);
+        assertEquals(Collections.singleton(KEY_OBJ_ID), updated.getChangedKeys());
+        assertEquals("obj-1", updated.getOldValue(KEY_OBJ_ID));
+        assertEquals("obj-2", updated.getNewValue(KEY_OBJ_ID));
+
+        DataStoreChange added = changes.values().get(1);
+        assertEquals(Collections.singleton(KEY_KNOWN_IDS), added.getChangedKeys());
+        assertEquals(Collections.singleton("obj-2"), added.getNewValue(KEY_KNOWN_IDS));
+
+        cache.dispose();
+        changes.assertComplete();
+    }
+
+    @Test
+    public void warm_reads_never_read_the_data_store() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        AtomicInteger emissions = new AtomicInteger();
+        Flowable<Preferences> source = Flowable.just(snapshotWith("obj-1"))
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+                .doOnNext(snapshot -> emissions.incrementAndGet());
+        DataStoreSnapshotCache cache = new DataStoreSnapshotCache(null, source);
+
+        int found = 0;
+        for (int i = 0; i < READS; i++)
+            if ("obj-1".equals(cache.get(KEY_OBJ_ID, null))) found++;
+
+        assertEquals(READS, found);
+        assertEquals(1, subscriptions.get());
+        assertEquals(1, emissions.get());
+    }
+
+}